@@ -0,0 +1,96 @@
+package com.comandulli.lib.benchmark;
+
+import com.comandulli.lib.rest.RequestCallback;
+import com.comandulli.lib.rest.RequestResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch of results through chains of callbacks of growing depth, each passing the result to its parent.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CallbackChainBenchmark {
+
+    /**
+     * Number of callbacks in the chain.
+     */
+    @Param({"1", "4", "16"})
+    public int depth;
+
+    /**
+     * Innermost callback of the chain.
+     */
+    private RequestCallback chain;
+    /**
+     * A successful response.
+     */
+    private RequestResponse success;
+    /**
+     * An unauthorized response.
+     */
+    private RequestResponse unauthorized;
+
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        RequestCallback callback = new RequestCallback() {
+            @Override
+            public void onResponse(RequestResponse response) {
+                blackhole.consume(response);
+            }
+
+            @Override
+            public void onUnauthorized() {
+                blackhole.consume(true);
+            }
+        };
+        for (int i = 1; i < depth; i++) {
+            callback = new RequestCallback(callback) {
+                @Override
+                public void onResponse(RequestResponse response) {
+                    if (!dispatchStatus(response.getCode())) {
+                        parent.onResponse(response);
+                    }
+                }
+            };
+        }
+        chain = callback;
+        success = new RequestResponse();
+        success.setCode(200);
+        unauthorized = new RequestResponse();
+        unauthorized.setCode(401);
+    }
+
+    /**
+     * Passes a response from the innermost to the outermost callback.
+     */
+    @Benchmark
+    public void response() {
+        chain.always();
+        chain.onResponse(success);
+    }
+
+    /**
+     * Routes an error status up to the outermost callback.
+     */
+    @Benchmark
+    public void status() {
+        chain.always();
+        chain.onResponse(unauthorized);
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.comandulli.lib.benchmark;
+
+import com.comandulli.lib.rest.EnvelopeCodec;
+import com.comandulli.lib.rest.EnvelopeCodecs;
+import com.comandulli.lib.rest.RequestResponse;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same payloads read and written by each {@link EnvelopeCodec}.
+ * <p>
+ * In throughput mode the envelope benchmark also reports the bytes it reads per microsecond as its bodyBytes
+ * secondary result, to weigh the bytes saved on the wire against the parse time.
+ * The size of the body is that result over the operations per microsecond.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CodecBenchmark {
+
+    /**
+     * Media type of the codec.
+     */
+    @Param({"application/json", "application/cbor"})
+    public String codecType;
+    /**
+     * Number of items in the content.
+     */
+    @Param({"1", "20", "500"})
+    public int items;
+
+    /**
+     * The codec.
+     */
+    private EnvelopeCodec codec;
+    /**
+     * Body of the response, in the codec's format.
+     */
+    private byte[] body;
+    /**
+     * Content of a request.
+     */
+    private JSONObject content;
+
+    @Setup
+    public void setup() throws JSONException {
+        codec = EnvelopeCodecs.forContentType(codecType);
+        body = Payloads.envelope(items, codec);
+        byte[] json = Payloads.envelope(items);
+        content = EnvelopeCodecs.JSON.decode(json, 0, json.length).getContent();
+    }
+
+    /**
+     * Reads the envelope, leaving the content unparsed.
+     */
+    @Benchmark
+    public RequestResponse envelope(BodyCounters counters) throws JSONException {
+        counters.bodyBytes += body.length;
+        return codec.decode(body, 0, body.length);
+    }
+
+    /**
+     * Decodes the items straight from the content bytes.
+     */
+    @Benchmark
+    public List<Payloads.Item> decoder() throws JSONException {
+        return Payloads.ITEMS.decode(codec.decode(body, 0, body.length).getContentReader());
+    }
+
+    /**
+     * Maps the items by hand from the content converted into a JSONObject.
+     */
+    @Benchmark
+    public List<Payloads.Item> treeMapping() throws JSONException {
+        return Payloads.mapItems(codec.decode(body, 0, body.length).getContent());
+    }
+
+    /**
+     * Encodes the content as a request body.
+     */
+    @Benchmark
+    public byte[] encode() throws JSONException {
+        return codec.encode(content);
+    }
+
+    /**
+     * Bytes of the bodies read, reported next to the operations.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class BodyCounters {
+
+        /**
+         * Bytes of the bodies read.
+         */
+        public long bodyBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bodyBytes = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.comandulli.lib.benchmark;
+
+import com.comandulli.lib.rest.ConnectionWarmer;
+import com.comandulli.lib.rest.HttpClientTransport;
+import com.comandulli.lib.rest.NetworkRequestQueue;
+import com.comandulli.lib.rest.RequestResponse;
+import com.comandulli.lib.rest.RestRequest;
+import com.comandulli.lib.rest.RestRequest.RequestMethod;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * Latency of the first request of a new transport to an in-process {@link StubServer} over TLS:
+ * cold, with a new SSL context that has no session to resume, resumed, with an SSL context holding the
+ * session of an earlier connection, and warmed, after {@link ConnectionWarmer#warmUp(String...)}.
+ * Each iteration measures a single request on a new http client.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 100)
+public class ConnectionWarmerBenchmark {
+
+    /**
+     * How the first request connects.
+     */
+    @Param({"cold", "resumed", "warmed"})
+    public String start;
+
+    /**
+     * Certificate of the stub server.
+     */
+    private StubTls tls;
+    /**
+     * The stub server.
+     */
+    private StubServer server;
+    /**
+     * SSL context shared by the clients of all iterations, holding the sessions to resume.
+     */
+    private SSLContext shared;
+
+    @Setup
+    public void setup() throws IOException, GeneralSecurityException {
+        tls = new StubTls();
+        server = new StubServer(Payloads.envelope(200), false, tls.getServerContext());
+        shared = tls.newClientContext();
+        RestRequest.setDefaultServerPath(server.getUrl());
+    }
+
+    @Setup(Level.Iteration)
+    public void connect() throws GeneralSecurityException {
+        SSLContext context = "cold".equals(start) ? tls.newClientContext() : shared;
+        NetworkRequestQueue.setTransport(new HttpClientTransport(HttpClient.newBuilder()
+                .sslContext(context)
+                .connectTimeout(Duration.ofMillis(HttpClientTransport.DEFAULT_TIMEOUT_MS))
+                .build(), HttpClientTransport.DEFAULT_TIMEOUT_MS));
+        if ("warmed".equals(start)) {
+            ConnectionWarmer.warmUp(server.getUrl()).join();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Makes the first request of the transport.
+     *
+     * @return The response.
+     */
+    @Benchmark
+    public RequestResponse firstRequest() {
+        RestRequest request = new RestRequest(RequestMethod.GET, "/items");
+        request.setCoalescing(false);
+        request.setCacheable(false);
+        return request.executeBlocking();
+    }
+
+}
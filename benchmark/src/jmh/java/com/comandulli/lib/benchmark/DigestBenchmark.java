@@ -0,0 +1,128 @@
+package com.comandulli.lib.benchmark;
+
+import com.comandulli.lib.Hash;
+import com.comandulli.lib.MD5;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing of strings into hexadecimal digests by {@link MD5#encode(String)}, as used for cache file names,
+ * against the previous implementation that got a new digest and built the hexadecimal string with
+ * Integer.toHexString for each string, and hashing of the same bytes as a stream, a direct buffer and a file
+ * by {@link Hash}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DigestBenchmark {
+
+    /**
+     * Length of the hashed string.
+     */
+    @Param({"32", "1024", "1048576"})
+    public int length;
+
+    /**
+     * The hashed string.
+     */
+    private String value;
+    /**
+     * The string in UTF-8.
+     */
+    private byte[] bytes;
+    /**
+     * The string in UTF-8, in a direct buffer.
+     */
+    private ByteBuffer buffer;
+    /**
+     * The string in UTF-8, in a file.
+     */
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'a');
+        value = new String(chars);
+        bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        file = File.createTempFile("digest", ".bin");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * The previous implementation.
+     */
+    @Benchmark
+    public String legacyMd5() throws NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        byte[] array = md.digest(value.getBytes());
+        StringBuilder sb = new StringBuilder();
+        for (byte anArray : array) {
+            sb.append(Integer.toHexString(anArray & 0xFF | 0x100).substring(1, 3));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String md5() {
+        return MD5.encode(value);
+    }
+
+    @Benchmark
+    public String sha256() {
+        return Hash.SHA_256.hex(value);
+    }
+
+    @Benchmark
+    public byte[] md5Stream() throws IOException {
+        return Hash.MD5.digest(new ByteArrayInputStream(bytes));
+    }
+
+    @Benchmark
+    public byte[] md5Buffer() {
+        return Hash.MD5.digest(buffer.duplicate());
+    }
+
+    /**
+     * Hashes the file mapped into memory.
+     */
+    @Benchmark
+    public byte[] md5File() throws IOException {
+        return Hash.MD5.digest(file);
+    }
+
+}
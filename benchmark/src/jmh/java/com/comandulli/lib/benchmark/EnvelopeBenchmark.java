@@ -0,0 +1,105 @@
+package com.comandulli.lib.benchmark;
+
+import com.comandulli.lib.rest.EnvelopeParser;
+import com.comandulli.lib.rest.RequestResponse;
+import com.comandulli.lib.rest.VolleyRequest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of response envelopes and their content, from the body bytes to the application's objects.
+ * <p>
+ * The tree methods reproduce the path before the envelope parser, a JSONObject of the whole body
+ * mapped by hand, against the envelope parser with lazy content and content decoders,
+ * written by hand or derived from the fields of the item.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EnvelopeBenchmark {
+
+    /**
+     * Number of items in the content.
+     */
+    @Param({"1", "20", "500"})
+    public int items;
+
+    /**
+     * Body of the response.
+     */
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        body = Payloads.envelope(items);
+    }
+
+    /**
+     * Builds the response from a JSONObject of the whole body.
+     */
+    @Benchmark
+    public RequestResponse treeEnvelope() throws JSONException {
+        JSONObject json = new JSONObject(new String(body, EnvelopeParser.UTF_8));
+        RequestResponse response = new RequestResponse();
+        response.setMessage(json.getString(VolleyRequest.JSON_PROPERTY_MESSAGE));
+        response.setCode(json.getInt(VolleyRequest.JSON_PROPERTY_CODE));
+        response.setContent(json.getJSONObject(VolleyRequest.JSON_PROPERTY_CONTENT));
+        return response;
+    }
+
+    /**
+     * Builds the response with the envelope parser, leaving the content unparsed.
+     */
+    @Benchmark
+    public RequestResponse lazyEnvelope() throws JSONException {
+        return EnvelopeParser.parse(body);
+    }
+
+    /**
+     * Maps the items by hand from a JSONObject of the whole body.
+     */
+    @Benchmark
+    public List<Payloads.Item> treeMapping() throws JSONException {
+        return Payloads.mapItems(treeEnvelope().getContent());
+    }
+
+    /**
+     * Maps the items by hand from the content parsed on demand.
+     */
+    @Benchmark
+    public List<Payloads.Item> lazyTreeMapping() throws JSONException {
+        return Payloads.mapItems(EnvelopeParser.parse(body).getContent());
+    }
+
+    /**
+     * Decodes the items straight from the content bytes.
+     */
+    @Benchmark
+    public List<Payloads.Item> decoder() throws JSONException {
+        return Payloads.ITEMS.decode(EnvelopeParser.parse(body).getContentReader());
+    }
+
+    /**
+     * Decodes the items straight from the content bytes, with the decoder derived from the fields of the item.
+     */
+    @Benchmark
+    public List<Payloads.Item> reflectiveDecoder() throws JSONException {
+        return Payloads.REFLECTIVE_ITEMS.decode(EnvelopeParser.parse(body).getContentReader());
+    }
+
+}
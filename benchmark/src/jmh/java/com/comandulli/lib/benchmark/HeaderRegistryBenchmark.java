@@ -0,0 +1,77 @@
+package com.comandulli.lib.benchmark;
+
+import com.comandulli.lib.rest.HeaderMap;
+import com.comandulli.lib.rest.HeaderRegistry;
+import com.comandulli.lib.rest.VolleyRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrency stress of the {@link HeaderRegistry}: many threads read the headers, as transports do
+ * for every request, while another keeps rotating a token.
+ * <p>
+ * Readers check every snapshot they iterate, failing the benchmark if one is ever torn,
+ * so a run doubles as a stress test of the registry.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HeaderRegistryBenchmark {
+
+    /**
+     * Header rotated by the writer.
+     */
+    private static final String TOKEN = "Authorization";
+
+    /**
+     * Value of the next token.
+     */
+    private long token;
+
+    /**
+     * Rotates the token.
+     */
+    @Benchmark
+    @Group("rotation")
+    @GroupThreads(1)
+    public void write() {
+        VolleyRequest.addHeader(TOKEN, "Bearer " + token++);
+    }
+
+    /**
+     * Reads and checks every header of the current snapshot.
+     */
+    @Benchmark
+    @Group("rotation")
+    @GroupThreads(7)
+    public int read() {
+        Map<String, String> headers = HeaderRegistry.snapshot();
+        int count = 0;
+        boolean agent = false;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getValue() == null) {
+                throw new IllegalStateException("Torn header " + header.getKey());
+            }
+            agent |= header.getKey().equals(HeaderMap.PROPERTY_USER_AGENT);
+            count++;
+        }
+        if (!agent || count != headers.size()) {
+            throw new IllegalStateException("Torn snapshot " + headers);
+        }
+        return count;
+    }
+
+}
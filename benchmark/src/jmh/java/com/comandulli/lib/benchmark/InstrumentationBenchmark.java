@@ -0,0 +1,75 @@
+package com.comandulli.lib.benchmark;
+
+import com.comandulli.lib.rest.MetricsCollector;
+import com.comandulli.lib.rest.NetworkRequestQueue;
+import com.comandulli.lib.rest.RequestCallback;
+import com.comandulli.lib.rest.RequestResponse;
+import com.comandulli.lib.rest.RequestTransport;
+import com.comandulli.lib.rest.RestRequest;
+import com.comandulli.lib.rest.RestRequest.RequestMethod;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the request path itself, through a transport that answers right away,
+ * with and without a {@link MetricsCollector} listening to every request.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InstrumentationBenchmark {
+
+    /**
+     * If a metrics collector is listening.
+     */
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    /**
+     * Callback of the requests.
+     */
+    private RequestCallback callback;
+
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        final RequestResponse response = new RequestResponse();
+        response.setCode(200);
+        NetworkRequestQueue.setTransport(new RequestTransport() {
+            @Override
+            public void send(RestRequest request, String url, RequestCallback callback) {
+                callback.always();
+                callback.onResponse(response);
+            }
+        });
+        NetworkRequestQueue.setEventListener(metrics ? new MetricsCollector() : null);
+        RestRequest.setDefaultServerPath("https://example.com");
+        callback = new RequestCallback() {
+            @Override
+            public void onResponse(RequestResponse response) {
+                blackhole.consume(response);
+            }
+        };
+    }
+
+    @Benchmark
+    public void execute() {
+        RestRequest request = new RestRequest(RequestMethod.GET, "/item/42");
+        request.setCoalescing(false);
+        request.setCacheable(false);
+        request.execute(callback);
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.comandulli.lib.benchmark;
+
+import com.comandulli.lib.rest.ContentDecoder;
+import com.comandulli.lib.rest.ContentDecoders;
+import com.comandulli.lib.rest.ContentReader;
+import com.comandulli.lib.rest.EnvelopeCodec;
+import com.comandulli.lib.rest.EnvelopeCodecs;
+import com.comandulli.lib.rest.EnvelopeParser;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Representative response payloads shared by the benchmarks, a list of items in a response envelope.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class Payloads {
+
+    /**
+     * Decoder of an item.
+     */
+    public static final ContentDecoder<Item> ITEM = new ContentDecoder<Item>() {
+        @Override
+        public Item decode(ContentReader reader) throws JSONException {
+            Item item = new Item();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id":
+                        item.id = reader.nextLong();
+                        break;
+                    case "name":
+                        item.name = reader.nextString();
+                        break;
+                    case "price":
+                        item.price = reader.nextDouble();
+                        break;
+                    case "active":
+                        item.active = reader.nextBoolean();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return item;
+        }
+    };
+    /**
+     * Decoder of the content, the items property of an object.
+     */
+    public static final ContentDecoder<List<Item>> ITEMS = ContentDecoders.property("items", ContentDecoders.listOf(ITEM));
+    /**
+     * Decoder of the content with the decoder derived from the fields of an item.
+     */
+    public static final ContentDecoder<List<Item>> REFLECTIVE_ITEMS = ContentDecoders.property("items",
+            ContentDecoders.listOf(ContentDecoders.derive(Item.class)));
+
+    private Payloads() {
+    }
+
+    /**
+     * Builds a response envelope in UTF-8.
+     *
+     * @param items Number of items in the content.
+     * @return The envelope bytes.
+     */
+    public static byte[] envelope(int items) {
+        StringBuilder builder = new StringBuilder("{\"message\":\"ok\",\"code\":200,\"content\":{\"items\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"id\":").append(i)
+                    .append(",\"name\":\"item ").append(i).append(" \\u00e9\"")
+                    .append(",\"price\":").append(i * 1.25)
+                    .append(",\"active\":").append(i % 2 == 0)
+                    .append(",\"tags\":[\"a\",\"b\"]}");
+        }
+        return builder.append("]}}").toString().getBytes(EnvelopeParser.UTF_8);
+    }
+
+    /**
+     * Builds a response envelope in the format of a codec.
+     *
+     * @param items Number of items in the content.
+     * @param codec The codec.
+     * @return The envelope bytes.
+     * @throws JSONException if the envelope cannot be encoded.
+     */
+    public static byte[] envelope(int items, EnvelopeCodec codec) throws JSONException {
+        byte[] json = envelope(items);
+        if (codec == EnvelopeCodecs.JSON) {
+            return json;
+        }
+        return codec.encode(new JSONObject(new String(json, EnvelopeParser.UTF_8)));
+    }
+
+    /**
+     * Maps the content by hand from a JSONObject, as callbacks did before content decoders.
+     *
+     * @param content The content.
+     * @return The items.
+     * @throws JSONException if the content is not as expected.
+     */
+    public static List<Item> mapItems(JSONObject content) throws JSONException {
+        JSONArray array = content.getJSONArray("items");
+        List<Item> items = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject json = array.getJSONObject(i);
+            Item item = new Item();
+            item.id = json.getLong("id");
+            item.name = json.getString("name");
+            item.price = json.getDouble("price");
+            item.active = json.getBoolean("active");
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * An item of the payload.
+     */
+    public static final class Item {
+
+        /**
+         * Identification.
+         */
+        public long id;
+        /**
+         * Name.
+         */
+        public String name;
+        /**
+         * Price.
+         */
+        public double price;
+        /**
+         * If it is active.
+         */
+        public boolean active;
+
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.comandulli.lib.benchmark;
+
+import com.comandulli.lib.rest.RequestParams;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building of query strings by {@link RequestParams#buildQuery(String)}, against the previous
+ * implementation that concatenated the entries of a Hashtable without encoding them.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RequestParamsBenchmark {
+
+    /**
+     * Url the query is appended to.
+     */
+    private static final String URL = "https://example.com/api/items";
+
+    /**
+     * Number of params.
+     */
+    @Param({"2", "10", "50"})
+    public int size;
+
+    /**
+     * The params.
+     */
+    private RequestParams params;
+    /**
+     * The params as the previous implementation held them.
+     */
+    private Hashtable<String, String> legacy;
+    /**
+     * Builder reused by the caller.
+     */
+    private final StringBuilder builder = new StringBuilder(1024);
+
+    @Setup
+    public void setup() {
+        params = new RequestParams();
+        legacy = new Hashtable<>();
+        for (int i = 0; i < size; i++) {
+            String value = i % 3 == 0 ? "value with spaces & symbols " + i : "value" + i;
+            params.addQueryParam("param" + i, value);
+            legacy.put("param" + i, value);
+        }
+    }
+
+    /**
+     * The previous implementation.
+     */
+    @Benchmark
+    public String legacyBuildQuery() {
+        String url = URL;
+        Iterator<Entry<String, String>> it = legacy.entrySet().iterator();
+        char c = '?';
+        while (it.hasNext()) {
+            Entry<String, String> entry = it.next();
+            url += c + entry.getKey() + "=" + entry.getValue();
+            c = '&';
+        }
+        return url;
+    }
+
+    /**
+     * Builds the url into the per-thread builder.
+     */
+    @Benchmark
+    public String buildQuery() {
+        return params.buildQuery(URL);
+    }
+
+    /**
+     * Appends the query into a builder reused by the caller, without building a String.
+     */
+    @Benchmark
+    public StringBuilder buildQueryInto() {
+        builder.setLength(0);
+        builder.append(URL);
+        params.buildQuery(builder);
+        return builder;
+    }
+
+}
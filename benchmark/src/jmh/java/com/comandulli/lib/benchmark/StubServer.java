@@ -0,0 +1,155 @@
+package com.comandulli.lib.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * In-process HTTP server answering every request with the same response envelope, for transport benchmarks,
+ * optionally in gzip or over TLS.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class StubServer {
+
+    static {
+        // without it the server waits on delayed acks of the client, adding 40ms to each response
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /**
+     * The server.
+     */
+    private final HttpServer server;
+    /**
+     * Threads of the server.
+     */
+    private final ExecutorService executor;
+    /**
+     * If the server is served over TLS.
+     */
+    private final boolean tls;
+
+    /**
+     * Starts a server on a free port of the loopback address.
+     *
+     * @param body The body of every response.
+     * @throws IOException if the server can not be started.
+     */
+    public StubServer(byte[] body) throws IOException {
+        this(body, false);
+    }
+
+    /**
+     * Starts a server on a free port of the loopback address.
+     *
+     * @param body The body of every response.
+     * @param gzip If the body is sent in gzip to clients accepting it.
+     * @throws IOException if the server can not be started.
+     */
+    public StubServer(byte[] body, boolean gzip) throws IOException {
+        this(body, gzip, null);
+    }
+
+    /**
+     * Starts a server on a free port of the loopback address.
+     *
+     * @param body    The body of every response.
+     * @param gzip    If the body is sent in gzip to clients accepting it.
+     * @param context SSL context of the server, such as {@link StubTls#getServerContext()}, null for plain HTTP.
+     * @throws IOException if the server can not be started.
+     */
+    public StubServer(final byte[] body, boolean gzip, SSLContext context) throws IOException {
+        final byte[] compressed = gzip ? compress(body) : null;
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        tls = context != null;
+        if (tls) {
+            HttpsServer https = HttpsServer.create(address, 128);
+            https.setHttpsConfigurator(new HttpsConfigurator(context));
+            server = https;
+        } else {
+            server = HttpServer.create(address, 128);
+        }
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream in = exchange.getRequestBody();
+                byte[] discard = new byte[4096];
+                while (in.read(discard) >= 0) {
+                    // drain the request body
+                }
+                String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                byte[] response = body;
+                if (compressed != null && accept != null && accept.contains("gzip")) {
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                    response = compressed;
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(200, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.sendResponseHeaders(200, response.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Returns the url of the server, to be used as server path.
+     *
+     * @return The url.
+     */
+    public String getUrl() {
+        if (tls) {
+            // the certificate of the stub is issued for localhost
+            return "https://localhost:" + server.getAddress().getPort();
+        }
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Compresses a body in gzip.
+     *
+     * @param body The body.
+     * @return The compressed body.
+     * @throws IOException never, it is written in memory.
+     */
+    private static byte[] compress(byte[] body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(body);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Stops the server.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+}
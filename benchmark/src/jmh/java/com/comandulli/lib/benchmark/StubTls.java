@@ -0,0 +1,103 @@
+package com.comandulli.lib.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * Self-signed certificate for localhost, generated with the JDK's keytool, for benchmarks over TLS
+ * against a {@link StubServer}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class StubTls {
+
+    /**
+     * Password of the generated key store.
+     */
+    private static final char[] PASSWORD = "benchmark".toCharArray();
+
+    /**
+     * Key store with the certificate and its key.
+     */
+    private final KeyStore keyStore;
+
+    /**
+     * Generates a certificate for localhost.
+     *
+     * @throws IOException              if keytool fails.
+     * @throws GeneralSecurityException if the key store can not be read.
+     */
+    public StubTls() throws IOException, GeneralSecurityException {
+        File file = File.createTempFile("stub", ".p12");
+        if (!file.delete()) {
+            throw new IOException("Can not write " + file);
+        }
+        try {
+            Process keytool = new ProcessBuilder(System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool",
+                    "-genkeypair", "-alias", "stub", "-keyalg", "EC", "-groupname", "secp256r1",
+                    "-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1", "-validity", "2",
+                    "-storetype", "PKCS12", "-keystore", file.getPath(),
+                    "-storepass", new String(PASSWORD), "-keypass", new String(PASSWORD))
+                    .redirectErrorStream(true)
+                    .start();
+            InputStream output = keytool.getInputStream();
+            byte[] discard = new byte[4096];
+            while (output.read(discard) >= 0) {
+                // drain the output of keytool
+            }
+            if (keytool.waitFor() != 0) {
+                throw new IOException("keytool failed with " + keytool.exitValue());
+            }
+            keyStore = KeyStore.getInstance("PKCS12");
+            InputStream in = new FileInputStream(file);
+            try {
+                keyStore.load(in, PASSWORD);
+            } finally {
+                in.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Creates the SSL context of the server, presenting the certificate.
+     *
+     * @return The SSL context.
+     * @throws GeneralSecurityException if the context can not be created.
+     */
+    public SSLContext getServerContext() throws GeneralSecurityException {
+        KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keys.init(keyStore, PASSWORD);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keys.getKeyManagers(), null, null);
+        return context;
+    }
+
+    /**
+     * Creates an SSL context of a client trusting the certificate, with its own empty session cache.
+     *
+     * @return The SSL context.
+     * @throws GeneralSecurityException if the context can not be created.
+     */
+    public SSLContext newClientContext() throws GeneralSecurityException {
+        TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(keyStore);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, trust.getTrustManagers(), null);
+        return context;
+    }
+
+}
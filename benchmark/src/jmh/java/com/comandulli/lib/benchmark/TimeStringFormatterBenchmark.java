@@ -0,0 +1,114 @@
+package com.comandulli.lib.benchmark;
+
+import com.comandulli.lib.TimeStringFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting and parsing of dates and time lengths by {@link TimeStringFormatter}, against the previous
+ * implementation that created a SimpleDateFormat for each date and padded time lengths with String.format.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TimeStringFormatterBenchmark {
+
+    /**
+     * The formatted date.
+     */
+    private Date date;
+    /**
+     * The date in mysql format.
+     */
+    private String mySql;
+    /**
+     * The date in simple format.
+     */
+    private String simple;
+    /**
+     * Builder reused by the caller.
+     */
+    private final StringBuilder builder = new StringBuilder(16);
+
+    @Setup
+    public void setup() {
+        date = new Date(1476800000000L);
+        mySql = TimeStringFormatter.formatDateMySQL(date);
+        simple = TimeStringFormatter.formatDateSimple(date);
+    }
+
+    /**
+     * The previous implementation.
+     */
+    @Benchmark
+    public String legacyFormatTimeLength() {
+        int length = 5025;
+        int seconds = length % 60;
+        int minutes = length / 60;
+        int hours = minutes / 60;
+        minutes %= 60;
+        return hours + ":" + String.format(Locale.getDefault(), "%02d", minutes) + ":" + String.format(Locale.getDefault(), "%02d", seconds);
+    }
+
+    @Benchmark
+    public String formatTimeLength() {
+        return TimeStringFormatter.formatTimeLength(5025);
+    }
+
+    /**
+     * Appends the time length into a builder reused by the caller, without building a String.
+     */
+    @Benchmark
+    public StringBuilder formatTimeLengthInto() {
+        builder.setLength(0);
+        return TimeStringFormatter.formatTimeLength(5025, builder);
+    }
+
+    /**
+     * The previous implementation.
+     */
+    @Benchmark
+    public String legacyFormatDateMySQL() {
+        return new SimpleDateFormat(TimeStringFormatter.MY_SQL_DATETIME_FORMAT, Locale.getDefault()).format(date);
+    }
+
+    @Benchmark
+    public String formatDateMySQL() {
+        return TimeStringFormatter.formatDateMySQL(date);
+    }
+
+    @Benchmark
+    public Date parseDateMySQL() {
+        return TimeStringFormatter.parseDateMySQL(mySql);
+    }
+
+    @Benchmark
+    public String formatDateSimple() {
+        return TimeStringFormatter.formatDateSimple(date);
+    }
+
+    @Benchmark
+    public Date parseDateSimple() {
+        return TimeStringFormatter.parseDateSimple(simple);
+    }
+
+    @Benchmark
+    public String formatDateHumanFriendly() {
+        return TimeStringFormatter.formatDateHumanFriendly(date);
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.comandulli.lib.benchmark;
+
+import com.comandulli.lib.rest.HttpClientTransport;
+import com.comandulli.lib.rest.NetworkRequestQueue;
+import com.comandulli.lib.rest.RequestCallback;
+import com.comandulli.lib.rest.RequestResponse;
+import com.comandulli.lib.rest.ResponsePool;
+import com.comandulli.lib.rest.RestRequest;
+import com.comandulli.lib.rest.RestRequest.RequestMethod;
+import com.comandulli.lib.rest.VirtualThreads;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips through the {@link HttpClientTransport} to an in-process {@link StubServer},
+ * comparing the callback path with blocking requests on virtual threads, with plain and gzip responses,
+ * and with the {@link ResponsePool} disabled and enabled, to compare the bytes allocated per operation.
+ * Each invocation makes a round of concurrent requests and waits for all of them.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransportBenchmark {
+
+    /**
+     * Number of requests in flight at once.
+     */
+    @Param({"1", "64"})
+    public int concurrency;
+    /**
+     * If responses are sent in gzip.
+     */
+    @Param({"false", "true"})
+    public boolean gzip;
+    /**
+     * If responses and their body buffers are pooled.
+     */
+    @Param({"false", "true"})
+    public boolean pooled;
+
+    /**
+     * The stub server.
+     */
+    private StubServer server;
+    /**
+     * Executor of the blocking requests.
+     */
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() throws IOException {
+        server = new StubServer(Payloads.envelope(200), gzip);
+        executor = VirtualThreads.newExecutor();
+        NetworkRequestQueue.setTransport(new HttpClientTransport());
+        ResponsePool.setEnabled(pooled);
+        NetworkRequestQueue.getScheduler().setMaxRequests(concurrency);
+        NetworkRequestQueue.getScheduler().setMaxRequestsPerHost(concurrency);
+        RestRequest.setDefaultServerPath(server.getUrl());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        server.stop();
+        ResponsePool.setEnabled(false);
+    }
+
+    /**
+     * Makes a round of requests with callbacks.
+     */
+    @Benchmark
+    public void callback() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(concurrency);
+        RequestCallback callback = new RequestCallback() {
+            @Override
+            public void onResponse(RequestResponse response) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onTimeout() {
+                latch.countDown();
+            }
+
+            @Override
+            public void onNoConnection() {
+                latch.countDown();
+            }
+
+            @Override
+            public void onInternalError() {
+                latch.countDown();
+            }
+        };
+        for (int i = 0; i < concurrency; i++) {
+            request().execute(callback);
+        }
+        latch.await();
+    }
+
+    /**
+     * Makes a round of blocking requests, each on its own virtual thread.
+     */
+    @Benchmark
+    public void blocking() throws InterruptedException, ExecutionException {
+        List<Callable<RequestResponse>> tasks = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            tasks.add(new Callable<RequestResponse>() {
+                @Override
+                public RequestResponse call() {
+                    return request().executeBlocking();
+                }
+            });
+        }
+        for (Future<RequestResponse> future : executor.invokeAll(tasks)) {
+            future.get();
+        }
+    }
+
+    /**
+     * Creates a request that always reaches the server.
+     *
+     * @return The request.
+     */
+    private static RestRequest request() {
+        RestRequest request = new RestRequest(RequestMethod.GET, "/items");
+        request.setCoalescing(false);
+        request.setCacheable(false);
+        return request;
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.comandulli.lib.rest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the states of the {@link CircuitBreaker}, driven by synthetic results and a controlled clock.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class CircuitBreakerTest {
+
+    private static final String KEY = "breaker.test";
+    private static final long MS = 1000000L;
+    private static final long FAST = MS;
+    private static final long SLOW = 100 * MS;
+
+    /**
+     * Circuit breaker whose time only moves when a test advances it.
+     */
+    private static final class ClockedBreaker extends CircuitBreaker {
+
+        private long time;
+
+        void advance(long ms) {
+            time += ms * MS;
+        }
+
+        @Override
+        long now() {
+            return time;
+        }
+    }
+
+    private final ClockedBreaker breaker = new ClockedBreaker();
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            breaker.record(KEY, true, FAST);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(KEY));
+    }
+
+    @Test
+    public void opensOnceTheFailureRateIsReached() {
+        breaker.setWindow(4, 4).setFailureRate(0.5f);
+        breaker.record(KEY, true, FAST);
+        breaker.record(KEY, true, FAST);
+        breaker.record(KEY, false, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(KEY));
+        assertTrue(breaker.tryAcquire(KEY));
+        breaker.record(KEY, false, FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(KEY));
+        assertEquals(0.5f, breaker.getFailureRate(KEY), 0);
+        assertFalse(breaker.tryAcquire(KEY));
+        assertEquals(1, breaker.getRejectedCount());
+    }
+
+    @Test
+    public void oldCallsLeaveTheWindow() {
+        breaker.setWindow(4, 4).setFailureRate(0.5f);
+        breaker.record(KEY, true, FAST);
+        breaker.record(KEY, false, FAST);
+        breaker.record(KEY, false, FAST);
+        breaker.record(KEY, false, FAST);
+        breaker.record(KEY, false, FAST);
+        assertEquals(0, breaker.getFailureRate(KEY), 0);
+        breaker.record(KEY, true, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(KEY));
+        breaker.record(KEY, true, FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(KEY));
+    }
+
+    @Test
+    public void successfulCallsOfAnUnknownHostAddNoCircuit() {
+        breaker.record(KEY, false, FAST);
+        assertTrue(breaker.getStates().isEmpty());
+    }
+
+    @Test
+    public void halfOpenLetsASingleProbeThrough() {
+        breaker.setWindow(4, 4).setOpenDuration(1000, 1);
+        open();
+        breaker.advance(999);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(KEY));
+        assertFalse(breaker.tryAcquire(KEY));
+        breaker.advance(1);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(KEY));
+        assertTrue(breaker.tryAcquire(KEY));
+        assertFalse(breaker.tryAcquire(KEY));
+        breaker.record(KEY, false, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(KEY));
+        assertTrue(breaker.tryAcquire(KEY));
+        assertEquals(0, breaker.getFailureRate(KEY), 0);
+    }
+
+    @Test
+    public void failedProbeOpensAgain() {
+        breaker.setWindow(4, 4).setOpenDuration(1000, 2);
+        open();
+        breaker.advance(1000);
+        assertTrue(breaker.tryAcquire(KEY));
+        assertTrue(breaker.tryAcquire(KEY));
+        assertFalse(breaker.tryAcquire(KEY));
+        breaker.record(KEY, false, FAST);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(KEY));
+        breaker.record(KEY, true, FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(KEY));
+        breaker.advance(999);
+        assertFalse(breaker.tryAcquire(KEY));
+        breaker.advance(1);
+        assertTrue(breaker.tryAcquire(KEY));
+    }
+
+    @Test
+    public void releasedProbeLetsAnotherThrough() {
+        breaker.setWindow(4, 4).setOpenDuration(1000, 1);
+        open();
+        breaker.advance(1000);
+        assertTrue(breaker.tryAcquire(KEY));
+        breaker.release(KEY);
+        assertTrue(breaker.tryAcquire(KEY));
+        assertFalse(breaker.tryAcquire(KEY));
+    }
+
+    @Test
+    public void slowCallsOpenTheCircuit() {
+        breaker.setWindow(4, 4).setFailureRate(2).setSlowCalls(100, 0.5f).setOpenDuration(1000, 1);
+        breaker.record(KEY, false, SLOW);
+        breaker.record(KEY, false, FAST);
+        breaker.record(KEY, false, SLOW - 1);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(KEY));
+        breaker.record(KEY, false, SLOW);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(KEY));
+        assertEquals(0, breaker.getFailureRate(KEY), 0);
+        breaker.advance(1000);
+        assertTrue(breaker.tryAcquire(KEY));
+        breaker.record(KEY, false, SLOW);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(KEY));
+    }
+
+    @Test
+    public void callsAreTimedFromTheirDispatch() {
+        breaker.setWindow(1, 1).setFailureRate(2).setSlowCalls(100, 1);
+        RestRequest request = new RestRequest(RestRequest.RequestMethod.GET, "https://breaker.test/items");
+        CircuitCallback queued = new CircuitCallback(breaker, KEY, request, null);
+        breaker.advance(1000);
+        ResponseDispatcher.dispatchTimeout(queued);
+        assertTrue(breaker.getStates().isEmpty());
+        CircuitCallback sent = new CircuitCallback(breaker, KEY, request, null);
+        breaker.advance(1000);
+        sent.onDispatch();
+        breaker.advance(100);
+        RequestResponse response = new RequestResponse();
+        response.setCode(200);
+        ResponseDispatcher.dispatchResponse(response, sent);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(KEY));
+    }
+
+}
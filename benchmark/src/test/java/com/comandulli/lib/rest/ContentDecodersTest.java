@@ -0,0 +1,113 @@
+package com.comandulli.lib.rest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the decoders derived from the fields of model classes by {@link ContentDecoders#derive(Class)}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class ContentDecodersTest {
+
+    public enum Kind {
+        BOOK, GAME
+    }
+
+    public static class Base {
+        public long id;
+    }
+
+    public static class Item extends Base {
+        @ContentName("Title")
+        public String name;
+        public double price;
+        public float weight;
+        public boolean active;
+        public Integer stock;
+        public Kind kind;
+        public List<String> tags;
+        public List<Item> related;
+        public Item parent;
+        public transient String ignored;
+        public static String shared;
+    }
+
+    public static class Unmatched {
+        public int value;
+
+        public Unmatched(int value) {
+            this.value = value;
+        }
+    }
+
+    private static ContentReader reader(String json) {
+        byte[] bytes = json.getBytes(EnvelopeParser.UTF_8);
+        return new ContentReader(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void decodesFieldsOfAClass() throws Exception {
+        Item item = ContentDecoders.derive(Item.class).decode(reader("{\"id\":7,\"Title\":\"a \\u00e9\",\"price\":1.5,"
+                + "\"weight\":2.25,\"active\":true,\"stock\":null,\"kind\":\"GAME\",\"tags\":[\"x\",\"y\"],"
+                + "\"related\":[{\"id\":8,\"related\":[]}],\"parent\":{\"id\":9,\"parent\":null},"
+                + "\"ignored\":\"no\",\"shared\":\"no\",\"unknown\":{\"a\":[1,2]}}"));
+        assertEquals(7, item.id);
+        assertEquals("a \u00e9", item.name);
+        assertEquals(1.5, item.price, 0);
+        assertEquals(2.25f, item.weight, 0);
+        assertTrue(item.active);
+        assertNull(item.stock);
+        assertEquals(Kind.GAME, item.kind);
+        assertEquals(Arrays.asList("x", "y"), item.tags);
+        assertEquals(1, item.related.size());
+        assertEquals(8, item.related.get(0).id);
+        assertTrue(item.related.get(0).related.isEmpty());
+        assertEquals(9, item.parent.id);
+        assertNull(item.parent.parent);
+        assertNull(item.ignored);
+        assertNull(Item.shared);
+    }
+
+    @Test
+    public void nullKeepsPrimitivesAtTheirValue() throws Exception {
+        Item item = ContentDecoders.derive(Item.class).decode(reader("{\"id\":null,\"active\":null,\"name\":null}"));
+        assertEquals(0, item.id);
+        assertNull(item.name);
+        assertNull(ContentDecoders.derive(Item.class).decode(reader("null")));
+    }
+
+    @Test
+    public void derivedDecoderIsRegistered() {
+        assertSame(ContentDecoders.derive(Item.class), ContentDecoders.get(Item.class));
+        assertSame(ContentDecoders.derive(Item.class), ContentDecoders.derive(Item.class));
+    }
+
+    @Test
+    public void decodersAreOnlyDerivedWhenAsked() {
+        assertNull(ContentDecoders.get(Base.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void classesWithoutDefaultConstructorAreNotDerived() {
+        ContentDecoders.derive(Unmatched.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void returnCallbackRejectsClassesWithoutDecoder() {
+        new ReturnCallback<Unmatched>(Unmatched.class) {
+            @Override
+            public void onReturn(Unmatched value) {
+            }
+        };
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the envelopes {@link EnvelopeParser} accepts, in JSON and in CBOR.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class EnvelopeParserTest {
+
+    private static final String ENVELOPE = "{\"message\":\"ok\",\"code\":200,\"content\":{\"id\":1}}";
+
+    private static byte[] utf8(String json) {
+        return json.getBytes(EnvelopeParser.UTF_8);
+    }
+
+    private static byte[] cbor() throws JSONException {
+        return EnvelopeCodecs.CBOR.encode(new JSONObject(ENVELOPE));
+    }
+
+    private static void assertRejected(EnvelopeCodec codec, byte[] body) {
+        try {
+            codec.decode(body, 0, body.length).release();
+            fail("The envelope was accepted");
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void parsesAnEnvelopeFollowedByWhitespace() throws Exception {
+        RequestResponse response = EnvelopeParser.parse(utf8(ENVELOPE + " \r\n"));
+        assertEquals("ok", response.getMessage());
+        assertEquals(200, response.getCode());
+        assertEquals(1, response.getContent().getInt("id"));
+        response.release();
+        byte[] body = cbor();
+        response = EnvelopeCodecs.CBOR.decode(body, 0, body.length);
+        assertEquals(200, response.getCode());
+        response.release();
+    }
+
+    @Test
+    public void rejectsDataAfterTheEnvelope() throws Exception {
+        assertRejected(EnvelopeCodecs.JSON, utf8(ENVELOPE + "{}"));
+        assertRejected(EnvelopeCodecs.JSON, utf8(ENVELOPE + " x"));
+        byte[] body = cbor();
+        byte[] trailing = Arrays.copyOf(body, body.length + 1);
+        assertRejected(EnvelopeCodecs.CBOR, trailing);
+    }
+
+    @Test
+    public void rejectedEnvelopesGoBackToThePool() {
+        boolean enabled = ResponsePool.isEnabled();
+        ResponsePool.setEnabled(true);
+        try {
+            while (ResponsePool.getPooledCount() > 0) {
+                ResponsePool.obtain();
+            }
+            assertRejected(EnvelopeCodecs.JSON, utf8(ENVELOPE + "{}"));
+            assertRejected(EnvelopeCodecs.JSON, utf8("{\"message\":\"ok\"}"));
+            assertRejected(EnvelopeCodecs.JSON, utf8("{\"message\":\"ok\",\"code\":\"x\"}"));
+            assertEquals(1, ResponsePool.getPooledCount());
+        } finally {
+            ResponsePool.setEnabled(enabled);
+        }
+    }
+
+}
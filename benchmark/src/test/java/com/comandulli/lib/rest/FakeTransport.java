@@ -0,0 +1,115 @@
+package com.comandulli.lib.rest;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Transport that keeps the requests sent to it until a test answers them.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class FakeTransport implements RequestTransport {
+
+    /**
+     * Time a test waits for a request to be sent.
+     */
+    private static final long TIMEOUT_MS = 5000;
+
+    /**
+     * Exchanges sent and not yet taken by the test.
+     */
+    private final BlockingQueue<Exchange> sent = new LinkedBlockingQueue<>();
+
+    @Override
+    public void send(RestRequest request, String url, RequestCallback callback) {
+        final Exchange exchange = new Exchange(request, url, callback);
+        CancelToken token = request.getCancelToken();
+        if (token != null) {
+            token.onCancel(new Runnable() {
+                @Override
+                public void run() {
+                    exchange.aborted = true;
+                }
+            });
+        }
+        sent.add(exchange);
+    }
+
+    /**
+     * Takes the next exchange sent, waiting for it.
+     *
+     * @return The exchange.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    Exchange next() throws InterruptedException {
+        Exchange exchange = sent.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull("No request was sent", exchange);
+        return exchange;
+    }
+
+    /**
+     * Takes the next exchange sent if any, without waiting.
+     *
+     * @return The exchange, null if none.
+     */
+    Exchange poll() {
+        return sent.poll();
+    }
+
+    /**
+     * A request sent to the transport.
+     */
+    static final class Exchange {
+
+        final RestRequest request;
+        final String url;
+        final RequestCallback callback;
+        final Thread thread = Thread.currentThread();
+        volatile boolean aborted;
+
+        private Exchange(RestRequest request, String url, RequestCallback callback) {
+            this.request = request;
+            this.url = url;
+            this.callback = callback;
+        }
+
+        /**
+         * Answers the request with a status code and no content.
+         *
+         * @param code The status code.
+         */
+        void respond(int code) {
+            respond(code, null);
+        }
+
+        /**
+         * Answers the request with a status code and headers.
+         *
+         * @param code    The status code.
+         * @param headers The headers, null if none.
+         */
+        void respond(int code, Map<String, String> headers) {
+            if (code >= 400) {
+                ResponseDispatcher.dispatchError(code, "", headers, callback);
+                return;
+            }
+            RequestResponse response = new RequestResponse();
+            response.setCode(code);
+            response.setHeaders(headers);
+            ResponseDispatcher.dispatchResponse(response, callback);
+        }
+
+        /**
+         * Times the request out.
+         */
+        void timeout() {
+            ResponseDispatcher.dispatchTimeout(callback);
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.comandulli.lib.rest;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link HeaderRegistry} and of the headers requests are sent with.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class HeaderRegistryTest {
+
+    private static final String TOKEN = "Authorization";
+    private static final String ROTATION = "X-Rotation";
+    private static final int READERS = 7;
+    private static final long DURATION_MS = 1000;
+
+    @After
+    public void tearDown() {
+        HeaderRegistry.remove(TOKEN);
+        HeaderRegistry.remove(ROTATION);
+        HeaderRegistry.put(HeaderMap.PROPERTY_USER_AGENT, HeaderMap.DEFAULT_USER_AGENT);
+    }
+
+    @Test
+    public void readersNeverSeeATornSnapshot() throws Throwable {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch started = new CountDownLatch(READERS + 1);
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                long token = 0;
+                while (running.get()) {
+                    HeaderRegistry.put(TOKEN, "Bearer " + token);
+                    if (token % 2 == 0) {
+                        HeaderRegistry.put(ROTATION, String.valueOf(token));
+                    } else {
+                        HeaderRegistry.remove(ROTATION);
+                    }
+                    token++;
+                }
+            }
+        }));
+        for (int i = 0; i < READERS; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    long last = -1;
+                    try {
+                        while (running.get()) {
+                            last = check(HeaderRegistry.snapshot(), last);
+                            RestRequest request = new RestRequest(RestRequest.RequestMethod.GET, "/items");
+                            request.addHeader("X-Request", "1");
+                            Map<String, String> headers = HeaderRegistry.headersOf(request);
+                            last = check(headers, last);
+                            assertEquals("1", headers.get("x-request"));
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                        running.set(false);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        started.await(5, TimeUnit.SECONDS);
+        Thread.sleep(DURATION_MS);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    @Test
+    public void requestHeadersReplaceGlobalHeadersInAnyCase() {
+        RestRequest request = new RestRequest(RestRequest.RequestMethod.GET, "/items");
+        request.addHeader("user-agent", "Custom");
+        Map<String, String> headers = HeaderRegistry.headersOf(request);
+        int agents = 0;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(HeaderMap.PROPERTY_USER_AGENT)) {
+                assertEquals("Custom", header.getValue());
+                agents++;
+            }
+        }
+        assertEquals(1, agents);
+        assertEquals(HeaderRegistry.snapshot().size(), headers.size());
+        assertEquals("Custom", headers.get(HeaderMap.PROPERTY_USER_AGENT));
+    }
+
+    @Test
+    public void globalHeadersAreCaseInsensitive() {
+        HeaderRegistry.put("user-agent", "Custom");
+        assertEquals("Custom", HeaderRegistry.get(HeaderMap.PROPERTY_USER_AGENT));
+        int agents = 0;
+        for (String name : HeaderRegistry.snapshot().keySet()) {
+            if (name.equalsIgnoreCase(HeaderMap.PROPERTY_USER_AGENT)) {
+                agents++;
+            }
+        }
+        assertEquals(1, agents);
+    }
+
+    @Test
+    public void headersAreTakenWhenSent() {
+        RestRequest request = new RestRequest(RestRequest.RequestMethod.GET, "/items");
+        request.addHeader("X-First", "1");
+        Map<String, String> headers = HeaderRegistry.headersOf(request);
+        request.addHeader("X-Late", "2");
+        HeaderRegistry.put(TOKEN, "Bearer late");
+        assertEquals("1", headers.get("X-First"));
+        assertNull(headers.get("X-Late"));
+        assertNull(headers.get(TOKEN));
+    }
+
+    @Test
+    public void headersCanBeAddedWhileSent() throws Throwable {
+        final RestRequest request = new RestRequest(RestRequest.RequestMethod.GET, "/items");
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int i = 0;
+                while (running.get()) {
+                    request.addHeader("X-Header-" + (i++ % 64), String.valueOf(i));
+                }
+            }
+        });
+        writer.start();
+        try {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DURATION_MS / 2);
+            while (System.nanoTime() < end) {
+                Map<String, String> headers = HeaderRegistry.headersOf(request);
+                int count = 0;
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    assertTrue(header.getValue() != null);
+                    count++;
+                }
+                assertEquals(headers.size(), count);
+            }
+        } catch (Throwable e) {
+            failure.set(e);
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * Checks every header of a snapshot, and that the rotation never goes back.
+     *
+     * @param headers The headers.
+     * @param last    Last rotation seen, -1 if none.
+     * @return The rotation of the headers, or the last one if they have none.
+     */
+    private static long check(Map<String, String> headers, long last) {
+        int count = 0;
+        boolean agent = false;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            assertFalse("Torn header " + header.getKey(), header.getValue() == null);
+            agent |= header.getKey().equalsIgnoreCase(HeaderMap.PROPERTY_USER_AGENT);
+            count++;
+        }
+        assertTrue("Missing user agent in " + headers, agent);
+        assertEquals("Torn snapshot " + headers, headers.size(), count);
+        String rotation = headers.get(ROTATION);
+        if (rotation == null) {
+            return last;
+        }
+        long value = Long.parseLong(rotation);
+        assertTrue("Rotation went back from " + last + " to " + value, value >= last);
+        return value;
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.comandulli.lib.rest;
+
+import org.junit.Test;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the headers {@link HttpClientTransport} sends.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class HttpClientTransportTest {
+
+    @Test
+    public void skipsHeadersTheClientRejects() {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("https://example.com/items"));
+        assertTrue(HttpClientTransport.addHeader(builder, "X-Token", "1"));
+        assertFalse(HttpClientTransport.addHeader(builder, "Connection", "keep-alive"));
+        assertFalse(HttpClientTransport.addHeader(builder, "host", "example.com"));
+        assertFalse(HttpClientTransport.addHeader(builder, "Content-Length", "12"));
+        assertFalse(HttpClientTransport.addHeader(builder, "X-Null", null));
+        assertFalse(HttpClientTransport.addHeader(builder, null, "1"));
+        assertFalse(HttpClientTransport.addHeader(builder, "X-Split", "a\r\nb"));
+        assertFalse(HttpClientTransport.addHeader(builder, "Bad Name", "1"));
+        HttpRequest request = builder.GET().build();
+        assertEquals(1, request.headers().map().size());
+        assertEquals("1", request.headers().firstValue("X-Token").orElse(null));
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Tests of the keys of {@link RequestCoalescer}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class RequestCoalescerTest {
+
+    private static final String URL = "https://example.com/items";
+
+    @Test
+    public void equalRequestsHaveTheSameKey() throws Exception {
+        RestRequest first = new RestRequest(RestRequest.RequestMethod.PUT, "/items");
+        first.addContent(new JSONObject("{\"b\":1,\"a\":{\"y\":[1,{\"q\":2,\"p\":\"x\"}],\"x\":null}}"));
+        RestRequest second = new RestRequest(RestRequest.RequestMethod.PUT, "/items");
+        JSONObject nested = new JSONObject();
+        nested.put("x", JSONObject.NULL);
+        nested.put("y", new JSONArray("[1,{\"p\":\"x\",\"q\":2}]"));
+        JSONObject content = new JSONObject();
+        content.put("a", nested);
+        content.put("b", 1);
+        second.addContent(content);
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("X-First", "1");
+        headers.put("Accept", "application/json");
+        Map<String, String> reversed = new LinkedHashMap<>();
+        reversed.put("accept", "application/json");
+        reversed.put("x-first", "1");
+        assertEquals(RequestCoalescer.keyOf(first, URL, headers), RequestCoalescer.keyOf(second, URL, reversed));
+    }
+
+    @Test
+    public void requestsOfAnotherPriorityOrDeadlineHaveAnotherKey() {
+        Map<String, String> headers = new HashMap<>();
+        RestRequest normal = new RestRequest(RestRequest.RequestMethod.GET, "/items");
+        RestRequest low = new RestRequest(RestRequest.RequestMethod.GET, "/items");
+        low.setPriority(RestRequest.Priority.LOW);
+        RestRequest bounded = new RestRequest(RestRequest.RequestMethod.GET, "/items");
+        bounded.setDeadline(1000);
+        String key = RequestCoalescer.keyOf(normal, URL, headers);
+        assertNotEquals(key, RequestCoalescer.keyOf(low, URL, headers));
+        assertNotEquals(key, RequestCoalescer.keyOf(bounded, URL, headers));
+    }
+
+    @Test
+    public void requestsWithOtherContentHaveAnotherKey() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        RestRequest first = new RestRequest(RestRequest.RequestMethod.PUT, "/items");
+        first.addContent(new JSONObject("{\"a\":\"1\"}"));
+        RestRequest second = new RestRequest(RestRequest.RequestMethod.PUT, "/items");
+        second.addContent(new JSONObject("{\"a\":1}"));
+        assertNotEquals(RequestCoalescer.keyOf(first, URL, headers), RequestCoalescer.keyOf(second, URL, headers));
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.comandulli.lib.rest;
+
+import com.comandulli.lib.rest.exception.RequestCanceledException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of canceling requests through their {@link RequestHandle}, their tag and their future.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class RequestHandleTest {
+
+    private static final String URL = "https://cancel.test/items";
+    private static final long JOIN_MS = 5000;
+
+    private final Object tag = new Object();
+    private final FakeTransport transport = new FakeTransport();
+    private RequestTransport previous;
+
+    @Before
+    public void setUp() {
+        previous = NetworkRequestQueue.getTransport();
+        NetworkRequestQueue.setTransport(transport);
+    }
+
+    @After
+    public void tearDown() {
+        NetworkRequestQueue.cancelAll(tag);
+        NetworkRequestQueue.setTransport(previous);
+    }
+
+    @Test
+    public void blockingRequestReturnsOnceCanceledByTag() throws Exception {
+        final RestRequest request = new RestRequest(RestRequest.RequestMethod.GET, URL);
+        request.setTag(tag);
+        final AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    request.executeBlocking();
+                } catch (Throwable e) {
+                    thrown.set(e);
+                }
+            }
+        });
+        thread.start();
+        FakeTransport.Exchange exchange = transport.next();
+        assertEquals(1, NetworkRequestQueue.cancelAll(tag));
+        thread.join(JOIN_MS);
+        assertFalse("executeBlocking did not return", thread.isAlive());
+        assertTrue(String.valueOf(thrown.get()), thrown.get() instanceof RequestCanceledException);
+        assertTrue(exchange.aborted);
+    }
+
+    @Test
+    public void futureCompletesOnceCanceledByHandle() throws Exception {
+        RestRequest request = new RestRequest(RestRequest.RequestMethod.GET, URL);
+        request.setTag(tag);
+        CompletableFuture<RequestResponse> future = request.executeAsync();
+        transport.next();
+        assertEquals(1, NetworkRequestQueue.cancelAll(tag));
+        assertTrue(future.isCompletedExceptionally());
+        try {
+            future.join();
+            fail("The future completed normally");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof RequestCanceledException);
+        }
+    }
+
+    @Test
+    public void callbackIsOnlyToldOfTheCancellation() throws Exception {
+        final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+        RestRequest request = new RestRequest(RestRequest.RequestMethod.GET, URL);
+        RequestHandle handle = request.execute(new RequestCallback() {
+            @Override
+            public void onResponse(RequestResponse response) {
+                calls.add("response");
+            }
+
+            @Override
+            public void onInternalError() {
+                calls.add("internalError");
+            }
+
+            @Override
+            public void onCanceled() {
+                calls.add("canceled");
+            }
+
+            @Override
+            public void always() {
+                calls.add("always");
+            }
+        });
+        FakeTransport.Exchange exchange = transport.next();
+        handle.cancel();
+        handle.cancel();
+        exchange.respond(200);
+        assertTrue(handle.isCanceled());
+        assertEquals(Collections.singletonList("canceled"), calls);
+    }
+
+    @Test
+    public void executionsOfTheSameRequestAreCanceledApart() throws Exception {
+        RestRequest request = new RestRequest(RestRequest.RequestMethod.GET, URL);
+        request.setCoalescing(false);
+        final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+        RequestHandle first = request.execute(new RequestCallback() {
+            @Override
+            public void onResponse(RequestResponse response) {
+                calls.add("first");
+            }
+        });
+        RequestHandle second = request.execute(new RequestCallback() {
+            @Override
+            public void onResponse(RequestResponse response) {
+                calls.add("second");
+            }
+        });
+        FakeTransport.Exchange firstExchange = transport.next();
+        FakeTransport.Exchange secondExchange = transport.next();
+        assertNotSame(firstExchange.request, secondExchange.request);
+        first.cancel();
+        assertTrue(firstExchange.aborted);
+        assertFalse(secondExchange.aborted);
+        secondExchange.respond(200);
+        assertTrue(second.isDone());
+        assertFalse(second.isCanceled());
+        assertEquals(Collections.singletonList("second"), calls);
+    }
+
+    @Test
+    public void streamingIsOnlyForItsExecution() throws Exception {
+        RestRequest request = new RestRequest(RestRequest.RequestMethod.GET, URL);
+        RequestHandle streaming = request.execute(new StreamingCallback() {
+            @Override
+            public void onStream(ResponseStream stream) {
+            }
+
+            @Override
+            public void onResponse(RequestResponse response) {
+            }
+        });
+        FakeTransport.Exchange streamed = transport.next();
+        request.execute();
+        FakeTransport.Exchange plain = transport.next();
+        assertNotNull(streamed.request.getStreamingCallback());
+        assertNull(plain.request.getStreamingCallback());
+        assertFalse(request.isStreaming());
+        streaming.cancel();
+        plain.respond(200);
+    }
+
+}
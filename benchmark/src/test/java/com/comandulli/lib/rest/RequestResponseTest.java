@@ -0,0 +1,75 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the lazy parse of the content of a {@link RequestResponse}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class RequestResponseTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 2000;
+
+    @Test
+    public void contentIsParsedOnceAcrossThreads() throws Throwable {
+        byte[] data = "{\"id\":42,\"name\":\"item\"}".getBytes(StandardCharsets.UTF_8);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int round = 0; round < ROUNDS && failure.get() == null; round++) {
+            final RequestResponse response = new RequestResponse();
+            response.setContent(data, 0, data.length);
+            final CountDownLatch start = new CountDownLatch(1);
+            final JSONObject[] contents = new JSONObject[THREADS];
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                final int index = i;
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            if (index % 2 == 0) {
+                                contents[index] = response.getContent();
+                            } else {
+                                contents[index] = new JSONObject(response.getContentString());
+                            }
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            if (failure.get() != null) {
+                break;
+            }
+            for (int i = 0; i < THREADS; i++) {
+                assertEquals(42, contents[i].getInt("id"));
+                if (i % 2 == 0) {
+                    assertSame(response.getContent(), contents[i]);
+                }
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.comandulli.lib.rest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the limits, priority order and cancellation of the {@link RequestScheduler}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class RequestSchedulerTest {
+
+    private final RequestScheduler scheduler = new RequestScheduler();
+    private final FakeTransport transport = new FakeTransport();
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+    private static RestRequest request(String url, RestRequest.Priority priority) {
+        RestRequest request = new RestRequest(RestRequest.RequestMethod.GET, url);
+        request.setPriority(priority);
+        return request;
+    }
+
+    private RequestCallback recording(final String name) {
+        return new RequestCallback() {
+            @Override
+            public void onResponse(RequestResponse response) {
+                calls.add(name);
+            }
+
+            @Override
+            public void onInternalError() {
+                calls.add(name + " internalError");
+            }
+        };
+    }
+
+    @Test
+    public void perHostLimitHoldsRequestsBack() throws Exception {
+        scheduler.setMaxRequestsPerHost(2);
+        scheduler.submit(transport, request("https://a.test/1", RestRequest.Priority.NORMAL), "https://a.test/1", recording("a1"));
+        scheduler.submit(transport, request("https://a.test/2", RestRequest.Priority.NORMAL), "https://a.test/2", recording("a2"));
+        scheduler.submit(transport, request("https://a.test/3", RestRequest.Priority.NORMAL), "https://a.test/3", recording("a3"));
+        scheduler.submit(transport, request("https://b.test/1", RestRequest.Priority.NORMAL), "https://b.test/1", recording("b1"));
+        FakeTransport.Exchange first = transport.next();
+        assertEquals("https://a.test/1", first.url);
+        assertEquals("https://a.test/2", transport.next().url);
+        assertEquals("https://b.test/1", transport.next().url);
+        assertNull(transport.poll());
+        assertEquals(3, scheduler.getActiveCount());
+        assertEquals(1, scheduler.getQueueDepth());
+        first.respond(200);
+        assertEquals(Collections.singletonList("a1"), calls);
+        assertEquals("https://a.test/3", transport.next().url);
+        assertEquals(0, scheduler.getQueueDepth());
+    }
+
+    @Test
+    public void waitingRequestsAreSentByPriority() throws Exception {
+        scheduler.setMaxRequests(1);
+        scheduler.submit(transport, request("https://p.test/first", RestRequest.Priority.LOW), "https://p.test/first", recording("first"));
+        scheduler.submit(transport, request("https://p.test/low", RestRequest.Priority.LOW), "https://p.test/low", recording("low"));
+        scheduler.submit(transport, request("https://p.test/normal", RestRequest.Priority.NORMAL), "https://p.test/normal", recording("normal"));
+        scheduler.submit(transport, request("https://q.test/high", RestRequest.Priority.HIGH), "https://q.test/high", recording("high"));
+        scheduler.submit(transport, request("https://p.test/immediate", RestRequest.Priority.IMMEDIATE), "https://p.test/immediate", recording("immediate"));
+        List<String> sent = new ArrayList<>();
+        FakeTransport.Exchange exchange = transport.next();
+        for (int i = 0; i < 5; i++) {
+            sent.add(exchange.url);
+            assertNull(transport.poll());
+            exchange.respond(200);
+            exchange = i < 4 ? transport.next() : transport.poll();
+        }
+        assertNull(exchange);
+        assertEquals(Arrays.asList("https://p.test/first", "https://p.test/immediate", "https://q.test/high",
+                "https://p.test/normal", "https://p.test/low"), sent);
+        assertEquals(Arrays.asList("first", "immediate", "high", "normal", "low"), calls);
+    }
+
+    @Test
+    public void cancelFreesTheSlot() throws Exception {
+        scheduler.setMaxRequests(1);
+        RestRequest canceled = request("https://c.test/canceled", RestRequest.Priority.NORMAL);
+        CancelToken token = new CancelToken();
+        canceled.setCancelToken(token);
+        scheduler.submit(transport, canceled, "https://c.test/canceled", recording("canceled"));
+        scheduler.submit(transport, request("https://c.test/next", RestRequest.Priority.NORMAL), "https://c.test/next", recording("next"));
+        FakeTransport.Exchange first = transport.next();
+        assertNull(transport.poll());
+        token.cancel();
+        assertEquals(Collections.singletonList("canceled internalError"), calls);
+        FakeTransport.Exchange next = transport.next();
+        assertEquals("https://c.test/next", next.url);
+        assertNotSame("The canceling thread sent the next request", Thread.currentThread(), next.thread);
+        first.respond(200);
+        next.respond(200);
+        assertEquals(Arrays.asList("canceled internalError", "next"), calls);
+        assertEquals(0, scheduler.getActiveCount());
+    }
+
+    @Test
+    public void waitingRequestLeavesTheQueueOnceCanceled() throws Exception {
+        scheduler.setMaxRequests(1);
+        RestRequest canceled = request("https://w.test/canceled", RestRequest.Priority.NORMAL);
+        CancelToken token = new CancelToken();
+        canceled.setCancelToken(token);
+        scheduler.submit(transport, request("https://w.test/first", RestRequest.Priority.NORMAL), "https://w.test/first", recording("first"));
+        scheduler.submit(transport, canceled, "https://w.test/canceled", recording("canceled"));
+        FakeTransport.Exchange first = transport.next();
+        token.cancel();
+        assertEquals(0, scheduler.getQueueDepth());
+        first.respond(200);
+        assertNull(transport.poll());
+        assertEquals(Arrays.asList("canceled internalError", "first"), calls);
+    }
+
+    @Test
+    public void transportAnsweringWhileSendingDoesNotRecurse() {
+        final int[] depth = new int[2];
+        RequestTransport answering = new RequestTransport() {
+            @Override
+            public void send(RestRequest request, String url, RequestCallback callback) {
+                calls.add("send " + url);
+                depth[0]++;
+                depth[1] = Math.max(depth[1], depth[0]);
+                RequestResponse response = new RequestResponse();
+                response.setCode(200);
+                ResponseDispatcher.dispatchResponse(response, callback);
+                depth[0]--;
+            }
+        };
+        scheduler.setMaxRequests(0);
+        for (int i = 0; i < 3; i++) {
+            String url = "https://s.test/" + i;
+            scheduler.submit(answering, request(url, RestRequest.Priority.NORMAL), url, recording(String.valueOf(i)));
+        }
+        assertEquals(3, scheduler.getQueueDepth());
+        scheduler.setMaxRequests(1);
+        assertEquals(1, depth[1]);
+        assertEquals(Arrays.asList("send https://s.test/0", "0", "send https://s.test/1", "1",
+                "send https://s.test/2", "2"), calls);
+        assertEquals(0, scheduler.getActiveCount());
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.comandulli.lib.rest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the attempts {@link RetryCallback} makes through a fake transport.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class RetryCallbackTest {
+
+    private static final long RESULT_MS = 5000;
+    private static final int TIMEOUT = -1;
+
+    private final Object tag = new Object();
+    private final FakeTransport transport = new FakeTransport();
+    private final BlockingQueue<Integer> results = new LinkedBlockingQueue<>();
+    private RequestTransport previous;
+    private int requests;
+
+    @Before
+    public void setUp() {
+        previous = NetworkRequestQueue.getTransport();
+        NetworkRequestQueue.setTransport(transport);
+    }
+
+    @After
+    public void tearDown() {
+        NetworkRequestQueue.cancelAll(tag);
+        NetworkRequestQueue.setTransport(previous);
+    }
+
+    private void execute(RestRequest.RequestMethod method, RetryPolicy policy) {
+        RestRequest request = new RestRequest(method, "https://retry.test/items/" + requests++);
+        request.setTag(tag);
+        request.setRetryPolicy(policy);
+        request.execute(new RequestCallback() {
+            @Override
+            public void onResponse(RequestResponse response) {
+                results.add(response.getCode());
+            }
+
+            @Override
+            public void onTimeout() {
+                results.add(TIMEOUT);
+            }
+        });
+    }
+
+    private static RetryPolicy policy(int maxAttempts, RetryBudget budget) {
+        return new RetryPolicy(maxAttempts).setBaseDelay(1).setJitter(0).setBudget(budget);
+    }
+
+    private int result() throws InterruptedException {
+        Integer code = results.poll(RESULT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull("No result was delivered", code);
+        assertNull(transport.poll());
+        return code;
+    }
+
+    @Test
+    public void failuresAreRetriedUpToTheMaximumAttempts() throws Exception {
+        RetryBudget budget = new RetryBudget(0, 10);
+        execute(RestRequest.RequestMethod.GET, policy(3, budget));
+        transport.next().respond(503);
+        transport.next().timeout();
+        transport.next().respond(500);
+        assertEquals(500, result());
+        assertEquals(8, budget.getTokens(), 0);
+    }
+
+    @Test
+    public void retriesStopAtTheFirstSuccess() throws Exception {
+        execute(RestRequest.RequestMethod.GET, policy(5, new RetryBudget(0, 10)));
+        transport.next().respond(429);
+        transport.next().respond(200);
+        assertEquals(200, result());
+    }
+
+    @Test
+    public void timeoutIsDeliveredOnceAttemptsRunOut() throws Exception {
+        execute(RestRequest.RequestMethod.GET, policy(2, new RetryBudget(0, 10)));
+        transport.next().timeout();
+        transport.next().timeout();
+        assertEquals(TIMEOUT, result());
+    }
+
+    @Test
+    public void clientErrorsAreNotRetried() throws Exception {
+        RetryBudget budget = new RetryBudget(0, 10);
+        execute(RestRequest.RequestMethod.GET, policy(3, budget));
+        transport.next().respond(404);
+        assertEquals(404, result());
+        assertEquals(10, budget.getTokens(), 0);
+    }
+
+    @Test
+    public void nonIdempotentRequestsAreOnlyRetriedWhenAllowed() throws Exception {
+        execute(RestRequest.RequestMethod.POST, policy(3, new RetryBudget(0, 10)));
+        transport.next().respond(503);
+        assertEquals(503, result());
+        execute(RestRequest.RequestMethod.POST, policy(3, new RetryBudget(0, 10)).setRetryNonIdempotent(true));
+        transport.next().respond(503);
+        transport.next().respond(201);
+        assertEquals(201, result());
+    }
+
+    @Test
+    public void budgetRefusesRetriesOnceSpent() throws Exception {
+        RetryBudget budget = new RetryBudget(0, 1);
+        execute(RestRequest.RequestMethod.GET, policy(5, budget));
+        transport.next().respond(503);
+        transport.next().respond(503);
+        assertEquals(503, result());
+        assertEquals(0, budget.getTokens(), 0);
+        execute(RestRequest.RequestMethod.GET, policy(5, budget));
+        transport.next().respond(503);
+        assertEquals(503, result());
+    }
+
+    @Test
+    public void retryAfterBeyondTheMaximumDelayEndsRetries() throws Exception {
+        RetryBudget budget = new RetryBudget(0, 10);
+        execute(RestRequest.RequestMethod.GET, policy(3, budget).setMaxDelay(1000));
+        transport.next().respond(503, Collections.singletonMap(RetryPolicy.PROPERTY_RETRY_AFTER, "5"));
+        assertEquals(503, result());
+        assertEquals(10, budget.getTokens(), 0);
+    }
+
+}
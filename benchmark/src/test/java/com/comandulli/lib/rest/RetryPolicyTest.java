@@ -0,0 +1,103 @@
+package com.comandulli.lib.rest;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the backoff, jitter and gating of the {@link RetryPolicy}, and of the {@link RetryBudget}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class RetryPolicyTest {
+
+    private static RequestResponse retryAfter(String value) {
+        RequestResponse response = new RequestResponse();
+        response.setCode(503);
+        response.setHeaders(Collections.singletonMap(RetryPolicy.PROPERTY_RETRY_AFTER, value));
+        return response;
+    }
+
+    @Test
+    public void backoffGrowsUpToTheMaximum() {
+        RetryPolicy policy = new RetryPolicy(10).setBaseDelay(100).setMaxDelay(1000).setMultiplier(2).setJitter(0);
+        assertEquals(100, policy.getDelay(1, null));
+        assertEquals(200, policy.getDelay(2, null));
+        assertEquals(400, policy.getDelay(3, null));
+        assertEquals(800, policy.getDelay(4, null));
+        assertEquals(1000, policy.getDelay(5, null));
+        assertEquals(1000, policy.getDelay(9, null));
+    }
+
+    @Test
+    public void jitterStaysWithinItsFraction() {
+        RetryPolicy policy = new RetryPolicy(10).setBaseDelay(1000).setJitter(0.25);
+        RetryPolicy full = new RetryPolicy(10).setBaseDelay(1000).setJitter(2);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long delay = policy.getDelay(1, null);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+            long fullDelay = full.getDelay(1, null);
+            assertTrue(String.valueOf(fullDelay), fullDelay >= 0 && fullDelay <= 1000);
+        }
+        assertTrue(String.valueOf(min), min >= 750);
+        assertTrue(String.valueOf(max), max <= 1000);
+        assertTrue("No jitter was applied", min < max);
+    }
+
+    @Test
+    public void retryAfterIsHonoredUpToTheMaximum() {
+        RetryPolicy policy = new RetryPolicy(3).setBaseDelay(100).setMaxDelay(10000).setJitter(0);
+        assertEquals(2000, policy.getDelay(1, retryAfter(" 2 ")));
+        assertEquals(100, policy.getDelay(1, retryAfter("0")));
+        assertEquals(100, policy.getDelay(1, retryAfter("Wed, 21 Oct 2015 07:28:00 GMT")));
+        assertEquals(100, policy.getDelay(1, new RequestResponse()));
+        assertEquals(-1, policy.getDelay(1, retryAfter("60")));
+    }
+
+    @Test
+    public void onlyRetryableStatusesAreRetried() {
+        RetryPolicy policy = new RetryPolicy(3);
+        assertTrue(policy.isRetryable(500));
+        assertTrue(policy.isRetryable(503));
+        assertTrue(policy.isRetryable(408));
+        assertTrue(policy.isRetryable(429));
+        assertFalse(policy.isRetryable(200));
+        assertFalse(policy.isRetryable(400));
+        assertFalse(policy.isRetryable(404));
+    }
+
+    @Test
+    public void onlyIdempotentRequestsAreRetriedByDefault() {
+        RestRequest get = new RestRequest(RestRequest.RequestMethod.GET, "https://retry.test/items");
+        RestRequest post = new RestRequest(RestRequest.RequestMethod.POST, "https://retry.test/items");
+        assertTrue(new RetryPolicy(3).appliesTo(get));
+        assertFalse(new RetryPolicy(3).appliesTo(post));
+        assertTrue(new RetryPolicy(3).setRetryNonIdempotent(true).appliesTo(post));
+        assertFalse(RetryPolicy.NONE.appliesTo(get));
+    }
+
+    @Test
+    public void budgetRefusesRetriesOnceSpent() {
+        RetryBudget budget = new RetryBudget(0.5, 2);
+        assertTrue(budget.tryRetry());
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+        budget.onRequest();
+        assertFalse(budget.tryRetry());
+        budget.onRequest();
+        assertTrue(budget.tryRetry());
+        for (int i = 0; i < 10; i++) {
+            budget.onRequest();
+        }
+        assertEquals(2, budget.getTokens(), 0);
+    }
+
+}
@@ -0,0 +1,205 @@
+package com.comandulli.lib;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hash algorithms, hashing strings, byte arrays, buffers, streams and files into digests.
+ * <p>
+ * Each thread reuses its own digest of each algorithm, so hashing allocates little more than the result.
+ * Strings are hashed in UTF-8, and digests are written in lowercase hexadecimal.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public enum Hash {
+
+    /**
+     * MD5, for cache keys and checksums, not for security.
+     */
+    MD5("MD5"),
+    /**
+     * SHA-1.
+     */
+    SHA_1("SHA-1"),
+    /**
+     * SHA-256.
+     */
+    SHA_256("SHA-256");
+
+    /**
+     * Hexadecimal digits.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    /**
+     * Size of the buffer reading streams.
+     */
+    private static final int STREAM_BUFFER_SIZE = 8192;
+    /**
+     * Largest region of a file mapped at once.
+     */
+    private static final long MAP_REGION_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Name of the algorithm in {@link MessageDigest}.
+     */
+    private final String algorithm;
+    /**
+     * Digest of each thread.
+     */
+    private final ThreadLocal<MessageDigest> digests = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(algorithm + " is not available", e);
+            }
+        }
+    };
+
+    Hash(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Returns the name of the algorithm in {@link MessageDigest}.
+     *
+     * @return The name.
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Hashes a string in UTF-8 into a hexadecimal digest.
+     *
+     * @param value The string.
+     * @return The digest in hexadecimal.
+     */
+    public String hex(String value) {
+        return toHex(digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Hashes bytes.
+     *
+     * @param data The bytes.
+     * @return The digest.
+     */
+    public byte[] digest(byte[] data) {
+        return digest(data, 0, data.length);
+    }
+
+    /**
+     * Hashes a range of bytes.
+     *
+     * @param data   The bytes.
+     * @param offset Start of the range.
+     * @param length Length of the range.
+     * @return The digest.
+     */
+    public byte[] digest(byte[] data, int offset, int length) {
+        MessageDigest digest = digests.get();
+        digest.update(data, offset, length);
+        return digest.digest();
+    }
+
+    /**
+     * Hashes the remaining bytes of a buffer, leaving its position at its limit.
+     *
+     * @param buffer The buffer, heap or direct.
+     * @return The digest.
+     */
+    public byte[] digest(ByteBuffer buffer) {
+        MessageDigest digest = digests.get();
+        digest.update(buffer);
+        return digest.digest();
+    }
+
+    /**
+     * Hashes a stream up to its end, without closing it.
+     *
+     * @param in The stream.
+     * @return The digest.
+     * @throws IOException if the stream can not be read.
+     */
+    public byte[] digest(InputStream in) throws IOException {
+        MessageDigest digest = digests.get();
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        try {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            digest.reset();
+            throw e;
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Hashes a file, mapping it into memory rather than copying it through buffers, such as a large upload.
+     *
+     * @param file The file.
+     * @return The digest.
+     * @throws IOException if the file can not be read.
+     */
+    public byte[] digest(File file) throws IOException {
+        MessageDigest digest = digests.get();
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_REGION_SIZE) {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_REGION_SIZE, size - position)));
+            }
+        } catch (IOException e) {
+            digest.reset();
+            throw e;
+        } finally {
+            in.close();
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Writes bytes in lowercase hexadecimal.
+     *
+     * @param bytes The bytes.
+     * @return The hexadecimal string.
+     */
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xFF;
+            chars[i * 2] = HEX[b >>> 4];
+            chars[i * 2 + 1] = HEX[b & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Appends bytes in lowercase hexadecimal to a builder.
+     *
+     * @param builder The builder.
+     * @param bytes   The bytes.
+     * @return The builder.
+     */
+    public static StringBuilder appendHex(StringBuilder builder, byte[] bytes) {
+        for (byte value : bytes) {
+            int b = value & 0xFF;
+            builder.append(HEX[b >>> 4]).append(HEX[b & 0x0F]);
+        }
+        return builder;
+    }
+
+}
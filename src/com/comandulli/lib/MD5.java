@@ -1,8 +1,5 @@
 package com.comandulli.lib;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-
 /**
  * MD5 encodes any String into a one way encrypted value.
  *
@@ -11,24 +8,14 @@ import java.security.NoSuchAlgorithmException;
  */
 public class MD5 {
     /**
-     * Encode the following string in MD5.
+     * Encode the following string in MD5, hashing it in UTF-8.
      *
      * @param value the string
      * @return the encoded string.
+     * @see Hash#MD5
      */
     public static String encode(String value) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] array = md.digest(value.getBytes());
-            StringBuilder sb = new StringBuilder();
-            for (byte anArray : array) {
-                sb.append(Integer.toHexString(anArray & 0xFF | 0x100).substring(1, 3));
-            }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        }
-        return "";
+        return Hash.MD5.hex(value);
     }
 
 }
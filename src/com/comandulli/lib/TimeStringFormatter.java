@@ -1,11 +1,23 @@
 package com.comandulli.lib;
 
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.DecimalStyle;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Formatter for time strings.
+ * <p>
+ * Dates are formatted in the default time zone and locale, with formatters cached per pattern and locale,
+ * so it is safe to call from any thread. Requires java.time, Android 8.0 (API 26) or core library desugaring.
  */
 public class TimeStringFormatter {
 
@@ -34,6 +46,78 @@ public class TimeStringFormatter {
      */
     public static final String UNIVERSAL_TIME_ZONE = "UTC";
 
+    /**
+     * Pattern parsing mysql dates, with or without milliseconds.
+     */
+    private static final String MY_SQL_DATETIME_PARSE_FORMAT = "yyyy-MM-dd HH:mm:ss[.SSS]";
+
+    /**
+     * Formatters by locale and pattern.
+     */
+    private static final ConcurrentMap<Locale, ConcurrentMap<String, DateTimeFormatter>> formatters = new ConcurrentHashMap<>();
+    /**
+     * Human friendly formatters by locale, writing digits of the locale.
+     */
+    private static final ConcurrentMap<Locale, DateTimeFormatter> humanFriendlyFormatters = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the formatter of a pattern in a locale, created once and cached.
+     *
+     * @param pattern the pattern, as in {@link DateTimeFormatter#ofPattern(String)}
+     * @param locale  the locale
+     * @return the formatter
+     */
+    public static DateTimeFormatter getFormatter(String pattern, Locale locale) {
+        ConcurrentMap<String, DateTimeFormatter> byPattern = formatters.get(locale);
+        if (byPattern == null) {
+            byPattern = new ConcurrentHashMap<>();
+            ConcurrentMap<String, DateTimeFormatter> existing = formatters.putIfAbsent(locale, byPattern);
+            if (existing != null) {
+                byPattern = existing;
+            }
+        }
+        DateTimeFormatter formatter = byPattern.get(pattern);
+        if (formatter == null) {
+            formatter = DateTimeFormatter.ofPattern(pattern, locale);
+            DateTimeFormatter existing = byPattern.putIfAbsent(pattern, formatter);
+            if (existing != null) {
+                formatter = existing;
+            }
+        }
+        return formatter;
+    }
+
+    /**
+     * Returns the human friendly formatter of a locale, created once and cached.
+     *
+     * @param locale the locale
+     * @return the formatter
+     */
+    private static DateTimeFormatter getHumanFriendlyFormatter(Locale locale) {
+        DateTimeFormatter formatter = humanFriendlyFormatters.get(locale);
+        if (formatter == null) {
+            String pattern;
+            switch (locale.getLanguage()) {
+                case "pt":
+                    pattern = HUMAN_FRIENDLY_DATETIME_FORMAT_PT;
+                    break;
+                case "it":
+                    pattern = HUMAN_FRIENDLY_DATETIME_FORMAT_IT;
+                    break;
+
+                default:
+                    pattern = HUMAN_FRIENDLY_DATETIME_FORMAT;
+                    break;
+            }
+            formatter = DateTimeFormatter.ofPattern(pattern, locale).withDecimalStyle(DecimalStyle.of(locale));
+            DateTimeFormatter existing = humanFriendlyFormatters.putIfAbsent(locale, formatter);
+            if (existing != null) {
+                formatter = existing;
+            }
+        }
+        return formatter;
+    }
+
     /**
      * Format length in seconds in hour format. hh:mm
      *
@@ -52,21 +136,47 @@ public class TimeStringFormatter {
      * @return formatted hour
      */
     public static String formatTimeLength(int length) {
-        String value;
-
-        int seconds = length % 60;
-        int minutes = length / 60;
+        return formatTimeLength(length, new StringBuilder(8)).toString();
+    }
 
-        int hours = minutes / 60;
+    /**
+     * Format length in seconds in hour format, appending it to a builder. hh:mm
+     * Hours are only written if any, minutes and seconds are padded to two digits.
+     *
+     * @param length  seconds, negative lengths are written with a leading minus
+     * @param builder the builder
+     * @return the builder
+     */
+    public static StringBuilder formatTimeLength(int length, StringBuilder builder) {
+        long value = length;
+        if (value < 0) {
+            builder.append('-');
+            value = -value;
+        }
+        long seconds = value % 60;
+        long minutes = value / 60;
+        long hours = minutes / 60;
         if (hours > 0) {
             minutes %= 60;
-
-            value = hours + ":" + String.format(Locale.getDefault(), "%02d", minutes) + ":" + String.format(Locale.getDefault(), "%02d", seconds);
-        } else {
-            value = String.format(Locale.getDefault(), "%02d", minutes) + ":" + String.format(Locale.getDefault(), "%02d", seconds);
+            builder.append(hours).append(':');
         }
+        appendPadded(builder, minutes);
+        builder.append(':');
+        appendPadded(builder, seconds);
+        return builder;
+    }
 
-        return value;
+    /**
+     * Appends a value padded to two digits.
+     *
+     * @param builder the builder
+     * @param value   the value, not negative
+     */
+    private static void appendPadded(StringBuilder builder, long value) {
+        if (value < 10) {
+            builder.append('0');
+        }
+        builder.append(value);
     }
 
     /**
@@ -77,7 +187,23 @@ public class TimeStringFormatter {
      */
     public static String formatDateMySQL(Date date) {
         if (date != null) {
-            return new SimpleDateFormat(MY_SQL_DATETIME_FORMAT, Locale.getDefault()).format(date);
+            return getFormatter(MY_SQL_DATETIME_FORMAT, Locale.getDefault()).format(toZoned(date));
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Parse a date in mysql format, with or without milliseconds. yyyy-MM-dd HH:mm:ss.SSS
+     *
+     * @param text the formatted date
+     * @return the date
+     * @throws DateTimeParseException if the text is not in the format
+     */
+    public static Date parseDateMySQL(String text) {
+        if (text != null) {
+            LocalDateTime dateTime = LocalDateTime.parse(text, getFormatter(MY_SQL_DATETIME_PARSE_FORMAT, Locale.getDefault()));
+            return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
         } else {
             return null;
         }
@@ -89,26 +215,22 @@ public class TimeStringFormatter {
      * @param date the date
      * @return the formatted date
      */
-    @SuppressWarnings("deprecation")
     public static String formatDateHumanFriendly(Date date) {
         if (date != null) {
             Locale defaultLocale = Locale.getDefault();
-            String language = defaultLocale.getLanguage().toUpperCase(defaultLocale);
-            String formatted;
-            switch (language) {
-                case "PT":
-                    formatted = new SimpleDateFormat(HUMAN_FRIENDLY_DATETIME_FORMAT_PT, Locale.getDefault()).format(date);
-                    break;
-                case "IT":
-                    formatted = new SimpleDateFormat(HUMAN_FRIENDLY_DATETIME_FORMAT_IT, Locale.getDefault()).format(date);
-                    break;
+            DateTimeFormatter formatter = getHumanFriendlyFormatter(defaultLocale);
+            ZonedDateTime dateTime = toZoned(date);
+            switch (defaultLocale.getLanguage()) {
+                case "pt":
+                case "it":
+                    return formatter.format(dateTime);
 
                 default:
-                    String dayOfMonth = getDayOfMonthSuffix(date.getDate());
-                    formatted = dayOfMonth + new SimpleDateFormat(HUMAN_FRIENDLY_DATETIME_FORMAT, Locale.getDefault()).format(date);
-                    break;
+                    StringBuilder builder = new StringBuilder(24);
+                    appendDayOfMonth(builder, dateTime.getDayOfMonth());
+                    formatter.formatTo(dateTime, builder);
+                    return builder.toString();
             }
-            return formatted;
         } else {
             return null;
         }
@@ -122,12 +244,38 @@ public class TimeStringFormatter {
      */
     public static String formatDateSimple(Date date) {
         if (date != null) {
-            return new SimpleDateFormat(SIMPLE_DATETIME_FORMAT, Locale.getDefault()).format(date);
+            return getFormatter(SIMPLE_DATETIME_FORMAT, Locale.getDefault()).format(toZoned(date));
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Parse a date in a simple format, at the start of the day. yyyy-MM-dd
+     *
+     * @param text the formatted date
+     * @return the date
+     * @throws DateTimeParseException if the text is not in the format
+     */
+    public static Date parseDateSimple(String text) {
+        if (text != null) {
+            LocalDate date = LocalDate.parse(text, getFormatter(SIMPLE_DATETIME_FORMAT, Locale.getDefault()));
+            return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
         } else {
             return null;
         }
     }
 
+    /**
+     * Converts a date to the default time zone.
+     *
+     * @param date the date
+     * @return the date in the default time zone
+     */
+    private static ZonedDateTime toZoned(Date date) {
+        return Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault());
+    }
+
     /**
      * Gets day of month suffix.
      *
@@ -135,18 +283,30 @@ public class TimeStringFormatter {
      * @return the day of month suffix
      */
     public static String getDayOfMonthSuffix(final int n) {
+        return appendDayOfMonth(new StringBuilder(4), n).toString();
+    }
+
+    /**
+     * Appends a day of month with its suffix.
+     *
+     * @param builder the builder
+     * @param n       the n day of the month
+     * @return the builder
+     */
+    private static StringBuilder appendDayOfMonth(StringBuilder builder, int n) {
+        builder.append(n);
         if (n >= 11 && n <= 13) {
-            return n + "th";
+            return builder.append("th");
         }
         switch (n % 10) {
             case 1:
-                return n + "st";
+                return builder.append("st");
             case 2:
-                return n + "nd";
+                return builder.append("nd");
             case 3:
-                return n + "rd";
+                return builder.append("rd");
             default:
-                return n + "th";
+                return builder.append("th");
         }
     }
 
@@ -0,0 +1,154 @@
+package com.comandulli.lib.rest;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of the byte buffers that response bodies are read into, used when {@link ResponsePool} is enabled.
+ * <p>
+ * Buffers are pooled in power of two sizes from 4 KiB to 4 MiB, a few of each size, so reading a body
+ * takes a buffer of the next size up instead of allocating and growing a new array.
+ * Larger buffers are allocated and left to the garbage collector.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class BufferPool {
+
+    /**
+     * Log2 of the smallest pooled size.
+     */
+    private static final int MIN_SHIFT = 12;
+    /**
+     * Log2 of the largest pooled size.
+     */
+    private static final int MAX_SHIFT = 22;
+    /**
+     * Maximum number of pooled buffers of each size.
+     */
+    private static final int BUFFERS_PER_SIZE = 16;
+
+    /**
+     * Pooled buffers of each size.
+     */
+    private static final BlockingQueue<byte[]>[] pools = createPools();
+    /**
+     * Buffers taken from the pool.
+     */
+    private static final AtomicLong hits = new AtomicLong();
+    /**
+     * Buffers allocated because none was pooled.
+     */
+    private static final AtomicLong misses = new AtomicLong();
+
+    private BufferPool() {
+    }
+
+    /**
+     * Takes a buffer of at least the given size.
+     *
+     * @param minSize Minimum size of the buffer.
+     * @return The buffer, of a power of two size if pooled.
+     */
+    public static byte[] acquire(int minSize) {
+        int shift = shiftOf(minSize);
+        if (shift > MAX_SHIFT) {
+            misses.incrementAndGet();
+            return new byte[minSize];
+        }
+        byte[] buffer = pools[shift - MIN_SHIFT].poll();
+        if (buffer == null) {
+            misses.incrementAndGet();
+            return new byte[1 << shift];
+        }
+        hits.incrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer back to the pool. The buffer must not be used afterwards.
+     *
+     * @param buffer The buffer, buffers of sizes not pooled are ignored.
+     */
+    public static void release(byte[] buffer) {
+        if (buffer == null) {
+            return;
+        }
+        int length = buffer.length;
+        if (Integer.bitCount(length) != 1) {
+            return;
+        }
+        int shift = Integer.numberOfTrailingZeros(length);
+        if (shift >= MIN_SHIFT && shift <= MAX_SHIFT) {
+            pools[shift - MIN_SHIFT].offer(buffer);
+        }
+    }
+
+    /**
+     * Replaces a buffer with a larger one, copying its content and giving the old one back to the pool.
+     *
+     * @param buffer  The buffer.
+     * @param used    Bytes used in the buffer.
+     * @param minSize Minimum size of the new buffer.
+     * @return The new buffer.
+     */
+    public static byte[] grow(byte[] buffer, int used, int minSize) {
+        byte[] grown = acquire(minSize);
+        System.arraycopy(buffer, 0, grown, 0, used);
+        release(buffer);
+        return grown;
+    }
+
+    /**
+     * Returns the number of buffers taken from the pool.
+     *
+     * @return The hits.
+     */
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of buffers allocated because none was pooled.
+     *
+     * @return The misses.
+     */
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Empties the pool and resets its counters.
+     */
+    public static void clear() {
+        for (BlockingQueue<byte[]> pool : pools) {
+            pool.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Returns log2 of the pooled size for a minimum size.
+     *
+     * @param minSize Minimum size.
+     * @return The shift.
+     */
+    private static int shiftOf(int minSize) {
+        if (minSize <= 1 << MIN_SHIFT) {
+            return MIN_SHIFT;
+        }
+        return 32 - Integer.numberOfLeadingZeros(minSize - 1);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static BlockingQueue<byte[]>[] createPools() {
+        BlockingQueue<byte[]>[] pools = new BlockingQueue[MAX_SHIFT - MIN_SHIFT + 1];
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = new ArrayBlockingQueue<>(BUFFERS_PER_SIZE);
+        }
+        return pools;
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.comandulli.lib.rest;
+
+import com.comandulli.lib.rest.cache.CacheEntry;
+import com.comandulli.lib.rest.cache.ResponseCache;
+
+import java.util.Map;
+
+/**
+ * Applies the response cache to requests in flight, shared by all transports.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class CacheHandler {
+
+    /**
+     * Status code of a not modified response.
+     */
+    static final int HTTP_NOT_MODIFIED = 304;
+
+    private CacheHandler() {
+    }
+
+    /**
+     * Adds the conditional headers of the entry being revalidated by a request, if any.
+     *
+     * @param request The request.
+     * @param headers Headers of the request.
+     */
+    static void addConditionalHeaders(RestRequest request, Map<String, String> headers) {
+        CacheEntry entry = request.getCacheEntry();
+        if (entry != null) {
+            entry.addConditionalHeaders(headers);
+        }
+    }
+
+    /**
+     * If a request needs conditional headers.
+     *
+     * @param request The request.
+     * @return If the request is revalidating an entry.
+     */
+    static boolean isRevalidating(RestRequest request) {
+        return request.getCacheEntry() != null;
+    }
+
+    /**
+     * If the response of a request is stored in the cache, so its body must outlive the response.
+     *
+     * @param request The request.
+     * @return If the response is cached.
+     */
+    static boolean isCaching(RestRequest request) {
+        return request.getCacheKey() != null && NetworkRequestQueue.getResponseCache() != null;
+    }
+
+    /**
+     * Handles a successful or not modified network response, storing it or serving it from the cache.
+     *
+     * @param request    The request.
+     * @param statusCode Status code of the response.
+     * @param headers    Headers of the response.
+     * @param body       Body of the response.
+     * @return The body to be parsed, null if a not modified response can not be served from the cache.
+     */
+    static byte[] onNetworkResponse(RestRequest request, int statusCode, Map<String, String> headers, byte[] body) {
+        String key = request.getCacheKey();
+        ResponseCache cache = NetworkRequestQueue.getResponseCache();
+        if (key == null || cache == null) {
+            return statusCode == HTTP_NOT_MODIFIED ? null : body;
+        }
+        long now = System.currentTimeMillis();
+        if (statusCode == HTTP_NOT_MODIFIED) {
+            CacheEntry entry = request.getCacheEntry();
+            if (entry == null) {
+                return null;
+            }
+            CacheEntry refreshed = entry.revalidate(headers, now);
+            if (refreshed != null) {
+                cache.put(key, refreshed);
+            } else {
+                cache.remove(key);
+            }
+            return entry.getData();
+        }
+        CacheEntry entry = CacheEntry.fromHeaders(body, headers, now);
+        if (entry != null) {
+            cache.put(key, entry);
+        } else {
+            cache.remove(key);
+        }
+        return body;
+    }
+
+}
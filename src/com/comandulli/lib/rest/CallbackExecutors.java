@@ -0,0 +1,71 @@
+package com.comandulli.lib.rest;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executors that callbacks are delivered on, set for all requests with
+ * {@link NetworkRequestQueue#setCallbackExecutor(Executor)} or for a single one with
+ * {@link RestRequest#setCallbackExecutor(Executor)}. Any other executor, such as a background pool, can be used.
+ * <p>
+ * Responses are parsed, and the content of a {@link ReturnCallback} with a decoder is decoded,
+ * on the thread the response arrived on, so only the callback itself runs on the executor.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class CallbackExecutors {
+
+    /**
+     * Runs callbacks right away on the thread the response arrived on, such as volley's network threads
+     * or the http client's executor.
+     */
+    public static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private CallbackExecutors() {
+    }
+
+    /**
+     * Returns the executor running callbacks on android's main thread, the default with volley.
+     *
+     * @return The executor.
+     */
+    public static Executor mainThread() {
+        return MainThread.INSTANCE;
+    }
+
+    /**
+     * Returns an executor running callbacks on the thread of a handler.
+     *
+     * @param handler The handler.
+     * @return The executor.
+     */
+    public static Executor of(final Handler handler) {
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                handler.post(command);
+            }
+        };
+    }
+
+    /**
+     * Holder of the main thread executor, created on first use.
+     */
+    private static final class MainThread {
+
+        /**
+         * Executor running callbacks on android's main thread.
+         */
+        private static final Executor INSTANCE = of(new Handler(Looper.getMainLooper()));
+
+    }
+
+}
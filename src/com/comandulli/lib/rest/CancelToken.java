@@ -0,0 +1,76 @@
+package com.comandulli.lib.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cancellation of a request in flight, observed by the parts of the library sending it.
+ * <p>
+ * Each part registers what to undo once canceled, such as taking the request out of the scheduler's queue
+ * or aborting its network call. Tasks registered after cancellation run right away.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class CancelToken {
+
+    /**
+     * If canceled.
+     */
+    private volatile boolean canceled;
+    /**
+     * Tasks to run once canceled, null if none or already run.
+     */
+    private List<Runnable> tasks;
+
+    /**
+     * Returns if canceled.
+     *
+     * @return If canceled.
+     */
+    boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Registers a task to run once canceled, running it right away if already canceled.
+     *
+     * @param task The task.
+     */
+    void onCancel(Runnable task) {
+        synchronized (this) {
+            if (!canceled) {
+                if (tasks == null) {
+                    tasks = new ArrayList<>(2);
+                }
+                tasks.add(task);
+                return;
+            }
+        }
+        task.run();
+    }
+
+    /**
+     * Cancels, running all registered tasks.
+     *
+     * @return If canceled by this call, false if already canceled.
+     */
+    boolean cancel() {
+        List<Runnable> run;
+        synchronized (this) {
+            if (canceled) {
+                return false;
+            }
+            canceled = true;
+            run = tasks;
+            tasks = null;
+        }
+        if (run != null) {
+            for (Runnable task : run) {
+                task.run();
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The CBOR (RFC 8949) codec. Envelopes have the same properties as in JSON, in a map with text keys.
+ * <p>
+ * Content is read by a {@link CborReader} straight from the body, the same way as JSON content.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class CborEnvelopeCodec implements EnvelopeCodec {
+
+    /**
+     * Media type of CBOR.
+     */
+    static final String MEDIA_TYPE = "application/cbor";
+
+    @Override
+    public String getMediaType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public String getContentType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public RequestResponse decode(byte[] data, int offset, int length) throws JSONException {
+        EnvelopeParser.checkBounds(data, offset, length);
+        return EnvelopeParser.parse(new CborReader(data, offset, length), this);
+    }
+
+    @Override
+    public byte[] encode(JSONObject content) throws JSONException {
+        CborWriter writer = new CborWriter(256);
+        writer.writeObject(content);
+        return writer.toByteArray();
+    }
+
+    @Override
+    public ContentReader newReader(byte[] data, int offset, int length) {
+        return new CborReader(data, offset, length);
+    }
+
+    @Override
+    public JSONObject toJSONObject(byte[] data, int offset, int length) throws JSONException {
+        CborReader reader = new CborReader(data, offset, length);
+        if (reader.peek() != ContentReader.Token.BEGIN_OBJECT) {
+            throw new JSONException("Content is not an object");
+        }
+        return (JSONObject) reader.nextValue();
+    }
+
+}
@@ -0,0 +1,584 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * Pull reader over CBOR (RFC 8949), reading one item at a time with the same tokens as the JSON {@link ContentReader}.
+ * <p>
+ * Map keys must be text. Tags are skipped, byte strings are not supported as they have no JSON counterpart.
+ * Integers are read as numbers and half, single and double precision floats as doubles.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class CborReader extends ContentReader {
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTES = 2;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+    private static final int MAJOR_TAG = 6;
+    private static final int MAJOR_SIMPLE = 7;
+    private static final int SIMPLE_FALSE = 20;
+    private static final int SIMPLE_TRUE = 21;
+    private static final int SIMPLE_NULL = 22;
+    private static final int SIMPLE_UNDEFINED = 23;
+    private static final int FLOAT_HALF = 25;
+    private static final int FLOAT_SINGLE = 26;
+    private static final int FLOAT_DOUBLE = 27;
+    private static final int INDEFINITE = 31;
+    private static final int BREAK = 0xFF;
+
+    /**
+     * Buffer with the document.
+     */
+    private final byte[] data;
+    /**
+     * End of the document, exclusive.
+     */
+    private final int limit;
+    /**
+     * Current position.
+     */
+    private int position;
+    /**
+     * Items left in each open container, counting keys and values of maps, -1 if of indefinite length.
+     */
+    private long[] remaining = new long[16];
+    /**
+     * Items read from each open container.
+     */
+    private long[] read = new long[16];
+    /**
+     * If each open container is a map.
+     */
+    private boolean[] maps = new boolean[16];
+    /**
+     * Depth of the current nesting.
+     */
+    private int depth;
+    /**
+     * If the top level item was read.
+     */
+    private boolean documentRead;
+    /**
+     * Next token, if already peeked.
+     */
+    private Token peeked;
+
+    /**
+     * Instantiate a reader over a buffer.
+     *
+     * @param data   Buffer with the document in CBOR.
+     * @param offset Start of the document in the buffer.
+     * @param length Length of the document.
+     */
+    CborReader(byte[] data, int offset, int length) {
+        super(data, offset, length);
+        this.data = data;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    @Override
+    public Token peek() throws JSONException {
+        if (peeked != null) {
+            return peeked;
+        }
+        if (depth == 0) {
+            if (documentRead) {
+                if (position < limit) {
+                    throw syntaxError("Unexpected data after document");
+                }
+                return peeked = Token.END_DOCUMENT;
+            }
+        } else if (remaining[depth - 1] == 0 || (remaining[depth - 1] < 0 && position < limit && (data[position] & 0xFF) == BREAK)) {
+            return peeked = maps[depth - 1] ? Token.END_OBJECT : Token.END_ARRAY;
+        }
+        require(1);
+        int head = data[position] & 0xFF;
+        int major = head >>> 5;
+        int info = head & 0x1F;
+        boolean name = depth > 0 && maps[depth - 1] && (read[depth - 1] & 1) == 0;
+        if (name && major != MAJOR_TEXT && major != MAJOR_TAG) {
+            throw syntaxError("Expected a text key");
+        }
+        switch (major) {
+            case MAJOR_UNSIGNED:
+            case MAJOR_NEGATIVE:
+                return peeked = Token.NUMBER;
+            case MAJOR_TEXT:
+                return peeked = name ? Token.NAME : Token.STRING;
+            case MAJOR_ARRAY:
+                return peeked = Token.BEGIN_ARRAY;
+            case MAJOR_MAP:
+                return peeked = Token.BEGIN_OBJECT;
+            case MAJOR_TAG:
+                position++;
+                readArgument(info);
+                return peek();
+            case MAJOR_SIMPLE:
+                switch (info) {
+                    case SIMPLE_FALSE:
+                    case SIMPLE_TRUE:
+                        return peeked = Token.BOOLEAN;
+                    case SIMPLE_NULL:
+                    case SIMPLE_UNDEFINED:
+                        return peeked = Token.NULL;
+                    case FLOAT_HALF:
+                    case FLOAT_SINGLE:
+                    case FLOAT_DOUBLE:
+                        return peeked = Token.NUMBER;
+                    default:
+                        throw syntaxError("Unsupported simple value " + info);
+                }
+            default:
+                throw syntaxError("Unsupported byte string");
+        }
+    }
+
+    @Override
+    public void beginObject() throws JSONException {
+        expect(Token.BEGIN_OBJECT);
+        push(true, readLength());
+    }
+
+    @Override
+    public void endObject() throws JSONException {
+        expect(Token.END_OBJECT);
+        pop();
+    }
+
+    @Override
+    public void endDocument() throws JSONException {
+        expect(Token.END_DOCUMENT);
+    }
+
+    @Override
+    public void beginArray() throws JSONException {
+        expect(Token.BEGIN_ARRAY);
+        push(false, readLength());
+    }
+
+    @Override
+    public void endArray() throws JSONException {
+        expect(Token.END_ARRAY);
+        pop();
+    }
+
+    @Override
+    public String nextName() throws JSONException {
+        expect(Token.NAME);
+        return readText();
+    }
+
+    @Override
+    public String nextString() throws JSONException {
+        Token token = peek();
+        if (token == Token.STRING) {
+            peeked = null;
+            return readText();
+        } else if (token == Token.NUMBER) {
+            peeked = null;
+            return readNumber().toString();
+        }
+        throw syntaxError("Expected a string but was " + token);
+    }
+
+    @Override
+    public long nextLong() throws JSONException {
+        if (peek() == Token.NUMBER) {
+            peeked = null;
+            Object number = readNumber();
+            if (number instanceof Long) {
+                return (Long) number;
+            }
+            return (long) ((Double) number).doubleValue();
+        }
+        String text = nextString();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return (long) parseDouble(text);
+        }
+    }
+
+    @Override
+    public double nextDouble() throws JSONException {
+        if (peek() == Token.NUMBER) {
+            peeked = null;
+            return ((Number) readNumber()).doubleValue();
+        }
+        return parseDouble(nextString());
+    }
+
+    @Override
+    public boolean nextBoolean() throws JSONException {
+        expect(Token.BOOLEAN);
+        int head = data[position++] & 0xFF;
+        consumed();
+        return (head & 0x1F) == SIMPLE_TRUE;
+    }
+
+    @Override
+    public void nextNull() throws JSONException {
+        expect(Token.NULL);
+        position++;
+        consumed();
+    }
+
+    @Override
+    int skipValueFrom() throws JSONException {
+        Token token = peek();
+        if (token == Token.END_OBJECT || token == Token.END_ARRAY || token == Token.END_DOCUMENT) {
+            throw syntaxError("Expected a value but was " + token);
+        }
+        peeked = null;
+        int start = position;
+        skipItem();
+        consumed();
+        return start;
+    }
+
+    @Override
+    int getPosition() {
+        return position;
+    }
+
+    @Override
+    int nextNameIndex(byte[][] keys) throws JSONException {
+        expect(Token.NAME);
+        int info = data[position++] & 0x1F;
+        consumed();
+        long length = readArgument(info);
+        byte[] name = data;
+        int start = position;
+        if (length < 0) {
+            name = readChunks().getBytes(EnvelopeParser.UTF_8);
+            start = 0;
+            length = name.length;
+        } else {
+            require(length);
+            position += (int) length;
+        }
+        for (int k = 0; k < keys.length; k++) {
+            byte[] key = keys[k];
+            if (length == key.length) {
+                int i = 0;
+                while (i < key.length && name[start + i] == key[i]) {
+                    i++;
+                }
+                if (i == key.length) {
+                    return k;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    String textOf(int start, int end) throws JSONException {
+        return String.valueOf(new CborReader(data, start, end - start).nextValue());
+    }
+
+    /**
+     * Consumes the next value, converting objects and arrays into JSONObjects and JSONArrays.
+     *
+     * @return The value: a JSONObject, JSONArray, String, Long, Double, Boolean or {@link JSONObject#NULL}.
+     * @throws JSONException if the document is malformed.
+     */
+    Object nextValue() throws JSONException {
+        Token token = peek();
+        switch (token) {
+            case BEGIN_OBJECT:
+                JSONObject object = new JSONObject();
+                beginObject();
+                while (hasNext()) {
+                    String name = nextName();
+                    object.put(name, nextValue());
+                }
+                endObject();
+                return object;
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                beginArray();
+                while (hasNext()) {
+                    array.put(nextValue());
+                }
+                endArray();
+                return array;
+            case STRING:
+                return nextString();
+            case NUMBER:
+                peeked = null;
+                return readNumber();
+            case BOOLEAN:
+                return nextBoolean();
+            case NULL:
+                nextNull();
+                return JSONObject.NULL;
+            default:
+                throw syntaxError("Expected a value but was " + token);
+        }
+    }
+
+    /**
+     * Reads the head of an array or map, returning its count of items, -1 if of indefinite length.
+     */
+    private long readLength() throws JSONException {
+        int head = data[position++] & 0xFF;
+        consumed();
+        long length = readArgument(head & 0x1F);
+        if (length > limit - position) {
+            throw syntaxError("Invalid length " + length);
+        }
+        if (length > 0 && head >>> 5 == MAJOR_MAP) {
+            length *= 2;
+        }
+        return length;
+    }
+
+    /**
+     * Reads a text string, whose head has not been consumed yet.
+     */
+    private String readText() throws JSONException {
+        int info = data[position++] & 0x1F;
+        consumed();
+        long length = readArgument(info);
+        if (length < 0) {
+            return readChunks();
+        }
+        require(length);
+        String text = new String(data, position, (int) length, EnvelopeParser.UTF_8);
+        position += (int) length;
+        return text;
+    }
+
+    /**
+     * Reads the chunks of a text string of indefinite length, up to its break.
+     */
+    private String readChunks() throws JSONException {
+        StringBuilder builder = new StringBuilder();
+        while (true) {
+            require(1);
+            int head = data[position++] & 0xFF;
+            if (head == BREAK) {
+                return builder.toString();
+            }
+            long length = head >>> 5 == MAJOR_TEXT ? readArgument(head & 0x1F) : -1;
+            if (length < 0) {
+                throw syntaxError("Invalid text chunk");
+            }
+            require(length);
+            builder.append(new String(data, position, (int) length, EnvelopeParser.UTF_8));
+            position += (int) length;
+        }
+    }
+
+    /**
+     * Reads a number, whose head has not been consumed yet.
+     *
+     * @return A Long for integers, a Double for floats.
+     */
+    private Object readNumber() throws JSONException {
+        int head = data[position++] & 0xFF;
+        consumed();
+        int info = head & 0x1F;
+        switch (head >>> 5) {
+            case MAJOR_UNSIGNED:
+                return readInteger(info);
+            case MAJOR_NEGATIVE:
+                return -1 - readInteger(info);
+            default:
+                switch (info) {
+                    case FLOAT_HALF:
+                        return halfToDouble((int) readBits(2));
+                    case FLOAT_SINGLE:
+                        return (double) Float.intBitsToFloat((int) readBits(4));
+                    default:
+                        return Double.longBitsToDouble(readBits(8));
+                }
+        }
+    }
+
+    private long readInteger(int info) throws JSONException {
+        long value = readArgument(info);
+        if (value < 0) {
+            throw syntaxError("Invalid integer");
+        }
+        return value;
+    }
+
+    /**
+     * Reads the argument of a head, -1 if of indefinite length.
+     */
+    private long readArgument(int info) throws JSONException {
+        if (info < 24) {
+            return info;
+        }
+        switch (info) {
+            case 24:
+                return readBits(1);
+            case 25:
+                return readBits(2);
+            case 26:
+                return readBits(4);
+            case 27:
+                long value = readBits(8);
+                if (value < 0) {
+                    throw syntaxError("Number out of range");
+                }
+                return value;
+            case INDEFINITE:
+                return -1;
+            default:
+                throw syntaxError("Invalid additional information " + info);
+        }
+    }
+
+    private long readBits(int bytes) throws JSONException {
+        require(bytes);
+        long value = 0;
+        for (int i = 0; i < bytes; i++) {
+            value = (value << 8) | (data[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Skips an item, including any nested items.
+     */
+    private void skipItem() throws JSONException {
+        require(1);
+        int head = data[position++] & 0xFF;
+        int major = head >>> 5;
+        int info = head & 0x1F;
+        if (major == MAJOR_SIMPLE) {
+            if (info == INDEFINITE) {
+                throw syntaxError("Unexpected break");
+            }
+            int size = info == 24 ? 1 : info == FLOAT_HALF ? 2 : info == FLOAT_SINGLE ? 4 : info == FLOAT_DOUBLE ? 8 : 0;
+            require(size);
+            position += size;
+            return;
+        }
+        long length = readArgument(info);
+        switch (major) {
+            case MAJOR_BYTES:
+            case MAJOR_TEXT:
+                if (length >= 0) {
+                    require(length);
+                    position += (int) length;
+                    return;
+                }
+                skipToBreak();
+                return;
+            case MAJOR_ARRAY:
+            case MAJOR_MAP:
+                if (length >= 0) {
+                    long items = major == MAJOR_MAP ? length * 2 : length;
+                    for (long i = 0; i < items; i++) {
+                        skipItem();
+                    }
+                    return;
+                }
+                skipToBreak();
+                return;
+            case MAJOR_TAG:
+                skipItem();
+                return;
+            default:
+                if (length < 0) {
+                    throw syntaxError("Invalid integer");
+                }
+        }
+    }
+
+    private void skipToBreak() throws JSONException {
+        while (true) {
+            require(1);
+            if ((data[position] & 0xFF) == BREAK) {
+                position++;
+                return;
+            }
+            skipItem();
+        }
+    }
+
+    private void consumed() {
+        if (depth == 0) {
+            documentRead = true;
+            return;
+        }
+        read[depth - 1]++;
+        if (remaining[depth - 1] > 0) {
+            remaining[depth - 1]--;
+        }
+    }
+
+    private void push(boolean map, long length) {
+        if (depth == maps.length) {
+            remaining = Arrays.copyOf(remaining, depth * 2);
+            read = Arrays.copyOf(read, depth * 2);
+            maps = Arrays.copyOf(maps, depth * 2);
+        }
+        remaining[depth] = length;
+        read[depth] = 0;
+        maps[depth] = map;
+        depth++;
+    }
+
+    private void pop() {
+        if (remaining[depth - 1] < 0) {
+            position++;
+        }
+        depth--;
+    }
+
+    private void expect(Token expected) throws JSONException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        peeked = null;
+    }
+
+    private void require(long bytes) throws JSONException {
+        if (bytes > limit - position) {
+            throw syntaxError("Unexpected end of document");
+        }
+    }
+
+    private double parseDouble(String text) throws JSONException {
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected a number but was " + text);
+        }
+    }
+
+    private static double halfToDouble(int bits) {
+        int exponent = (bits >> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+        double value;
+        if (exponent == 0) {
+            value = mantissa * 0x1p-24;
+        } else if (exponent == 31) {
+            value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+        } else {
+            value = (mantissa + 1024) * Math.pow(2, exponent - 25);
+        }
+        return (bits & 0x8000) != 0 ? -value : value;
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at " + position);
+    }
+
+}
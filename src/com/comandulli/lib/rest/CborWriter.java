@@ -0,0 +1,233 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Writer of JSON values in CBOR (RFC 8949), using the shortest head for each item.
+ * <p>
+ * Integers are written as integers, other numbers as single precision floats when that loses nothing
+ * and as double precision floats otherwise. Strings are encoded in UTF-8 straight into the buffer.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class CborWriter {
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+    private static final int FALSE = 0xF4;
+    private static final int TRUE = 0xF5;
+    private static final int NULL = 0xF6;
+    private static final int FLOAT_SINGLE = 0xFA;
+    private static final int FLOAT_DOUBLE = 0xFB;
+
+    /**
+     * Buffer being written.
+     */
+    private byte[] buffer;
+    /**
+     * Bytes written.
+     */
+    private int size;
+
+    /**
+     * Instantiate a writer.
+     *
+     * @param capacity Initial capacity of the buffer.
+     */
+    CborWriter(int capacity) {
+        this.buffer = new byte[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Returns a copy of the bytes written.
+     *
+     * @return The bytes.
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Writes a value, as held by a JSONObject or JSONArray.
+     *
+     * @param value The value.
+     * @throws JSONException if the value cannot be read.
+     */
+    void writeValue(Object value) throws JSONException {
+        if (value instanceof JSONObject) {
+            writeObject((JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            writeArray((JSONArray) value);
+        } else if (value instanceof String) {
+            writeText((String) value);
+        } else if (value instanceof Boolean) {
+            writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            writeLong(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            writeDouble(((Number) value).doubleValue());
+        } else if (value == null || value == JSONObject.NULL) {
+            writeByte(NULL);
+        } else {
+            writeText(value.toString());
+        }
+    }
+
+    /**
+     * Writes an object as a map.
+     *
+     * @param object The object.
+     * @throws JSONException if a value cannot be read.
+     */
+    void writeObject(JSONObject object) throws JSONException {
+        writeHead(MAJOR_MAP, object.length());
+        Iterator<String> keys = object.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            writeText(key);
+            writeValue(object.opt(key));
+        }
+    }
+
+    /**
+     * Writes an array.
+     *
+     * @param array The array.
+     * @throws JSONException if a value cannot be read.
+     */
+    void writeArray(JSONArray array) throws JSONException {
+        int length = array.length();
+        writeHead(MAJOR_ARRAY, length);
+        for (int i = 0; i < length; i++) {
+            writeValue(array.opt(i));
+        }
+    }
+
+    /**
+     * Writes an integer.
+     *
+     * @param value The integer.
+     */
+    void writeLong(long value) {
+        if (value >= 0) {
+            writeHead(MAJOR_UNSIGNED, value);
+        } else {
+            writeHead(MAJOR_NEGATIVE, -1 - value);
+        }
+    }
+
+    /**
+     * Writes a float, in single precision if it is exact.
+     *
+     * @param value The float.
+     */
+    void writeDouble(double value) {
+        if ((float) value == value || Double.isNaN(value)) {
+            ensure(5);
+            buffer[size++] = (byte) FLOAT_SINGLE;
+            writeBits(Float.floatToIntBits((float) value), 4);
+        } else {
+            ensure(9);
+            buffer[size++] = (byte) FLOAT_DOUBLE;
+            writeBits(Double.doubleToLongBits(value), 8);
+        }
+    }
+
+    /**
+     * Writes a text string in UTF-8, unpaired surrogates are replaced by '?'.
+     *
+     * @param text The text.
+     */
+    void writeText(String text) {
+        int length = text.length();
+        int encoded = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                encoded++;
+            } else if (c < 0x800) {
+                encoded += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                encoded += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                encoded++;
+            } else {
+                encoded += 3;
+            }
+        }
+        writeHead(MAJOR_TEXT, encoded);
+        ensure(encoded);
+        byte[] buffer = this.buffer;
+        int position = size;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        size = position;
+    }
+
+    private void writeHead(int major, long argument) {
+        int type = major << 5;
+        if (argument < 24) {
+            writeByte(type | (int) argument);
+        } else if (argument <= 0xFF) {
+            writeByte(type | 24);
+            writeBits(argument, 1);
+        } else if (argument <= 0xFFFF) {
+            writeByte(type | 25);
+            writeBits(argument, 2);
+        } else if (argument <= 0xFFFFFFFFL) {
+            writeByte(type | 26);
+            writeBits(argument, 4);
+        } else {
+            writeByte(type | 27);
+            writeBits(argument, 8);
+        }
+    }
+
+    private void writeByte(int b) {
+        ensure(1);
+        buffer[size++] = (byte) b;
+    }
+
+    private void writeBits(long bits, int bytes) {
+        ensure(bytes);
+        for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (bits >>> shift);
+        }
+    }
+
+    private void ensure(int bytes) {
+        if (size + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+        }
+    }
+
+}
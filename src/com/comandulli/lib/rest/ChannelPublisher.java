@@ -0,0 +1,216 @@
+package com.comandulli.lib.rest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publisher of the bytes of a blocking channel in chunks, read only on demand.
+ * <p>
+ * A chunk is only read once the subscriber requested it, so a slow subscriber holds back the reads
+ * and no more than the chunks it requested are ever in memory. Reads happen on the thread calling
+ * {@link Flow.Subscription#request(long)}. The channel is closed once read to its end, on an error or when canceled.
+ * A single subscriber is supported.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class ChannelPublisher implements Flow.Publisher<ByteBuffer> {
+
+    /**
+     * Default size of each chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * The channel.
+     */
+    private final ReadableByteChannel channel;
+    /**
+     * Size of each chunk.
+     */
+    private final int chunkSize;
+    /**
+     * Size of the body, -1 if unknown.
+     */
+    private final long total;
+    /**
+     * Listener of the progress, null if none.
+     */
+    private final ProgressListener progressListener;
+    /**
+     * If a subscriber has subscribed.
+     */
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Instantiate a publisher of a channel.
+     *
+     * @param channel   The channel.
+     * @param chunkSize Size of each chunk.
+     */
+    public ChannelPublisher(ReadableByteChannel channel, int chunkSize) {
+        this(channel, chunkSize, -1, null);
+    }
+
+    /**
+     * Instantiate a publisher of a channel, reporting the progress.
+     *
+     * @param channel          The channel.
+     * @param chunkSize        Size of each chunk.
+     * @param total            Size of the body, -1 if unknown.
+     * @param progressListener Listener of the progress, null if none.
+     */
+    public ChannelPublisher(ReadableByteChannel channel, int chunkSize, long total, ProgressListener progressListener) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.channel = channel;
+        this.chunkSize = chunkSize;
+        this.total = total;
+        this.progressListener = progressListener;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Already subscribed"));
+            return;
+        }
+        ChannelSubscription subscription = new ChannelSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * Subscription reading a chunk for each one requested, draining from a single thread at a time.
+     */
+    private final class ChannelSubscription implements Flow.Subscription {
+
+        /**
+         * The subscriber.
+         */
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        /**
+         * Chunks requested and not yet published.
+         */
+        private final AtomicLong demand = new AtomicLong();
+        /**
+         * Pending calls to drain, only the first one drains.
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+        /**
+         * Bytes published.
+         */
+        private long transferred;
+        /**
+         * If the subscription has ended.
+         */
+        private volatile boolean done;
+
+        private ChannelSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (done) {
+                return;
+            }
+            if (n <= 0) {
+                finish();
+                subscriber.onError(new IllegalArgumentException("Non-positive request " + n));
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = demand.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!demand.compareAndSet(current, next));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            finish();
+        }
+
+        /**
+         * Publishes chunks while there is demand.
+         */
+        private void drain() {
+            if (pending.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!done && demand.get() > 0) {
+                    ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+                    boolean end;
+                    try {
+                        end = fill(chunk);
+                    } catch (IOException e) {
+                        finish();
+                        subscriber.onError(e);
+                        return;
+                    }
+                    chunk.flip();
+                    if (chunk.hasRemaining()) {
+                        demand.decrementAndGet();
+                        transferred += chunk.remaining();
+                        if (progressListener != null) {
+                            progressListener.onProgress(transferred, total);
+                        }
+                        subscriber.onNext(chunk);
+                    }
+                    if (end && !done) {
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                }
+            } while (pending.decrementAndGet() != 0);
+        }
+
+        /**
+         * Reads from the channel until the chunk is full or the channel ends.
+         *
+         * @param chunk The chunk.
+         * @return If the channel has ended.
+         * @throws IOException if the channel cannot be read.
+         */
+        private boolean fill(ByteBuffer chunk) throws IOException {
+            while (chunk.hasRemaining()) {
+                if (channel.read(chunk) < 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Ends the subscription, closing the channel.
+         */
+        private void finish() {
+            done = true;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,388 @@
+package com.comandulli.lib.rest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stops sending requests to a failing backend, so they fail fast instead of waiting for a timeout.
+ * <p>
+ * Each host has its own circuit, tracking the last calls in a sliding window. A circuit is closed while calls
+ * succeed, and opens once the rate of failures (timeouts, 5XX responses and internal errors) or of slow calls
+ * reaches its threshold. While open, requests fail with {@link RequestCallback#onInternalError()} without
+ * touching the network. After a cool down the circuit is half open, letting a few probe calls through:
+ * if they all succeed it closes again, otherwise it opens again.
+ * <p>
+ * Override {@link #keyOf(String)} to break circuits by endpoint instead of by host.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class CircuitBreaker {
+
+    /**
+     * Default number of calls in the sliding window.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+    /**
+     * Default minimum number of calls before a circuit can open.
+     */
+    public static final int DEFAULT_MIN_CALLS = 10;
+    /**
+     * Default rate of failed calls that opens a circuit.
+     */
+    public static final float DEFAULT_FAILURE_RATE = 0.5f;
+    /**
+     * Default rate of slow calls that opens a circuit.
+     */
+    public static final float DEFAULT_SLOW_CALL_RATE = 0.8f;
+    /**
+     * Default duration of a slow call in milliseconds.
+     */
+    public static final long DEFAULT_SLOW_CALL_MS = 5000;
+    /**
+     * Default time a circuit stays open in milliseconds.
+     */
+    public static final long DEFAULT_OPEN_MS = 30000;
+    /**
+     * Default number of probe calls of a half open circuit.
+     */
+    public static final int DEFAULT_PROBE_CALLS = 3;
+
+    /**
+     * State of a circuit.
+     */
+    public enum State {
+        /**
+         * Requests are sent.
+         */
+        CLOSED,
+        /**
+         * Requests fail fast.
+         */
+        OPEN,
+        /**
+         * A few probe requests are sent.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Circuits by key.
+     */
+    private final Map<String, Circuit> circuits = new HashMap<>();
+    /**
+     * Number of calls in the sliding window.
+     */
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+    /**
+     * Minimum number of calls before a circuit can open.
+     */
+    private int minCalls = DEFAULT_MIN_CALLS;
+    /**
+     * Rate of failed calls that opens a circuit.
+     */
+    private float failureRate = DEFAULT_FAILURE_RATE;
+    /**
+     * Rate of slow calls that opens a circuit.
+     */
+    private float slowCallRate = DEFAULT_SLOW_CALL_RATE;
+    /**
+     * Duration of a slow call in nanoseconds.
+     */
+    private long slowCallNanos = DEFAULT_SLOW_CALL_MS * 1000000L;
+    /**
+     * Time a circuit stays open in nanoseconds.
+     */
+    private long openNanos = DEFAULT_OPEN_MS * 1000000L;
+    /**
+     * Number of probe calls of a half open circuit.
+     */
+    private int probeCalls = DEFAULT_PROBE_CALLS;
+    /**
+     * Number of requests rejected.
+     */
+    private long rejected;
+
+    /**
+     * Sets the size of the sliding window and the minimum number of calls in it before a circuit can open.
+     * Applies to circuits created afterwards.
+     *
+     * @param windowSize Number of calls in the window.
+     * @param minCalls   Minimum number of calls.
+     * @return This circuit breaker.
+     */
+    public synchronized CircuitBreaker setWindow(int windowSize, int minCalls) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minCalls = Math.max(1, Math.min(minCalls, this.windowSize));
+        return this;
+    }
+
+    /**
+     * Sets the rate of failed calls that opens a circuit.
+     *
+     * @param failureRate Rate from 0 to 1.
+     * @return This circuit breaker.
+     */
+    public synchronized CircuitBreaker setFailureRate(float failureRate) {
+        this.failureRate = failureRate;
+        return this;
+    }
+
+    /**
+     * Sets what counts as a slow call and the rate of slow calls that opens a circuit.
+     *
+     * @param slowCallMs   Duration of a slow call in milliseconds.
+     * @param slowCallRate Rate from 0 to 1, above 1 to never open for slow calls.
+     * @return This circuit breaker.
+     */
+    public synchronized CircuitBreaker setSlowCalls(long slowCallMs, float slowCallRate) {
+        this.slowCallNanos = slowCallMs * 1000000L;
+        this.slowCallRate = slowCallRate;
+        return this;
+    }
+
+    /**
+     * Sets how long a circuit stays open and how many probe calls are made when half open.
+     *
+     * @param openMs     Time open in milliseconds.
+     * @param probeCalls Number of probe calls.
+     * @return This circuit breaker.
+     */
+    public synchronized CircuitBreaker setOpenDuration(long openMs, int probeCalls) {
+        this.openNanos = openMs * 1000000L;
+        this.probeCalls = Math.max(1, probeCalls);
+        return this;
+    }
+
+    /**
+     * Returns the key of the circuit of an url, by default its host.
+     *
+     * @param url The resolved url.
+     * @return The circuit key.
+     */
+    public String keyOf(String url) {
+        return RequestScheduler.hostOf(url);
+    }
+
+    /**
+     * Returns the state of a circuit.
+     *
+     * @param key The circuit key.
+     * @return The state, closed if there were no calls.
+     */
+    public synchronized State getState(String key) {
+        Circuit circuit = circuits.get(key);
+        return circuit != null ? circuit.state(now()) : State.CLOSED;
+    }
+
+    /**
+     * Returns the state of every circuit.
+     *
+     * @return A copy of the states by key.
+     */
+    public synchronized Map<String, State> getStates() {
+        long now = now();
+        Map<String, State> states = new HashMap<>();
+        for (Map.Entry<String, Circuit> entry : circuits.entrySet()) {
+            states.put(entry.getKey(), entry.getValue().state(now));
+        }
+        return states;
+    }
+
+    /**
+     * Returns the rate of failed calls in the window of a circuit.
+     *
+     * @param key The circuit key.
+     * @return Rate from 0 to 1.
+     */
+    public synchronized float getFailureRate(String key) {
+        Circuit circuit = circuits.get(key);
+        return circuit != null && circuit.count > 0 ? (float) circuit.failures / circuit.count : 0;
+    }
+
+    /**
+     * Returns the number of requests that failed fast.
+     *
+     * @return Number of rejected requests.
+     */
+    public synchronized long getRejectedCount() {
+        return rejected;
+    }
+
+    /**
+     * Closes every circuit, discarding their calls.
+     */
+    public synchronized void reset() {
+        circuits.clear();
+    }
+
+    /**
+     * Returns the current time of the circuits.
+     *
+     * @return Time in nanoseconds, from an arbitrary origin.
+     */
+    long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Checks if a call may be made, taking a probe permit when half open.
+     *
+     * @param key The circuit key.
+     * @return If the call may be made.
+     */
+    synchronized boolean tryAcquire(String key) {
+        Circuit circuit = circuits.get(key);
+        if (circuit == null) {
+            return true;
+        }
+        State state = circuit.state(now());
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && circuit.probes < probeCalls) {
+            if (circuit.state == State.OPEN) {
+                circuit.state = State.HALF_OPEN;
+                circuit.probes = 0;
+                circuit.probeSuccesses = 0;
+            }
+            circuit.probes++;
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    /**
+     * Records the result of a call.
+     *
+     * @param key      The circuit key.
+     * @param failed   If the call failed.
+     * @param duration Duration of the call in nanoseconds.
+     */
+    synchronized void record(String key, boolean failed, long duration) {
+        Circuit circuit = circuits.get(key);
+        if (circuit == null) {
+            if (!failed && duration < slowCallNanos) {
+                return;
+            }
+            circuit = new Circuit(windowSize);
+            circuits.put(key, circuit);
+        }
+        long now = now();
+        boolean slow = duration >= slowCallNanos;
+        if (circuit.state == State.HALF_OPEN) {
+            if (failed || slow) {
+                circuit.open(now);
+            } else if (++circuit.probeSuccesses >= probeCalls) {
+                circuit.close();
+            }
+            return;
+        }
+        if (circuit.state == State.OPEN) {
+            return;
+        }
+        circuit.add(failed, slow);
+        if (circuit.count >= minCalls
+                && (circuit.failures >= failureRate * circuit.count || circuit.slowCalls >= slowCallRate * circuit.count)) {
+            circuit.open(now);
+        }
+    }
+
+    /**
+     * Releases a probe permit of a call without a result, such as one without connection.
+     *
+     * @param key The circuit key.
+     */
+    synchronized void release(String key) {
+        Circuit circuit = circuits.get(key);
+        if (circuit != null && circuit.state == State.HALF_OPEN && circuit.probes > 0) {
+            circuit.probes--;
+        }
+    }
+
+    /**
+     * Circuit of a key, with its sliding window of calls.
+     */
+    private final class Circuit {
+
+        /**
+         * Results of the last calls, bit 0 for failed and bit 1 for slow.
+         */
+        private final byte[] window;
+        /**
+         * Index of the next call in the window.
+         */
+        private int next;
+        /**
+         * Number of calls in the window.
+         */
+        private int count;
+        /**
+         * Number of failed calls in the window.
+         */
+        private int failures;
+        /**
+         * Number of slow calls in the window.
+         */
+        private int slowCalls;
+        /**
+         * Current state, open circuits become half open once their time elapses.
+         */
+        private State state = State.CLOSED;
+        /**
+         * Time the circuit opened in nanoseconds.
+         */
+        private long openedAt;
+        /**
+         * Number of probe calls made while half open.
+         */
+        private int probes;
+        /**
+         * Number of probe calls that succeeded.
+         */
+        private int probeSuccesses;
+
+        Circuit(int size) {
+            window = new byte[size];
+        }
+
+        State state(long now) {
+            if (state == State.OPEN && now - openedAt >= openNanos) {
+                return State.HALF_OPEN;
+            }
+            return state;
+        }
+
+        void add(boolean failed, boolean slow) {
+            if (count == window.length) {
+                byte old = window[next];
+                failures -= old & 1;
+                slowCalls -= (old >> 1) & 1;
+            } else {
+                count++;
+            }
+            window[next] = (byte) ((failed ? 1 : 0) | (slow ? 2 : 0));
+            failures += failed ? 1 : 0;
+            slowCalls += slow ? 1 : 0;
+            next = (next + 1) % window.length;
+        }
+
+        void open(long now) {
+            state = State.OPEN;
+            openedAt = now;
+            probes = 0;
+            probeSuccesses = 0;
+        }
+
+        void close() {
+            state = State.CLOSED;
+            next = 0;
+            count = 0;
+            failures = 0;
+            slowCalls = 0;
+        }
+
+    }
+
+}
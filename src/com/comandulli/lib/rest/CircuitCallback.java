@@ -0,0 +1,89 @@
+package com.comandulli.lib.rest;
+
+/**
+ * Callback that records the result and duration of a call in its circuit, then forwards it.
+ * The call is timed from when the scheduler hands it to the transport, so waiting in the local queue does not
+ * count against the backend, and calls that never reached the transport only release their circuit.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class CircuitCallback extends ForwardingCallback {
+
+    /**
+     * The circuit breaker.
+     */
+    private final CircuitBreaker breaker;
+    /**
+     * Key of the circuit of the call.
+     */
+    private final String key;
+    /**
+     * The request, whose call says nothing of the backend once canceled.
+     */
+    private final RestRequest request;
+    /**
+     * Time the call was handed to the transport in nanoseconds.
+     */
+    private volatile long start;
+    /**
+     * If the call was handed to the transport.
+     */
+    private volatile boolean dispatched;
+    /**
+     * If the call failed.
+     */
+    private boolean failed;
+    /**
+     * If the call ended without connection.
+     */
+    private boolean unreachable;
+
+    CircuitCallback(CircuitBreaker breaker, String key, RestRequest request, RequestCallback delegate) {
+        super(delegate);
+        this.breaker = breaker;
+        this.key = key;
+        this.request = request;
+    }
+
+    @Override
+    void onDispatch() {
+        start = breaker.now();
+        dispatched = true;
+        super.onDispatch();
+    }
+
+    @Override
+    protected void onComplete() {
+        if (!dispatched || unreachable || request.isCanceled()) {
+            breaker.release(key);
+        } else {
+            breaker.record(key, failed, breaker.now() - start);
+        }
+    }
+
+    @Override
+    public void onResponse(RequestResponse response) {
+        failed = response == null || response.getCode() >= 500;
+        forwardResponse(response);
+    }
+
+    @Override
+    public void onTimeout() {
+        failed = true;
+        forwardTimeout();
+    }
+
+    @Override
+    public void onInternalError() {
+        failed = true;
+        forwardInternalError();
+    }
+
+    @Override
+    public void onNoConnection() {
+        unreachable = true;
+        forwardNoConnection();
+    }
+
+}
@@ -0,0 +1,473 @@
+package com.comandulli.lib.rest;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Gzip compression of request and response bodies.
+ * <p>
+ * Responses are requested with "Accept-Encoding: gzip" and decompressed as they arrive. Request bodies are
+ * only compressed above a size threshold, disabled by default since the server must accept gzip bodies.
+ * The native zlib state of {@link Inflater} and {@link Deflater} is pooled instead of created for each call.
+ * Bytes saved by compression are counted for monitoring.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class Compression {
+
+    /**
+     * Name of the gzip encoding.
+     */
+    public static final String ENCODING_GZIP = "gzip";
+    /**
+     * Header key of the accepted encodings.
+     */
+    public static final String PROPERTY_ACCEPT_ENCODING = "Accept-Encoding";
+    /**
+     * Header key of the content encoding.
+     */
+    public static final String PROPERTY_CONTENT_ENCODING = "Content-Encoding";
+    /**
+     * Maximum number of pooled inflaters and deflaters each.
+     */
+    private static final int POOL_SIZE = 8;
+    /**
+     * Size of the gzip trailer, CRC32 and size.
+     */
+    private static final int TRAILER = 8;
+
+    /**
+     * Pooled inflaters of raw deflate data.
+     */
+    private static final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+    /**
+     * Pooled deflaters of raw deflate data.
+     */
+    private static final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+    /**
+     * Minimum size of a request body to be compressed, -1 if disabled.
+     */
+    private static volatile int requestThreshold = -1;
+    /**
+     * Bytes saved by compressed request bodies.
+     */
+    private static final AtomicLong requestBytesSaved = new AtomicLong();
+    /**
+     * Bytes saved by compressed response bodies.
+     */
+    private static final AtomicLong responseBytesSaved = new AtomicLong();
+    /**
+     * Number of compressed response bodies.
+     */
+    private static final AtomicLong compressedResponses = new AtomicLong();
+
+    private Compression() {
+    }
+
+    /**
+     * Sets the minimum size of a request body to be compressed, only enable it if the server accepts gzip bodies.
+     *
+     * @param bytes Size in bytes, -1 to disable it.
+     */
+    public static void setRequestThreshold(int bytes) {
+        requestThreshold = bytes;
+    }
+
+    /**
+     * Returns the minimum size of a request body to be compressed.
+     *
+     * @return Size in bytes, -1 if disabled.
+     */
+    public static int getRequestThreshold() {
+        return requestThreshold;
+    }
+
+    /**
+     * Returns the bytes saved by compressed request bodies.
+     *
+     * @return Bytes saved.
+     */
+    public static long getRequestBytesSaved() {
+        return requestBytesSaved.get();
+    }
+
+    /**
+     * Returns the bytes saved by compressed response bodies.
+     *
+     * @return Bytes saved.
+     */
+    public static long getResponseBytesSaved() {
+        return responseBytesSaved.get();
+    }
+
+    /**
+     * Returns the number of compressed response bodies received.
+     *
+     * @return The count.
+     */
+    public static long getCompressedResponseCount() {
+        return compressedResponses.get();
+    }
+
+    /**
+     * Resets the bytes saved and counters.
+     */
+    public static void resetStats() {
+        requestBytesSaved.set(0);
+        responseBytesSaved.set(0);
+        compressedResponses.set(0);
+    }
+
+    /**
+     * Checks if a request body should be compressed.
+     *
+     * @param length Size of the body in bytes.
+     * @return If it should be compressed.
+     */
+    static boolean shouldCompress(int length) {
+        int threshold = requestThreshold;
+        return threshold >= 0 && length >= threshold;
+    }
+
+    /**
+     * Checks if a content encoding is gzip.
+     *
+     * @param encoding The Content-Encoding header value, may be null.
+     * @return If it is gzip.
+     */
+    static boolean isGzip(String encoding) {
+        return encoding != null && encoding.trim().equalsIgnoreCase(ENCODING_GZIP);
+    }
+
+    /**
+     * Compresses a request body in gzip.
+     *
+     * @param data The body.
+     * @return The compressed body, null if it is not smaller than the body.
+     */
+    static byte[] gzip(byte[] data) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+        try {
+            byte[] out = new byte[10 + data.length / 2 + 64];
+            out[0] = (byte) 0x1f;
+            out[1] = (byte) 0x8b;
+            out[2] = Deflater.DEFLATED;
+            int length = 10;
+            deflater.setInput(data);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            if (length + TRAILER > out.length) {
+                out = Arrays.copyOf(out, length + TRAILER);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            writeIntLE(out, length, (int) crc.getValue());
+            writeIntLE(out, length + 4, data.length);
+            length += TRAILER;
+            if (length >= data.length) {
+                return null;
+            }
+            requestBytesSaved.addAndGet(data.length - length);
+            return length == out.length ? out : Arrays.copyOf(out, length);
+        } finally {
+            deflater.reset();
+            if (!deflaters.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Decompresses a whole gzip response body.
+     *
+     * @param data The compressed body.
+     * @return The body.
+     * @throws DataFormatException if the body is not valid gzip.
+     */
+    static byte[] gunzip(byte[] data) throws DataFormatException {
+        GzipDecoder decoder = new GzipDecoder(data.length >= TRAILER ? readIntLE(data, data.length - 4) : 0);
+        try {
+            decoder.update(ByteBuffer.wrap(data));
+            return decoder.finish();
+        } finally {
+            decoder.release();
+        }
+    }
+
+    /**
+     * Writes a little endian int.
+     *
+     * @param out    The output.
+     * @param offset Offset of the int.
+     * @param value  The int.
+     */
+    private static void writeIntLE(byte[] out, int offset, int value) {
+        out[offset] = (byte) value;
+        out[offset + 1] = (byte) (value >> 8);
+        out[offset + 2] = (byte) (value >> 16);
+        out[offset + 3] = (byte) (value >> 24);
+    }
+
+    /**
+     * Reads a little endian int.
+     *
+     * @param data   The input.
+     * @param offset Offset of the int.
+     * @return The int.
+     */
+    private static int readIntLE(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8)
+                | ((data[offset + 2] & 0xFF) << 16) | ((data[offset + 3] & 0xFF) << 24);
+    }
+
+    /**
+     * Streaming decoder of a gzip body, fed with chunks as they arrive, with a pooled inflater.
+     * A decoder must be released once done.
+     */
+    static final class GzipDecoder {
+
+        /**
+         * Header, then trailer bytes being collected.
+         */
+        private final byte[] pending = new byte[TRAILER + 10];
+        /**
+         * Number of bytes in pending.
+         */
+        private int pendingLength;
+        /**
+         * Number of header bytes still to skip, for the optional header fields.
+         */
+        private int skip;
+        /**
+         * Flags of the optional header fields still to read.
+         */
+        private int flags = -1;
+        /**
+         * CRC32 of the decompressed data.
+         */
+        private final CRC32 crc = new CRC32();
+        /**
+         * The inflater, null once released.
+         */
+        private Inflater inflater;
+        /**
+         * If the decompressed data is written to buffers of the {@link BufferPool}.
+         */
+        private final boolean pooled;
+        /**
+         * The decompressed data.
+         */
+        private byte[] out;
+        /**
+         * Size of the decompressed data.
+         */
+        private int length;
+        /**
+         * Size of the compressed data received.
+         */
+        private long received;
+
+        /**
+         * Instantiate a decoder.
+         *
+         * @param sizeHint Expected size of the decompressed data, 0 if unknown.
+         */
+        GzipDecoder(int sizeHint) {
+            this(sizeHint, false);
+        }
+
+        /**
+         * Instantiate a decoder, writing to buffers of the {@link BufferPool} if pooled.
+         *
+         * @param sizeHint Expected size of the decompressed data, 0 if unknown.
+         * @param pooled   If the decompressed data is written to pooled buffers.
+         */
+        GzipDecoder(int sizeHint, boolean pooled) {
+            this.pooled = pooled;
+            int size = sizeHint > 0 && sizeHint < (64 << 20) ? sizeHint : 8192;
+            out = pooled ? BufferPool.acquire(size) : new byte[size];
+            inflater = inflaters.poll();
+            if (inflater == null) {
+                inflater = new Inflater(true);
+            }
+        }
+
+        /**
+         * Decompresses a chunk of the body.
+         *
+         * @param chunk The chunk.
+         * @throws DataFormatException if the body is not valid gzip.
+         */
+        void update(ByteBuffer chunk) throws DataFormatException {
+            received += chunk.remaining();
+            while (chunk.hasRemaining()) {
+                if (flags != 0 || skip > 0) {
+                    readHeader(chunk);
+                } else if (!inflater.finished()) {
+                    inflate(chunk);
+                } else {
+                    int count = Math.min(chunk.remaining(), TRAILER - pendingLength);
+                    if (count == 0) {
+                        return;
+                    }
+                    chunk.get(pending, pendingLength, count);
+                    pendingLength += count;
+                }
+            }
+        }
+
+        /**
+         * Ends the body, checking its trailer.
+         *
+         * @return The decompressed data, in a buffer longer than {@link #getLength()} if pooled.
+         * @throws DataFormatException if the body is incomplete or corrupted.
+         */
+        byte[] finish() throws DataFormatException {
+            if (!inflater.finished() || pendingLength < TRAILER) {
+                throw new DataFormatException("Truncated gzip body");
+            }
+            if (readIntLE(pending, 0) != (int) crc.getValue() || readIntLE(pending, 4) != length) {
+                throw new DataFormatException("Corrupted gzip body");
+            }
+            compressedResponses.incrementAndGet();
+            responseBytesSaved.addAndGet(length - received);
+            return pooled || length == out.length ? out : Arrays.copyOf(out, length);
+        }
+
+        /**
+         * Returns the size of the decompressed data.
+         *
+         * @return The size.
+         */
+        int getLength() {
+            return length;
+        }
+
+        /**
+         * Gives the pooled buffer back to the pool, once the body failed.
+         */
+        void discard() {
+            if (pooled) {
+                BufferPool.release(out);
+            }
+            out = null;
+        }
+
+        /**
+         * Returns the inflater to the pool.
+         */
+        void release() {
+            if (inflater == null) {
+                return;
+            }
+            inflater.reset();
+            if (!inflaters.offer(inflater)) {
+                inflater.end();
+            }
+            inflater = null;
+        }
+
+        /**
+         * Reads the header, of 10 bytes and optional fields.
+         *
+         * @param chunk The chunk.
+         * @throws DataFormatException if it is not a gzip header.
+         */
+        private void readHeader(ByteBuffer chunk) throws DataFormatException {
+            if (flags < 0) {
+                int count = Math.min(chunk.remaining(), 10 - pendingLength);
+                chunk.get(pending, pendingLength, count);
+                pendingLength += count;
+                if (pendingLength < 10) {
+                    return;
+                }
+                if ((pending[0] & 0xFF) != 0x1f || (pending[1] & 0xFF) != 0x8b || pending[2] != Deflater.DEFLATED) {
+                    throw new DataFormatException("Not in gzip format");
+                }
+                flags = pending[3] & 0x1E;
+                pendingLength = 0;
+                return;
+            }
+            if (skip > 0) {
+                int count = Math.min(chunk.remaining(), skip);
+                chunk.position(chunk.position() + count);
+                skip -= count;
+            } else if ((flags & 0x04) != 0) {
+                // extra field, its size first
+                pending[pendingLength++] = chunk.get();
+                if (pendingLength == 2) {
+                    skip = (pending[0] & 0xFF) | ((pending[1] & 0xFF) << 8);
+                    pendingLength = 0;
+                    flags &= ~0x04;
+                }
+            } else if ((flags & 0x08) != 0) {
+                // file name, zero terminated
+                if (chunk.get() == 0) {
+                    flags &= ~0x08;
+                }
+            } else if ((flags & 0x10) != 0) {
+                // comment, zero terminated
+                if (chunk.get() == 0) {
+                    flags &= ~0x10;
+                }
+            } else {
+                // header CRC16
+                skip = 2;
+                flags &= ~0x02;
+            }
+        }
+
+        /**
+         * Inflates the compressed data of a chunk.
+         *
+         * @param chunk The chunk.
+         * @throws DataFormatException if the data is corrupted.
+         */
+        private void inflate(ByteBuffer chunk) throws DataFormatException {
+            int start = chunk.position();
+            byte[] input;
+            int offset;
+            int count = chunk.remaining();
+            if (chunk.hasArray()) {
+                input = chunk.array();
+                offset = chunk.arrayOffset() + start;
+            } else {
+                input = new byte[count];
+                chunk.get(input);
+                chunk.position(start);
+                offset = 0;
+            }
+            inflater.setInput(input, offset, count);
+            while (!inflater.finished() && !inflater.needsInput()) {
+                if (length == out.length) {
+                    out = pooled ? BufferPool.grow(out, length, out.length * 2) : Arrays.copyOf(out, out.length * 2);
+                }
+                int inflated = inflater.inflate(out, length, out.length - length);
+                crc.update(out, length, inflated);
+                length += inflated;
+                if (inflated == 0 && inflater.needsDictionary()) {
+                    throw new DataFormatException("Unexpected dictionary");
+                }
+            }
+            chunk.position(start + count - inflater.getRemaining());
+        }
+
+    }
+
+}
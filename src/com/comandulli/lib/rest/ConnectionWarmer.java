@@ -0,0 +1,268 @@
+package com.comandulli.lib.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiConsumer;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * Warms up connections to servers ahead of their first request, such as right after
+ * {@link NetworkRequestQueue#getNetworkState(android.content.Context)}, so the first request does not pay
+ * the DNS lookup, the TCP connect and the TLS handshake.
+ * <p>
+ * The host of each server is resolved and kept in a DNS cache for {@link #setDnsTtl(long)}, then a HEAD request
+ * opens a connection that the transport keeps for the requests that follow: in the http client's pool with the
+ * {@link HttpClientTransport}, or in the platform's keep-alive pool that volley's {@link com.android.volley.toolbox.HurlStack}
+ * connects through otherwise. The TLS session negotiated is kept in the client session cache of the transport's
+ * SSL context, shared by all its connections, so later connections resume it with an abbreviated handshake.
+ * <p>
+ * Warm-ups are best effort, failures are ignored and the first request connects as usual.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class ConnectionWarmer {
+
+    /**
+     * Default time a DNS lookup is cached, in milliseconds.
+     */
+    public static final long DEFAULT_DNS_TTL = 60000;
+    /**
+     * Scheme of servers given without one.
+     */
+    private static final String DEFAULT_SCHEME = "https://";
+
+    /**
+     * DNS lookups by host.
+     */
+    private static final Map<String, Lookup> lookups = new HashMap<>();
+    /**
+     * Time a DNS lookup is cached, in milliseconds.
+     */
+    private static volatile long dnsTtl = DEFAULT_DNS_TTL;
+    /**
+     * Time a TLS session is kept for resumption, in seconds, 0 for the platform's default.
+     */
+    private static volatile int sessionTimeout;
+
+    private ConnectionWarmer() {
+    }
+
+    /**
+     * Sets the time a DNS lookup is cached.
+     *
+     * @param ttl Time to live in milliseconds, 0 to not cache lookups.
+     */
+    public static void setDnsTtl(long ttl) {
+        dnsTtl = ttl;
+    }
+
+    /**
+     * Returns the time a DNS lookup is cached.
+     *
+     * @return Time to live in milliseconds.
+     */
+    public static long getDnsTtl() {
+        return dnsTtl;
+    }
+
+    /**
+     * Sets the time a TLS session is kept for resumption, applied to the SSL context of the transport on warm-up.
+     *
+     * @param seconds Timeout in seconds, 0 for the platform's default.
+     */
+    public static void setSessionTimeout(int seconds) {
+        sessionTimeout = seconds;
+    }
+
+    /**
+     * Returns the time a TLS session is kept for resumption.
+     *
+     * @return Timeout in seconds, 0 for the platform's default.
+     */
+    public static int getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /**
+     * Resolves a host, from the DNS cache if looked up within its time to live.
+     * Can be plugged into clients taking their own resolver.
+     *
+     * @param host The host.
+     * @return Addresses of the host.
+     * @throws UnknownHostException if the host can not be resolved.
+     */
+    public static InetAddress[] resolve(String host) throws UnknownHostException {
+        long now = System.currentTimeMillis();
+        synchronized (lookups) {
+            Lookup lookup = lookups.get(host);
+            if (lookup != null && lookup.expires > now) {
+                return lookup.addresses.clone();
+            }
+        }
+        InetAddress[] addresses = InetAddress.getAllByName(host);
+        long ttl = dnsTtl;
+        if (ttl > 0) {
+            synchronized (lookups) {
+                lookups.put(host, new Lookup(addresses, now + ttl));
+            }
+        }
+        return addresses.clone();
+    }
+
+    /**
+     * Clears the DNS cache.
+     */
+    public static void clearDnsCache() {
+        synchronized (lookups) {
+            lookups.clear();
+        }
+    }
+
+    /**
+     * Warms up the connection to the default server path {@see RestRequest#setDefaultServerPath(String)}.
+     *
+     * @return The future completing once warmed up.
+     */
+    public static CompletableFuture<Void> warmUp() {
+        return warmUp(RestRequest.getDefaultServerPath());
+    }
+
+    /**
+     * Warms up the connections to servers, through the current transport.
+     *
+     * @param servers Urls or hosts of the servers, hosts are connected over https.
+     * @return The future completing once all are warmed up.
+     */
+    public static CompletableFuture<Void> warmUp(String... servers) {
+        RequestTransport transport = NetworkRequestQueue.getTransport();
+        CompletableFuture<?>[] warmUps = new CompletableFuture<?>[servers.length];
+        for (int i = 0; i < servers.length; i++) {
+            String server = servers[i];
+            warmUps[i] = warm(transport, server.contains("://") ? server : DEFAULT_SCHEME + server);
+        }
+        return CompletableFuture.allOf(warmUps);
+    }
+
+    /**
+     * Warms up the connection to a server, resolving its host then sending a HEAD request.
+     *
+     * @param transport The transport, null if none set yet.
+     * @param url       Url of the server.
+     * @return The future completing once warmed up.
+     */
+    private static CompletableFuture<Void> warm(final RequestTransport transport, final String url) {
+        final CompletableFuture<Void> warmed = new CompletableFuture<>();
+        Warmers.INSTANCE.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    String host = URI.create(url).getHost();
+                    if (host == null) {
+                        warmed.complete(null);
+                        return;
+                    }
+                    resolve(host);
+                    if (transport instanceof HttpClientTransport) {
+                        HttpClientTransport client = (HttpClientTransport) transport;
+                        configure(client.getClient().sslContext());
+                        client.warm(url).whenComplete(new BiConsumer<Object, Throwable>() {
+                            @Override
+                            public void accept(Object response, Throwable throwable) {
+                                warmed.complete(null);
+                            }
+                        });
+                        return;
+                    }
+                    configure(SSLContext.getDefault());
+                    head(url);
+                } catch (IOException | IllegalArgumentException | NoSuchAlgorithmException e) {
+                    // best effort, the first request connects as usual
+                }
+                warmed.complete(null);
+            }
+        });
+        return warmed;
+    }
+
+    /**
+     * Applies the session timeout to the client sessions of an SSL context.
+     *
+     * @param context The SSL context.
+     */
+    private static void configure(SSLContext context) {
+        int timeout = sessionTimeout;
+        if (timeout > 0) {
+            SSLSessionContext sessions = context.getClientSessionContext();
+            if (sessions != null) {
+                sessions.setSessionTimeout(timeout);
+            }
+        }
+    }
+
+    /**
+     * Sends a HEAD request through the platform's connections, leaving its connection in the keep-alive pool.
+     *
+     * @param url Url of the server.
+     * @throws IOException if the request fails.
+     */
+    private static void head(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("HEAD");
+        connection.setConnectTimeout(HttpClientTransport.DEFAULT_TIMEOUT_MS);
+        connection.setReadTimeout(HttpClientTransport.DEFAULT_TIMEOUT_MS);
+        InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            // closing instead of disconnecting keeps the connection alive
+            in.close();
+        }
+    }
+
+    /**
+     * A cached DNS lookup.
+     */
+    private static final class Lookup {
+
+        private final InetAddress[] addresses;
+        private final long expires;
+
+        private Lookup(InetAddress[] addresses, long expires) {
+            this.addresses = addresses;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Holder of the threads running warm-ups, created on first use.
+     */
+    private static final class Warmers {
+
+        /**
+         * Daemon threads running warm-ups, which block on DNS lookups.
+         */
+        private static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "RestConnectionWarmer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    }
+
+}
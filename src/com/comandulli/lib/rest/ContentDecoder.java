@@ -0,0 +1,27 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONException;
+
+/**
+ * Decodes the content of a response into an object of type T, reading it straight from
+ * the response bytes through a {@link ContentReader}.
+ * <p>
+ * Decoders are registered once per model class in {@link ContentDecoders}, either written by hand,
+ * so no reflection is used while decoding, or derived from the fields of the class.
+ *
+ * @param <T> Type of the decoded object.
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public interface ContentDecoder<T> {
+
+    /**
+     * Decodes the next value of the reader.
+     *
+     * @param reader Reader positioned at the value.
+     * @return The decoded object.
+     * @throws JSONException if the value can not be decoded.
+     */
+    T decode(ContentReader reader) throws JSONException;
+
+}
@@ -0,0 +1,239 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of content decoders by class, and common decoders.
+ * <p>
+ * Register a decoder for each model class once, usually at startup,
+ * and use {@link ReturnCallback#ReturnCallback(Class)} to have responses decoded into it.
+ * A decoder can be written by hand, or derived from the fields of the class through {@link #derive(Class)},
+ * at the cost of reflection on every decode. Enums are decoded from the names of their constants
+ * without registering them.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class ContentDecoders {
+
+    /**
+     * Registered decoders.
+     */
+    private static final ConcurrentMap<Class<?>, ContentDecoder<?>> decoders = new ConcurrentHashMap<>();
+
+    /**
+     * Decodes a string.
+     */
+    public static final ContentDecoder<String> STRING = new ContentDecoder<String>() {
+        @Override
+        public String decode(ContentReader reader) throws JSONException {
+            if (reader.peek() == ContentReader.Token.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            return reader.nextString();
+        }
+    };
+    /**
+     * Decodes an integer.
+     */
+    public static final ContentDecoder<Integer> INTEGER = new ContentDecoder<Integer>() {
+        @Override
+        public Integer decode(ContentReader reader) throws JSONException {
+            if (reader.peek() == ContentReader.Token.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            return reader.nextInt();
+        }
+    };
+    /**
+     * Decodes a long.
+     */
+    public static final ContentDecoder<Long> LONG = new ContentDecoder<Long>() {
+        @Override
+        public Long decode(ContentReader reader) throws JSONException {
+            if (reader.peek() == ContentReader.Token.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            return reader.nextLong();
+        }
+    };
+    /**
+     * Decodes a double.
+     */
+    public static final ContentDecoder<Double> DOUBLE = new ContentDecoder<Double>() {
+        @Override
+        public Double decode(ContentReader reader) throws JSONException {
+            if (reader.peek() == ContentReader.Token.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            return reader.nextDouble();
+        }
+    };
+    /**
+     * Decodes a boolean.
+     */
+    public static final ContentDecoder<Boolean> BOOLEAN = new ContentDecoder<Boolean>() {
+        @Override
+        public Boolean decode(ContentReader reader) throws JSONException {
+            if (reader.peek() == ContentReader.Token.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            return reader.nextBoolean();
+        }
+    };
+
+    static {
+        register(String.class, STRING);
+        register(Integer.class, INTEGER);
+        register(Long.class, LONG);
+        register(Double.class, DOUBLE);
+        register(Boolean.class, BOOLEAN);
+    }
+
+    private ContentDecoders() {
+    }
+
+    /**
+     * Registers the decoder of a class, replacing any previous one.
+     *
+     * @param type    The class.
+     * @param decoder Its decoder.
+     * @param <T>     Type of the class.
+     */
+    public static <T> void register(Class<T> type, ContentDecoder<T> decoder) {
+        decoders.put(type, decoder);
+    }
+
+    /**
+     * Registers a decoder derived from the fields of a class, unless one is already registered, and returns it.
+     * Model classes its fields refer to are derived as well when first decoded, unless registered.
+     * <p>
+     * The fields are looked up once, but each decode creates the object and sets its fields through reflection,
+     * so a derived decoder is slower than one written by hand, see the reflectiveDecoder benchmark.
+     * Register decoders written by hand for the classes of the busiest endpoints.
+     *
+     * @param type The class, with a constructor without arguments.
+     * @param <T>  Type of the class.
+     * @return The decoder registered for the class.
+     * @throws IllegalArgumentException if the class can not be instantiated without arguments.
+     */
+    public static <T> ContentDecoder<T> derive(Class<T> type) {
+        ContentDecoder<T> decoder = derived(type);
+        if (decoder == null) {
+            throw new IllegalArgumentException("Can not derive a decoder for " + type.getName());
+        }
+        return decoder;
+    }
+
+    /**
+     * Returns the decoder registered for a class, or for an enum one decoding the names of its constants.
+     *
+     * @param type The class.
+     * @param <T>  Type of the class.
+     * @return The decoder, null if none is registered.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ContentDecoder<T> get(Class<T> type) {
+        ContentDecoder<?> decoder = decoders.get(type);
+        if (decoder == null && type.isEnum()) {
+            decoder = putIfAbsent(type, ReflectiveDecoder.enumOf(type));
+        }
+        return (ContentDecoder<T>) decoder;
+    }
+
+    /**
+     * Returns the decoder registered for a class, deriving and registering one from its fields if none is.
+     *
+     * @param type The class.
+     * @param <T>  Type of the class.
+     * @return The decoder, null if none is registered and the class can not be instantiated without arguments.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> ContentDecoder<T> derived(Class<T> type) {
+        ContentDecoder<?> decoder = get(type);
+        if (decoder == null) {
+            decoder = ReflectiveDecoder.of(type);
+            if (decoder != null) {
+                decoder = putIfAbsent(type, decoder);
+            }
+        }
+        return (ContentDecoder<T>) decoder;
+    }
+
+    /**
+     * Registers a decoder unless one is already registered for its class.
+     *
+     * @param type    The class.
+     * @param decoder The decoder.
+     * @return The decoder registered for the class.
+     */
+    private static ContentDecoder<?> putIfAbsent(Class<?> type, ContentDecoder<?> decoder) {
+        ContentDecoder<?> registered = decoders.putIfAbsent(type, decoder);
+        return registered != null ? registered : decoder;
+    }
+
+    /**
+     * Returns a decoder of JSON arrays into lists.
+     *
+     * @param element Decoder of each element.
+     * @param <T>     Type of the elements.
+     * @return The list decoder.
+     */
+    public static <T> ContentDecoder<List<T>> listOf(final ContentDecoder<T> element) {
+        return new ContentDecoder<List<T>>() {
+            @Override
+            public List<T> decode(ContentReader reader) throws JSONException {
+                if (reader.peek() == ContentReader.Token.NULL) {
+                    reader.nextNull();
+                    return null;
+                }
+                List<T> list = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    list.add(element.decode(reader));
+                }
+                reader.endArray();
+                return list;
+            }
+        };
+    }
+
+    /**
+     * Returns a decoder that reads a single property of an object, skipping all others.
+     * Useful when the content wraps the value, such as {"Identification":1}.
+     *
+     * @param name  Name of the property.
+     * @param value Decoder of the property value.
+     * @param <T>   Type of the value.
+     * @return The property decoder, that decodes null if the property is missing.
+     */
+    public static <T> ContentDecoder<T> property(final String name, final ContentDecoder<T> value) {
+        return new ContentDecoder<T>() {
+            @Override
+            public T decode(ContentReader reader) throws JSONException {
+                T result = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (name.equals(reader.nextName())) {
+                        result = value.decode(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                return result;
+            }
+        };
+    }
+
+}
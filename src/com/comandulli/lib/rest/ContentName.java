@@ -0,0 +1,26 @@
+package com.comandulli.lib.rest;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Name of the property a field is decoded from, when it differs from the name of the field,
+ * such as a field {@code id} decoded from {"Identification":1}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface ContentName {
+
+    /**
+     * Returns the name of the property.
+     *
+     * @return The name.
+     */
+    String value();
+
+}
@@ -0,0 +1,631 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONException;
+
+/**
+ * Pull reader over JSON in UTF-8 bytes, reading one token at a time without building a JSON tree.
+ * <p>
+ * Used to read the content of a response straight from its bytes, see {@link RequestResponse#getContentReader()}
+ * and {@link ContentDecoder}. The methods follow the same model as android's JsonReader.
+ * Readers of other formats extend this one, see {@link EnvelopeCodec#newReader(byte[], int, int)}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class ContentReader {
+
+    /**
+     * Tokens of a JSON document.
+     */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    /**
+     * Buffer with the document.
+     */
+    private final byte[] data;
+    /**
+     * End of the document, exclusive.
+     */
+    private final int limit;
+    /**
+     * Current position.
+     */
+    private int position;
+    /**
+     * Scopes of the current nesting.
+     */
+    private int[] stack = new int[16];
+    /**
+     * Depth of the current nesting.
+     */
+    private int depth;
+    /**
+     * Next token, if already peeked.
+     */
+    private Token peeked;
+
+    /**
+     * Instantiate a reader over a buffer.
+     *
+     * @param data   Buffer with the document in UTF-8.
+     * @param offset Start of the document in the buffer.
+     * @param length Length of the document.
+     */
+    public ContentReader(byte[] data, int offset, int length) {
+        this.data = data;
+        this.position = offset;
+        this.limit = offset + length;
+        this.stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Returns the next token without consuming it.
+     *
+     * @return The next token.
+     * @throws JSONException if the document is malformed.
+     */
+    public Token peek() throws JSONException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int scope = stack[depth - 1];
+        int c;
+        switch (scope) {
+            case EMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                if (peekChar() == ']') {
+                    position++;
+                    return peeked = Token.END_ARRAY;
+                }
+                break;
+            case NONEMPTY_ARRAY:
+                c = nextChar();
+                if (c == ']') {
+                    return peeked = Token.END_ARRAY;
+                } else if (c != ',') {
+                    throw syntaxError("Expected ',' or ']'");
+                }
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                stack[depth - 1] = DANGLING_NAME;
+                if (scope == NONEMPTY_OBJECT) {
+                    c = nextChar();
+                    if (c == '}') {
+                        return peeked = Token.END_OBJECT;
+                    } else if (c != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                } else if (peekChar() == '}') {
+                    position++;
+                    return peeked = Token.END_OBJECT;
+                }
+                if (nextChar() != '"') {
+                    throw syntaxError("Expected a name");
+                }
+                return peeked = Token.NAME;
+            case DANGLING_NAME:
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                if (nextChar() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                break;
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                break;
+            default:
+                if (peekChar() == -1) {
+                    return peeked = Token.END_DOCUMENT;
+                }
+                throw syntaxError("Unexpected data after document");
+        }
+        c = peekChar();
+        switch (c) {
+            case '{':
+                position++;
+                return peeked = Token.BEGIN_OBJECT;
+            case '[':
+                position++;
+                return peeked = Token.BEGIN_ARRAY;
+            case '"':
+                position++;
+                return peeked = Token.STRING;
+            case 't':
+            case 'f':
+                return peeked = Token.BOOLEAN;
+            case 'n':
+                return peeked = Token.NULL;
+            case -1:
+                throw syntaxError("Unexpected end of document");
+            default:
+                return peeked = Token.NUMBER;
+        }
+    }
+
+    /**
+     * Consumes the beginning of an object.
+     *
+     * @throws JSONException if the next token is not the beginning of an object.
+     */
+    public void beginObject() throws JSONException {
+        consume(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    /**
+     * Consumes the end of an object.
+     *
+     * @throws JSONException if the next token is not the end of an object.
+     */
+    public void endObject() throws JSONException {
+        consume(Token.END_OBJECT);
+        depth--;
+    }
+
+    /**
+     * Checks that the document was read to its end.
+     *
+     * @throws JSONException if data follows the document.
+     */
+    public void endDocument() throws JSONException {
+        consume(Token.END_DOCUMENT);
+    }
+
+    /**
+     * Consumes the beginning of an array.
+     *
+     * @throws JSONException if the next token is not the beginning of an array.
+     */
+    public void beginArray() throws JSONException {
+        consume(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    /**
+     * Consumes the end of an array.
+     *
+     * @throws JSONException if the next token is not the end of an array.
+     */
+    public void endArray() throws JSONException {
+        consume(Token.END_ARRAY);
+        depth--;
+    }
+
+    /**
+     * Checks if the current object or array has another element.
+     *
+     * @return If there is another element.
+     * @throws JSONException if the document is malformed.
+     */
+    public boolean hasNext() throws JSONException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    /**
+     * Consumes the next property name.
+     *
+     * @return The name.
+     * @throws JSONException if the next token is not a name.
+     */
+    public String nextName() throws JSONException {
+        consume(Token.NAME);
+        return readString();
+    }
+
+    /**
+     * Consumes the next value as a string, numbers are returned as written.
+     *
+     * @return The string.
+     * @throws JSONException if the next token is not a string or a number.
+     */
+    public String nextString() throws JSONException {
+        Token token = peek();
+        if (token == Token.STRING) {
+            peeked = null;
+            return readString();
+        } else if (token == Token.NUMBER) {
+            peeked = null;
+            int start = position;
+            skipLiteral();
+            return new String(data, start, position - start, EnvelopeParser.UTF_8);
+        }
+        throw syntaxError("Expected a string but was " + token);
+    }
+
+    /**
+     * Consumes the next value as an int, strings holding numbers are accepted.
+     *
+     * @return The int value.
+     * @throws JSONException if the next token is not a number.
+     */
+    public int nextInt() throws JSONException {
+        long value = nextLong();
+        if (value != (int) value) {
+            throw syntaxError("Number out of int range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Consumes the next value as a long, strings holding numbers are accepted.
+     *
+     * @return The long value.
+     * @throws JSONException if the next token is not a number.
+     */
+    public long nextLong() throws JSONException {
+        if (peek() == Token.NUMBER) {
+            peeked = null;
+            int start = position;
+            skipLiteral();
+            long value = 0;
+            int i = start;
+            boolean negative = data[i] == '-';
+            if (negative) {
+                i++;
+            }
+            if (i < position && position - i <= 18) {
+                for (; i < position; i++) {
+                    int digit = data[i] - '0';
+                    if (digit < 0 || digit > 9) {
+                        break;
+                    }
+                    value = value * 10 + digit;
+                }
+                if (i == position) {
+                    return negative ? -value : value;
+                }
+            }
+            return toLong(new String(data, start, position - start, EnvelopeParser.UTF_8));
+        }
+        return toLong(nextString());
+    }
+
+    /**
+     * Consumes the next value as a double, strings holding numbers are accepted.
+     *
+     * @return The double value.
+     * @throws JSONException if the next token is not a number.
+     */
+    public double nextDouble() throws JSONException {
+        String text = nextString();
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected a number but was " + text);
+        }
+    }
+
+    /**
+     * Consumes the next value as a boolean.
+     *
+     * @return The boolean value.
+     * @throws JSONException if the next token is not a boolean.
+     */
+    public boolean nextBoolean() throws JSONException {
+        consume(Token.BOOLEAN);
+        if (matchLiteral("true")) {
+            return true;
+        } else if (matchLiteral("false")) {
+            return false;
+        }
+        throw syntaxError("Expected a boolean");
+    }
+
+    /**
+     * Consumes the next value as a null.
+     *
+     * @throws JSONException if the next token is not a null.
+     */
+    public void nextNull() throws JSONException {
+        consume(Token.NULL);
+        if (!matchLiteral("null")) {
+            throw syntaxError("Expected null");
+        }
+    }
+
+    /**
+     * Skips the next value, including any nested objects or arrays.
+     *
+     * @throws JSONException if the document is malformed.
+     */
+    public void skipValue() throws JSONException {
+        skipValueFrom();
+    }
+
+    /**
+     * Skips the next value, returning where it starts.
+     *
+     * @return Start of the value in the buffer.
+     * @throws JSONException if the document is malformed.
+     */
+    int skipValueFrom() throws JSONException {
+        Token token = peek();
+        peeked = null;
+        switch (token) {
+            case BEGIN_OBJECT:
+            case BEGIN_ARRAY:
+                int start = position - 1;
+                int nesting = 1;
+                while (position < limit) {
+                    byte b = data[position++];
+                    if (b == '"') {
+                        skipString();
+                    } else if (b == '{' || b == '[') {
+                        nesting++;
+                    } else if (b == '}' || b == ']') {
+                        if (--nesting == 0) {
+                            return start;
+                        }
+                    }
+                }
+                throw syntaxError("Unterminated value");
+            case NAME:
+            case STRING:
+                start = position - 1;
+                skipString();
+                return start;
+            case NUMBER:
+            case BOOLEAN:
+            case NULL:
+                start = position;
+                skipLiteral();
+                return start;
+            default:
+                throw syntaxError("Expected a value but was " + token);
+        }
+    }
+
+    /**
+     * Returns the buffer with the document.
+     *
+     * @return The buffer.
+     */
+    byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Returns the current position in the buffer.
+     *
+     * @return The current position.
+     */
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns a value already skipped as text.
+     *
+     * @param start Start of the value in the buffer.
+     * @param end   End of the value in the buffer, exclusive.
+     * @return The value as written in the document.
+     * @throws JSONException if the value is malformed.
+     */
+    String textOf(int start, int end) throws JSONException {
+        return new String(data, start, end - start, EnvelopeParser.UTF_8);
+    }
+
+    /**
+     * Consumes the next property name if it is equal to one of the given keys, without allocating it.
+     *
+     * @param keys Keys in UTF-8.
+     * @return Index of the matching key, -1 if none matches.
+     * @throws JSONException if the next token is not a name.
+     */
+    int nextNameIndex(byte[][] keys) throws JSONException {
+        consume(Token.NAME);
+        int start = position;
+        int end = skipString();
+        for (int k = 0; k < keys.length; k++) {
+            byte[] key = keys[k];
+            if (end - start == key.length) {
+                int i = 0;
+                while (i < key.length && data[start + i] == key[i]) {
+                    i++;
+                }
+                if (i == key.length) {
+                    return k;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the rest of a string whose opening quote has already been consumed.
+     *
+     * @return The unescaped string.
+     * @throws JSONException if the string is malformed.
+     */
+    private String readString() throws JSONException {
+        int start = position;
+        while (position < limit) {
+            byte b = data[position];
+            if (b == '"') {
+                position++;
+                return new String(data, start, position - 1 - start, EnvelopeParser.UTF_8);
+            } else if (b == '\\') {
+                break;
+            }
+            position++;
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append(new String(data, start, position - start, EnvelopeParser.UTF_8));
+        while (position < limit) {
+            byte b = data[position++];
+            if (b == '"') {
+                return builder.toString();
+            } else if (b == '\\') {
+                if (position >= limit) {
+                    break;
+                }
+                byte escaped = data[position++];
+                switch (escaped) {
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > limit) {
+                            throw syntaxError("Unterminated escape sequence");
+                        }
+                        int value = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(data[position++], 16);
+                            if (digit < 0) {
+                                throw syntaxError("Invalid escape sequence");
+                            }
+                            value = (value << 4) | digit;
+                        }
+                        builder.append((char) value);
+                        break;
+                    default:
+                        builder.append((char) escaped);
+                        break;
+                }
+            } else {
+                int runStart = position - 1;
+                while (position < limit && data[position] != '"' && data[position] != '\\') {
+                    position++;
+                }
+                builder.append(new String(data, runStart, position - runStart, EnvelopeParser.UTF_8));
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    /**
+     * Skips the rest of a string whose opening quote has already been consumed.
+     *
+     * @return The position of the closing quote.
+     * @throws JSONException if the string is not terminated.
+     */
+    private int skipString() throws JSONException {
+        while (position < limit) {
+            byte b = data[position++];
+            if (b == '"') {
+                return position - 1;
+            } else if (b == '\\') {
+                position++;
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    /**
+     * Skips a number or literal.
+     *
+     * @throws JSONException if there is no literal.
+     */
+    private void skipLiteral() throws JSONException {
+        int start = position;
+        while (position < limit) {
+            byte b = data[position];
+            if (b == ',' || b == '}' || b == ']' || b == ':' || isWhitespace(b)) {
+                break;
+            }
+            position++;
+        }
+        if (position == start) {
+            throw syntaxError("Expected a value");
+        }
+    }
+
+    /**
+     * Consumes a literal if it is the next one.
+     *
+     * @param literal The literal.
+     * @return If it was consumed.
+     * @throws JSONException if there is no literal.
+     */
+    private boolean matchLiteral(String literal) throws JSONException {
+        int start = position;
+        skipLiteral();
+        if (position - start != literal.length()) {
+            position = start;
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (data[start + i] != literal.charAt(i)) {
+                position = start;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long toLong(String text) throws JSONException {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(text);
+            } catch (NumberFormatException ignored) {
+                throw syntaxError("Expected a number but was " + text);
+            }
+        }
+    }
+
+    private void consume(Token expected) throws JSONException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) {
+            int[] grown = new int[depth * 2];
+            System.arraycopy(stack, 0, grown, 0, depth);
+            stack = grown;
+        }
+        stack[depth++] = scope;
+    }
+
+    private int nextChar() {
+        int c = peekChar();
+        if (c != -1) {
+            position++;
+        }
+        return c;
+    }
+
+    private int peekChar() {
+        while (position < limit && isWhitespace(data[position])) {
+            position++;
+        }
+        return position < limit ? data[position] : -1;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at " + position);
+    }
+
+}
@@ -0,0 +1,238 @@
+package com.comandulli.lib.rest;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Callback that delivers every result to the wrapped callback on an executor, such as android's main thread.
+ * <p>
+ * The content of a {@link ReturnCallback} with a decoder is decoded before the hop, on the thread the response
+ * arrived on. A pooled response is held until the wrapped callback returns. Results rejected by the executor
+ * are delivered right away.
+ * <p>
+ * Results of a canceled request {@see RequestHandle} are dropped, without decoding them, both before the hop
+ * and when their turn on the executor comes, and the wrapped callback is told of the cancellation instead.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class DeliveryCallback extends ForwardingCallback {
+
+    /**
+     * Executor of the wrapped callback.
+     */
+    private final Executor executor;
+    /**
+     * Callback of the request decoding the content, null if none.
+     */
+    private final ReturnCallback<?> returnCallback;
+    /**
+     * Handle of the request, null if not cancelable.
+     */
+    private final RequestHandle handle;
+
+    /**
+     * Instantiate a callback delivering the results of a request.
+     *
+     * @param delegate The callback to deliver to, may be null.
+     * @param target   The callback given to the request, whose content is decoded ahead of delivery, may be null.
+     * @param executor The executor, null to deliver right away.
+     * @param handle   Handle of the request, null if not cancelable.
+     */
+    DeliveryCallback(RequestCallback delegate, RequestCallback target, Executor executor, RequestHandle handle) {
+        super(delegate);
+        this.executor = executor != null ? executor : CallbackExecutors.DIRECT;
+        this.returnCallback = target instanceof ReturnCallback ? (ReturnCallback<?>) target : null;
+        this.handle = handle;
+    }
+
+    /**
+     * Wraps a callback to be delivered on an executor.
+     *
+     * @param delegate The callback to deliver to, may be null.
+     * @param target   The callback given to the request, whose content is decoded ahead of delivery, may be null.
+     * @param executor The executor, null or {@link CallbackExecutors#DIRECT} to deliver right away.
+     * @return The callback to make the request with, the same callback if delivered right away.
+     */
+    static RequestCallback wrap(RequestCallback delegate, RequestCallback target, Executor executor) {
+        if (delegate == null || executor == null || executor == CallbackExecutors.DIRECT) {
+            return delegate;
+        }
+        return new DeliveryCallback(delegate, target, executor, null);
+    }
+
+    @Override
+    protected boolean accept() {
+        return handle == null || handle.complete();
+    }
+
+    /**
+     * Returns if the request is done, such as canceled, so its results are dropped.
+     *
+     * @return If done.
+     */
+    private boolean isDone() {
+        return handle != null && handle.isDone();
+    }
+
+    /**
+     * Delivers a timeout as the deadline of the request runs out.
+     */
+    void deliverExpired() {
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                onComplete();
+                ResponseDispatcher.dispatchTimeout(delegate);
+            }
+        });
+    }
+
+    /**
+     * Tells the wrapped callback the request was canceled.
+     */
+    void deliverCanceled() {
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                if (delegate != null) {
+                    delegate.onCanceled();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onResponse(final RequestResponse response) {
+        if (isDone()) {
+            return;
+        }
+        if (executor == CallbackExecutors.DIRECT) {
+            forwardResponse(response);
+            return;
+        }
+        final ReturnCallback.Decoded<?> decoded = returnCallback != null ? returnCallback.predecode(response) : null;
+        if (response != null) {
+            response.hold();
+        }
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                ReturnCallback.setDelivering(decoded);
+                try {
+                    forwardResponse(response);
+                } finally {
+                    ReturnCallback.setDelivering(null);
+                    if (response != null) {
+                        response.recycle();
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onTimeout() {
+        if (isDone()) {
+            return;
+        }
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                forwardTimeout();
+            }
+        });
+    }
+
+    @Override
+    public void onNoConnection() {
+        if (isDone()) {
+            return;
+        }
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                forwardNoConnection();
+            }
+        });
+    }
+
+    @Override
+    public void onInternalError() {
+        if (isDone()) {
+            return;
+        }
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                forwardInternalError();
+            }
+        });
+    }
+
+    @Override
+    public void onUnauthorized() {
+        if (isDone()) {
+            return;
+        }
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                DeliveryCallback.super.onUnauthorized();
+            }
+        });
+    }
+
+    @Override
+    public void onInvalidRequest() {
+        if (isDone()) {
+            return;
+        }
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                DeliveryCallback.super.onInvalidRequest();
+            }
+        });
+    }
+
+    @Override
+    public void onForbidden() {
+        if (isDone()) {
+            return;
+        }
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                DeliveryCallback.super.onForbidden();
+            }
+        });
+    }
+
+    @Override
+    public void onConflict() {
+        if (isDone()) {
+            return;
+        }
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                DeliveryCallback.super.onConflict();
+            }
+        });
+    }
+
+    /**
+     * Runs a delivery on the executor, or right away if rejected.
+     *
+     * @param delivery The delivery.
+     */
+    private void deliver(Runnable delivery) {
+        try {
+            executor.execute(delivery);
+        } catch (RejectedExecutionException e) {
+            delivery.run();
+        }
+    }
+
+}
@@ -0,0 +1,273 @@
+package com.comandulli.lib.rest;
+
+import com.comandulli.lib.rest.RequestTrace.Outcome;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histograms and counters of the requests to an endpoint, kept by the {@link MetricsCollector}.
+ * <p>
+ * Each phase has its own histogram: the time waiting in the queue, until the first byte of the response,
+ * reading the body, parsing the envelope and running the callback, besides the total time of the request.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class EndpointMetrics {
+
+    /**
+     * Index of the counter of 2XX responses.
+     */
+    private static final int STATUS_2XX = 0;
+    /**
+     * Index of the counter of 3XX responses.
+     */
+    private static final int STATUS_3XX = 1;
+    /**
+     * Index of the counter of 4XX responses.
+     */
+    private static final int STATUS_4XX = 2;
+    /**
+     * Index of the counter of 5XX responses.
+     */
+    private static final int STATUS_5XX = 3;
+
+    /**
+     * Total time, from being made until the callback returned.
+     */
+    private final LatencyHistogram total;
+    /**
+     * Time waiting in the queue, until dispatched.
+     */
+    private final LatencyHistogram queue;
+    /**
+     * Time until the response headers, from the last dispatch.
+     */
+    private final LatencyHistogram firstByte;
+    /**
+     * Time reading the response body.
+     */
+    private final LatencyHistogram body;
+    /**
+     * Time parsing the response envelope.
+     */
+    private final LatencyHistogram parse;
+    /**
+     * Time running the callback.
+     */
+    private final LatencyHistogram callback;
+    /**
+     * Counters by outcome.
+     */
+    private final AtomicLongArray outcomes;
+    /**
+     * Counters by status class.
+     */
+    private final AtomicLongArray statuses;
+    /**
+     * Counter of retried attempts.
+     */
+    private final AtomicLong retries;
+
+    /**
+     * Instantiate empty metrics.
+     */
+    public EndpointMetrics() {
+        this(new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram(),
+                new LatencyHistogram(), new LatencyHistogram(), new AtomicLongArray(Outcome.values().length),
+                new AtomicLongArray(4), new AtomicLong());
+    }
+
+    private EndpointMetrics(LatencyHistogram total, LatencyHistogram queue, LatencyHistogram firstByte, LatencyHistogram body,
+                            LatencyHistogram parse, LatencyHistogram callback, AtomicLongArray outcomes, AtomicLongArray statuses,
+                            AtomicLong retries) {
+        this.total = total;
+        this.queue = queue;
+        this.firstByte = firstByte;
+        this.body = body;
+        this.parse = parse;
+        this.callback = callback;
+        this.outcomes = outcomes;
+        this.statuses = statuses;
+        this.retries = retries;
+    }
+
+    /**
+     * Records a completed request.
+     *
+     * @param trace Trace of the request.
+     */
+    void record(RequestTrace trace) {
+        long completed = trace.getCompletedAt();
+        long dispatched = trace.getDispatchedAt();
+        long headers = trace.getHeadersAt();
+        long bodyAt = trace.getBodyAt();
+        long parsed = trace.getParsedAt();
+        total.record(completed - trace.getEnqueuedAt());
+        if (dispatched != 0) {
+            queue.record(dispatched - trace.getEnqueuedAt());
+            if (headers != 0) {
+                firstByte.record(headers - dispatched);
+                if (bodyAt != 0) {
+                    body.record(bodyAt - headers);
+                }
+            }
+        }
+        if (parsed != 0) {
+            parse.record(parsed - (bodyAt != 0 ? bodyAt : headers));
+            callback.record(completed - parsed);
+        }
+        if (trace.getAttempts() > 1) {
+            retries.addAndGet(trace.getAttempts() - 1);
+        }
+        Outcome outcome = trace.getOutcome();
+        if (outcome != null) {
+            outcomes.incrementAndGet(outcome.ordinal());
+        }
+        int status = trace.getStatusCode();
+        if (status >= 200 && status < 600) {
+            statuses.incrementAndGet(status / 100 - 2);
+        }
+    }
+
+    /**
+     * Returns the histogram of the total time of the requests.
+     *
+     * @return The histogram.
+     */
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the histogram of the time the requests waited in the queue.
+     *
+     * @return The histogram.
+     */
+    public LatencyHistogram getQueue() {
+        return queue;
+    }
+
+    /**
+     * Returns the histogram of the time until the first byte of the responses.
+     *
+     * @return The histogram.
+     */
+    public LatencyHistogram getFirstByte() {
+        return firstByte;
+    }
+
+    /**
+     * Returns the histogram of the time reading the response bodies.
+     *
+     * @return The histogram.
+     */
+    public LatencyHistogram getBody() {
+        return body;
+    }
+
+    /**
+     * Returns the histogram of the time parsing the response envelopes.
+     *
+     * @return The histogram.
+     */
+    public LatencyHistogram getParse() {
+        return parse;
+    }
+
+    /**
+     * Returns the histogram of the time running the callbacks.
+     *
+     * @return The histogram.
+     */
+    public LatencyHistogram getCallback() {
+        return callback;
+    }
+
+    /**
+     * Returns the number of requests with an outcome.
+     *
+     * @param outcome The outcome.
+     * @return The count.
+     */
+    public long getCount(Outcome outcome) {
+        return outcomes.get(outcome.ordinal());
+    }
+
+    /**
+     * Returns the number of responses with a status class, such as 5 for 5XX.
+     *
+     * @param statusClass The first digit of the status code, from 2 to 5.
+     * @return The count.
+     */
+    public long getStatusCount(int statusClass) {
+        return statusClass >= 2 && statusClass <= 5 ? statuses.get(statusClass - 2) : 0;
+    }
+
+    /**
+     * Returns the number of retried attempts.
+     *
+     * @return The count.
+     */
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /**
+     * Returns a copy of these metrics, not affected by later records.
+     *
+     * @return The copy.
+     */
+    public EndpointMetrics copy() {
+        return new EndpointMetrics(total.copy(), queue.copy(), firstByte.copy(), body.copy(), parse.copy(), callback.copy(),
+                copyOf(outcomes), copyOf(statuses), new AtomicLong(retries.get()));
+    }
+
+    /**
+     * Returns these metrics in JSON, with the summary of each histogram and the counters.
+     *
+     * @return The metrics.
+     * @throws JSONException never, the values are all valid.
+     */
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("total", total.toJSON());
+        json.put("queue", queue.toJSON());
+        json.put("firstByte", firstByte.toJSON());
+        json.put("body", body.toJSON());
+        json.put("parse", parse.toJSON());
+        json.put("callback", callback.toJSON());
+        JSONObject counts = new JSONObject();
+        for (Outcome outcome : Outcome.values()) {
+            counts.put(outcome.name(), getCount(outcome));
+        }
+        json.put("outcomes", counts);
+        JSONObject status = new JSONObject();
+        status.put("2xx", statuses.get(STATUS_2XX));
+        status.put("3xx", statuses.get(STATUS_3XX));
+        status.put("4xx", statuses.get(STATUS_4XX));
+        status.put("5xx", statuses.get(STATUS_5XX));
+        json.put("status", status);
+        json.put("retries", getRetryCount());
+        return json;
+    }
+
+    /**
+     * Copies counters.
+     *
+     * @param counters The counters.
+     * @return The copy.
+     */
+    private static AtomicLongArray copyOf(AtomicLongArray counters) {
+        AtomicLongArray copy = new AtomicLongArray(counters.length());
+        for (int i = 0; i < counters.length(); i++) {
+            copy.set(i, counters.get(i));
+        }
+        return copy;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Format of response envelopes and request bodies on the wire, such as JSON or CBOR.
+ * <p>
+ * The codec of a response is chosen by its Content-Type, see {@link EnvelopeCodecs}.
+ * Content stays in the codec's format until read, through a {@link ContentReader} returned by
+ * {@link #newReader(byte[], int, int)} or converted into a JSONObject, so {@link ContentDecoder}s work with every codec.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public interface EnvelopeCodec {
+
+    /**
+     * Returns the media type of this codec, without parameters, such as "application/cbor".
+     *
+     * @return The media type.
+     */
+    String getMediaType();
+
+    /**
+     * Returns the Content-Type of request bodies encoded by this codec.
+     *
+     * @return The content type.
+     */
+    String getContentType();
+
+    /**
+     * Parses a response envelope.
+     *
+     * @param data   Buffer with the response body.
+     * @param offset Start of the body in the buffer.
+     * @param length Length of the body.
+     * @return The response, with its content kept as a view of the body.
+     * @throws JSONException if the body is not a valid envelope.
+     */
+    RequestResponse decode(byte[] data, int offset, int length) throws JSONException;
+
+    /**
+     * Encodes the content of a request.
+     *
+     * @param content The content.
+     * @return The request body.
+     * @throws JSONException if the content cannot be encoded.
+     */
+    byte[] encode(JSONObject content) throws JSONException;
+
+    /**
+     * Returns a reader over content in this codec's format.
+     *
+     * @param data   Buffer with the content.
+     * @param offset Start of the content in the buffer.
+     * @param length Length of the content.
+     * @return The reader.
+     */
+    ContentReader newReader(byte[] data, int offset, int length);
+
+    /**
+     * Converts content in this codec's format into a JSONObject.
+     *
+     * @param data   Buffer with the content.
+     * @param offset Start of the content in the buffer.
+     * @param length Length of the content.
+     * @return The content.
+     * @throws JSONException if the content is not a valid object.
+     */
+    JSONObject toJSONObject(byte[] data, int offset, int length) throws JSONException;
+
+}
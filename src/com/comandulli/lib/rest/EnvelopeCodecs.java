@@ -0,0 +1,150 @@
+package com.comandulli.lib.rest;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Registry of the {@link EnvelopeCodec}s known by the library, and of the codecs used on each direction.
+ * <p>
+ * Responses are read with the codec registered for their Content-Type. A response without a known Content-Type,
+ * such as one served from the cache, is read in CBOR if it starts with a CBOR map, which is never valid UTF-8,
+ * and in JSON otherwise. JSON stays the default: a preferred codec is only asked for, through the Accept header,
+ * once set with {@link #setPreferred(EnvelopeCodec)}, and request bodies are only sent in another format
+ * once set with {@link #setRequestCodec(EnvelopeCodec)}, since the server must support it.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class EnvelopeCodecs {
+
+    /**
+     * Header key of the accepted content types.
+     */
+    public static final String PROPERTY_ACCEPT = "Accept";
+    /**
+     * The JSON codec, the default.
+     */
+    public static final EnvelopeCodec JSON = new JsonEnvelopeCodec();
+    /**
+     * The CBOR codec, smaller and faster to read than JSON.
+     */
+    public static final EnvelopeCodec CBOR = new CborEnvelopeCodec();
+
+    /**
+     * Registered codecs by media type, replaced on every change.
+     */
+    private static volatile Map<String, EnvelopeCodec> codecs = Collections.emptyMap();
+    /**
+     * Codec asked for in responses.
+     */
+    private static volatile EnvelopeCodec preferred = JSON;
+    /**
+     * Accept header of the preferred codec, null if JSON.
+     */
+    private static volatile String acceptHeader;
+    /**
+     * Codec of request bodies.
+     */
+    private static volatile EnvelopeCodec requestCodec = JSON;
+
+    static {
+        register(JSON);
+        register(CBOR);
+    }
+
+    private EnvelopeCodecs() {
+    }
+
+    /**
+     * Registers a codec, replacing any codec of the same media type.
+     *
+     * @param codec The codec.
+     */
+    public static synchronized void register(EnvelopeCodec codec) {
+        Map<String, EnvelopeCodec> next = new HashMap<>(codecs);
+        next.put(codec.getMediaType().toLowerCase(Locale.US), codec);
+        codecs = Collections.unmodifiableMap(next);
+    }
+
+    /**
+     * Returns the codec registered for a content type.
+     *
+     * @param contentType The content type, parameters are ignored.
+     * @return The codec, null if none.
+     */
+    public static EnvelopeCodec forContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int end = contentType.indexOf(';');
+        String mediaType = (end < 0 ? contentType : contentType.substring(0, end)).trim().toLowerCase(Locale.US);
+        return codecs.get(mediaType);
+    }
+
+    /**
+     * Set the codec asked for in responses, with JSON as a fallback. The codec is registered.
+     *
+     * @param codec The codec, JSON by default.
+     */
+    public static void setPreferred(EnvelopeCodec codec) {
+        register(codec);
+        acceptHeader = codec == JSON ? null : codec.getMediaType() + ", " + JSON.getMediaType() + ";q=0.9";
+        preferred = codec;
+    }
+
+    /**
+     * Returns the codec asked for in responses.
+     *
+     * @return The codec.
+     */
+    public static EnvelopeCodec getPreferred() {
+        return preferred;
+    }
+
+    /**
+     * Set the codec of request bodies.
+     *
+     * @param codec The codec, JSON by default.
+     */
+    public static void setRequestCodec(EnvelopeCodec codec) {
+        requestCodec = codec;
+    }
+
+    /**
+     * Returns the codec of request bodies.
+     *
+     * @return The codec.
+     */
+    public static EnvelopeCodec getRequestCodec() {
+        return requestCodec;
+    }
+
+    /**
+     * Returns the Accept header asking for the preferred codec.
+     *
+     * @return The header value, null if the preferred codec is JSON.
+     */
+    static String getAcceptHeader() {
+        return acceptHeader;
+    }
+
+    /**
+     * Returns the codec of a response body.
+     *
+     * @param contentType Content-Type of the response, null if unknown.
+     * @param data        Buffer with the body.
+     * @param offset      Start of the body in the buffer.
+     * @param length      Length of the body.
+     * @return The codec.
+     */
+    static EnvelopeCodec forResponse(String contentType, byte[] data, int offset, int length) {
+        EnvelopeCodec codec = forContentType(contentType);
+        if (codec != null) {
+            return codec;
+        }
+        return data != null && length > 0 && (data[offset] & 0xE0) == 0xA0 ? CBOR : JSON;
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.Charset;
+
+/**
+ * Streaming parser for this library's response envelope.
+ * <p>
+ * Reads the code, message and content properties straight from the response bytes, without building
+ * a JSON tree for the whole body. The content is not parsed, the response keeps a view of its bytes
+ * and parses it only when requested through {@link RequestResponse#getContent()}.
+ * <p>
+ * Response bodies are expected in UTF-8, as defined for JSON.
+ * Envelopes in other formats are read the same way, through the reader of their {@link EnvelopeCodec}.
+ * When the {@link ResponsePool} is enabled, responses are taken from the pool and may be given back
+ * with {@link RequestResponse#recycle()}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class EnvelopeParser {
+
+    /**
+     * Charset of response bodies.
+     */
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Keys of the envelope properties.
+     */
+    private static final byte[][] KEYS = {
+            VolleyRequest.JSON_PROPERTY_MESSAGE.getBytes(UTF_8),
+            VolleyRequest.JSON_PROPERTY_CODE.getBytes(UTF_8),
+            VolleyRequest.JSON_PROPERTY_CONTENT.getBytes(UTF_8)
+    };
+    private static final int KEY_MESSAGE = 0;
+    private static final int KEY_CODE = 1;
+    private static final int KEY_CONTENT = 2;
+
+    private EnvelopeParser() {
+    }
+
+    /**
+     * Parses a response envelope.
+     *
+     * @param data The response body.
+     * @return The response, with its content kept as a view of the body.
+     * @throws JSONException if the body is not a valid envelope.
+     */
+    public static RequestResponse parse(byte[] data) throws JSONException {
+        return parse(data, 0, data.length);
+    }
+
+    /**
+     * Parses a response envelope.
+     *
+     * @param data   Buffer with the response body.
+     * @param offset Start of the body in the buffer.
+     * @param length Length of the body.
+     * @return The response, with its content kept as a view of the body.
+     * @throws JSONException if the body is not a valid envelope.
+     */
+    public static RequestResponse parse(byte[] data, int offset, int length) throws JSONException {
+        checkBounds(data, offset, length);
+        return parse(new ContentReader(data, offset, length), EnvelopeCodecs.JSON);
+    }
+
+    /**
+     * Parses a response envelope that has already been parsed into a JSONObject.
+     *
+     * @param envelope The response body.
+     * @return The response.
+     * @throws JSONException if the body is not a valid envelope.
+     */
+    public static RequestResponse parse(JSONObject envelope) throws JSONException {
+        RequestResponse response = new RequestResponse();
+        response.setMessage(envelope.getString(VolleyRequest.JSON_PROPERTY_MESSAGE));
+        if (envelope.has(VolleyRequest.JSON_PROPERTY_CONTENT)) {
+            response.setContent(envelope.getJSONObject(VolleyRequest.JSON_PROPERTY_CONTENT));
+        }
+        response.setCode(envelope.getInt(VolleyRequest.JSON_PROPERTY_CODE));
+        return response;
+    }
+
+    /**
+     * Parses a response envelope with a reader of any codec.
+     *
+     * @param reader Reader over the body.
+     * @param codec  Codec of the body, kept for the content.
+     * @return The response, with its content kept as a view of the body.
+     * @throws JSONException if the body is not a valid envelope, or data follows it.
+     */
+    static RequestResponse parse(ContentReader reader, EnvelopeCodec codec) throws JSONException {
+        RequestResponse response = ResponsePool.obtain();
+        boolean parsed = false;
+        try {
+            byte[] data = reader.getData();
+            boolean hasMessage = false;
+            boolean hasCode = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextNameIndex(KEYS)) {
+                    case KEY_MESSAGE:
+                        if (reader.peek() == ContentReader.Token.STRING) {
+                            response.setMessage(reader.nextString());
+                        } else {
+                            int start = reader.skipValueFrom();
+                            response.setMessage(reader.textOf(start, reader.getPosition()));
+                        }
+                        hasMessage = true;
+                        break;
+                    case KEY_CODE:
+                        response.setCode(reader.nextInt());
+                        hasCode = true;
+                        break;
+                    case KEY_CONTENT:
+                        if (reader.peek() != ContentReader.Token.BEGIN_OBJECT) {
+                            throw new JSONException("Content is not an object");
+                        }
+                        int start = reader.skipValueFrom();
+                        response.setContent(data, start, reader.getPosition() - start, codec);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            reader.endDocument();
+            if (!hasMessage || !hasCode) {
+                throw new JSONException("Missing envelope properties");
+            }
+            parsed = true;
+            return response;
+        } finally {
+            if (!parsed) {
+                response.release();
+            }
+        }
+    }
+
+    /**
+     * Checks that a body is within its buffer.
+     *
+     * @param data   Buffer with the body.
+     * @param offset Start of the body in the buffer.
+     * @param length Length of the body.
+     * @throws JSONException if the body is out of the buffer.
+     */
+    static void checkBounds(byte[] data, int offset, int length) throws JSONException {
+        if (data == null || offset < 0 || length < 0 || offset + length > data.length) {
+            throw new JSONException("Invalid response body");
+        }
+    }
+
+}
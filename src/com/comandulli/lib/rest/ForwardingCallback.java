@@ -0,0 +1,174 @@
+package com.comandulli.lib.rest;
+
+/**
+ * Callback that wraps another one, forwarding every result to it.
+ * <p>
+ * {@link #always()} is held back and forwarded together with the result, so subclasses can act on
+ * the result before the wrapped callback sees it, through {@link #onComplete()} or by overriding
+ * the result methods and calling the matching forward method, and after it, through {@link #onForwarded()}.
+ * Results can be dropped through {@link #accept()}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+abstract class ForwardingCallback extends RequestCallback {
+
+    /**
+     * The wrapped callback, may be null.
+     */
+    protected final RequestCallback delegate;
+
+    ForwardingCallback(RequestCallback delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Called once before any result is forwarded.
+     */
+    protected void onComplete() {
+    }
+
+    /**
+     * Called once after the result is forwarded.
+     */
+    protected void onForwarded() {
+    }
+
+    /**
+     * Called before a result is forwarded, to drop it instead, such as once the request was canceled.
+     *
+     * @return If the result is forwarded.
+     */
+    protected boolean accept() {
+        return true;
+    }
+
+    /**
+     * Called when the scheduler hands the request to the transport, passed on to the wrapped callbacks.
+     */
+    void onDispatch() {
+        if (delegate instanceof ForwardingCallback) {
+            ((ForwardingCallback) delegate).onDispatch();
+        }
+    }
+
+    @Override
+    public void always() {
+    }
+
+    @Override
+    public void onCanceled() {
+        if (delegate != null) {
+            delegate.onCanceled();
+        }
+    }
+
+    @Override
+    public void onResponse(RequestResponse response) {
+        forwardResponse(response);
+    }
+
+    @Override
+    public void onTimeout() {
+        forwardTimeout();
+    }
+
+    @Override
+    public void onNoConnection() {
+        forwardNoConnection();
+    }
+
+    @Override
+    public void onInternalError() {
+        forwardInternalError();
+    }
+
+    @Override
+    public void onUnauthorized() {
+        if (!accept()) {
+            return;
+        }
+        onComplete();
+        if (delegate != null) {
+            delegate.always();
+            delegate.onUnauthorized();
+        }
+        onForwarded();
+    }
+
+    @Override
+    public void onInvalidRequest() {
+        if (!accept()) {
+            return;
+        }
+        onComplete();
+        if (delegate != null) {
+            delegate.always();
+            delegate.onInvalidRequest();
+        }
+        onForwarded();
+    }
+
+    @Override
+    public void onForbidden() {
+        if (!accept()) {
+            return;
+        }
+        onComplete();
+        if (delegate != null) {
+            delegate.always();
+            delegate.onForbidden();
+        }
+        onForwarded();
+    }
+
+    @Override
+    public void onConflict() {
+        if (!accept()) {
+            return;
+        }
+        onComplete();
+        if (delegate != null) {
+            delegate.always();
+            delegate.onConflict();
+        }
+        onForwarded();
+    }
+
+    protected void forwardResponse(RequestResponse response) {
+        if (!accept()) {
+            return;
+        }
+        onComplete();
+        ResponseDispatcher.dispatchResponse(response, delegate);
+        onForwarded();
+    }
+
+    protected void forwardTimeout() {
+        if (!accept()) {
+            return;
+        }
+        onComplete();
+        ResponseDispatcher.dispatchTimeout(delegate);
+        onForwarded();
+    }
+
+    protected void forwardNoConnection() {
+        if (!accept()) {
+            return;
+        }
+        onComplete();
+        ResponseDispatcher.dispatchNoConnection(delegate);
+        onForwarded();
+    }
+
+    protected void forwardInternalError() {
+        if (!accept()) {
+            return;
+        }
+        onComplete();
+        ResponseDispatcher.dispatchInternalError(delegate);
+        onForwarded();
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.comandulli.lib.rest;
+
+import com.comandulli.lib.rest.exception.ConflictException;
+import com.comandulli.lib.rest.exception.ForbiddenException;
+import com.comandulli.lib.rest.exception.InternalErrorException;
+import com.comandulli.lib.rest.exception.InvalidRequestException;
+import com.comandulli.lib.rest.exception.NoInternetConnectionException;
+import com.comandulli.lib.rest.exception.RequestCanceledException;
+import com.comandulli.lib.rest.exception.RequestTimeoutException;
+import com.comandulli.lib.rest.exception.UnauthorizedException;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Callback that completes a future with the result of a request.
+ * Each status is mapped to a typed exception extending {@link com.comandulli.lib.rest.exception.RequestException},
+ * and a missing connection to a {@link NoInternetConnectionException}, as when sending a request.
+ * Failures without a response have the code {@link com.comandulli.lib.rest.exception.StatusException#NO_STATUS}.
+ *
+ * @param <T> Type of the future's value.
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class FutureCallback<T> extends ReturnCallback<T> {
+
+    /**
+     * The future completed by this callback.
+     */
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    /**
+     * If the future is completed with the response itself instead of a decoded value.
+     */
+    private final boolean raw;
+    /**
+     * Response being handled, to describe error statuses.
+     */
+    private RequestResponse response;
+
+    private FutureCallback(ContentDecoder<T> decoder, boolean raw) {
+        super(decoder);
+        this.raw = raw;
+    }
+
+    /**
+     * Creates a callback that completes its future with the response.
+     *
+     * @return The callback.
+     */
+    static FutureCallback<RequestResponse> forResponse() {
+        return new FutureCallback<>(null, true);
+    }
+
+    /**
+     * Creates a callback that completes its future with the decoded content of the response.
+     *
+     * @param decoder Decoder of the response content.
+     * @param <T>     Type of the decoded content.
+     * @return The callback.
+     */
+    static <T> FutureCallback<T> forContent(ContentDecoder<T> decoder) {
+        return new FutureCallback<>(decoder, false);
+    }
+
+    /**
+     * Returns the future completed by this callback.
+     *
+     * @return The future.
+     */
+    CompletableFuture<T> getFuture() {
+        return future;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onResponse(RequestResponse response) {
+        this.response = response;
+        if (!raw) {
+            super.onResponse(response);
+        } else if (response == null) {
+            onInternalError();
+        } else if (!dispatchStatus(response.getCode())) {
+            response.detach();
+            future.complete((T) response);
+        }
+    }
+
+    @Override
+    public void onReturn(T value) {
+        future.complete(value);
+    }
+
+    @Override
+    public void onUnauthorized() {
+        future.completeExceptionally(new UnauthorizedException(message()));
+    }
+
+    @Override
+    public void onInvalidRequest() {
+        future.completeExceptionally(new InvalidRequestException(message()));
+    }
+
+    @Override
+    public void onForbidden() {
+        future.completeExceptionally(new ForbiddenException(message()));
+    }
+
+    @Override
+    public void onConflict() {
+        future.completeExceptionally(new ConflictException(message()));
+    }
+
+    @Override
+    public void onNoConnection() {
+        future.completeExceptionally(new NoInternetConnectionException());
+    }
+
+    @Override
+    public void onTimeout() {
+        future.completeExceptionally(response != null ? new RequestTimeoutException(response.getCode(), message()) : new RequestTimeoutException());
+    }
+
+    @Override
+    public void onInternalError() {
+        future.completeExceptionally(response != null && response.getCode() >= 400 ? new InternalErrorException(response.getCode(), message()) : new InternalErrorException());
+    }
+
+    @Override
+    public void onCanceled() {
+        future.completeExceptionally(new RequestCanceledException());
+    }
+
+    @Override
+    public void always() {
+    }
+
+    private String message() {
+        return response != null ? response.getMessage() : null;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.comandulli.lib.rest;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read only view of the headers of a request over the global headers, without copying either.
+ * Headers of the request replace global headers with the same name. Both maps must be immutable
+ * and have case insensitive names, such as a copy of the request's headers and a snapshot of the registry.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class HeaderOverlay extends AbstractMap<String, String> {
+
+    /**
+     * Headers of the request.
+     */
+    private final Map<String, String> overlay;
+    /**
+     * Global headers.
+     */
+    private final Map<String, String> base;
+
+    HeaderOverlay(Map<String, String> overlay, Map<String, String> base) {
+        this.overlay = overlay;
+        this.base = base;
+    }
+
+    @Override
+    public String get(Object key) {
+        String value = overlay.get(key);
+        return value != null ? value : base.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return overlay.containsKey(key) || base.containsKey(key);
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new OverlayIterator();
+            }
+
+            @Override
+            public int size() {
+                int size = overlay.size();
+                for (String name : base.keySet()) {
+                    if (!overlay.containsKey(name)) {
+                        size++;
+                    }
+                }
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Iterates the request headers, then the global headers not replaced by them.
+     */
+    private final class OverlayIterator implements Iterator<Entry<String, String>> {
+
+        /**
+         * Iterator of the request headers.
+         */
+        private final Iterator<Entry<String, String>> overlayIterator = overlay.entrySet().iterator();
+        /**
+         * Iterator of the global headers.
+         */
+        private final Iterator<Entry<String, String>> baseIterator = base.entrySet().iterator();
+        /**
+         * Next entry, null if not found yet.
+         */
+        private Entry<String, String> next;
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (overlayIterator.hasNext()) {
+                next = overlayIterator.next();
+                return true;
+            }
+            while (baseIterator.hasNext()) {
+                Entry<String, String> entry = baseIterator.next();
+                if (!overlay.containsKey(entry.getKey())) {
+                    next = entry;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, String> entry = next;
+            next = null;
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
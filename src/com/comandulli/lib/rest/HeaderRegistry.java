@@ -0,0 +1,177 @@
+package com.comandulli.lib.rest;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registry of the headers sent with every request.
+ * <p>
+ * Headers are kept in an immutable snapshot that is copied and swapped atomically on every change,
+ * so requests being sent read a consistent set of headers without any lock or copy,
+ * while the application changes them, such as when rotating an auth token.
+ * <p>
+ * Header names are case insensitive, as in HTTP: setting {@code user-agent} replaces {@code User-Agent}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class HeaderRegistry {
+
+    /**
+     * The current snapshot of the headers.
+     */
+    private static final AtomicReference<Map<String, String>> snapshot = new AtomicReference<>(Collections.unmodifiableMap(copyOf(new HeaderMap())));
+    /**
+     * Mutable view of the registry.
+     */
+    private static final Map<String, String> view = new RegistryView();
+
+    private HeaderRegistry() {
+    }
+
+    /**
+     * Sets a header, replacing any previous value.
+     *
+     * @param name  Header name key.
+     * @param value Header value.
+     * @return The previous value, null if none.
+     */
+    public static String put(String name, String value) {
+        while (true) {
+            Map<String, String> current = snapshot.get();
+            Map<String, String> next = copyOf(current);
+            String previous = next.remove(name);
+            next.put(name, value);
+            if (snapshot.compareAndSet(current, Collections.unmodifiableMap(next))) {
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * Removes a header.
+     *
+     * @param name Header name key.
+     * @return The removed value, null if none.
+     */
+    public static String remove(String name) {
+        while (true) {
+            Map<String, String> current = snapshot.get();
+            if (!current.containsKey(name)) {
+                return null;
+            }
+            Map<String, String> next = copyOf(current);
+            String previous = next.remove(name);
+            if (snapshot.compareAndSet(current, Collections.unmodifiableMap(next))) {
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * Returns the value of a header.
+     *
+     * @param name Header name key.
+     * @return The value, null if none.
+     */
+    public static String get(String name) {
+        return snapshot.get().get(name);
+    }
+
+    /**
+     * Returns the current headers, they never change after being returned.
+     *
+     * @return An immutable snapshot of the headers.
+     */
+    public static Map<String, String> snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Returns a mutable view of the registry, reads see the current snapshot and writes swap it.
+     *
+     * @return The view.
+     */
+    static Map<String, String> asMap() {
+        return view;
+    }
+
+    /**
+     * Returns the headers of a request as it is sent, a copy of its own headers over the current snapshot,
+     * so headers added to the request afterwards are not seen.
+     *
+     * @param request The request, may be null.
+     * @return The headers, the snapshot itself if the request has no headers of its own.
+     */
+    static Map<String, String> headersOf(RestRequest request) {
+        Map<String, String> global = snapshot.get();
+        Map<String, String> own = request != null ? request.getHeaders() : null;
+        if (own == null || own.isEmpty()) {
+            return global;
+        }
+        return new HeaderOverlay(own, global);
+    }
+
+    /**
+     * Creates an empty map of headers, with case insensitive names.
+     *
+     * @return The map.
+     */
+    static Map<String, String> newHeaders() {
+        return new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    }
+
+    /**
+     * Copies headers into a map with case insensitive names.
+     *
+     * @param headers The headers.
+     * @return The copy.
+     */
+    private static Map<String, String> copyOf(Map<String, String> headers) {
+        Map<String, String> copy = newHeaders();
+        copy.putAll(headers);
+        return copy;
+    }
+
+    /**
+     * Mutable view of the registry.
+     */
+    private static final class RegistryView extends AbstractMap<String, String> {
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return snapshot.get().entrySet();
+        }
+
+        @Override
+        public String get(Object key) {
+            return snapshot.get().get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return snapshot.get().containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return snapshot.get().size();
+        }
+
+        @Override
+        public String put(String key, String value) {
+            return HeaderRegistry.put(key, value);
+        }
+
+        @Override
+        public String remove(Object key) {
+            return key instanceof String ? HeaderRegistry.remove((String) key) : null;
+        }
+
+    }
+
+}
@@ -0,0 +1,679 @@
+package com.comandulli.lib.rest;
+
+import com.comandulli.lib.rest.cache.CacheEntry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Transport that sends requests through a {@link HttpClient}, for use on the JVM without the android runtime.
+ * <p>
+ * Requests are multiplexed over HTTP/2 when the server supports it and connections are reused
+ * between requests, falling back to HTTP/1.1 otherwise. Callbacks are called from the client's executor threads.
+ * Gzip responses are decompressed as they arrive, see {@link Compression}.
+ * Bodies are encoded and responses read with the codecs of the {@link EnvelopeCodecs}.
+ * Request bodies from files or channels and response bodies read by a {@link StreamingCallback}
+ * are streamed with backpressure, never held in memory as a whole.
+ * When the {@link ResponsePool} is enabled, bodies of responses that are not cached are read into pooled buffers.
+ * Canceled requests have their exchange aborted, and a response that arrives anyway is not decoded.
+ * Headers the client sets itself, such as Connection, Host or Content-Length, are not sent,
+ * neither are headers with a null or invalid name or value, see {@link #RESTRICTED_HEADERS}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class HttpClientTransport implements RequestTransport {
+
+    /**
+     * Default timeout of a request in milliseconds, the same as volley's.
+     */
+    public static final int DEFAULT_TIMEOUT_MS = 2500;
+    /**
+     * Content type of request bodies.
+     */
+    public static final String CONTENT_TYPE_JSON = "application/json; charset=utf-8";
+    /**
+     * Header key of the content type.
+     */
+    public static final String PROPERTY_CONTENT_TYPE = "Content-Type";
+    /**
+     * Header key of the content length.
+     */
+    public static final String PROPERTY_CONTENT_LENGTH = "Content-Length";
+    /**
+     * Headers set by the client itself, that it does not allow requests to set.
+     * Requests carrying them, such as ones written for volley, are sent without them.
+     */
+    public static final Set<String> RESTRICTED_HEADERS = restrictedHeaders("Connection", "Content-Length", "Expect", "Host", "Upgrade");
+    /**
+     * Size of the buffers reading streamed bodies.
+     */
+    private static final int STREAM_BUFFER_SIZE = 8192;
+    /**
+     * Maps a body read into a byte array.
+     */
+    private static final Function<byte[], Body> TO_BODY = new Function<byte[], Body>() {
+        @Override
+        public Body apply(byte[] bytes) {
+            return new Body(bytes, bytes.length, false);
+        }
+    };
+
+    /**
+     * The http client.
+     */
+    private final HttpClient client;
+    /**
+     * Timeout of each request.
+     */
+    private final Duration timeout;
+
+    /**
+     * Instantiate a transport with a HTTP/2 client and the default timeout.
+     */
+    public HttpClientTransport() {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(DEFAULT_TIMEOUT_MS))
+                .build(), DEFAULT_TIMEOUT_MS);
+    }
+
+    /**
+     * Instantiate a transport with a HTTP/2 client running on an executor, such as {@link VirtualThreads#newExecutor()}.
+     * Callbacks are called from the executor's threads.
+     *
+     * @param executor The executor of the client.
+     */
+    public HttpClientTransport(Executor executor) {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(DEFAULT_TIMEOUT_MS))
+                .executor(executor)
+                .build(), DEFAULT_TIMEOUT_MS);
+    }
+
+    /**
+     * Instantiate a transport over a custom client.
+     *
+     * @param client    The http client.
+     * @param timeoutMs Timeout of each request in milliseconds.
+     */
+    public HttpClientTransport(HttpClient client, int timeoutMs) {
+        this.client = client;
+        this.timeout = Duration.ofMillis(timeoutMs);
+    }
+
+    /**
+     * Returns the http client used by this transport.
+     *
+     * @return The http client.
+     */
+    public HttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Opens a connection to a server ahead of the first request, with a HEAD request whose connection is kept
+     * in the client's pool, see {@link ConnectionWarmer}.
+     *
+     * @param url Url of the server.
+     * @return The future of the HEAD request.
+     */
+    CompletableFuture<HttpResponse<Void>> warm(String url) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    @Override
+    public void send(final RestRequest request, String url, final RequestCallback callback) {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(URI.create(url)).timeout(timeout);
+        } catch (IllegalArgumentException e) {
+            ResponseDispatcher.dispatchInternalError(callback);
+            return;
+        }
+        Map<String, String> headers = HeaderRegistry.headersOf(request);
+        if (CacheHandler.isRevalidating(request)) {
+            Map<String, String> revalidating = HeaderRegistry.newHeaders();
+            revalidating.putAll(headers);
+            CacheHandler.addConditionalHeaders(request, revalidating);
+            headers = revalidating;
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            addHeader(builder, header.getKey(), header.getValue());
+        }
+        if (!headers.containsKey(Compression.PROPERTY_ACCEPT_ENCODING)) {
+            builder.header(Compression.PROPERTY_ACCEPT_ENCODING, Compression.ENCODING_GZIP);
+        }
+        String accept = EnvelopeCodecs.getAcceptHeader();
+        if (accept != null && !headers.containsKey(EnvelopeCodecs.PROPERTY_ACCEPT)) {
+            builder.header(EnvelopeCodecs.PROPERTY_ACCEPT, accept);
+        }
+        RequestBody requestBody = request.getBody();
+        JSONObject content = request.getContent();
+        ReadableByteChannel upload = null;
+        if (requestBody != null) {
+            try {
+                upload = requestBody.openChannel();
+            } catch (IOException e) {
+                ResponseDispatcher.dispatchInternalError(callback);
+                return;
+            }
+            long length = requestBody.getContentLength();
+            ChannelPublisher publisher = new ChannelPublisher(upload, ChannelPublisher.DEFAULT_CHUNK_SIZE, length, requestBody.getProgressListener());
+            builder.header(PROPERTY_CONTENT_TYPE, requestBody.getContentType());
+            builder.method(request.getMethod().name(), length > 0
+                    ? HttpRequest.BodyPublishers.fromPublisher(publisher, length)
+                    : HttpRequest.BodyPublishers.fromPublisher(publisher));
+        } else if (content != null) {
+            EnvelopeCodec codec = EnvelopeCodecs.getRequestCodec();
+            byte[] body;
+            try {
+                body = codec.encode(content);
+            } catch (JSONException e) {
+                ResponseDispatcher.dispatchInternalError(callback);
+                return;
+            }
+            byte[] compressed = Compression.shouldCompress(body.length) ? Compression.gzip(body) : null;
+            if (compressed != null) {
+                body = compressed;
+                builder.header(Compression.PROPERTY_CONTENT_ENCODING, Compression.ENCODING_GZIP);
+            }
+            builder.header(PROPERTY_CONTENT_TYPE, codec.getContentType());
+            builder.method(request.getMethod().name(), HttpRequest.BodyPublishers.ofByteArray(body));
+        } else {
+            builder.method(request.getMethod().name(), HttpRequest.BodyPublishers.noBody());
+        }
+        StreamingCallback streaming = request.getStreamingCallback();
+        if (streaming != null) {
+            sendStreaming(builder.build(), request, upload, streaming, callback);
+            return;
+        }
+        final ReadableByteChannel uploadChannel = upload;
+        final boolean pooled = ResponsePool.isEnabled() && !CacheHandler.isCaching(request);
+        final CompletableFuture<HttpResponse<Body>> exchange = client.sendAsync(builder.build(), new HttpResponse.BodyHandler<Body>() {
+            @Override
+            public HttpResponse.BodySubscriber<Body> apply(HttpResponse.ResponseInfo responseInfo) {
+                RequestEvents.onResponseHeaders(request, responseInfo.statusCode());
+                if (Compression.isGzip(responseInfo.headers().firstValue(Compression.PROPERTY_CONTENT_ENCODING).orElse(null))) {
+                    return new GzipSubscriber(pooled);
+                }
+                if (pooled) {
+                    return new PooledSubscriber(responseInfo.headers().firstValueAsLong(PROPERTY_CONTENT_LENGTH).orElse(0));
+                }
+                return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), TO_BODY);
+            }
+        });
+        abortOnCancel(request, exchange);
+        exchange.whenComplete(new BiConsumer<HttpResponse<Body>, Throwable>() {
+            @Override
+            public void accept(HttpResponse<Body> response, Throwable throwable) {
+                close(uploadChannel);
+                if (throwable != null) {
+                    dispatchFailure(throwable, callback);
+                    return;
+                }
+                int statusCode = response.statusCode();
+                Body body = response.body();
+                if (request.isCanceled()) {
+                    body.release();
+                    ResponseDispatcher.dispatchInternalError(callback);
+                    return;
+                }
+                RequestEvents.onBodyComplete(request, body.length);
+                Map<String, String> headers = headersOf(response);
+                if ((statusCode >= 200 && statusCode < 300) || statusCode == CacheHandler.HTTP_NOT_MODIFIED) {
+                    byte[] data;
+                    int length;
+                    if (body.pooled) {
+                        data = statusCode == CacheHandler.HTTP_NOT_MODIFIED ? null : body.buffer;
+                        length = body.length;
+                    } else {
+                        data = CacheHandler.onNetworkResponse(request, statusCode, headers, body.buffer);
+                        length = data != null ? data.length : 0;
+                    }
+                    if (data == null) {
+                        body.release();
+                        ResponseDispatcher.dispatchInternalError(callback);
+                        return;
+                    }
+                    RequestResponse requestResponse;
+                    try {
+                        EnvelopeCodec codec = EnvelopeCodecs.forResponse(CacheEntry.header(headers, PROPERTY_CONTENT_TYPE), data, 0, length);
+                        requestResponse = codec.decode(data, 0, length);
+                    } catch (JSONException e) {
+                        body.release();
+                        ResponseDispatcher.dispatchInternalError(callback);
+                        return;
+                    }
+                    RequestEvents.onParseComplete(request);
+                    requestResponse.setHeaders(headers);
+                    if (body.pooled) {
+                        requestResponse.setBuffer(body.buffer);
+                    }
+                    ResponseDispatcher.dispatchResponse(requestResponse, callback);
+                    requestResponse.release();
+                } else {
+                    String error = new String(body.buffer, 0, body.length, StandardCharsets.UTF_8);
+                    body.release();
+                    ResponseDispatcher.dispatchError(statusCode, error, headers, callback);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends a request whose response body is streamed to a callback, from a worker thread.
+     * Error responses are read up to {@link StreamingCallback#MAX_ERROR_BODY} bytes.
+     *
+     * @param httpRequest The http request.
+     * @param request     The request being sent.
+     * @param upload      Channel of the request body, closed once sent, null if none.
+     * @param streaming   Callback reading the response body.
+     * @param callback    Callback, to receive the request's results.
+     */
+    private void sendStreaming(HttpRequest httpRequest, final RestRequest request, final ReadableByteChannel upload, final StreamingCallback streaming, final RequestCallback callback) {
+        CompletableFuture<HttpResponse<InputStream>> exchange = client.sendAsync(httpRequest, new HttpResponse.BodyHandler<InputStream>() {
+            @Override
+            public HttpResponse.BodySubscriber<InputStream> apply(HttpResponse.ResponseInfo responseInfo) {
+                RequestEvents.onResponseHeaders(request, responseInfo.statusCode());
+                return HttpResponse.BodySubscribers.ofInputStream();
+            }
+        });
+        abortOnCancel(request, exchange);
+        exchange.whenCompleteAsync(new BiConsumer<HttpResponse<InputStream>, Throwable>() {
+            @Override
+            public void accept(HttpResponse<InputStream> response, Throwable throwable) {
+                close(upload);
+                if (throwable != null) {
+                    dispatchFailure(throwable, callback);
+                    return;
+                }
+                int statusCode = response.statusCode();
+                if (request.isCanceled()) {
+                    close(response.body());
+                    ResponseDispatcher.dispatchInternalError(callback);
+                    return;
+                }
+                Map<String, String> headers = headersOf(response);
+                boolean gzip = Compression.isGzip(CacheEntry.header(headers, Compression.PROPERTY_CONTENT_ENCODING));
+                InputStream body = response.body();
+                ResponseStream stream;
+                try {
+                    if (gzip) {
+                        body = new GZIPInputStream(body, STREAM_BUFFER_SIZE);
+                    }
+                    if (statusCode < 200 || statusCode >= 300) {
+                        String error = readError(body);
+                        close(body);
+                        ResponseDispatcher.dispatchError(statusCode, error, headers, callback);
+                        return;
+                    }
+                    long length = gzip ? -1 : response.headers().firstValueAsLong(PROPERTY_CONTENT_LENGTH).orElse(-1);
+                    stream = new ResponseStream(body, statusCode, headers, length, streaming);
+                    streaming.onStream(stream);
+                } catch (IOException e) {
+                    close(body);
+                    ResponseDispatcher.dispatchInternalError(callback);
+                    return;
+                }
+                if (!stream.isDetached()) {
+                    close(stream);
+                }
+                RequestEvents.onBodyComplete(request, stream.getTransferred());
+                RequestResponse requestResponse = ResponsePool.obtain();
+                requestResponse.setCode(statusCode);
+                requestResponse.setHeaders(headers);
+                ResponseDispatcher.dispatchResponse(requestResponse, callback);
+                requestResponse.release();
+            }
+        }, StreamExecutor.INSTANCE);
+    }
+
+    /**
+     * Adds a header of a request to the http request, skipping it if the client does not allow it.
+     *
+     * @param builder Builder of the http request.
+     * @param name    Name of the header.
+     * @param value   Value of the header.
+     * @return If the header was added, false if it is restricted, null, or not a valid header.
+     */
+    static boolean addHeader(HttpRequest.Builder builder, String name, String value) {
+        if (name == null || value == null || RESTRICTED_HEADERS.contains(name)) {
+            return false;
+        }
+        try {
+            builder.header(name, value);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Builds a set of header names, looked up ignoring case.
+     *
+     * @param names The names.
+     * @return The unmodifiable set.
+     */
+    private static Set<String> restrictedHeaders(String... names) {
+        Set<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        set.addAll(Arrays.asList(names));
+        return Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * Aborts the exchange of a request once it is canceled.
+     *
+     * @param request  The request.
+     * @param exchange The exchange in flight.
+     */
+    private static void abortOnCancel(RestRequest request, final CompletableFuture<?> exchange) {
+        CancelToken token = request.getCancelToken();
+        if (token != null) {
+            token.onCancel(new Runnable() {
+                @Override
+                public void run() {
+                    exchange.cancel(true);
+                }
+            });
+        }
+    }
+
+    /**
+     * Dispatches a request that failed without a response.
+     *
+     * @param throwable The failure.
+     * @param callback  Callback, to receive the request's results.
+     */
+    private static void dispatchFailure(Throwable throwable, RequestCallback callback) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        if (cause instanceof HttpTimeoutException) {
+            ResponseDispatcher.dispatchTimeout(callback);
+        } else {
+            ResponseDispatcher.dispatchInternalError(callback);
+        }
+    }
+
+    /**
+     * Reads the body of an error response, up to {@link StreamingCallback#MAX_ERROR_BODY} bytes.
+     *
+     * @param body The body.
+     * @return The body as text.
+     * @throws IOException if the body cannot be read.
+     */
+    private static String readError(InputStream body) throws IOException {
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        ByteArrayOutputStream error = new ByteArrayOutputStream();
+        int read;
+        while (error.size() < StreamingCallback.MAX_ERROR_BODY
+                && (read = body.read(buffer, 0, Math.min(buffer.length, StreamingCallback.MAX_ERROR_BODY - error.size()))) >= 0) {
+            error.write(buffer, 0, read);
+        }
+        return new String(error.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Closes a stream or channel, ignoring errors.
+     *
+     * @param closeable The stream or channel, may be null.
+     */
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Returns the headers of a response, keeping the first value of each.
+     *
+     * @param response The response.
+     * @return The headers.
+     */
+    static Map<String, String> headersOf(HttpResponse<?> response) {
+        Map<String, String> headers = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+            if (!header.getValue().isEmpty()) {
+                headers.put(header.getKey(), header.getValue().get(0));
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Holder of the executor of streaming callbacks, created on first use.
+     */
+    private static final class StreamExecutor {
+
+        /**
+         * Executor of streaming callbacks, on virtual threads when available since they block on reads.
+         */
+        private static final ExecutorService INSTANCE = VirtualThreads.newExecutor();
+
+    }
+
+    /**
+     * A response body read into a buffer.
+     */
+    private static final class Body {
+
+        /**
+         * Buffer with the body, longer than the body if pooled.
+         */
+        private final byte[] buffer;
+        /**
+         * Length of the body.
+         */
+        private final int length;
+        /**
+         * If the buffer is from the {@link BufferPool}.
+         */
+        private final boolean pooled;
+
+        private Body(byte[] buffer, int length, boolean pooled) {
+            this.buffer = buffer;
+            this.length = length;
+            this.pooled = pooled;
+        }
+
+        /**
+         * Gives the buffer back to the pool if pooled, once the body is no longer used.
+         */
+        private void release() {
+            if (pooled) {
+                BufferPool.release(buffer);
+            }
+        }
+
+    }
+
+    /**
+     * Subscriber of a response body reading it into a pooled buffer, sized from its Content-Length.
+     */
+    private static final class PooledSubscriber implements HttpResponse.BodySubscriber<Body> {
+
+        /**
+         * The body.
+         */
+        private final CompletableFuture<Body> body = new CompletableFuture<>();
+        /**
+         * Buffer the body is read into, null once released.
+         */
+        private byte[] buffer;
+        /**
+         * Bytes read.
+         */
+        private int length;
+
+        /**
+         * Instantiate a subscriber.
+         *
+         * @param sizeHint Expected size of the body, 0 if unknown.
+         */
+        private PooledSubscriber(long sizeHint) {
+            buffer = BufferPool.acquire(sizeHint > 0 && sizeHint < (64 << 20) ? (int) sizeHint : STREAM_BUFFER_SIZE);
+        }
+
+        @Override
+        public CompletionStage<Body> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> chunks) {
+            for (ByteBuffer chunk : chunks) {
+                int count = chunk.remaining();
+                if (length + count > buffer.length) {
+                    buffer = BufferPool.grow(buffer, length, Math.max(buffer.length * 2, length + count));
+                }
+                chunk.get(buffer, length, count);
+                length += count;
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            BufferPool.release(buffer);
+            buffer = null;
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            body.complete(new Body(buffer, length, true));
+        }
+
+    }
+
+    /**
+     * Subscriber of a gzip response body, decompressing each chunk as it arrives.
+     */
+    private static final class GzipSubscriber implements HttpResponse.BodySubscriber<Body> {
+
+        /**
+         * The decompressed body.
+         */
+        private final CompletableFuture<Body> body = new CompletableFuture<>();
+        /**
+         * If the body is decompressed into a pooled buffer.
+         */
+        private final boolean pooled;
+        /**
+         * The decoder.
+         */
+        private final Compression.GzipDecoder decoder;
+        /**
+         * Subscription of the body.
+         */
+        private Flow.Subscription subscription;
+
+        /**
+         * Instantiate a subscriber.
+         *
+         * @param pooled If the body is decompressed into a pooled buffer.
+         */
+        private GzipSubscriber(boolean pooled) {
+            this.pooled = pooled;
+            this.decoder = new Compression.GzipDecoder(0, pooled);
+        }
+
+        @Override
+        public CompletionStage<Body> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> chunks) {
+            if (body.isDone()) {
+                return;
+            }
+            try {
+                for (ByteBuffer chunk : chunks) {
+                    decoder.update(chunk);
+                }
+            } catch (DataFormatException e) {
+                decoder.release();
+                decoder.discard();
+                subscription.cancel();
+                body.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (body.isDone()) {
+                return;
+            }
+            decoder.release();
+            decoder.discard();
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (body.isDone()) {
+                return;
+            }
+            try {
+                byte[] data = decoder.finish();
+                body.complete(new Body(data, decoder.getLength(), pooled));
+            } catch (DataFormatException e) {
+                decoder.discard();
+                body.completeExceptionally(e);
+            } finally {
+                decoder.release();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The JSON codec, the default of the library. Envelopes are read by the {@link EnvelopeParser}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class JsonEnvelopeCodec implements EnvelopeCodec {
+
+    /**
+     * Media type of JSON.
+     */
+    static final String MEDIA_TYPE = "application/json";
+
+    @Override
+    public String getMediaType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public String getContentType() {
+        return HttpClientTransport.CONTENT_TYPE_JSON;
+    }
+
+    @Override
+    public RequestResponse decode(byte[] data, int offset, int length) throws JSONException {
+        return EnvelopeParser.parse(data, offset, length);
+    }
+
+    @Override
+    public byte[] encode(JSONObject content) {
+        return content.toString().getBytes(EnvelopeParser.UTF_8);
+    }
+
+    @Override
+    public ContentReader newReader(byte[] data, int offset, int length) {
+        return new ContentReader(data, offset, length);
+    }
+
+    @Override
+    public JSONObject toJSONObject(byte[] data, int offset, int length) throws JSONException {
+        return new JSONObject(new String(data, offset, length, EnvelopeParser.UTF_8));
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies with log-linear buckets, recorded without locks.
+ * <p>
+ * Values are kept in microseconds, each power of two split in {@value #SUB_BUCKETS} linear buckets,
+ * so percentiles are exact below {@value #SUB_BUCKETS} microseconds and within about 6% above,
+ * from microseconds to hours in a fixed amount of memory.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of linear buckets in each power of two.
+     */
+    public static final int SUB_BUCKETS = 16;
+    /**
+     * Bits of the number of linear buckets.
+     */
+    private static final int SUB_BITS = 4;
+    /**
+     * Number of buckets, covering up to 2^40 microseconds.
+     */
+    private static final int BUCKETS = (40 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    /**
+     * Counts of the buckets.
+     */
+    private final AtomicLongArray counts;
+    /**
+     * Number of values recorded.
+     */
+    private final AtomicLong count = new AtomicLong();
+    /**
+     * Sum of the values recorded in microseconds.
+     */
+    private final AtomicLong sum = new AtomicLong();
+    /**
+     * Highest value recorded in microseconds.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Instantiate an empty histogram.
+     */
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos Latency in nanoseconds, negative values are ignored.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        long micros = nanos / 1000;
+        counts.incrementAndGet(indexOf(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+        long current = max.get();
+        while (micros > current && !max.compareAndSet(current, micros)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Returns the number of latencies recorded.
+     *
+     * @return The count.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the mean latency.
+     *
+     * @return Mean in microseconds, 0 if empty.
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Returns the highest latency.
+     *
+     * @return Maximum in microseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns a percentile of the latencies.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The highest latency of the percentile's bucket in microseconds, 0 if empty.
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Returns a copy of this histogram, not affected by later records.
+     *
+     * @return The copy.
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucket = counts.get(i);
+            copy.counts.set(i, bucket);
+            n += bucket;
+        }
+        copy.count.set(n);
+        copy.sum.set(sum.get());
+        copy.max.set(max.get());
+        return copy;
+    }
+
+    /**
+     * Returns the summary of this histogram, count, mean, percentiles 50, 90, 99 and 99.9 and max in microseconds.
+     *
+     * @return The summary.
+     * @throws JSONException never, the values are all valid.
+     */
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("count", getCount());
+        json.put("mean", getMean());
+        json.put("p50", getPercentile(50));
+        json.put("p90", getPercentile(90));
+        json.put("p99", getPercentile(99));
+        json.put("p999", getPercentile(99.9));
+        json.put("max", getMax());
+        return json;
+    }
+
+    /**
+     * Returns the bucket of a value.
+     *
+     * @param value Value in microseconds.
+     * @return Index of the bucket.
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int index = (exponent - SUB_BITS + 1) * SUB_BUCKETS + (int) ((value >> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    /**
+     * Returns the highest value of a bucket.
+     *
+     * @param index Index of the bucket.
+     * @return Value in microseconds.
+     */
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.comandulli.lib.rest;
+
+/**
+ * Listener of pooled responses that were retained and never recycled, see {@link ResponsePool#setLeakDetection(boolean)}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public interface LeakListener {
+
+    /**
+     * Called when a leaked response is found, from the thread obtaining another response.
+     *
+     * @param allocation Stack trace of where the leaked response was retained.
+     */
+    void onLeak(Throwable allocation);
+
+}
@@ -0,0 +1,150 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Event listener that keeps latency histograms and counters per endpoint template.
+ * <p>
+ * Templates are the method and url path of a request without its query, with segments that look like
+ * ids (numbers, UUIDs and long hexadecimal strings) replaced by {id}, so "GET /item/42?full=1" counts as
+ * "GET /item/{id}". Override {@link #templateOf(RequestTrace)} to name endpoints differently.
+ * Recording takes no locks, and {@link #getSnapshot()} copies the metrics for export.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class MetricsCollector extends RequestEventListener {
+
+    /**
+     * Placeholder of id segments in templates.
+     */
+    public static final String ID_PLACEHOLDER = "{id}";
+
+    /**
+     * Metrics by endpoint template.
+     */
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public void onCallbackComplete(RequestTrace trace) {
+        String template = templateOf(trace);
+        EndpointMetrics metrics = endpoints.get(template);
+        if (metrics == null) {
+            EndpointMetrics created = new EndpointMetrics();
+            metrics = endpoints.putIfAbsent(template, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        metrics.record(trace);
+    }
+
+    /**
+     * Returns the endpoint template of a request.
+     *
+     * @param trace Trace of the request.
+     * @return The template.
+     */
+    protected String templateOf(RequestTrace trace) {
+        String url = trace.getUrl();
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : url.indexOf('/', start + 3);
+        int end = url.indexOf('?');
+        if (end < 0) {
+            end = url.length();
+        }
+        StringBuilder template = new StringBuilder(trace.getRequest().getMethod().name()).append(' ');
+        if (start < 0 || start >= end) {
+            return template.append('/').toString();
+        }
+        int segment = start;
+        while (segment < end) {
+            int next = url.indexOf('/', segment + 1);
+            if (next < 0 || next > end) {
+                next = end;
+            }
+            template.append('/');
+            if (isId(url, segment + 1, next)) {
+                template.append(ID_PLACEHOLDER);
+            } else {
+                template.append(url, segment + 1, next);
+            }
+            segment = next;
+        }
+        return template.toString();
+    }
+
+    /**
+     * Returns the metrics of an endpoint as they are now, still being recorded.
+     *
+     * @param template The endpoint template.
+     * @return The metrics, null if no requests were made to it.
+     */
+    public EndpointMetrics getMetrics(String template) {
+        return endpoints.get(template);
+    }
+
+    /**
+     * Returns a copy of the metrics of every endpoint.
+     *
+     * @return The metrics by endpoint template.
+     */
+    public Map<String, EndpointMetrics> getSnapshot() {
+        Map<String, EndpointMetrics> snapshot = new HashMap<>();
+        for (Map.Entry<String, EndpointMetrics> entry : endpoints.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().copy());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns a copy of the metrics of every endpoint in JSON, by endpoint template.
+     *
+     * @return The metrics.
+     * @throws JSONException never, the values are all valid.
+     */
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, EndpointMetrics> entry : getSnapshot().entrySet()) {
+            json.put(entry.getKey(), entry.getValue().toJSON());
+        }
+        return json;
+    }
+
+    /**
+     * Discards all metrics.
+     */
+    public void reset() {
+        endpoints.clear();
+    }
+
+    /**
+     * Checks if a path segment looks like an id.
+     *
+     * @param url   The url.
+     * @param start Start of the segment.
+     * @param end   End of the segment.
+     * @return If it is a number, an UUID or a hexadecimal string of at least 16 characters.
+     */
+    private static boolean isId(String url, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        boolean digits = true;
+        boolean hex = true;
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            boolean digit = c >= '0' && c <= '9';
+            digits &= digit;
+            hex &= digit || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F') || c == '-';
+        }
+        return digits || (hex && end - start >= 16);
+    }
+
+}
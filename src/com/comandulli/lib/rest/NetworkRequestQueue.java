@@ -1,13 +1,26 @@
 package com.comandulli.lib.rest;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.net.ConnectivityManager;
 
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.DiskBasedCache;
+import com.android.volley.toolbox.HurlStack;
 import com.android.volley.toolbox.Volley;
+import com.comandulli.lib.rest.cache.CacheEntry;
+import com.comandulli.lib.rest.cache.ResponseCache;
 import com.comandulli.lib.rest.exception.NoInternetConnectionException;
 
+import org.json.JSONException;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
 /**
  * Request queue singleton that handles all REST requests.
  * <p>
@@ -16,17 +29,61 @@ import com.comandulli.lib.rest.exception.NoInternetConnectionException;
  * <p>
  * You can check if you are able to make any requests through the method {@link #isConnected()}.
  * If false you either have no connection or this context has not yet been initialized through {@link #getNetworkState(Context)}
+ * <p>
+ * Requests are carried by a {@link RequestTransport}, volley by default. Another transport can be plugged through
+ * {@link #setTransport(RequestTransport)}, which also allows requests to be made without an android context.
  *
  * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
  * @since 1.0
  */
 public class NetworkRequestQueue {
 
+    /**
+     * Directory of volley's disk cache, the same as volley's default.
+     */
+    private static final String VOLLEY_CACHE_DIR = "volley";
+    /**
+     * Number of volley's network threads, the same as volley's default.
+     */
+    private static final int VOLLEY_THREADS = 4;
+
     /**
      * The system network request queue.
      * Allows us to know if we have any connection.
      */
     private static NetworkRequestQueue networkState;
+    /**
+     * The transport that carries all requests.
+     */
+    private static volatile RequestTransport transport;
+    /**
+     * The response cache, null if disabled.
+     */
+    private static volatile ResponseCache responseCache;
+    /**
+     * Circuit breaker of the requests, null if disabled.
+     */
+    private static volatile CircuitBreaker circuitBreaker;
+    /**
+     * Outbox of durable requests made without connection, null if disabled.
+     */
+    private static volatile RequestOutbox outbox;
+    /**
+     * Listener of the phases of every request, null if disabled.
+     */
+    private static volatile RequestEventListener eventListener;
+    /**
+     * Executor callbacks are delivered on, null to use the default of the transport.
+     */
+    private static volatile Executor callbackExecutor;
+    /**
+     * Coalescer of identical requests in flight.
+     */
+    private static final RequestCoalescer coalescer = new RequestCoalescer();
+    /**
+     * Scheduler of requests to the transport.
+     */
+    private static final RequestScheduler scheduler = new RequestScheduler();
     /**
      * The current android context.
      */
@@ -35,6 +92,10 @@ public class NetworkRequestQueue {
      * The volley request queue.
      */
     private final RequestQueue requestQueue;
+    /**
+     * If the connectivity receiver replaying the outbox is registered.
+     */
+    private boolean connectivityRegistered;
 
     /**
      * Instantiates a network request queue responsible for the handling of request
@@ -45,7 +106,47 @@ public class NetworkRequestQueue {
     private NetworkRequestQueue(Context context) {
         networkState = this;
         this.context = context;
-        requestQueue = Volley.newRequestQueue(context);
+        requestQueue = newRequestQueue(context);
+        if (transport == null) {
+            transport = new VolleyTransport(requestQueue);
+        }
+        if (outbox != null) {
+            registerConnectivityReceiver();
+        }
+    }
+
+    /**
+     * Creates the volley request queue, as {@link Volley#newRequestQueue(Context)} does, delivering the
+     * responses of this library's requests on volley's network threads, where they are parsed,
+     * and the responses of other volley requests on the main thread.
+     *
+     * @param context Android context.
+     * @return The started request queue.
+     */
+    private static RequestQueue newRequestQueue(Context context) {
+        File cacheDir = new File(context.getCacheDir(), VOLLEY_CACHE_DIR);
+        RequestQueue queue = new RequestQueue(new DiskBasedCache(cacheDir), new BasicNetwork(new HurlStack()), VOLLEY_THREADS, new VolleyDelivery());
+        queue.start();
+        return queue;
+    }
+
+    /**
+     * Registers a receiver that replays the outbox whenever the connection returns.
+     */
+    private synchronized void registerConnectivityReceiver() {
+        if (connectivityRegistered) {
+            return;
+        }
+        connectivityRegistered = true;
+        context.getApplicationContext().registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                RequestOutbox current = outbox;
+                if (current != null && isNetworkAvailable()) {
+                    current.replay();
+                }
+            }
+        }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
     }
 
     /**
@@ -61,6 +162,170 @@ public class NetworkRequestQueue {
         return networkState;
     }
 
+    /**
+     * Sets the transport that carries all requests, replacing the default volley transport.
+     * If no android context is initialized the transport is assumed to always have a connection.
+     *
+     * @param requestTransport The transport.
+     */
+    public static synchronized void setTransport(RequestTransport requestTransport) {
+        transport = requestTransport;
+    }
+
+    /**
+     * Returns the transport that carries all requests.
+     *
+     * @return The transport, null if not yet initialized.
+     */
+    public static RequestTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Sets the response cache used by cacheable requests, null to disable caching.
+     *
+     * @param cache The response cache.
+     */
+    public static void setResponseCache(ResponseCache cache) {
+        responseCache = cache;
+    }
+
+    /**
+     * Returns the response cache used by cacheable requests.
+     *
+     * @return The response cache, null if disabled.
+     */
+    public static ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Sets the circuit breaker of the requests, null to disable it.
+     *
+     * @param breaker The circuit breaker.
+     */
+    public static void setCircuitBreaker(CircuitBreaker breaker) {
+        circuitBreaker = breaker;
+    }
+
+    /**
+     * Returns the circuit breaker of the requests, to monitor its circuits.
+     *
+     * @return The circuit breaker, null if disabled.
+     */
+    public static CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Sets the listener of the phases of every request, such as a {@link MetricsCollector}, null to disable it.
+     *
+     * @param listener The listener.
+     */
+    public static void setEventListener(RequestEventListener listener) {
+        eventListener = listener;
+    }
+
+    /**
+     * Returns the listener of the phases of every request.
+     *
+     * @return The listener, null if disabled.
+     */
+    public static RequestEventListener getEventListener() {
+        return eventListener;
+    }
+
+    /**
+     * Sets the executor callbacks are delivered on, such as {@link CallbackExecutors#mainThread()},
+     * {@link CallbackExecutors#DIRECT} or a background pool. Responses are parsed and decoded before the hop.
+     * By default callbacks are delivered on the main thread with volley, and right away with other transports.
+     *
+     * @param executor The executor, null to use the default one.
+     * @see RestRequest#setCallbackExecutor(Executor)
+     */
+    public static void setCallbackExecutor(Executor executor) {
+        callbackExecutor = executor;
+    }
+
+    /**
+     * Returns the executor callbacks are delivered on.
+     *
+     * @return The executor, null if the default of the transport is used.
+     */
+    public static Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
+    /**
+     * Returns the executor callbacks are delivered on when not set for a request.
+     *
+     * @return The executor set, or the default of the transport.
+     */
+    static Executor getDefaultCallbackExecutor() {
+        Executor executor = callbackExecutor;
+        if (executor != null) {
+            return executor;
+        }
+        return transport instanceof VolleyTransport ? CallbackExecutors.mainThread() : CallbackExecutors.DIRECT;
+    }
+
+    /**
+     * Sets the outbox of durable requests made without connection, null to disable it.
+     * The outbox is replayed whenever the connection returns, and right away if connected.
+     *
+     * @param requestOutbox The outbox.
+     */
+    public static synchronized void setOutbox(RequestOutbox requestOutbox) {
+        outbox = requestOutbox;
+        if (requestOutbox == null) {
+            return;
+        }
+        if (networkState != null) {
+            networkState.registerConnectivityReceiver();
+        }
+        if (isConnected()) {
+            requestOutbox.replay();
+        }
+    }
+
+    /**
+     * Returns the outbox of durable requests made without connection.
+     *
+     * @return The outbox, null if disabled.
+     */
+    public static RequestOutbox getOutbox() {
+        return outbox;
+    }
+
+    /**
+     * Returns the scheduler of requests, to configure its limits and check its metrics.
+     *
+     * @return The scheduler.
+     */
+    public static RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Returns how many network calls were saved by coalescing identical requests in flight.
+     *
+     * @return The number of coalesced requests.
+     */
+    public static long getCoalescedRequestCount() {
+        return coalescer.getCoalescedCount();
+    }
+
+    /**
+     * Cancels all requests in flight with a tag, such as when leaving the screen that made them.
+     *
+     * @param tag The tag.
+     * @return Number of requests canceled.
+     * @see RestRequest#setTag(Object)
+     */
+    public static int cancelAll(Object tag) {
+        return RequestHandle.cancelAll(tag);
+    }
+
     /**
      * Checks if this queue is able to handle requests, if false either no connection is available
      * or the context has not yet been initialized.
@@ -68,7 +333,10 @@ public class NetworkRequestQueue {
      * @return if this queue is able to handle requests.
      */
     public static boolean isConnected() {
-        return networkState != null && networkState.isNetworkAvailable();
+        if (networkState == null) {
+            return transport != null;
+        }
+        return networkState.isNetworkAvailable();
     }
 
     /**
@@ -93,4 +361,97 @@ public class NetworkRequestQueue {
         networkState.requestQueue.add(request);
     }
 
+    /**
+     * Makes a REST request through the current transport.
+     * Cacheable requests with a fresh entry in the response cache are served without any network request,
+     * and coalescing requests identical to one in flight share its network call.
+     * Other requests are sent by priority through the {@link RequestScheduler}, and retried following their {@link RetryPolicy}.
+     * Requests to a backend whose circuit is open fail fast with an internal error.
+     * Canceled requests {@see RequestHandle} leave the scheduler and stop retrying.
+     * The request holds the state of this execution while in flight, so it must not be made again until it completes,
+     * {@link RestRequest#execute(RequestCallback)} makes a copy of the request for each execution.
+     *
+     * @param request  The request.
+     * @param url      The resolved url of the request.
+     * @param callback Callback, to receive the request's results.
+     * @throws NoInternetConnectionException if there is no connection.
+     */
+    public static void makeRequest(RestRequest request, String url, RequestCallback callback) throws NoInternetConnectionException {
+        ResponseCache cache = responseCache;
+        if (cache != null && request.isCacheable()) {
+            String key = ResponseCache.keyOf(request.getMethod().name(), url);
+            CacheEntry entry = cache.get(key);
+            if (entry != null && entry.isFresh(System.currentTimeMillis())) {
+                RequestResponse response = null;
+                try {
+                    byte[] data = entry.getData();
+                    response = EnvelopeCodecs.forResponse(null, data, 0, data.length).decode(data, 0, data.length);
+                } catch (JSONException e) {
+                    cache.remove(key);
+                    entry = null;
+                }
+                if (response != null) {
+                    ResponseDispatcher.dispatchResponse(response, callback);
+                    response.release();
+                    return;
+                }
+            }
+            request.setCacheState(key, entry != null && entry.hasValidators() ? entry : null);
+        } else {
+            request.setCacheState(null, null);
+        }
+        RequestTransport current = transport;
+        if (current == null || (networkState != null && !networkState.isNetworkAvailable())) {
+            throw new NoInternetConnectionException();
+        }
+        if (request.isCoalescing()) {
+            callback = coalescer.coalesce(RequestCoalescer.keyOf(request, url, HeaderRegistry.headersOf(request)), request, callback);
+            if (callback == null) {
+                return;
+            }
+        }
+        RetryPolicy retryPolicy = request.getRetryPolicy();
+        if (retryPolicy.appliesTo(request)) {
+            callback = new RetryCallback(request, url, retryPolicy, callback);
+        }
+        send(current, request, url, callback);
+    }
+
+    /**
+     * Sends a request again, such as when retrying it.
+     *
+     * @param request  The request.
+     * @param url      The resolved url of the request.
+     * @param callback Callback, to receive the request's results.
+     */
+    static void resend(RestRequest request, String url, RequestCallback callback) {
+        RequestTransport current = transport;
+        if (current == null || (networkState != null && !networkState.isNetworkAvailable())) {
+            ResponseDispatcher.dispatchNoConnection(callback);
+            return;
+        }
+        send(current, request, url, callback);
+    }
+
+    /**
+     * Sends a request through the scheduler, unless its circuit is open.
+     *
+     * @param current  The transport.
+     * @param request  The request.
+     * @param url      The resolved url of the request.
+     * @param callback Callback, to receive the request's results.
+     */
+    private static void send(RequestTransport current, RestRequest request, String url, RequestCallback callback) {
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker != null) {
+            String key = breaker.keyOf(url);
+            if (!breaker.tryAcquire(key)) {
+                ResponseDispatcher.dispatchInternalError(callback);
+                return;
+            }
+            callback = new CircuitCallback(breaker, key, request, callback);
+        }
+        scheduler.submit(current, request, url, callback);
+    }
+
 }
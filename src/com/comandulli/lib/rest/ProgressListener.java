@@ -0,0 +1,19 @@
+package com.comandulli.lib.rest;
+
+/**
+ * Listener of the progress of a body being transferred, see {@link RequestBody} and {@link StreamingCallback}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public interface ProgressListener {
+
+    /**
+     * Called as the body is transferred, from the thread transferring it.
+     *
+     * @param transferred Bytes transferred so far.
+     * @param total       Size of the body, -1 if unknown.
+     */
+    void onProgress(long transferred, long total);
+
+}
@@ -0,0 +1,305 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoder of a model class derived from its fields, see {@link ContentDecoders#derive(Class)}.
+ * <p>
+ * The fields are looked up once, when the decoder is built, and {@link ContentDecoders} keeps the decoder
+ * for later responses. Each decode still creates the object and sets its fields through reflection,
+ * which the android versions this library supports offer no faster way to do without generating code.
+ * Each non-static, non-transient and non-final field of the class and its superclasses is decoded
+ * from the property of its name, or of its {@link ContentName}. Fields may be primitives, their wrappers,
+ * strings, enums, lists or collections of those, or other model classes.
+ * Properties without a field, and fields of other types, are skipped.
+ *
+ * @param <T> Type of the decoded object.
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class ReflectiveDecoder<T> implements ContentDecoder<T> {
+
+    private static final int INT = 0;
+    private static final int LONG = 1;
+    private static final int DOUBLE = 2;
+    private static final int FLOAT = 3;
+    private static final int BOOLEAN = 4;
+    private static final int SHORT = 5;
+    private static final int BYTE = 6;
+    private static final int VALUE = 7;
+
+    /**
+     * Constructor without arguments of the class.
+     */
+    private final Constructor<T> constructor;
+    /**
+     * Property names in UTF-8, in the order of {@link #properties}.
+     */
+    private final byte[][] keys;
+    /**
+     * Decoded fields.
+     */
+    private final Property[] properties;
+
+    private ReflectiveDecoder(Constructor<T> constructor, byte[][] keys, Property[] properties) {
+        this.constructor = constructor;
+        this.keys = keys;
+        this.properties = properties;
+    }
+
+    /**
+     * Builds the decoder of a class.
+     *
+     * @param type The class.
+     * @param <T>  Type of the class.
+     * @return The decoder, null if the class can not be instantiated without arguments.
+     */
+    static <T> ReflectiveDecoder<T> of(Class<T> type) {
+        if (type.isPrimitive() || type.isArray() || type.isInterface() || type.isEnum()
+                || Modifier.isAbstract(type.getModifiers()) || isPlatform(type)) {
+            return null;
+        }
+        Constructor<T> constructor;
+        try {
+            constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+        List<Property> properties = new ArrayList<>();
+        for (Class<?> c = type; c != null && !isPlatform(c); c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)
+                        || Modifier.isFinal(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                } catch (SecurityException e) {
+                    continue;
+                }
+                properties.add(new Property(field));
+            }
+        }
+        byte[][] keys = new byte[properties.size()][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = properties.get(i).name.getBytes(EnvelopeParser.UTF_8);
+        }
+        return new ReflectiveDecoder<>(constructor, keys, properties.toArray(new Property[0]));
+    }
+
+    /**
+     * Builds the decoder of an enum, decoding each constant from its name.
+     * Names of no constant are decoded as null.
+     *
+     * @param type The enum class.
+     * @return The decoder.
+     */
+    static ContentDecoder<?> enumOf(Class<?> type) {
+        final Map<String, Object> constants = new HashMap<>();
+        for (Object constant : type.getEnumConstants()) {
+            constants.put(((Enum<?>) constant).name(), constant);
+        }
+        return new ContentDecoder<Object>() {
+            @Override
+            public Object decode(ContentReader reader) throws JSONException {
+                if (reader.peek() == ContentReader.Token.NULL) {
+                    reader.nextNull();
+                    return null;
+                }
+                return constants.get(reader.nextString());
+            }
+        };
+    }
+
+    @Override
+    public T decode(ContentReader reader) throws JSONException {
+        if (reader.peek() == ContentReader.Token.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        T object;
+        try {
+            object = constructor.newInstance();
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new JSONException("Can not instantiate " + constructor.getDeclaringClass().getName() + ": " + e);
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int index = reader.nextNameIndex(keys);
+            if (index < 0) {
+                reader.skipValue();
+            } else {
+                properties[index].read(reader, object);
+            }
+        }
+        reader.endObject();
+        return object;
+    }
+
+    /**
+     * If a class belongs to the platform rather than to the application, and so is not decoded from its fields.
+     *
+     * @param type The class.
+     * @return If it is a platform class.
+     */
+    private static boolean isPlatform(Class<?> type) {
+        String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("android.")
+                || name.startsWith("org.json.");
+    }
+
+    /**
+     * Returns the decoder of values of a field type.
+     *
+     * @param type The type, a class or a parameterized list or collection.
+     * @return The decoder, null if values of the type are not decoded.
+     */
+    private static ContentDecoder<?> decoderOf(Type type) {
+        if (type instanceof Class) {
+            return ContentDecoders.derived((Class<?>) type);
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Type raw = parameterized.getRawType();
+            if (raw == List.class || raw == Collection.class || raw == ArrayList.class) {
+                ContentDecoder<?> element = decoderOf(parameterized.getActualTypeArguments()[0]);
+                return element != null ? ContentDecoders.listOf(element) : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A decoded field.
+     */
+    private static final class Property {
+        /**
+         * The field.
+         */
+        final Field field;
+        /**
+         * Name of the property.
+         */
+        final String name;
+        /**
+         * How the value is read, one of the primitive kinds or {@link #VALUE}.
+         */
+        final int kind;
+        /**
+         * Decoder of the value, looked up at first use so that classes may refer to each other, null until then.
+         */
+        private volatile ContentDecoder<?> decoder;
+        /**
+         * If the type of the field has no decoder.
+         */
+        private volatile boolean unsupported;
+
+        Property(Field field) {
+            ContentName contentName = field.getAnnotation(ContentName.class);
+            Class<?> type = field.getType();
+            this.field = field;
+            this.name = contentName != null ? contentName.value() : field.getName();
+            if (type == int.class) {
+                kind = INT;
+            } else if (type == long.class) {
+                kind = LONG;
+            } else if (type == double.class) {
+                kind = DOUBLE;
+            } else if (type == float.class) {
+                kind = FLOAT;
+            } else if (type == boolean.class) {
+                kind = BOOLEAN;
+            } else if (type == short.class) {
+                kind = SHORT;
+            } else if (type == byte.class) {
+                kind = BYTE;
+            } else {
+                kind = VALUE;
+                unsupported = type.isPrimitive();
+            }
+        }
+
+        /**
+         * Reads the next value of a reader into the field of an object.
+         * Null leaves primitives at their value.
+         *
+         * @param reader Reader positioned at the value.
+         * @param target The object.
+         * @throws JSONException if the value can not be decoded.
+         */
+        void read(ContentReader reader, Object target) throws JSONException {
+            try {
+                if (kind != VALUE && reader.peek() == ContentReader.Token.NULL) {
+                    reader.nextNull();
+                    return;
+                }
+                switch (kind) {
+                    case INT:
+                        field.setInt(target, reader.nextInt());
+                        break;
+                    case LONG:
+                        field.setLong(target, reader.nextLong());
+                        break;
+                    case DOUBLE:
+                        field.setDouble(target, reader.nextDouble());
+                        break;
+                    case FLOAT:
+                        field.setFloat(target, (float) reader.nextDouble());
+                        break;
+                    case BOOLEAN:
+                        field.setBoolean(target, reader.nextBoolean());
+                        break;
+                    case SHORT:
+                        field.setShort(target, (short) reader.nextInt());
+                        break;
+                    case BYTE:
+                        field.setByte(target, (byte) reader.nextInt());
+                        break;
+                    default:
+                        ContentDecoder<?> decoder = decoder();
+                        if (decoder == null) {
+                            reader.skipValue();
+                        } else {
+                            field.set(target, decoder.decode(reader));
+                        }
+                        break;
+                }
+            } catch (IllegalAccessException e) {
+                throw new JSONException("Can not set " + field.getName() + ": " + e);
+            }
+        }
+
+        /**
+         * Returns the decoder of the value, looking it up on first use.
+         *
+         * @return The decoder, null if the type of the field has none.
+         */
+        private ContentDecoder<?> decoder() {
+            ContentDecoder<?> decoder = this.decoder;
+            if (decoder == null && !unsupported) {
+                decoder = decoderOf(field.getGenericType());
+                if (decoder == null) {
+                    unsupported = true;
+                } else {
+                    this.decoder = decoder;
+                }
+            }
+            return decoder;
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.comandulli.lib.rest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Body of a request read from a file or a channel as it is sent, instead of held in memory.
+ * <p>
+ * The body is read in chunks only as fast as the connection takes them, so any size is sent
+ * within a bounded memory footprint. Set it with {@link RestRequest#setBody(RequestBody)}.
+ * A body from a file is reopened on each attempt and can be retried, one from a channel can only be sent once.
+ * Only sent by the {@link HttpClientTransport}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public abstract class RequestBody {
+
+    /**
+     * Content type of the body.
+     */
+    private final String contentType;
+    /**
+     * Size of the body, -1 if unknown.
+     */
+    private final long contentLength;
+    /**
+     * Listener of the upload progress, null if none.
+     */
+    private volatile ProgressListener progressListener;
+
+    /**
+     * Instantiate a body.
+     *
+     * @param contentType   Content type of the body.
+     * @param contentLength Size of the body, -1 if unknown.
+     */
+    protected RequestBody(String contentType, long contentLength) {
+        this.contentType = contentType;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Creates a body read from a file.
+     *
+     * @param file        The file.
+     * @param contentType Content type of the body.
+     * @return The body.
+     */
+    public static RequestBody ofFile(final File file, String contentType) {
+        return new RequestBody(contentType, file.length()) {
+            @Override
+            public ReadableByteChannel openChannel() throws IOException {
+                return new FileInputStream(file).getChannel();
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Creates a body read from a channel, that can only be sent once.
+     *
+     * @param channel       The channel, closed once read.
+     * @param contentLength Size of the body, -1 if unknown.
+     * @param contentType   Content type of the body.
+     * @return The body.
+     */
+    public static RequestBody ofChannel(final ReadableByteChannel channel, long contentLength, String contentType) {
+        return new RequestBody(contentType, contentLength) {
+            private boolean opened;
+
+            @Override
+            public synchronized ReadableByteChannel openChannel() throws IOException {
+                if (opened) {
+                    throw new IOException("Body already sent");
+                }
+                opened = true;
+                return channel;
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Opens a channel to read the body from its beginning.
+     *
+     * @return The channel, closed by the caller.
+     * @throws IOException if the body cannot be read.
+     */
+    public abstract ReadableByteChannel openChannel() throws IOException;
+
+    /**
+     * If the body can be read again, so the request can be retried.
+     *
+     * @return If it is repeatable.
+     */
+    public abstract boolean isRepeatable();
+
+    /**
+     * Returns the content type of the body.
+     *
+     * @return The content type.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Returns the size of the body.
+     *
+     * @return The size, -1 if unknown.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Set a listener of the upload progress.
+     *
+     * @param progressListener The listener, null for none.
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Returns the listener of the upload progress.
+     *
+     * @return The listener, null if none.
+     */
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+}
@@ -137,6 +137,50 @@ public abstract class RequestCallback {
         }
     }
 
+    /**
+     * Calls the callback matching an error status code, such as {@link #onUnauthorized()} for 401.
+     * Any other 4XX or 5XX code is handled by {@link #onInternalError()}.
+     *
+     * @param code The status code.
+     * @return If the code was an error status and a callback was called.
+     */
+    public boolean dispatchStatus(int code) {
+        switch (code) {
+            case 400:
+                onInvalidRequest();
+                return true;
+            case 401:
+                onUnauthorized();
+                return true;
+            case 403:
+                onForbidden();
+                return true;
+            case 408:
+                onTimeout();
+                return true;
+            case 409:
+                onConflict();
+                return true;
+            default:
+                if (code >= 400) {
+                    onInternalError();
+                    return true;
+                }
+                return false;
+        }
+    }
+
+    /**
+     * Callback when the request is canceled before it completes, through its {@link RequestHandle},
+     * its tag or its future. No result follows, not even {@link #always()}.
+     * Does nothing unless overridden or passed on to the parent.
+     */
+    public void onCanceled() {
+        if (parent != null) {
+            parent.onCanceled();
+        }
+    }
+
     /**
      * Callback that is callback in EVERY request.
      */
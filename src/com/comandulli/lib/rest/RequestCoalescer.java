@@ -0,0 +1,289 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Shares a single network call between identical requests in flight,
+ * fanning out its result to the callbacks of every request.
+ * <p>
+ * The call is canceled only once every request sharing it is canceled, until then canceled requests just drop its result.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class RequestCoalescer {
+
+    /**
+     * Calls in flight by key.
+     */
+    private final Map<String, Call> inFlight = new HashMap<>();
+    /**
+     * Number of network calls saved.
+     */
+    private long coalescedCount;
+
+    /**
+     * Returns the key of a request, identical requests have the same key.
+     * Headers are keyed sorted by name, ignoring its case, and the content with its keys sorted,
+     * so the order they were added in does not matter. Requests of another priority or deadline
+     * have another key, so a request is never held back by a call of a lower priority.
+     *
+     * @param request The request.
+     * @param url     Resolved url of the request.
+     * @param headers Headers of the request.
+     * @return The key.
+     */
+    static String keyOf(RestRequest request, String url, Map<String, String> headers) {
+        StringBuilder key = new StringBuilder();
+        key.append(request.getMethod().name()).append(' ').append(url)
+                .append(' ').append(request.getPriority().name())
+                .append(' ').append(request.getDeadline());
+        Map<String, String> sorted = HeaderRegistry.newHeaders();
+        sorted.putAll(headers);
+        for (Map.Entry<String, String> header : sorted.entrySet()) {
+            key.append('\n').append(header.getKey().toLowerCase(Locale.ROOT)).append(": ").append(header.getValue());
+        }
+        JSONObject content = request.getContent();
+        if (content != null) {
+            key.append("\n\n");
+            appendCanonical(key, content);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Appends a JSON value with the keys of its objects sorted, so equal values are written the same way.
+     *
+     * @param key   The key being built.
+     * @param value The value.
+     */
+    private static void appendCanonical(StringBuilder key, Object value) {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            List<String> names = new ArrayList<>();
+            Iterator<String> iterator = object.keys();
+            while (iterator.hasNext()) {
+                names.add(iterator.next());
+            }
+            Collections.sort(names);
+            key.append('{');
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) {
+                    key.append(',');
+                }
+                key.append(JSONObject.quote(names.get(i))).append(':');
+                appendCanonical(key, object.opt(names.get(i)));
+            }
+            key.append('}');
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            key.append('[');
+            for (int i = 0; i < array.length(); i++) {
+                if (i > 0) {
+                    key.append(',');
+                }
+                appendCanonical(key, array.opt(i));
+            }
+            key.append(']');
+        } else if (value instanceof String) {
+            key.append(JSONObject.quote((String) value));
+        } else if (value == null || value == JSONObject.NULL) {
+            key.append("null");
+        } else {
+            key.append(value);
+        }
+    }
+
+    /**
+     * Joins an identical call in flight, or starts a new one.
+     * The execution of a request starting a call is sent with the call's cancellation in place of its own.
+     *
+     * @param key      Key of the request.
+     * @param request  The request.
+     * @param callback Callback of the request, may be null.
+     * @return The callback to send the request with, null if it joined a call in flight.
+     */
+    RequestCallback coalesce(String key, RestRequest request, RequestCallback callback) {
+        CancelToken token = request.getCancelToken();
+        final Call call;
+        boolean joined;
+        synchronized (this) {
+            Call current = inFlight.get(key);
+            joined = current != null;
+            if (joined) {
+                call = current;
+                coalescedCount++;
+            } else {
+                call = new Call(key);
+                inFlight.put(key, call);
+            }
+            call.callbacks.add(callback);
+            if (token == null) {
+                call.sharers = -1;
+            } else if (call.sharers >= 0) {
+                call.sharers++;
+            }
+        }
+        if (token != null) {
+            token.onCancel(new Runnable() {
+                @Override
+                public void run() {
+                    leave(call);
+                }
+            });
+        }
+        if (joined) {
+            return null;
+        }
+        request.setCancelToken(call.token);
+        return call;
+    }
+
+    /**
+     * Leaves a call as a request sharing it is canceled, canceling the call once all of them are.
+     *
+     * @param call The call.
+     */
+    private void leave(Call call) {
+        synchronized (this) {
+            if (call.sharers <= 0 || --call.sharers > 0) {
+                return;
+            }
+            if (inFlight.get(call.key) == call) {
+                inFlight.remove(call.key);
+            }
+        }
+        call.token.cancel();
+    }
+
+    /**
+     * Returns the number of network calls saved.
+     *
+     * @return The number of requests that joined a call in flight.
+     */
+    synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * Ends a call, so new requests are no longer joined to it.
+     *
+     * @param call The call.
+     * @return Callbacks of all requests sharing the call.
+     */
+    private synchronized List<RequestCallback> complete(Call call) {
+        if (inFlight.get(call.key) == call) {
+            inFlight.remove(call.key);
+        }
+        return new ArrayList<>(call.callbacks);
+    }
+
+    /**
+     * Callback of a shared call, that delivers its result to all the callbacks sharing it.
+     */
+    private final class Call extends RequestCallback {
+
+        /**
+         * Key of the call.
+         */
+        private final String key;
+        /**
+         * Callbacks sharing the call.
+         */
+        private final List<RequestCallback> callbacks = new ArrayList<>();
+        /**
+         * Cancellation of the call.
+         */
+        private final CancelToken token = new CancelToken();
+        /**
+         * Number of requests sharing the call that are not canceled, -1 if any of them is not cancelable.
+         */
+        private int sharers;
+
+        private Call(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void always() {
+        }
+
+        @Override
+        public void onResponse(RequestResponse response) {
+            for (RequestCallback callback : complete(this)) {
+                ResponseDispatcher.dispatchResponse(response, callback);
+            }
+        }
+
+        @Override
+        public void onTimeout() {
+            for (RequestCallback callback : complete(this)) {
+                ResponseDispatcher.dispatchTimeout(callback);
+            }
+        }
+
+        @Override
+        public void onNoConnection() {
+            for (RequestCallback callback : complete(this)) {
+                ResponseDispatcher.dispatchNoConnection(callback);
+            }
+        }
+
+        @Override
+        public void onInternalError() {
+            for (RequestCallback callback : complete(this)) {
+                ResponseDispatcher.dispatchInternalError(callback);
+            }
+        }
+
+        @Override
+        public void onUnauthorized() {
+            for (RequestCallback callback : complete(this)) {
+                if (callback != null) {
+                    callback.always();
+                    callback.onUnauthorized();
+                }
+            }
+        }
+
+        @Override
+        public void onInvalidRequest() {
+            for (RequestCallback callback : complete(this)) {
+                if (callback != null) {
+                    callback.always();
+                    callback.onInvalidRequest();
+                }
+            }
+        }
+
+        @Override
+        public void onForbidden() {
+            for (RequestCallback callback : complete(this)) {
+                if (callback != null) {
+                    callback.always();
+                    callback.onForbidden();
+                }
+            }
+        }
+
+        @Override
+        public void onConflict() {
+            for (RequestCallback callback : complete(this)) {
+                if (callback != null) {
+                    callback.always();
+                    callback.onConflict();
+                }
+            }
+        }
+    }
+
+}
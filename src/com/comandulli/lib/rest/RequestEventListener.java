@@ -0,0 +1,65 @@
+package com.comandulli.lib.rest;
+
+/**
+ * Listener of the phases of every request, for monitoring and metrics.
+ * <p>
+ * Methods are called on the thread the phase happens on, often a network thread, so they must be short
+ * and thread safe. Set it through {@link NetworkRequestQueue#setEventListener(RequestEventListener)}.
+ * When no listener is set requests are not traced at all.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ * @see MetricsCollector
+ */
+public abstract class RequestEventListener {
+
+    /**
+     * Called when a request is made, before the response cache or the scheduler.
+     *
+     * @param trace Trace of the request.
+     */
+    public void onEnqueue(RequestTrace trace) {
+    }
+
+    /**
+     * Called when a request leaves the scheduler and is handed to the transport, again for each retry.
+     *
+     * @param trace Trace of the request.
+     */
+    public void onDispatchStart(RequestTrace trace) {
+    }
+
+    /**
+     * Called when the status and headers of the response arrive.
+     * Volley only reports them together with the body.
+     *
+     * @param trace Trace of the request.
+     */
+    public void onResponseHeaders(RequestTrace trace) {
+    }
+
+    /**
+     * Called when the whole response body arrived.
+     *
+     * @param trace Trace of the request.
+     */
+    public void onBodyComplete(RequestTrace trace) {
+    }
+
+    /**
+     * Called when the response envelope was parsed.
+     *
+     * @param trace Trace of the request.
+     */
+    public void onParseComplete(RequestTrace trace) {
+    }
+
+    /**
+     * Called when the callback of the request returned, with the outcome of the request.
+     *
+     * @param trace Trace of the request.
+     */
+    public void onCallbackComplete(RequestTrace trace) {
+    }
+
+}
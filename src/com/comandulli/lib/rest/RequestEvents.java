@@ -0,0 +1,181 @@
+package com.comandulli.lib.rest;
+
+import com.comandulli.lib.rest.RequestTrace.Outcome;
+
+/**
+ * Reports the phases of traced requests to the event listener, doing nothing for requests without a trace.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class RequestEvents {
+
+    private RequestEvents() {
+    }
+
+    /**
+     * Starts tracing a request if there is an event listener.
+     *
+     * @param request  The request.
+     * @param url      Resolved url of the request.
+     * @param callback Callback of the request, may be null.
+     * @return The callback to make the request with, the same callback if not traced.
+     */
+    static RequestCallback trace(RestRequest request, String url, RequestCallback callback) {
+        RequestEventListener listener = NetworkRequestQueue.getEventListener();
+        if (listener == null) {
+            request.setTrace(null);
+            return callback;
+        }
+        RequestTrace trace = new RequestTrace(request, url);
+        request.setTrace(trace);
+        listener.onEnqueue(trace);
+        return new TracingCallback(listener, trace, callback);
+    }
+
+    /**
+     * Reports a request handed to the transport.
+     *
+     * @param request The request.
+     */
+    static void onDispatchStart(RestRequest request) {
+        RequestTrace trace = request.getTrace();
+        RequestEventListener listener = NetworkRequestQueue.getEventListener();
+        if (trace != null && listener != null) {
+            trace.onDispatch();
+            listener.onDispatchStart(trace);
+        }
+    }
+
+    /**
+     * Reports the arrival of the response headers.
+     *
+     * @param request    The request.
+     * @param statusCode The status code.
+     */
+    static void onResponseHeaders(RestRequest request, int statusCode) {
+        RequestTrace trace = request.getTrace();
+        RequestEventListener listener = NetworkRequestQueue.getEventListener();
+        if (trace != null && listener != null) {
+            trace.onHeaders(statusCode);
+            listener.onResponseHeaders(trace);
+        }
+    }
+
+    /**
+     * Reports the arrival of the response body.
+     *
+     * @param request  The request.
+     * @param bodySize Size of the body in bytes.
+     */
+    static void onBodyComplete(RestRequest request, long bodySize) {
+        RequestTrace trace = request.getTrace();
+        RequestEventListener listener = NetworkRequestQueue.getEventListener();
+        if (trace != null && listener != null) {
+            trace.onBody(bodySize);
+            listener.onBodyComplete(trace);
+        }
+    }
+
+    /**
+     * Reports the end of the envelope parsing.
+     *
+     * @param request The request.
+     */
+    static void onParseComplete(RestRequest request) {
+        RequestTrace trace = request.getTrace();
+        RequestEventListener listener = NetworkRequestQueue.getEventListener();
+        if (trace != null && listener != null) {
+            trace.onParsed();
+            listener.onParseComplete(trace);
+        }
+    }
+
+    /**
+     * Callback that completes the trace of a request once its callback returns.
+     */
+    private static final class TracingCallback extends ForwardingCallback {
+
+        /**
+         * The event listener.
+         */
+        private final RequestEventListener listener;
+        /**
+         * Trace of the request.
+         */
+        private final RequestTrace trace;
+
+        TracingCallback(RequestEventListener listener, RequestTrace trace, RequestCallback delegate) {
+            super(delegate);
+            this.listener = listener;
+            this.trace = trace;
+        }
+
+        /**
+         * Completes the trace.
+         *
+         * @param outcome    The outcome.
+         * @param statusCode The status code of the response, 0 if none.
+         */
+        private void complete(Outcome outcome, int statusCode) {
+            trace.onCompleted(outcome, statusCode);
+            listener.onCallbackComplete(trace);
+        }
+
+        @Override
+        public void onResponse(RequestResponse response) {
+            forwardResponse(response);
+            complete(Outcome.RESPONSE, response != null ? response.getCode() : 0);
+        }
+
+        @Override
+        public void onTimeout() {
+            forwardTimeout();
+            complete(Outcome.TIMEOUT, 0);
+        }
+
+        @Override
+        public void onNoConnection() {
+            forwardNoConnection();
+            complete(Outcome.NO_CONNECTION, 0);
+        }
+
+        @Override
+        public void onInternalError() {
+            forwardInternalError();
+            complete(Outcome.INTERNAL_ERROR, 0);
+        }
+
+        @Override
+        public void onCanceled() {
+            super.onCanceled();
+            complete(Outcome.CANCELED, 0);
+        }
+
+        @Override
+        public void onUnauthorized() {
+            super.onUnauthorized();
+            complete(Outcome.UNAUTHORIZED, 401);
+        }
+
+        @Override
+        public void onInvalidRequest() {
+            super.onInvalidRequest();
+            complete(Outcome.INVALID_REQUEST, 400);
+        }
+
+        @Override
+        public void onForbidden() {
+            super.onForbidden();
+            complete(Outcome.FORBIDDEN, 403);
+        }
+
+        @Override
+        public void onConflict() {
+            super.onConflict();
+            complete(Outcome.CONFLICT, 409);
+        }
+
+    }
+
+}
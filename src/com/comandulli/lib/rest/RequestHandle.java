@@ -0,0 +1,228 @@
+package com.comandulli.lib.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handle of an executed request, to cancel it.
+ * <p>
+ * A canceled request delivers no result to its callback, which receives {@link RequestCallback#onCanceled()} instead,
+ * on the executor of the callback, and futures of the request complete with a
+ * {@link com.comandulli.lib.rest.exception.RequestCanceledException}. A request waiting for a slot in the
+ * {@link RequestScheduler} leaves the queue, one in flight frees its slot right away and has its network call aborted,
+ * and a response that arrives anyway is not decoded. Requests sharing a network call through coalescing
+ * only abort it once all of them are canceled.
+ * <p>
+ * A request with a deadline {@see RestRequest#setDeadline(long)} that runs out is canceled the same way,
+ * delivering a timeout to its callback.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class RequestHandle {
+
+    private static final int ACTIVE = 0;
+    private static final int DONE = 1;
+    private static final int CANCELED = 2;
+    private static final int EXPIRED = 3;
+
+    /**
+     * Handles in flight by tag.
+     */
+    private static final Map<Object, Set<RequestHandle>> tagged = new HashMap<>();
+
+    /**
+     * The request.
+     */
+    private final RestRequest request;
+    /**
+     * Cancellation of the request's network call.
+     */
+    private final CancelToken token = new CancelToken();
+    /**
+     * State of the request.
+     */
+    private final AtomicInteger state = new AtomicInteger(ACTIVE);
+    /**
+     * Tag the request was executed with, null if none.
+     */
+    private Object tag;
+    /**
+     * Callback delivering the request's results, that the timeout of an expired deadline is delivered through.
+     */
+    private volatile DeliveryCallback delivery;
+    /**
+     * Scheduled expiry of the deadline, null if none.
+     */
+    private volatile ScheduledFuture<?> expiry;
+
+    RequestHandle(RestRequest request) {
+        this.request = request;
+    }
+
+    /**
+     * Returns the request.
+     *
+     * @return The request.
+     */
+    public RestRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Cancels the request, so it delivers no result, its callback being told of the cancellation instead.
+     * Does nothing if it has already completed.
+     */
+    public void cancel() {
+        if (state.compareAndSet(ACTIVE, CANCELED)) {
+            end();
+            token.cancel();
+            DeliveryCallback current = delivery;
+            if (current != null) {
+                current.deliverCanceled();
+            }
+        }
+    }
+
+    /**
+     * Returns if the request was canceled, either by {@link #cancel()} or by its deadline.
+     *
+     * @return If canceled.
+     */
+    public boolean isCanceled() {
+        int current = state.get();
+        return current == CANCELED || current == EXPIRED;
+    }
+
+    /**
+     * Returns if the deadline of the request ran out before it completed.
+     *
+     * @return If expired.
+     */
+    public boolean isExpired() {
+        return state.get() == EXPIRED;
+    }
+
+    /**
+     * Returns if the request has completed, delivering its result, or was canceled.
+     *
+     * @return If done.
+     */
+    public boolean isDone() {
+        return state.get() != ACTIVE;
+    }
+
+    /**
+     * Returns the cancellation of the request's network call.
+     *
+     * @return The token.
+     */
+    CancelToken getToken() {
+        return token;
+    }
+
+    /**
+     * Starts tracking the request, registering its tag and scheduling its deadline.
+     *
+     * @param delivery Callback delivering the request's results.
+     * @param deadline Deadline in milliseconds, 0 if none.
+     */
+    void start(DeliveryCallback delivery, long deadline) {
+        this.delivery = delivery;
+        this.tag = request.getTag();
+        if (tag != null) {
+            synchronized (tagged) {
+                Set<RequestHandle> handles = tagged.get(tag);
+                if (handles == null) {
+                    handles = new LinkedHashSet<>();
+                    tagged.put(tag, handles);
+                }
+                handles.add(this);
+            }
+        }
+        if (deadline > 0) {
+            expiry = RequestTimer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    expire();
+                }
+            }, deadline);
+        }
+        if (state.get() != ACTIVE) {
+            end();
+        }
+    }
+
+    /**
+     * Completes the request as its result is delivered.
+     *
+     * @return If the result is to be delivered, false if the request was canceled.
+     */
+    boolean complete() {
+        if (state.compareAndSet(ACTIVE, DONE)) {
+            end();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Cancels the request as its deadline runs out, delivering a timeout.
+     */
+    private void expire() {
+        if (state.compareAndSet(ACTIVE, EXPIRED)) {
+            end();
+            token.cancel();
+            delivery.deliverExpired();
+        }
+    }
+
+    /**
+     * Stops tracking the request.
+     */
+    private void end() {
+        ScheduledFuture<?> scheduled = expiry;
+        if (scheduled != null) {
+            expiry = null;
+            scheduled.cancel(false);
+        }
+        if (tag != null) {
+            synchronized (tagged) {
+                Set<RequestHandle> handles = tagged.get(tag);
+                if (handles != null && handles.remove(this) && handles.isEmpty()) {
+                    tagged.remove(tag);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels all requests in flight with a tag.
+     *
+     * @param tag The tag.
+     * @return Number of requests canceled.
+     */
+    static int cancelAll(Object tag) {
+        List<RequestHandle> handles;
+        synchronized (tagged) {
+            Set<RequestHandle> set = tagged.get(tag);
+            handles = set != null ? new ArrayList<>(set) : Collections.<RequestHandle>emptyList();
+        }
+        int canceled = 0;
+        for (RequestHandle handle : handles) {
+            if (!handle.isDone()) {
+                handle.cancel();
+                canceled++;
+            }
+        }
+        return canceled;
+    }
+
+}
@@ -0,0 +1,761 @@
+package com.comandulli.lib.rest;
+
+import com.comandulli.lib.rest.RestRequest.RequestMethod;
+import com.comandulli.lib.rest.exception.NoInternetConnectionException;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable outbox of requests made without connection, replayed in order once the connection returns.
+ * <p>
+ * Requests are appended to a memory mapped log file, so appending is only a memory copy, and the file
+ * is forced to disk in batches shortly after. Each record holds the method, url, content, deduplication
+ * key and own headers of a request: appending a request with the same key as a pending one supersedes it.
+ * Replayed requests are marked as completed, and completed records are compacted away.
+ * <p>
+ * Forcing, growing and compacting the log run on the outbox's own thread, never on the thread appending:
+ * a request that does not fit in the mapped log is held in memory until that thread has grown it.
+ * <p>
+ * Credential headers, {@value #AUTHORIZATION}, {@value #PROXY_AUTHORIZATION} and {@value #COOKIE}, are not
+ * written to the log. Replayed requests are sent with the global headers of {@link HeaderRegistry} at the time
+ * of the replay, which should hold the current credentials. Any other own header is stored in plain text.
+ * <p>
+ * Requests that fail without connection, by timeout, with a 5XX (Server Error) or with an internal error, such
+ * as an open circuit, are kept for the next replay. Only a response from the server completes them, and is
+ * delivered to the outbox callback.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class RequestOutbox {
+
+    /**
+     * Default initial size of the log file in bytes.
+     */
+    public static final int DEFAULT_SIZE = 64 * 1024;
+    /**
+     * Delay before appended records are forced to disk, in milliseconds.
+     */
+    public static final long FORCE_DELAY_MS = 50;
+    /**
+     * Delay before the replay is retried after an internal error or while a circuit is open, in milliseconds.
+     */
+    public static final long RETRY_DELAY_MS = CircuitBreaker.DEFAULT_OPEN_MS;
+    /**
+     * Header with the credentials of a request, not written to the log.
+     */
+    public static final String AUTHORIZATION = "Authorization";
+    /**
+     * Header with the credentials of a proxy, not written to the log.
+     */
+    public static final String PROXY_AUTHORIZATION = "Proxy-Authorization";
+    /**
+     * Header with the cookies of a request, not written to the log.
+     */
+    public static final String COOKIE = "Cookie";
+    /**
+     * State of a pending record.
+     */
+    private static final byte PENDING = 0;
+    /**
+     * State of a completed record.
+     */
+    private static final byte DONE = 1;
+    /**
+     * Size of a record header, its length and state.
+     */
+    private static final int HEADER = 5;
+    /**
+     * Charset of the records.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The log file.
+     */
+    private final File file;
+    /**
+     * Pending records in order.
+     */
+    private final Deque<Record> pending = new ArrayDeque<>();
+    /**
+     * Pending records by deduplication key.
+     */
+    private final Map<String, Record> keys = new HashMap<>();
+    /**
+     * Records appended while the log is full or being compacted, in order, not yet in the log.
+     */
+    private final Deque<Record> overflow = new ArrayDeque<>();
+    /**
+     * Thread forcing, growing and compacting the log.
+     */
+    private final ScheduledExecutorService io = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RestRequestOutbox");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    /**
+     * The mapped log file.
+     */
+    private MappedByteBuffer buffer;
+    /**
+     * Position of the end of the log.
+     */
+    private int position;
+    /**
+     * Number of completed records in the log.
+     */
+    private int completed;
+    /**
+     * If a force to disk is scheduled.
+     */
+    private boolean forceScheduled;
+    /**
+     * If the log is being grown or compacted, appended records go to the overflow meanwhile.
+     */
+    private boolean maintaining;
+    /**
+     * If a replay is in progress.
+     */
+    private boolean replaying;
+    /**
+     * Callback of the replayed requests, may be null.
+     */
+    private volatile RequestCallback callback;
+
+    /**
+     * Opens an outbox, loading the pending requests of its log file.
+     *
+     * @param file The log file, created if missing.
+     * @throws IOException if the file can not be mapped.
+     */
+    public RequestOutbox(File file) throws IOException {
+        this.file = file;
+        buffer = map(Math.max(DEFAULT_SIZE, file.length()));
+        load();
+    }
+
+    /**
+     * Sets the callback of the replayed requests, receiving the result of each completed request.
+     * It is delivered on the executor set in {@link NetworkRequestQueue#setCallbackExecutor(java.util.concurrent.Executor)}.
+     *
+     * @param callback The callback.
+     */
+    public void setCallback(RequestCallback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * Returns the number of requests waiting to be replayed.
+     *
+     * @return Number of pending requests.
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Appends a request to the outbox.
+     *
+     * @param request The request.
+     * @param url     The resolved url of the request.
+     * @return If the request was appended.
+     */
+    public boolean append(RestRequest request, String url) {
+        JSONObject content = request.getContent();
+        String key = request.getDeduplicationKey();
+        Map<String, String> headers = request.getHeaders();
+        byte[] record;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeString(out, request.getMethod().name());
+            writeString(out, url);
+            writeString(out, content != null ? content.toString() : "");
+            writeString(out, key != null ? key : "");
+            List<Map.Entry<String, String>> stored = new ArrayList<>();
+            if (headers != null) {
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    if (!isCredential(header.getKey())) {
+                        stored.add(header);
+                    }
+                }
+            }
+            out.writeInt(stored.size());
+            for (Map.Entry<String, String> header : stored) {
+                writeString(out, header.getKey());
+                writeString(out, header.getValue());
+            }
+            out.flush();
+            record = bytes.toByteArray();
+        } catch (IOException e) {
+            return false;
+        }
+        synchronized (this) {
+            Record appended = new Record(-1, key);
+            if (!maintaining && overflow.isEmpty() && position + HEADER + record.length + 4 <= buffer.capacity()) {
+                write(appended, record);
+            } else {
+                appended.data = record;
+                overflow.addLast(appended);
+                scheduleMaintenance();
+            }
+            if (key != null) {
+                Record superseded = keys.put(key, appended);
+                if (superseded != null && pending.remove(superseded)) {
+                    complete(superseded);
+                }
+            }
+            pending.addLast(appended);
+            scheduleForce();
+        }
+        return true;
+    }
+
+    /**
+     * Replays the pending requests in order, one at a time, unless a replay is already in progress.
+     */
+    public void replay() {
+        synchronized (this) {
+            if (replaying) {
+                return;
+            }
+            replaying = true;
+        }
+        replayNext();
+    }
+
+    /**
+     * Forces the appended requests to disk. Requests waiting for the log to grow are written by then.
+     */
+    public void flush() {
+        MappedByteBuffer mapped;
+        synchronized (this) {
+            mapped = buffer;
+            forceScheduled = false;
+        }
+        mapped.force();
+    }
+
+    /**
+     * Replays the first pending request, or ends the replay.
+     */
+    private void replayNext() {
+        Record record;
+        RestRequest request;
+        synchronized (this) {
+            while (true) {
+                record = pending.peekFirst();
+                if (record == null) {
+                    replaying = false;
+                    if (completed > 0) {
+                        scheduleMaintenance();
+                    }
+                    return;
+                }
+                try {
+                    request = decode(record);
+                    break;
+                } catch (JSONException e) {
+                    pending.removeFirst();
+                    complete(record);
+                }
+            }
+        }
+        CircuitBreaker breaker = NetworkRequestQueue.getCircuitBreaker();
+        if (breaker != null && breaker.getState(breaker.keyOf(request.getPath())) == CircuitBreaker.State.OPEN) {
+            retryLater();
+            return;
+        }
+        try {
+            NetworkRequestQueue.makeRequest(request, request.getPath(), new ReplayCallback(record));
+        } catch (NoInternetConnectionException e) {
+            synchronized (this) {
+                replaying = false;
+            }
+        }
+    }
+
+    /**
+     * Ends the replay, keeping the pending requests, and replays them again after {@link #RETRY_DELAY_MS}.
+     */
+    private void retryLater() {
+        synchronized (this) {
+            replaying = false;
+        }
+        io.schedule(new Runnable() {
+            @Override
+            public void run() {
+                replay();
+            }
+        }, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ends the replay of a request, completing it or keeping it for the next replay.
+     *
+     * @param record The record of the request.
+     * @param done   If the request is completed.
+     */
+    private void onReplayed(Record record, boolean done) {
+        synchronized (this) {
+            if (!done) {
+                replaying = false;
+                return;
+            }
+            if (pending.remove(record)) {
+                complete(record);
+            }
+        }
+        replayNext();
+    }
+
+    /**
+     * Marks a record as completed.
+     *
+     * @param record The record, already removed from the pending ones.
+     */
+    private void complete(Record record) {
+        record.done = true;
+        if (record.key != null && keys.get(record.key) == record) {
+            keys.remove(record.key);
+        }
+        if (record.offset >= 0) {
+            buffer.put(record.offset + 4, DONE);
+            completed++;
+            scheduleForce();
+        } else {
+            overflow.remove(record);
+        }
+    }
+
+    /**
+     * Writes a record at the end of the log, which must have room for it.
+     *
+     * @param record The record.
+     * @param data   The record data.
+     */
+    private void write(Record record, byte[] data) {
+        int offset = position;
+        buffer.put(offset + 4, PENDING);
+        buffer.position(offset + HEADER);
+        buffer.put(data);
+        buffer.putInt(offset + HEADER + data.length, 0);
+        buffer.putInt(offset, data.length);
+        position = offset + HEADER + data.length;
+        record.offset = offset;
+        record.data = null;
+    }
+
+    /**
+     * Reads the request of a record.
+     *
+     * @param record The record.
+     * @return The request, with the resolved url as its path.
+     * @throws JSONException if the record is corrupted.
+     */
+    private RestRequest decode(Record record) throws JSONException {
+        byte[] data = record.data;
+        if (data == null) {
+            data = read(record);
+        }
+        int[] cursor = {0};
+        try {
+            RequestMethod method = RequestMethod.valueOf(readString(data, cursor));
+            RestRequest request = new RestRequest(method, readString(data, cursor));
+            String content = readString(data, cursor);
+            if (!content.isEmpty()) {
+                request.addContent(new JSONObject(content));
+            }
+            readString(data, cursor);
+            int count = readInt(data, cursor);
+            for (int i = 0; i < count; i++) {
+                request.addHeader(readString(data, cursor), readString(data, cursor));
+            }
+            request.setCacheable(false);
+            return request;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new JSONException("Corrupted outbox record");
+        }
+    }
+
+    /**
+     * Loads the records of the log, up to its end or first incomplete record.
+     */
+    private void load() {
+        pending.clear();
+        keys.clear();
+        completed = 0;
+        int offset = 0;
+        while (offset + HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER + length > buffer.capacity()) {
+                break;
+            }
+            if (buffer.get(offset + 4) == PENDING) {
+                byte[] data = new byte[length];
+                buffer.position(offset + HEADER);
+                buffer.get(data);
+                String key = null;
+                try {
+                    int[] cursor = {0};
+                    readString(data, cursor);
+                    readString(data, cursor);
+                    readString(data, cursor);
+                    key = readString(data, cursor);
+                } catch (IndexOutOfBoundsException e) {
+                    // replaying reports the corrupted record
+                }
+                Record record = new Record(offset, key == null || key.isEmpty() ? null : key);
+                if (record.key != null) {
+                    Record superseded = keys.put(record.key, record);
+                    if (superseded != null && pending.remove(superseded)) {
+                        complete(superseded);
+                    }
+                }
+                pending.addLast(record);
+            } else {
+                completed++;
+            }
+            offset += HEADER + length;
+        }
+        position = offset;
+    }
+
+    /**
+     * Reads the data of a record in the log.
+     *
+     * @param record The record.
+     * @return The record data.
+     */
+    private byte[] read(Record record) {
+        byte[] data = new byte[buffer.getInt(record.offset)];
+        buffer.position(record.offset + HEADER);
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * Schedules the log to be grown and compacted on the outbox's thread, unless already scheduled.
+     */
+    private void scheduleMaintenance() {
+        if (maintaining) {
+            return;
+        }
+        maintaining = true;
+        io.execute(new Runnable() {
+            @Override
+            public void run() {
+                maintain();
+            }
+        });
+    }
+
+    /**
+     * Rewrites the log with only its pending records and the overflowing ones, grown to fit them, replacing
+     * the file atomically. Runs on the outbox's thread: the monitor is only held to list the records and to
+     * swap the logs. Records in the log are never changed but for their state, so they are copied from the
+     * old log without it, and records appended meanwhile overflow and are written once the new log is mapped.
+     */
+    private void maintain() {
+        while (true) {
+            List<Record> live = new ArrayList<>();
+            List<int[]> extents = new ArrayList<>();
+            MappedByteBuffer old;
+            long capacity = DEFAULT_SIZE;
+            synchronized (this) {
+                old = buffer;
+                int size = 4;
+                for (Record record : pending) {
+                    if (record.offset >= 0) {
+                        int length = buffer.getInt(record.offset);
+                        live.add(record);
+                        extents.add(new int[]{record.offset, length});
+                        size += HEADER + length;
+                    }
+                }
+                for (Record record : overflow) {
+                    size += HEADER + record.data.length;
+                }
+                while (capacity < size) {
+                    capacity *= 2;
+                }
+            }
+            MappedByteBuffer mapped;
+            try {
+                mapped = rewrite(old, extents, capacity);
+            } catch (IOException e) {
+                synchronized (this) {
+                    // retried by the next append that overflows or the next replay
+                    maintaining = false;
+                }
+                return;
+            }
+            synchronized (this) {
+                buffer = mapped;
+                completed = 0;
+                int offset = 0;
+                for (int i = 0; i < live.size(); i++) {
+                    Record record = live.get(i);
+                    record.offset = offset;
+                    if (record.done) {
+                        buffer.put(offset + 4, DONE);
+                        completed++;
+                    }
+                    offset += HEADER + extents.get(i)[1];
+                }
+                position = offset;
+                while (!overflow.isEmpty() && position + HEADER + overflow.peekFirst().data.length + 4 <= buffer.capacity()) {
+                    Record record = overflow.removeFirst();
+                    write(record, record.data);
+                }
+                if (overflow.isEmpty()) {
+                    maintaining = false;
+                    scheduleForce();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies records of the old log, as pending, to a new log file, replacing the log, and maps it.
+     *
+     * @param old      The old log.
+     * @param extents  The offset and data length of each record in the old log, in order.
+     * @param capacity Size of the mapping in bytes.
+     * @return The mapped log.
+     * @throws IOException if the file can not be rewritten.
+     */
+    private MappedByteBuffer rewrite(MappedByteBuffer old, List<int[]> extents, long capacity) throws IOException {
+        File compacted = new File(file.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(compacted, "rw");
+        try {
+            out.setLength(0);
+            FileChannel channel = out.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            ByteBuffer data = old.duplicate();
+            for (int[] extent : extents) {
+                header.clear();
+                header.putInt(extent[1]).put(PENDING).flip();
+                writeFully(channel, header);
+                data.limit(extent[0] + HEADER + extent[1]).position(extent[0] + HEADER);
+                writeFully(channel, data);
+                data.limit(data.capacity());
+            }
+            header.clear();
+            header.putInt(0).flip();
+            writeFully(channel, header);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!compacted.renameTo(file)) {
+            throw new IOException("Can not replace outbox " + file);
+        }
+        return map(capacity);
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer to a channel.
+     *
+     * @param channel The channel.
+     * @param buffer  The buffer.
+     * @throws IOException if it can not be written.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Maps the log file.
+     *
+     * @param size Size of the mapping in bytes, the file is grown to it.
+     * @return The mapped log.
+     * @throws IOException if the file can not be mapped.
+     */
+    private MappedByteBuffer map(long size) throws IOException {
+        RandomAccessFile access = new RandomAccessFile(file, "rw");
+        try {
+            return access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            access.close();
+        }
+    }
+
+    /**
+     * Schedules a force of the log to disk, batching the writes made until then.
+     */
+    private void scheduleForce() {
+        if (forceScheduled) {
+            return;
+        }
+        forceScheduled = true;
+        io.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, FORCE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns if a header holds credentials, which are not written to the log.
+     *
+     * @param name The header name.
+     * @return If it holds credentials.
+     */
+    private static boolean isCredential(String name) {
+        return AUTHORIZATION.equalsIgnoreCase(name) || PROXY_AUTHORIZATION.equalsIgnoreCase(name) || COOKIE.equalsIgnoreCase(name);
+    }
+
+    /**
+     * Writes a string of any length in UTF-8, prefixed by its length.
+     *
+     * @param out    The output.
+     * @param string The string.
+     * @throws IOException if it can not be written.
+     */
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param data   The record data.
+     * @param cursor Position in the data, advanced past the string.
+     * @return The string.
+     */
+    private static String readString(byte[] data, int[] cursor) {
+        int length = readInt(data, cursor);
+        int start = cursor[0];
+        if (length < 0 || start + length > data.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        cursor[0] = start + length;
+        return new String(data, start, length, UTF_8);
+    }
+
+    /**
+     * Reads a big endian int.
+     *
+     * @param data   The record data.
+     * @param cursor Position in the data, advanced past the int.
+     * @return The int.
+     */
+    private static int readInt(byte[] data, int[] cursor) {
+        int start = cursor[0];
+        cursor[0] = start + 4;
+        return ((data[start] & 0xFF) << 24) | ((data[start + 1] & 0xFF) << 16)
+                | ((data[start + 2] & 0xFF) << 8) | (data[start + 3] & 0xFF);
+    }
+
+    /**
+     * Record of a pending request in the log.
+     */
+    private static final class Record {
+
+        /**
+         * Offset of the record in the log, -1 while it overflows.
+         */
+        private int offset;
+        /**
+         * Deduplication key, null if none.
+         */
+        private final String key;
+        /**
+         * Data of the record while it overflows, null once in the log.
+         */
+        private byte[] data;
+        /**
+         * If the record is completed.
+         */
+        private boolean done;
+
+        Record(int offset, String key) {
+            this.offset = offset;
+            this.key = key;
+        }
+
+    }
+
+    /**
+     * Callback of a replayed request, completing it or keeping it for the next replay.
+     */
+    private final class ReplayCallback extends ForwardingCallback {
+
+        /**
+         * The record of the request.
+         */
+        private final Record record;
+
+        ReplayCallback(Record record) {
+            super(DeliveryCallback.wrap(callback, callback, NetworkRequestQueue.getDefaultCallbackExecutor()));
+            this.record = record;
+        }
+
+        @Override
+        protected void onComplete() {
+            onReplayed(record, true);
+        }
+
+        @Override
+        public void onResponse(RequestResponse response) {
+            if (response != null && response.getCode() >= 500) {
+                onReplayed(record, false);
+            } else {
+                forwardResponse(response);
+            }
+        }
+
+        @Override
+        public void onTimeout() {
+            onReplayed(record, false);
+        }
+
+        @Override
+        public void onNoConnection() {
+            onReplayed(record, false);
+        }
+
+        /**
+         * Internal errors are local, such as an open circuit, a full scheduler or a canceled request,
+         * so the request is kept and the replay retried later.
+         */
+        @Override
+        public void onInternalError() {
+            retryLater();
+        }
+
+    }
+
+}
@@ -1,11 +1,13 @@
 package com.comandulli.lib.rest;
 
-import java.util.Hashtable;
-import java.util.Iterator;
-import java.util.Map.Entry;
+import java.util.Arrays;
 
 /**
  * Object that wraps mappings to query params for requests.
+ * <p>
+ * Params are kept in the order they were added, so the same params always build the same url,
+ * and names and values are percent-encoded (RFC 3986) in UTF-8. A name may have many values.
+ * This object is not thread safe, build it before executing the request.
  *
  * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
  * @since 1.0
@@ -13,29 +15,97 @@ import java.util.Map.Entry;
 public class RequestParams {
 
     /**
-     * Hashmap that holds all mappings.
+     * Hexadecimal digits of the percent-encoding.
      */
-    private final Hashtable<String, String> query;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    /**
+     * Builder reused by each thread to build queries.
+     */
+    private static final ThreadLocal<StringBuilder> builders = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    /**
+     * Names of the params, in order.
+     */
+    private String[] names;
+    /**
+     * Values of the params, in the same order as their names.
+     */
+    private String[] values;
+    /**
+     * Number of params.
+     */
+    private int size;
 
     /**
      * Instantiate an empty query params.
      */
     public RequestParams() {
-        this.query = new Hashtable<>();
+        this.names = new String[8];
+        this.values = new String[8];
     }
 
     /**
-     * Add a new query params to a key.
+     * Add a new query params to a key, replacing any values it had.
      *
      * @param name  Key name of the param.
      * @param value Value.
      */
     public void addQueryParam(String name, String value) {
+        if (value == null) {
+            return;
+        }
+        int index = indexOf(name, 0);
+        if (index < 0) {
+            append(name, value);
+            return;
+        }
+        values[index] = value;
+        int next = indexOf(name, index + 1);
+        while (next >= 0) {
+            removeAt(next);
+            next = indexOf(name, next);
+        }
+    }
+
+    /**
+     * Add another value to a key, keeping the values it had.
+     *
+     * @param name  Key name of the param.
+     * @param value Value.
+     */
+    public void appendQueryParam(String name, String value) {
         if (value != null) {
-            this.query.put(name, value);
+            append(name, value);
         }
     }
 
+    /**
+     * Removes all values of a key.
+     *
+     * @param name Key name of the param.
+     */
+    public void removeQueryParam(String name) {
+        int index = indexOf(name, 0);
+        while (index >= 0) {
+            removeAt(index);
+            index = indexOf(name, index);
+        }
+    }
+
+    /**
+     * Returns the number of params, counting each value of a key.
+     *
+     * @return Number of params.
+     */
+    public int size() {
+        return size;
+    }
+
     /**
      * Builds the query param string.
      *
@@ -43,13 +113,129 @@ public class RequestParams {
      * @return The url back.
      */
     public String buildQuery(String url) {
-        Iterator<Entry<String, String>> it = query.entrySet().iterator();
-        char c = '?';
-        while (it.hasNext()) {
-            Entry<String, String> entry = it.next();
-            url += c + entry.getKey() + "=" + entry.getValue();
-            c = '&';
-        }
-        return url;
+        if (size == 0) {
+            return url;
+        }
+        StringBuilder builder = builders.get();
+        builder.setLength(0);
+        builder.append(url);
+        buildQuery(builder);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the query param string to an url being built,
+     * starting with '&amp;' if the url already has a query.
+     *
+     * @param url Builder of the url.
+     */
+    public void buildQuery(StringBuilder url) {
+        char separator = url.indexOf("?") < 0 ? '?' : '&';
+        for (int i = 0; i < size; i++) {
+            url.append(separator);
+            encode(names[i], url);
+            url.append('=');
+            encode(values[i], url);
+            separator = '&';
+        }
+    }
+
+    /**
+     * Appends a string percent-encoded in UTF-8, leaving only unreserved characters as they are.
+     *
+     * @param string  The string.
+     * @param builder The builder.
+     */
+    static void encode(String string, StringBuilder builder) {
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (isUnreserved(c)) {
+                builder.append(c);
+            } else if (c < 0x80) {
+                appendEscaped(c, builder);
+            } else if (c < 0x800) {
+                appendEscaped(0xC0 | (c >> 6), builder);
+                appendEscaped(0x80 | (c & 0x3F), builder);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                appendEscaped(0xF0 | (codePoint >> 18), builder);
+                appendEscaped(0x80 | ((codePoint >> 12) & 0x3F), builder);
+                appendEscaped(0x80 | ((codePoint >> 6) & 0x3F), builder);
+                appendEscaped(0x80 | (codePoint & 0x3F), builder);
+            } else if (Character.isSurrogate(c)) {
+                appendEscaped('?', builder);
+            } else {
+                appendEscaped(0xE0 | (c >> 12), builder);
+                appendEscaped(0x80 | ((c >> 6) & 0x3F), builder);
+                appendEscaped(0x80 | (c & 0x3F), builder);
+            }
+        }
+    }
+
+    /**
+     * Checks if a character is unreserved, and so is never encoded.
+     *
+     * @param c The character.
+     * @return If it is unreserved.
+     */
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    /**
+     * Appends an escaped byte.
+     *
+     * @param b       The byte.
+     * @param builder The builder.
+     */
+    private static void appendEscaped(int b, StringBuilder builder) {
+        builder.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+
+    /**
+     * Returns the index of a key.
+     *
+     * @param name  Key name of the param.
+     * @param start Index to start from.
+     * @return The index, -1 if not found.
+     */
+    private int indexOf(String name, int start) {
+        for (int i = start; i < size; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Appends a param, growing the arrays if needed.
+     *
+     * @param name  Key name of the param.
+     * @param value Value.
+     */
+    private void append(String name, String value) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        names[size] = name;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Removes a param, keeping the order of the others.
+     *
+     * @param index Index of the param.
+     */
+    private void removeAt(int index) {
+        size--;
+        System.arraycopy(names, index + 1, names, index, size - index);
+        System.arraycopy(values, index + 1, values, index, size - index);
+        names[size] = null;
+        values[size] = null;
     }
 }
@@ -1,11 +1,25 @@
 package com.comandulli.lib.rest;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+
 /**
  * Class that defines the response of a REST Request.
  * REST Requests used by this library always have a status code (such as 200, 300, 400...),
  * a message describing the status (such as "Item create.") and a content body if any.
+ * <p>
+ * When parsed by the {@link EnvelopeParser} the content is kept as a view of the response bytes,
+ * and only parsed into a JSONObject the first time {@link #getContent()} is called.
+ * The view stays in the format of the response's {@link EnvelopeCodec}, such as CBOR.
+ * The content is guarded by the response's lock, so a response shared by coalesced requests
+ * is parsed once even when its callbacks run on different threads.
+ * <p>
+ * When the {@link ResponsePool} is enabled, responses delivered to callbacks are recycled once
+ * {@link RequestCallback#onResponse(RequestResponse)} returns, unless {@link #retain()} was called.
  *
  * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
  * @since 1.0
@@ -27,6 +41,42 @@ public class RequestResponse {
      * If this response is in JSON.
      */
     private boolean json;
+    /**
+     * Response headers, null if unknown.
+     */
+    private Map<String, String> headers;
+    /**
+     * Buffer holding the content in the format of its codec, not yet parsed.
+     */
+    private byte[] contentData;
+    /**
+     * Codec of the content.
+     */
+    private EnvelopeCodec codec = EnvelopeCodecs.JSON;
+    /**
+     * Start of the content in its buffer.
+     */
+    private int contentOffset;
+    /**
+     * Length of the content in its buffer.
+     */
+    private int contentLength;
+    /**
+     * Pooled buffer owned by this response, given back to the pool when recycled.
+     */
+    private byte[] buffer;
+    /**
+     * If this response was taken from the pool and is not yet recycled.
+     */
+    private boolean pooled;
+    /**
+     * Number of holders keeping this response past its callback, each to recycle it.
+     */
+    private int retainCount;
+    /**
+     * Tracker of this response once retained when detecting leaks, null if none.
+     */
+    private ResponsePool.LeakTracker leakTracker;
 
     /**
      * Instantiate a new response.
@@ -55,14 +105,55 @@ public class RequestResponse {
         this.code = code;
     }
 
+    /**
+     * Sets the headers of the response.
+     *
+     * @param headers The headers.
+     */
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+
     /**
      * Sets the content of the response in JSON format.
      *
      * @param content The response content in JSON format.
      */
-    public void setContent(JSONObject content) {
+    public synchronized void setContent(JSONObject content) {
         this.json = true;
         this.content = content;
+        this.contentData = null;
+        this.codec = EnvelopeCodecs.JSON;
+    }
+
+    /**
+     * Sets the content of the response in JSON format, as a view of a buffer.
+     * It will only be parsed when requested.
+     *
+     * @param data   Buffer with the content.
+     * @param offset Start of the content in the buffer.
+     * @param length Length of the content.
+     */
+    public void setContent(byte[] data, int offset, int length) {
+        setContent(data, offset, length, EnvelopeCodecs.JSON);
+    }
+
+    /**
+     * Sets the content of the response in the format of a codec, as a view of a buffer.
+     * It will only be parsed when requested.
+     *
+     * @param data   Buffer with the content.
+     * @param offset Start of the content in the buffer.
+     * @param length Length of the content.
+     * @param codec  Codec of the content.
+     */
+    public synchronized void setContent(byte[] data, int offset, int length, EnvelopeCodec codec) {
+        this.json = true;
+        this.content = null;
+        this.contentData = data;
+        this.contentOffset = offset;
+        this.contentLength = length;
+        this.codec = codec;
     }
 
     /**
@@ -70,9 +161,11 @@ public class RequestResponse {
      *
      * @param content The response content in plain text.
      */
-    public void setContent(String content) {
+    public synchronized void setContent(String content) {
         this.json = false;
         this.content = content;
+        this.contentData = null;
+        this.codec = EnvelopeCodecs.JSON;
     }
 
     /**
@@ -93,13 +186,58 @@ public class RequestResponse {
         return code;
     }
 
+    /**
+     * Returns the headers of the response.
+     *
+     * @return The headers, null if unknown.
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Returns a header of the response, looking up its key ignoring case.
+     *
+     * @param name The header key.
+     * @return The value, null if missing.
+     */
+    public String getHeader(String name) {
+        if (headers == null) {
+            return null;
+        }
+        String value = headers.get(name);
+        if (value == null) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                if (name.equalsIgnoreCase(entry.getKey())) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the codec of the content of this response.
+     *
+     * @return The codec, JSON unless the content is a view in another format.
+     */
+    public synchronized EnvelopeCodec getCodec() {
+        return codec;
+    }
+
     /**
      * Returns the content of this response, in plain text.
+     * Content in another format than JSON is converted to JSON.
      *
      * @return The content.
      */
-    public String getContentString() {
-        if (json) {
+    public synchronized String getContentString() {
+        if (contentData != null && codec != EnvelopeCodecs.JSON) {
+            JSONObject object = getContent();
+            return object != null ? object.toString() : null;
+        } else if (contentData != null) {
+            return new String(contentData, contentOffset, contentLength, EnvelopeParser.UTF_8);
+        } else if (json) {
             return content.toString();
         } else {
             return (String) content;
@@ -108,14 +246,156 @@ public class RequestResponse {
 
     /**
      * Returns the content of this response, in JSON format.
+     * Content not yet parsed is parsed on the first call.
      *
-     * @return The content.
+     * @return The content, null if there is none or if it is not valid JSON.
      */
-    public JSONObject getContent() {
+    public synchronized JSONObject getContent() {
         if (json) {
+            if (contentData != null) {
+                try {
+                    content = codec.toJSONObject(contentData, contentOffset, contentLength);
+                } catch (JSONException e) {
+                    content = null;
+                }
+                contentData = null;
+                codec = EnvelopeCodecs.JSON;
+            }
             return (JSONObject) content;
         } else {
             return null;
         }
     }
+
+    /**
+     * Returns a reader over the content of this response, to read it without building a JSON tree.
+     *
+     * @return The content reader, null if there is no content.
+     */
+    public synchronized ContentReader getContentReader() {
+        if (contentData != null) {
+            return codec.newReader(contentData, contentOffset, contentLength);
+        }
+        String string = content != null ? getContentString() : null;
+        if (string == null) {
+            return null;
+        }
+        byte[] bytes = string.getBytes(EnvelopeParser.UTF_8);
+        return new ContentReader(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Returns the content of this response as a stream of bytes in the format of its codec, without parsing it.
+     *
+     * @return The content stream, null if there is no content.
+     */
+    public synchronized InputStream getContentStream() {
+        if (contentData != null) {
+            return new ByteArrayInputStream(contentData, contentOffset, contentLength);
+        }
+        String string = content != null ? getContentString() : null;
+        return string != null ? new ByteArrayInputStream(string.getBytes(EnvelopeParser.UTF_8)) : null;
+    }
+
+    /**
+     * Keeps a pooled response past the callback it was delivered to.
+     * It must then be given back with {@link #recycle()} once no longer used, once for each call to retain.
+     * Does nothing if the response is not pooled.
+     */
+    public synchronized void retain() {
+        if (pooled) {
+            retainCount++;
+            if (leakTracker == null) {
+                leakTracker = ResponsePool.track(this);
+            }
+        }
+    }
+
+    /**
+     * Gives a pooled response back to the pool, clearing it along with its content buffer.
+     * A retained response is only given back once recycled as many times as it was retained.
+     * The response and any reader or stream of its content must not be used afterwards.
+     * Does nothing if the response is not pooled.
+     */
+    public synchronized void recycle() {
+        if (!pooled || (retainCount > 0 && --retainCount > 0)) {
+            return;
+        }
+        pooled = false;
+        ResponsePool.untrack(leakTracker);
+        leakTracker = null;
+        byte[] buffer = this.buffer;
+        this.buffer = null;
+        message = null;
+        code = 0;
+        content = null;
+        json = false;
+        headers = null;
+        contentData = null;
+        codec = EnvelopeCodecs.JSON;
+        contentOffset = 0;
+        contentLength = 0;
+        BufferPool.release(buffer);
+        ResponsePool.recycle(this);
+    }
+
+    /**
+     * Keeps a pooled response while it is handed to another thread, without tracking it as a leak.
+     * It is given back with {@link #recycle()}.
+     */
+    synchronized void hold() {
+        if (pooled) {
+            retainCount++;
+        }
+    }
+
+    /**
+     * If this pooled response was retained.
+     *
+     * @return If it is retained.
+     */
+    synchronized boolean isRetained() {
+        return retainCount > 0;
+    }
+
+    /**
+     * Recycles a pooled response once delivered, unless it was retained.
+     */
+    synchronized void release() {
+        if (pooled && retainCount == 0) {
+            recycle();
+        }
+    }
+
+    /**
+     * Keeps this response out of the pool, its buffer is left to the garbage collector.
+     */
+    synchronized void detach() {
+        pooled = false;
+        retainCount = 0;
+        buffer = null;
+        ResponsePool.untrack(leakTracker);
+        leakTracker = null;
+    }
+
+    /**
+     * Marks this response as taken from the pool.
+     *
+     * @param pooled If it is pooled.
+     */
+    synchronized void setPooled(boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    /**
+     * Hands a pooled buffer to this response, given back to the pool once recycled.
+     * If the response is not pooled, the buffer is left to the garbage collector.
+     *
+     * @param buffer The buffer.
+     */
+    synchronized void setBuffer(byte[] buffer) {
+        if (pooled) {
+            this.buffer = buffer;
+        }
+    }
 }
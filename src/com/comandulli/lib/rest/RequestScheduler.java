@@ -0,0 +1,469 @@
+package com.comandulli.lib.rest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Schedules requests to the transport by priority, enforcing a global and a per host limit of requests in flight.
+ * <p>
+ * Requests waiting for a slot are queued per host, in priority order and then in the order they were made.
+ * When a slot frees up, the waiting request with the highest priority is sent, taking turns between hosts
+ * with the same priority so one busy host does not starve the others.
+ * <p>
+ * A canceled request {@see RequestHandle} leaves the queue, or frees its slot right away if already sent.
+ * <p>
+ * Waiting requests are sent by a single thread at a time, in a loop, so a transport answering within
+ * {@link RequestTransport#send} does not send the next request from inside the previous one.
+ * A slot freed by a result is refilled once the result was forwarded, and one freed by a cancellation
+ * is refilled on a background thread, so the thread canceling never sends requests.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class RequestScheduler {
+
+    /**
+     * Default maximum number of requests in flight.
+     */
+    public static final int DEFAULT_MAX_REQUESTS = 32;
+    /**
+     * Default maximum number of requests in flight to a single host.
+     */
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 6;
+
+    /**
+     * Queues by host.
+     */
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+    /**
+     * Hosts with requests waiting, in turn order.
+     */
+    private final List<HostQueue> waiting = new ArrayList<>();
+    /**
+     * Maximum number of requests in flight.
+     */
+    private int maxRequests = DEFAULT_MAX_REQUESTS;
+    /**
+     * Maximum number of requests in flight to a single host.
+     */
+    private int maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+    /**
+     * Number of requests in flight.
+     */
+    private int active;
+    /**
+     * Number of requests waiting.
+     */
+    private int queued;
+    /**
+     * Highest number of requests waiting at once.
+     */
+    private int maxQueued;
+    /**
+     * Number of requests sent.
+     */
+    private long dispatched;
+    /**
+     * Total time requests waited, in nanoseconds.
+     */
+    private long totalWait;
+    /**
+     * Longest time a request waited, in nanoseconds.
+     */
+    private long maxWait;
+    /**
+     * Order of the requests made.
+     */
+    private long sequence;
+    /**
+     * Index of the host with the next turn.
+     */
+    private int turn;
+    /**
+     * If a thread is sending waiting requests.
+     */
+    private boolean draining;
+    /**
+     * Runs the sending of waiting requests once a canceled request freed its slot.
+     */
+    private final Runnable drainer = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Sets the maximum number of requests in flight.
+     *
+     * @param maxRequests Maximum number of requests.
+     */
+    public void setMaxRequests(int maxRequests) {
+        synchronized (this) {
+            this.maxRequests = maxRequests;
+        }
+        drain();
+    }
+
+    /**
+     * Sets the maximum number of requests in flight to a single host.
+     *
+     * @param maxRequestsPerHost Maximum number of requests per host.
+     */
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        synchronized (this) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+        }
+        drain();
+    }
+
+    /**
+     * Schedules a request, sending it right away if there is a free slot.
+     *
+     * @param transport The transport.
+     * @param request   The request.
+     * @param url       Resolved url of the request.
+     * @param callback  Callback, to receive the request's results.
+     */
+    void submit(RequestTransport transport, RestRequest request, String url, RequestCallback callback) {
+        final Task task;
+        synchronized (this) {
+            String host = hostOf(url);
+            HostQueue queue = hosts.get(host);
+            if (queue == null) {
+                queue = new HostQueue(host);
+                hosts.put(host, queue);
+            }
+            if (queue.tasks.isEmpty()) {
+                waiting.add(queue);
+            }
+            task = new Task(transport, request, url, callback, queue, sequence++, new SlotCallback(callback, queue));
+            queue.tasks.add(task);
+            queued++;
+            maxQueued = Math.max(maxQueued, queued);
+        }
+        CancelToken token = request.getCancelToken();
+        if (token != null) {
+            token.onCancel(new Runnable() {
+                @Override
+                public void run() {
+                    cancel(task);
+                }
+            });
+        }
+        drain();
+    }
+
+    /**
+     * Cancels a request, taking it out of its queue if still waiting, or freeing its slot if sent.
+     *
+     * @param task The request.
+     */
+    private void cancel(Task task) {
+        boolean removed;
+        synchronized (this) {
+            HostQueue queue = task.host;
+            removed = queue.tasks.remove(task);
+            if (removed) {
+                queued--;
+                if (queue.tasks.isEmpty()) {
+                    int index = waiting.indexOf(queue);
+                    waiting.remove(index);
+                    if (waiting.isEmpty()) {
+                        turn = 0;
+                    } else if (index < turn) {
+                        turn--;
+                    } else if (turn >= waiting.size()) {
+                        turn = 0;
+                    }
+                    if (queue.active == 0) {
+                        hosts.remove(queue.host);
+                    }
+                }
+            }
+        }
+        if (removed) {
+            ResponseDispatcher.dispatchInternalError(task.callback);
+        } else {
+            task.slot.cancel();
+        }
+    }
+
+    /**
+     * Sends waiting requests while there are free slots, unless another thread already is.
+     * That thread takes the requests and slots that were added while it was sending.
+     */
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        while (true) {
+            Task task;
+            synchronized (this) {
+                task = next();
+                if (task == null) {
+                    draining = false;
+                    return;
+                }
+                long wait = System.nanoTime() - task.enqueued;
+                totalWait += wait;
+                maxWait = Math.max(maxWait, wait);
+                dispatched++;
+            }
+            task.slot.onDispatch();
+            RequestEvents.onDispatchStart(task.request);
+            try {
+                task.transport.send(task.request, task.url, task.slot);
+            } catch (RuntimeException e) {
+                ResponseDispatcher.dispatchInternalError(task.slot);
+            }
+        }
+    }
+
+    /**
+     * Takes the next request to be sent, taking its slot.
+     *
+     * @return The request, null if none can be sent.
+     */
+    private Task next() {
+        if (active >= maxRequests) {
+            return null;
+        }
+        HostQueue best = null;
+        int bestIndex = -1;
+        int size = waiting.size();
+        for (int i = 0; i < size; i++) {
+            int index = (turn + i) % size;
+            HostQueue queue = waiting.get(index);
+            if (queue.active < maxRequestsPerHost && (best == null || queue.tasks.peek().request.getPriority().compareTo(best.tasks.peek().request.getPriority()) < 0)) {
+                best = queue;
+                bestIndex = index;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        Task task = best.tasks.poll();
+        if (best.tasks.isEmpty()) {
+            waiting.remove(bestIndex);
+            turn = waiting.isEmpty() ? 0 : bestIndex % waiting.size();
+        } else {
+            turn = (bestIndex + 1) % waiting.size();
+        }
+        best.active++;
+        active++;
+        queued--;
+        return task;
+    }
+
+    /**
+     * Frees the slot of a request, without sending the next one.
+     *
+     * @param host Queue of the request's host.
+     */
+    private synchronized void release(HostQueue host) {
+        host.active--;
+        active--;
+        if (host.active == 0 && host.tasks.isEmpty()) {
+            hosts.remove(host.host);
+        }
+    }
+
+    /**
+     * Returns the host of a url.
+     *
+     * @param url The url.
+     * @return The host, with its port if any.
+     */
+    static String hostOf(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            end++;
+        }
+        return url.substring(start, end);
+    }
+
+    /**
+     * Returns the number of requests waiting for a slot.
+     *
+     * @return The queue depth.
+     */
+    public synchronized int getQueueDepth() {
+        return queued;
+    }
+
+    /**
+     * Returns the highest number of requests waiting for a slot at once.
+     *
+     * @return The maximum queue depth.
+     */
+    public synchronized int getMaxQueueDepth() {
+        return maxQueued;
+    }
+
+    /**
+     * Returns the number of requests in flight.
+     *
+     * @return The number of requests in flight.
+     */
+    public synchronized int getActiveCount() {
+        return active;
+    }
+
+    /**
+     * Returns the number of requests sent.
+     *
+     * @return The number of requests sent.
+     */
+    public synchronized long getDispatchedCount() {
+        return dispatched;
+    }
+
+    /**
+     * Returns the average time requests waited for a slot.
+     *
+     * @return Average wait time in milliseconds.
+     */
+    public synchronized double getAverageWaitTime() {
+        return dispatched == 0 ? 0 : totalWait / (double) dispatched / 1000000.0;
+    }
+
+    /**
+     * Returns the longest time a request waited for a slot.
+     *
+     * @return Maximum wait time in milliseconds.
+     */
+    public synchronized double getMaxWaitTime() {
+        return maxWait / 1000000.0;
+    }
+
+    /**
+     * Requests waiting for a host.
+     */
+    private static final class HostQueue {
+
+        private final String host;
+        private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+        private int active;
+
+        private HostQueue(String host) {
+            this.host = host;
+        }
+    }
+
+    /**
+     * A request waiting for a slot.
+     */
+    private static final class Task implements Comparable<Task> {
+
+        private final RequestTransport transport;
+        private final RestRequest request;
+        private final String url;
+        private final RequestCallback callback;
+        private final HostQueue host;
+        private final long order;
+        private final long enqueued = System.nanoTime();
+        private final SlotCallback slot;
+
+        private Task(RequestTransport transport, RestRequest request, String url, RequestCallback callback, HostQueue host, long order, SlotCallback slot) {
+            this.transport = transport;
+            this.request = request;
+            this.url = url;
+            this.callback = callback;
+            this.host = host;
+            this.order = order;
+            this.slot = slot;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int priority = request.getPriority().compareTo(other.request.getPriority());
+            if (priority != 0) {
+                return priority;
+            }
+            return order < other.order ? -1 : (order > other.order ? 1 : 0);
+        }
+    }
+
+    /**
+     * Holder of the thread refilling slots freed by cancellations, created on first use.
+     */
+    private static final class Drainers {
+
+        /**
+         * Daemon thread sending the requests waiting for the freed slots.
+         */
+        private static final ExecutorService INSTANCE = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "RestRequestScheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    }
+
+    /**
+     * Callback that frees the slot of a request once it completes, or right away once canceled,
+     * dropping any result that arrives after. The next request is sent after the result was forwarded.
+     */
+    private final class SlotCallback extends ForwardingCallback {
+
+        private final HostQueue host;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        /**
+         * If the slot was freed by a cancellation.
+         */
+        private volatile boolean canceled;
+
+        private SlotCallback(RequestCallback delegate, HostQueue host) {
+            super(delegate);
+            this.host = host;
+        }
+
+        @Override
+        protected boolean accept() {
+            return completed.compareAndSet(false, true);
+        }
+
+        @Override
+        protected void onComplete() {
+            release(host);
+        }
+
+        @Override
+        protected void onForwarded() {
+            if (canceled) {
+                Drainers.INSTANCE.execute(drainer);
+            } else {
+                drain();
+            }
+        }
+
+        /**
+         * Frees the slot of a canceled request, ending it with an internal error.
+         */
+        private void cancel() {
+            canceled = true;
+            forwardInternalError();
+        }
+    }
+
+}
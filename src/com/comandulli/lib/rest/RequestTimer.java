@@ -0,0 +1,44 @@
+package com.comandulli.lib.rest;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single daemon thread that runs the delayed tasks of this library, such as retries and batch windows.
+ * Tasks must be short, any real work is handed over to the transport.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class RequestTimer {
+
+    /**
+     * The timer thread.
+     */
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RestRequestTimer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private RequestTimer() {
+    }
+
+    /**
+     * Runs a task after a delay.
+     *
+     * @param task  The task.
+     * @param delay Delay in milliseconds.
+     * @return The scheduled task, to cancel it.
+     */
+    static ScheduledFuture<?> schedule(Runnable task, long delay) {
+        return timer.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+}
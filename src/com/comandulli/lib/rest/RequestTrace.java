@@ -0,0 +1,243 @@
+package com.comandulli.lib.rest;
+
+/**
+ * Timeline of a request, filled as it goes through the library and passed to the {@link RequestEventListener}.
+ * <p>
+ * Times are in nanoseconds from {@link System#nanoTime()}, 0 for phases not reached yet.
+ * Retried requests keep the times of their last attempt, and requests served from the cache or joining
+ * an identical request in flight are never dispatched.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class RequestTrace {
+
+    /**
+     * Outcome of a request, the callback method it was delivered to.
+     */
+    public enum Outcome {
+        RESPONSE, UNAUTHORIZED, INVALID_REQUEST, FORBIDDEN, CONFLICT, TIMEOUT, NO_CONNECTION, INTERNAL_ERROR, CANCELED
+    }
+
+    /**
+     * The request.
+     */
+    private final RestRequest request;
+    /**
+     * Resolved url of the request.
+     */
+    private final String url;
+    /**
+     * Time the request was made.
+     */
+    private final long enqueuedAt;
+    /**
+     * Time the request was handed to the transport.
+     */
+    private volatile long dispatchedAt;
+    /**
+     * Time the response headers arrived.
+     */
+    private volatile long headersAt;
+    /**
+     * Time the response body arrived.
+     */
+    private volatile long bodyAt;
+    /**
+     * Time the response envelope was parsed.
+     */
+    private volatile long parsedAt;
+    /**
+     * Time the callback returned.
+     */
+    private volatile long completedAt;
+    /**
+     * Number of times the request was dispatched.
+     */
+    private volatile int attempts;
+    /**
+     * Size of the response body in bytes.
+     */
+    private volatile long bodySize;
+    /**
+     * Status code of the response, 0 if none.
+     */
+    private volatile int statusCode;
+    /**
+     * Outcome of the request, null until completed.
+     */
+    private volatile Outcome outcome;
+
+    /**
+     * Starts the trace of a request being made.
+     *
+     * @param request The request.
+     * @param url     Resolved url of the request.
+     */
+    RequestTrace(RestRequest request, String url) {
+        this.request = request;
+        this.url = url;
+        this.enqueuedAt = System.nanoTime();
+    }
+
+    /**
+     * Marks the start of an attempt.
+     */
+    void onDispatch() {
+        attempts++;
+        dispatchedAt = System.nanoTime();
+        headersAt = 0;
+        bodyAt = 0;
+        parsedAt = 0;
+    }
+
+    /**
+     * Marks the arrival of the response headers.
+     *
+     * @param statusCode The status code.
+     */
+    void onHeaders(int statusCode) {
+        this.statusCode = statusCode;
+        headersAt = System.nanoTime();
+    }
+
+    /**
+     * Marks the arrival of the response body.
+     *
+     * @param bodySize Size of the body in bytes.
+     */
+    void onBody(long bodySize) {
+        this.bodySize = bodySize;
+        bodyAt = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of the envelope parsing.
+     */
+    void onParsed() {
+        parsedAt = System.nanoTime();
+    }
+
+    /**
+     * Marks the return of the callback.
+     *
+     * @param outcome    The outcome.
+     * @param statusCode The status code of the response, 0 if none.
+     */
+    void onCompleted(Outcome outcome, int statusCode) {
+        this.outcome = outcome;
+        if (statusCode != 0) {
+            this.statusCode = statusCode;
+        }
+        completedAt = System.nanoTime();
+    }
+
+    /**
+     * Returns the request.
+     *
+     * @return The request.
+     */
+    public RestRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Returns the resolved url of the request.
+     *
+     * @return The url.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the time the request was made.
+     *
+     * @return Time in nanoseconds, 0 if not reached.
+     */
+    public long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    /**
+     * Returns the time the request was last handed to the transport.
+     *
+     * @return Time in nanoseconds, 0 if not reached.
+     */
+    public long getDispatchedAt() {
+        return dispatchedAt;
+    }
+
+    /**
+     * Returns the time the response headers arrived.
+     *
+     * @return Time in nanoseconds, 0 if not reached.
+     */
+    public long getHeadersAt() {
+        return headersAt;
+    }
+
+    /**
+     * Returns the time the response body arrived.
+     *
+     * @return Time in nanoseconds, 0 if not reached.
+     */
+    public long getBodyAt() {
+        return bodyAt;
+    }
+
+    /**
+     * Returns the time the response envelope was parsed.
+     *
+     * @return Time in nanoseconds, 0 if not reached.
+     */
+    public long getParsedAt() {
+        return parsedAt;
+    }
+
+    /**
+     * Returns the time the callback returned.
+     *
+     * @return Time in nanoseconds, 0 if not reached.
+     */
+    public long getCompletedAt() {
+        return completedAt;
+    }
+
+    /**
+     * Returns the number of times the request was dispatched, more than once if retried.
+     *
+     * @return Number of attempts.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Returns the size of the response body.
+     *
+     * @return Size in bytes.
+     */
+    public long getBodySize() {
+        return bodySize;
+    }
+
+    /**
+     * Returns the status code of the response.
+     *
+     * @return The status code, 0 if no response was received.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns the outcome of the request.
+     *
+     * @return The outcome, null until completed.
+     */
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+}
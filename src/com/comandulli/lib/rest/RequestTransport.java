@@ -0,0 +1,28 @@
+package com.comandulli.lib.rest;
+
+/**
+ * Transport that carries REST requests over the network.
+ * <p>
+ * {@link NetworkRequestQueue} dispatches every {@link RestRequest} through the current transport,
+ * by default a {@link VolleyTransport} created when {@link NetworkRequestQueue#getNetworkState(android.content.Context)}
+ * is called. Use {@link NetworkRequestQueue#setTransport(RequestTransport)} to plug another implementation,
+ * such as the {@link HttpClientTransport} when running on the JVM.
+ * <p>
+ * Implementations must always report the result of a request through the callback,
+ * following this library's response convention.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public interface RequestTransport {
+
+    /**
+     * Sends a request.
+     *
+     * @param request  The request being sent.
+     * @param url      The resolved url of the request, with server path and query params.
+     * @param callback Callback, to receive the request's results, may be null.
+     */
+    void send(RestRequest request, String url, RequestCallback callback);
+
+}
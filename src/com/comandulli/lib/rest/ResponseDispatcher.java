@@ -0,0 +1,84 @@
+package com.comandulli.lib.rest;
+
+import java.util.Map;
+
+/**
+ * Delivers the results of a request to its callback, shared by all transports.
+ * Every result calls {@link RequestCallback#always()} before the specific callback method.
+ * Whoever obtains a pooled response releases it once dispatched, the callbacks only retain it.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class ResponseDispatcher {
+
+    private ResponseDispatcher() {
+    }
+
+    /**
+     * Delivers an error status, the plain response body is used as the message.
+     *
+     * @param statusCode The HTTP status code.
+     * @param body       The response body.
+     * @param headers    The response headers.
+     * @param callback   Callback, may be null.
+     */
+    static void dispatchError(int statusCode, String body, Map<String, String> headers, RequestCallback callback) {
+        RequestResponse requestResponse = ResponsePool.obtain();
+        requestResponse.setMessage(body);
+        requestResponse.setCode(statusCode);
+        requestResponse.setHeaders(headers);
+        dispatchResponse(requestResponse, callback);
+        requestResponse.release();
+    }
+
+    /**
+     * Delivers a response.
+     *
+     * @param response The response.
+     * @param callback Callback, may be null.
+     */
+    static void dispatchResponse(RequestResponse response, RequestCallback callback) {
+        if (callback != null) {
+            callback.always();
+            callback.onResponse(response);
+        }
+    }
+
+    /**
+     * Delivers a timeout.
+     *
+     * @param callback Callback, may be null.
+     */
+    static void dispatchTimeout(RequestCallback callback) {
+        if (callback != null) {
+            callback.always();
+            callback.onTimeout();
+        }
+    }
+
+    /**
+     * Delivers an internal error.
+     *
+     * @param callback Callback, may be null.
+     */
+    static void dispatchInternalError(RequestCallback callback) {
+        if (callback != null) {
+            callback.always();
+            callback.onInternalError();
+        }
+    }
+
+    /**
+     * Delivers a missing connection.
+     *
+     * @param callback Callback, may be null.
+     */
+    static void dispatchNoConnection(RequestCallback callback) {
+        if (callback != null) {
+            callback.always();
+            callback.onNoConnection();
+        }
+    }
+
+}
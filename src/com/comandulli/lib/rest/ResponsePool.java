@@ -0,0 +1,231 @@
+package com.comandulli.lib.rest;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in pooling of {@link RequestResponse} instances and of the buffers their bodies are read into.
+ * <p>
+ * Once enabled, responses are recycled as soon as the callback's {@link RequestCallback#onResponse(RequestResponse)}
+ * returns, along with the body buffer taken from the {@link BufferPool}, so callbacks must not keep a response
+ * or its content reader past that call. A callback that needs the response later calls {@link RequestResponse#retain()}
+ * and then {@link RequestResponse#recycle()} once done. Futures of {@link RestRequest#executeAsync()} keep
+ * their responses out of the pool.
+ * <p>
+ * With leak detection, meant for debug builds, the stack trace of where each response was retained is recorded,
+ * and retained responses collected without being recycled are counted and reported to the {@link LeakListener}.
+ * No listener is set by default, debug builds set their own to log leaks.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class ResponsePool {
+
+    /**
+     * Maximum number of pooled responses.
+     */
+    private static final int POOL_SIZE = 64;
+
+    /**
+     * Pooled responses.
+     */
+    private static final BlockingQueue<RequestResponse> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+    /**
+     * Trackers of the retained responses, when detecting leaks.
+     */
+    private static final Set<LeakTracker> trackers = Collections.newSetFromMap(new ConcurrentHashMap<LeakTracker, Boolean>());
+    /**
+     * Trackers of the responses collected.
+     */
+    private static final ReferenceQueue<RequestResponse> collected = new ReferenceQueue<>();
+    /**
+     * Number of leaks found.
+     */
+    private static final AtomicLong leaks = new AtomicLong();
+    /**
+     * Listener ignoring leaks, which are only counted.
+     */
+    private static final LeakListener IGNORE_LISTENER = new LeakListener() {
+        @Override
+        public void onLeak(Throwable allocation) {
+        }
+    };
+    /**
+     * If pooling is enabled.
+     */
+    private static volatile boolean enabled;
+    /**
+     * If leaks are detected.
+     */
+    private static volatile boolean leakDetection;
+    /**
+     * Listener of leaks.
+     */
+    private static volatile LeakListener leakListener = IGNORE_LISTENER;
+
+    private ResponsePool() {
+    }
+
+    /**
+     * Enables pooling of responses and body buffers, disabled by default.
+     *
+     * @param enabled If pooling is enabled.
+     */
+    public static void setEnabled(boolean enabled) {
+        ResponsePool.enabled = enabled;
+        if (!enabled) {
+            pool.clear();
+            BufferPool.clear();
+        }
+    }
+
+    /**
+     * If pooling of responses and body buffers is enabled.
+     *
+     * @return If it is enabled.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables leak detection, such as with {@code BuildConfig.DEBUG}. It records a stack trace for each response.
+     *
+     * @param leakDetection If leaks are detected.
+     */
+    public static void setLeakDetection(boolean leakDetection) {
+        ResponsePool.leakDetection = leakDetection;
+    }
+
+    /**
+     * If leaks are detected.
+     *
+     * @return If leak detection is enabled.
+     */
+    public static boolean isLeakDetection() {
+        return leakDetection;
+    }
+
+    /**
+     * Set the listener of leaks.
+     *
+     * @param leakListener The listener, null to only count leaks, see {@link #getLeakCount()}.
+     */
+    public static void setLeakListener(LeakListener leakListener) {
+        ResponsePool.leakListener = leakListener != null ? leakListener : IGNORE_LISTENER;
+    }
+
+    /**
+     * Returns the number of leaked responses found.
+     *
+     * @return The number of leaks.
+     */
+    public static long getLeakCount() {
+        return leaks.get();
+    }
+
+    /**
+     * Returns the number of responses waiting in the pool.
+     *
+     * @return The number of pooled responses.
+     */
+    static int getPooledCount() {
+        return pool.size();
+    }
+
+    /**
+     * Takes a response from the pool, or a new one when pooling is disabled.
+     *
+     * @return The response.
+     */
+    static RequestResponse obtain() {
+        if (!enabled) {
+            return new RequestResponse();
+        }
+        RequestResponse response = pool.poll();
+        if (response == null) {
+            response = new RequestResponse();
+        }
+        response.setPooled(true);
+        if (leakDetection) {
+            reportLeaks();
+        }
+        return response;
+    }
+
+    /**
+     * Starts tracking a retained response, when detecting leaks.
+     *
+     * @param response The response.
+     * @return The tracker, null if leaks are not detected.
+     */
+    static LeakTracker track(RequestResponse response) {
+        if (!leakDetection) {
+            return null;
+        }
+        reportLeaks();
+        LeakTracker tracker = new LeakTracker(response);
+        trackers.add(tracker);
+        return tracker;
+    }
+
+    /**
+     * Gives a recycled response back to the pool.
+     *
+     * @param response The response, already cleared.
+     */
+    static void recycle(RequestResponse response) {
+        if (enabled) {
+            pool.offer(response);
+        }
+    }
+
+    /**
+     * Stops tracking a retained response, once recycled or kept out of the pool.
+     *
+     * @param tracker Tracker of the response, may be null.
+     */
+    static void untrack(LeakTracker tracker) {
+        if (tracker != null) {
+            tracker.clear();
+            trackers.remove(tracker);
+        }
+    }
+
+    /**
+     * Reports the responses collected while still tracked.
+     */
+    private static void reportLeaks() {
+        LeakTracker tracker;
+        while ((tracker = (LeakTracker) collected.poll()) != null) {
+            if (trackers.remove(tracker)) {
+                leaks.incrementAndGet();
+                leakListener.onLeak(tracker.allocation);
+            }
+        }
+    }
+
+    /**
+     * Weak reference to a retained response, with the stack trace of where it was retained.
+     */
+    static final class LeakTracker extends WeakReference<RequestResponse> {
+
+        /**
+         * Stack trace of where the response was retained.
+         */
+        private final Throwable allocation;
+
+        private LeakTracker(RequestResponse response) {
+            super(response, collected);
+            this.allocation = new Throwable("Response retained here was never recycled");
+        }
+
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.comandulli.lib.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Map;
+import java.util.concurrent.Flow;
+
+/**
+ * Body of a response read as it arrives from the connection, given to a {@link StreamingCallback}.
+ * <p>
+ * Bytes are only received as fast as they are read, so the body is never held in memory as a whole.
+ * Reads report the progress to the callback.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class ResponseStream extends InputStream {
+
+    /**
+     * The body as it arrives.
+     */
+    private final InputStream in;
+    /**
+     * Status code of the response.
+     */
+    private final int statusCode;
+    /**
+     * Headers of the response.
+     */
+    private final Map<String, String> headers;
+    /**
+     * Size of the body, -1 if unknown.
+     */
+    private final long contentLength;
+    /**
+     * Listener of the progress, null if none.
+     */
+    private final ProgressListener progressListener;
+    /**
+     * Bytes read.
+     */
+    private long transferred;
+    /**
+     * If the stream was handed over to a publisher, to be closed by it.
+     */
+    private volatile boolean detached;
+
+    /**
+     * Instantiate a stream over a body.
+     *
+     * @param in               The body.
+     * @param statusCode       Status code of the response.
+     * @param headers          Headers of the response.
+     * @param contentLength    Size of the body, -1 if unknown.
+     * @param progressListener Listener of the progress, null if none.
+     */
+    ResponseStream(InputStream in, int statusCode, Map<String, String> headers, long contentLength, ProgressListener progressListener) {
+        this.in = in;
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.contentLength = contentLength;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Returns the status code of the response.
+     *
+     * @return The status code.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns the headers of the response.
+     *
+     * @return The headers.
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Returns the size of the body, as declared by the server.
+     *
+     * @return The size, -1 if unknown or compressed.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Returns the bytes read so far.
+     *
+     * @return The bytes read.
+     */
+    public long getTransferred() {
+        return transferred;
+    }
+
+    /**
+     * Hands the rest of the body over to a publisher of chunks, read as the subscriber requests them.
+     * The stream is then closed by the publisher instead of when the callback returns.
+     *
+     * @param chunkSize Size of each chunk.
+     * @return The publisher.
+     */
+    public Flow.Publisher<ByteBuffer> toPublisher(int chunkSize) {
+        detached = true;
+        return new ChannelPublisher(Channels.newChannel(this), chunkSize);
+    }
+
+    /**
+     * If the stream was handed over to a publisher.
+     *
+     * @return If it is detached.
+     */
+    boolean isDetached() {
+        return detached;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            progress(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = in.read(buffer, offset, length);
+        if (read > 0) {
+            progress(read);
+        }
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Counts bytes read and reports the progress.
+     *
+     * @param read Bytes read.
+     */
+    private void progress(int read) {
+        transferred += read;
+        if (progressListener != null) {
+            progressListener.onProgress(transferred, contentLength);
+        }
+    }
+
+}
@@ -0,0 +1,313 @@
+package com.comandulli.lib.rest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Packs many REST requests into a single request to a batch endpoint, saving round trips.
+ * <p>
+ * The batch is sent as a POST with the content {"requests":[{"method":"GET","url":"/path?query","content":{...}}, ...]}
+ * and the endpoint must respond, in this library's convention, with the content {"responses":[...]} holding one envelope
+ * (code, message and content) for each request, in the same order. Each envelope is routed to the callback of its request.
+ * <p>
+ * The batch is flushed automatically when it reaches its maximum size, or when its time window since the first
+ * request added elapses. The callback of each request is delivered on the executor of that request.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class RestBatch {
+
+    /**
+     * JSON mapping of the batched requests.
+     */
+    public static final String JSON_PROPERTY_REQUESTS = "requests";
+    /**
+     * JSON mapping of the batched responses.
+     */
+    public static final String JSON_PROPERTY_RESPONSES = "responses";
+    /**
+     * JSON mapping of a batched request method.
+     */
+    public static final String JSON_PROPERTY_METHOD = "method";
+    /**
+     * JSON mapping of a batched request url.
+     */
+    public static final String JSON_PROPERTY_URL = "url";
+    /**
+     * Default maximum number of requests in a batch.
+     */
+    public static final int DEFAULT_MAX_SIZE = 20;
+    /**
+     * Default time window of a batch in milliseconds.
+     */
+    public static final long DEFAULT_WINDOW_MS = 10;
+
+    /**
+     * Keys of the batched response envelopes.
+     */
+    private static final byte[][] KEYS = {JSON_PROPERTY_RESPONSES.getBytes(EnvelopeParser.UTF_8)};
+
+    /**
+     * Url path of the batch endpoint.
+     */
+    private final String url;
+    /**
+     * Server path of the batch endpoint.
+     */
+    private String serverPath;
+    /**
+     * Maximum number of requests in a batch.
+     */
+    private int maxSize = DEFAULT_MAX_SIZE;
+    /**
+     * Time window of a batch in milliseconds.
+     */
+    private long window = DEFAULT_WINDOW_MS;
+    /**
+     * Requests waiting to be sent.
+     */
+    private List<Entry> pending = new ArrayList<>();
+    /**
+     * Scheduled flush of the current window, null if none.
+     */
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * Instantiate a batch sent to an endpoint on the default server path.
+     *
+     * @param url Url path of the batch endpoint.
+     */
+    public RestBatch(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Set server path of the batch endpoint.
+     *
+     * @param serverPath Server path.
+     * @return This batch.
+     */
+    public RestBatch setServerPath(String serverPath) {
+        this.serverPath = serverPath;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of requests in a batch, reaching it flushes the batch.
+     *
+     * @param maxSize Maximum number of requests.
+     * @return This batch.
+     */
+    public RestBatch setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * Sets the time window of a batch, after the first request is added the batch is flushed when it elapses.
+     * Zero or less disables the automatic flush by time.
+     *
+     * @param window Time window in milliseconds.
+     * @return This batch.
+     */
+    public RestBatch setWindow(long window) {
+        this.window = window;
+        return this;
+    }
+
+    /**
+     * Adds a request without any callbacks to the batch.
+     *
+     * @param request The request.
+     */
+    public void add(RestRequest request) {
+        add(request, null);
+    }
+
+    /**
+     * Adds a request to the batch.
+     *
+     * @param request  The request.
+     * @param callback Callback, to receive the request's results.
+     */
+    public void add(RestRequest request, RequestCallback callback) {
+        boolean full;
+        synchronized (this) {
+            Executor executor = request.getCallbackExecutor();
+            if (executor == null) {
+                executor = NetworkRequestQueue.getDefaultCallbackExecutor();
+            }
+            pending.add(new Entry(request, DeliveryCallback.wrap(callback, callback, executor)));
+            full = pending.size() >= maxSize;
+            if (!full && pending.size() == 1 && window > 0) {
+                scheduledFlush = RequestTimer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush();
+                    }
+                }, window);
+            }
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends all requests waiting in the batch.
+     */
+    public void flush() {
+        final List<Entry> entries;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            entries = pending;
+            pending = new ArrayList<>();
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+        }
+        JSONObject content = new JSONObject();
+        try {
+            JSONArray requests = new JSONArray();
+            for (Entry entry : entries) {
+                JSONObject request = new JSONObject();
+                request.put(JSON_PROPERTY_METHOD, entry.request.getMethod().name());
+                request.put(JSON_PROPERTY_URL, entry.request.getPath());
+                if (entry.request.getContent() != null) {
+                    request.put(VolleyRequest.JSON_PROPERTY_CONTENT, entry.request.getContent());
+                }
+                requests.put(request);
+            }
+            content.put(JSON_PROPERTY_REQUESTS, requests);
+        } catch (JSONException e) {
+            for (Entry entry : entries) {
+                ResponseDispatcher.dispatchInternalError(entry.callback);
+            }
+            return;
+        }
+        RestRequest batch = new RestRequest(RestRequest.RequestMethod.POST, url);
+        if (serverPath != null) {
+            batch.setServerPath(serverPath);
+        }
+        batch.addContent(content);
+        // the responses are split on the thread they arrive on, each callback is delivered on its own executor
+        batch.setCallbackExecutor(CallbackExecutors.DIRECT);
+        batch.execute(new BatchCallback(entries));
+    }
+
+    /**
+     * A request waiting in the batch.
+     */
+    private static final class Entry {
+
+        private final RestRequest request;
+        private final RequestCallback callback;
+
+        private Entry(RestRequest request, RequestCallback callback) {
+            this.request = request;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * Callback of a batch, that splits its response into the responses of each request.
+     */
+    private static final class BatchCallback extends RequestCallback {
+
+        /**
+         * Requests of the batch, in order.
+         */
+        private final List<Entry> entries;
+
+        private BatchCallback(List<Entry> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public void always() {
+        }
+
+        @Override
+        public void onResponse(RequestResponse response) {
+            ContentReader reader = response != null ? response.getContentReader() : null;
+            if (reader == null) {
+                if (response != null && response.getCode() >= 300) {
+                    for (Entry entry : entries) {
+                        ResponseDispatcher.dispatchResponse(response, entry.callback);
+                    }
+                } else {
+                    onInternalError();
+                }
+                return;
+            }
+            EnvelopeCodec codec = response.getCodec();
+            List<RequestResponse> responses = new ArrayList<>(entries.size());
+            try {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextNameIndex(KEYS) == 0) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            int start = reader.skipValueFrom();
+                            responses.add(codec.decode(reader.getData(), start, reader.getPosition() - start));
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } catch (JSONException e) {
+                onInternalError();
+                return;
+            }
+            boolean retained = false;
+            for (int i = 0; i < entries.size(); i++) {
+                if (i < responses.size()) {
+                    RequestResponse entryResponse = responses.get(i);
+                    ResponseDispatcher.dispatchResponse(entryResponse, entries.get(i).callback);
+                    retained |= entryResponse.isRetained();
+                    entryResponse.release();
+                } else {
+                    ResponseDispatcher.dispatchInternalError(entries.get(i).callback);
+                }
+            }
+            if (retained) {
+                // the retained responses are views of the batch's buffer
+                response.detach();
+            }
+        }
+
+        @Override
+        public void onTimeout() {
+            for (Entry entry : entries) {
+                ResponseDispatcher.dispatchTimeout(entry.callback);
+            }
+        }
+
+        @Override
+        public void onNoConnection() {
+            for (Entry entry : entries) {
+                ResponseDispatcher.dispatchNoConnection(entry.callback);
+            }
+        }
+
+        @Override
+        public void onInternalError() {
+            for (Entry entry : entries) {
+                ResponseDispatcher.dispatchInternalError(entry.callback);
+            }
+        }
+    }
+
+}
@@ -1,12 +1,24 @@
 package com.comandulli.lib.rest;
 
 import com.android.volley.Request.Method;
+import com.comandulli.lib.rest.cache.CacheEntry;
 import com.comandulli.lib.rest.exception.NoInternetConnectionException;
+import com.comandulli.lib.rest.exception.RequestException;
 
 import org.json.JSONObject;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
 /**
  * A REST Request.
+ * <p>
+ * A request may be executed again, or several times at once. Each execution sends its own copy of the request,
+ * made when it is executed, that holds the state of that execution in flight, such as its cancellation,
+ * its trace and its cache state, so executions never see each other's state.
  *
  * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
  * @since 1.0
@@ -44,12 +56,29 @@ public class RestRequest {
         public int getMethod() {
             return method;
         }
+
+        /**
+         * If repeating a request with this method has the same effect as making it once.
+         *
+         * @return If this method is idempotent.
+         */
+        public boolean isIdempotent() {
+            return this != POST;
+        }
+    }
+
+    /**
+     * Request Priority Enumerator.
+     * Requests with a higher priority are sent first, from IMMEDIATE down to LOW.
+     */
+    public enum Priority {
+        IMMEDIATE, HIGH, NORMAL, LOW
     }
 
     /**
      * Url of the request.
      */
-    private String url;
+    private final String url;
     /**
      * HTTP Method of the request.
      */
@@ -70,6 +99,74 @@ public class RestRequest {
      * Server path to be appended at the beginning of any request.
      */
     private String serverPath;
+    /**
+     * If this request may be served by the response cache, GET requests by default.
+     */
+    private boolean cacheable;
+    /**
+     * Key of this execution in the response cache, null if not cached.
+     */
+    private String cacheKey;
+    /**
+     * Cached entry being revalidated by this execution, null if none.
+     */
+    private CacheEntry cacheEntry;
+    /**
+     * If this request may share a network call with identical requests in flight, idempotent requests by default.
+     */
+    private boolean coalescing;
+    /**
+     * Priority of this request.
+     */
+    private Priority priority = Priority.NORMAL;
+    /**
+     * Default retry policy of all requests.
+     */
+    private static RetryPolicy defaultRetryPolicy = RetryPolicy.NONE;
+    /**
+     * Retry policy of this request, null to use the default one.
+     */
+    private RetryPolicy retryPolicy;
+    /**
+     * If this request is kept in the outbox when made without connection.
+     */
+    private boolean durable;
+    /**
+     * Key that deduplicates this request in the outbox, null if none.
+     */
+    private String deduplicationKey;
+    /**
+     * Headers of this request, sent over the global headers, null if none.
+     */
+    private Map<String, String> headers;
+    /**
+     * Trace of this execution, null if not traced.
+     */
+    private volatile RequestTrace trace;
+    /**
+     * Body of this request read as it is sent, null if none.
+     */
+    private RequestBody body;
+    /**
+     * Callback of this execution streaming the response body, null if not streaming.
+     */
+    private StreamingCallback streamingCallback;
+    /**
+     * Executor the callback of this request is delivered on, null to use the default one.
+     */
+    private Executor callbackExecutor;
+    /**
+     * Tag of this request, to cancel it together with others, null if none.
+     */
+    private Object tag;
+    /**
+     * Time this request has to complete in milliseconds, 0 if none.
+     */
+    private long deadline;
+    /**
+     * Cancellation of this execution, null if not cancelable.
+     */
+    private volatile CancelToken cancelToken;
 
     /**
      * Sets the default server path.
@@ -80,6 +177,24 @@ public class RestRequest {
         defaultServerPath = path;
     }
 
+    /**
+     * Returns the default server path.
+     *
+     * @return Server path.
+     */
+    public static String getDefaultServerPath() {
+        return defaultServerPath;
+    }
+
+    /**
+     * Sets the default retry policy of all requests, by default requests are not retried.
+     *
+     * @param policy Retry policy.
+     */
+    public static void setDefaultRetryPolicy(RetryPolicy policy) {
+        defaultRetryPolicy = policy;
+    }
+
     /**
      * Instantiate a new REST Request.
      *
@@ -91,6 +206,8 @@ public class RestRequest {
         this.url = url;
         this.params = null;
         this.serverPath = defaultServerPath;
+        this.cacheable = method == RequestMethod.GET;
+        this.coalescing = method.isIdempotent();
     }
 
     /**
@@ -105,6 +222,34 @@ public class RestRequest {
         this.url = url;
         this.params = params;
         this.serverPath = defaultServerPath;
+        this.cacheable = method == RequestMethod.GET;
+        this.coalescing = method.isIdempotent();
+    }
+
+    /**
+     * Copies a request for one of its executions, with the values it has when executed.
+     *
+     * @param request           The request.
+     * @param streamingCallback Callback of the execution streaming the response body, null if not streaming.
+     */
+    private RestRequest(RestRequest request, StreamingCallback streamingCallback) {
+        this.method = request.getMethod();
+        this.url = request.url;
+        this.params = request.params;
+        this.content = request.getContent();
+        this.serverPath = request.serverPath;
+        this.cacheable = request.cacheable;
+        this.coalescing = request.coalescing;
+        this.priority = request.getPriority();
+        this.retryPolicy = request.retryPolicy;
+        this.durable = request.durable;
+        this.deduplicationKey = request.getDeduplicationKey();
+        this.headers = request.getHeaders();
+        this.body = request.getBody();
+        this.callbackExecutor = request.getCallbackExecutor();
+        this.tag = request.getTag();
+        this.deadline = request.getDeadline();
+        this.streamingCallback = streamingCallback;
     }
 
     /**
@@ -116,11 +261,484 @@ public class RestRequest {
         this.content = content;
     }
 
+    /**
+     * Adds a header to this request only, replacing a global header with the same name, in any case.
+     *
+     * @param name  Header name key.
+     * @param value Header value.
+     * @see HeaderRegistry
+     */
+    public synchronized void addHeader(String name, String value) {
+        if (headers == null) {
+            headers = HeaderRegistry.newHeaders();
+        }
+        headers.remove(name);
+        headers.put(name, value);
+    }
+
+    /**
+     * Returns a copy of the headers of this request only, without the global headers.
+     * Header names are case insensitive.
+     *
+     * @return The headers, null if none.
+     */
+    public synchronized Map<String, String> getHeaders() {
+        if (headers == null) {
+            return null;
+        }
+        Map<String, String> copy = HeaderRegistry.newHeaders();
+        copy.putAll(headers);
+        return copy;
+    }
+
+    /**
+     * Returns the HTTP Method of this request.
+     *
+     * @return HTTP Method.
+     */
+    public RequestMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the url path of this request with its query params, without the server path.
+     *
+     * @return The url path.
+     */
+    public String getPath() {
+        return params != null ? params.buildQuery(url) : url;
+    }
+
+    /**
+     * Returns the content body of this request.
+     *
+     * @return Content body in JSON format, null if none.
+     */
+    public JSONObject getContent() {
+        return content;
+    }
+
+    /**
+     * Sets if this request may be served by the response cache {@see com.comandulli.lib.rest.cache.ResponseCache}.
+     * Only GET requests are cacheable by default.
+     *
+     * @param cacheable If this request is cacheable.
+     */
+    public void setCacheable(boolean cacheable) {
+        this.cacheable = cacheable;
+    }
+
+    /**
+     * If this request may be served by the response cache. Streaming requests never are.
+     *
+     * @return If this request is cacheable.
+     */
+    public boolean isCacheable() {
+        return cacheable && !isStreaming();
+    }
+
+    /**
+     * Sets if this request may share a single network call with identical requests in flight,
+     * same method, url, headers and content. Only idempotent requests are coalesced by default.
+     *
+     * @param coalescing If this request may be coalesced.
+     */
+    public void setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * If this request may share a single network call with identical requests in flight. Streaming requests never do.
+     *
+     * @return If this request may be coalesced.
+     */
+    public boolean isCoalescing() {
+        return coalescing && !isStreaming();
+    }
+
+    /**
+     * Sets the priority of this request, NORMAL by default.
+     *
+     * @param priority The priority.
+     */
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the priority of this request.
+     *
+     * @return The priority.
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the retry policy of this request, replacing the default one.
+     *
+     * @param retryPolicy Retry policy.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Returns the retry policy of this request.
+     *
+     * @return The retry policy, or the default one if none was set.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy != null ? retryPolicy : defaultRetryPolicy;
+    }
+
+    /**
+     * Sets if this request is kept in the outbox when made without connection, and replayed once the connection returns.
+     * The callback still receives {@link RequestCallback#onNoConnection()}, replayed results go to the outbox callback.
+     *
+     * @param durable If this request is durable.
+     * @see NetworkRequestQueue#setOutbox(RequestOutbox)
+     */
+    public void setDurable(boolean durable) {
+        this.durable = durable;
+    }
+
+    /**
+     * Returns if this request is kept in the outbox when made without connection.
+     *
+     * @return If this request is durable.
+     */
+    public boolean isDurable() {
+        return durable && body == null;
+    }
+
+    /**
+     * Sets the key that deduplicates this request in the outbox, a durable request supersedes a pending one with the same key.
+     *
+     * @param deduplicationKey The key, null if none.
+     */
+    public void setDeduplicationKey(String deduplicationKey) {
+        this.deduplicationKey = deduplicationKey;
+    }
+
+    /**
+     * Returns the key that deduplicates this request in the outbox.
+     *
+     * @return The key, null if none.
+     */
+    public String getDeduplicationKey() {
+        return deduplicationKey;
+    }
+
+    /**
+     * Sets a body read from a file or channel as it is sent, replacing the JSON content.
+     * Only sent by the {@link HttpClientTransport}; such requests are never kept in the outbox.
+     *
+     * @param body The body, null for none.
+     */
+    public void setBody(RequestBody body) {
+        this.body = body;
+    }
+
+    /**
+     * Returns the body read as it is sent.
+     *
+     * @return The body, null if none.
+     */
+    public RequestBody getBody() {
+        return body;
+    }
+
+    /**
+     * If this request streams its body or the response body.
+     *
+     * @return If it is streaming.
+     */
+    public boolean isStreaming() {
+        return body != null || streamingCallback != null;
+    }
+
+    /**
+     * Sets the executor the callback of this request is delivered on, replacing the default one,
+     * such as {@link CallbackExecutors#DIRECT} to handle the response on the thread it arrived on.
+     *
+     * @param callbackExecutor The executor, null to use the default one.
+     * @see NetworkRequestQueue#setCallbackExecutor(Executor)
+     */
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Returns the executor the callback of this request is delivered on.
+     *
+     * @return The executor, null if the default one is used.
+     */
+    public Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
+    /**
+     * Sets the tag of this request, such as the screen making it, to cancel it together with all other requests
+     * in flight with the same tag through {@link NetworkRequestQueue#cancelAll(Object)}.
+     *
+     * @param tag The tag, null if none.
+     */
+    public void setTag(Object tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Returns the tag of this request.
+     *
+     * @return The tag, null if none.
+     */
+    public Object getTag() {
+        return tag;
+    }
+
+    /**
+     * Sets the time this request has to complete, from when it is executed, including the time it waits for a slot,
+     * its retries and the parsing of the response. Once it runs out, the request is canceled
+     * and its callback receives a timeout.
+     *
+     * @param deadline Deadline in milliseconds, 0 for none.
+     * @see RequestHandle
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Returns the time this request has to complete.
+     *
+     * @return Deadline in milliseconds, 0 if none.
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Returns the callback streaming the response body.
+     *
+     * @return The callback, null if not streaming.
+     */
+    StreamingCallback getStreamingCallback() {
+        return streamingCallback;
+    }
+
+    /**
+     * Sets the trace of this request in flight.
+     *
+     * @param trace The trace, null if not traced.
+     */
+    void setTrace(RequestTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Returns the trace of this request in flight.
+     *
+     * @return The trace, null if not traced.
+     */
+    RequestTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Sets the cancellation of this request in flight.
+     *
+     * @param cancelToken The token, null if not cancelable.
+     */
+    void setCancelToken(CancelToken cancelToken) {
+        this.cancelToken = cancelToken;
+    }
+
+    /**
+     * Returns the cancellation of this request in flight.
+     *
+     * @return The token, null if not cancelable.
+     */
+    CancelToken getCancelToken() {
+        return cancelToken;
+    }
+
+    /**
+     * Returns if this request in flight was canceled, so it is no longer sent nor its response decoded.
+     *
+     * @return If canceled.
+     */
+    boolean isCanceled() {
+        CancelToken token = cancelToken;
+        return token != null && token.isCanceled();
+    }
+
+    /**
+     * Sets the cache state of this request in flight.
+     *
+     * @param key   Key of this request in the response cache, null if not cached.
+     * @param entry Cached entry being revalidated, null if none.
+     */
+    void setCacheState(String key, CacheEntry entry) {
+        this.cacheKey = key;
+        this.cacheEntry = entry;
+    }
+
+    /**
+     * Returns the key of this request in the response cache.
+     *
+     * @return The key, null if not cached.
+     */
+    String getCacheKey() {
+        return cacheKey;
+    }
+
+    /**
+     * Returns the cached entry being revalidated by this request.
+     *
+     * @return The entry, null if none.
+     */
+    CacheEntry getCacheEntry() {
+        return cacheEntry;
+    }
+
     /**
      * Executes this request without any callbacks.
+     *
+     * @return Handle of the request, to cancel it.
      */
-    public void execute() {
-        execute(null);
+    public RequestHandle execute() {
+        return execute((RequestCallback) null);
+    }
+
+    /**
+     * Executes this request asynchronously.
+     * <p>
+     * Unless an executor is set for this request, the future completes on the thread the response arrived on.
+     * The future completes with the response for any success status, or exceptionally with a
+     * {@link com.comandulli.lib.rest.exception.RequestException} subclass matching the failure, such as
+     * {@link com.comandulli.lib.rest.exception.UnauthorizedException} for 401.
+     * Canceling the future cancels the request, and canceling the request through its tag completes the future
+     * with a {@link com.comandulli.lib.rest.exception.RequestCanceledException}.
+     *
+     * @return The future of the response.
+     */
+    public CompletableFuture<RequestResponse> executeAsync() {
+        FutureCallback<RequestResponse> callback = FutureCallback.forResponse();
+        return cancelable(callback.getFuture(), execute(callback));
+    }
+
+    /**
+     * Executes this request asynchronously, decoding the content of the response.
+     *
+     * @param decoder Decoder of the response content.
+     * @param <T>     Type of the decoded content.
+     * @return The future of the decoded content.
+     * @see #executeAsync()
+     */
+    public <T> CompletableFuture<T> executeAsync(ContentDecoder<T> decoder) {
+        FutureCallback<T> callback = FutureCallback.forContent(decoder);
+        return cancelable(callback.getFuture(), execute(callback));
+    }
+
+    /**
+     * Cancels a request once its future is canceled.
+     *
+     * @param future The future of the request.
+     * @param handle Handle of the request.
+     * @param <T>    Type of the future's value.
+     * @return The future.
+     */
+    private static <T> CompletableFuture<T> cancelable(final CompletableFuture<T> future, final RequestHandle handle) {
+        future.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T value, Throwable throwable) {
+                if (future.isCancelled()) {
+                    handle.cancel();
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Executes this request asynchronously, decoding the content of the response
+     * with the decoder registered for a class in {@link ContentDecoders}, by hand or through {@link ContentDecoders#derive(Class)}.
+     *
+     * @param type Class of the content.
+     * @param <T>  Type of the content.
+     * @return The future of the decoded content.
+     * @throws IllegalArgumentException if no decoder is registered for the class.
+     * @see #executeAsync()
+     */
+    public <T> CompletableFuture<T> executeAsync(Class<T> type) {
+        ContentDecoder<T> decoder = ContentDecoders.get(type);
+        if (decoder == null) {
+            throw new IllegalArgumentException("No decoder registered for " + type.getName());
+        }
+        return executeAsync(decoder);
+    }
+
+    /**
+     * Executes this request, blocking the current thread until it completes.
+     * <p>
+     * Meant for server side and batch jobs, ideally on a virtual thread {@see com.comandulli.lib.rest.VirtualThreads}.
+     * Must never be called on the thread callbacks are delivered on, such as android's main thread with volley.
+     *
+     * @return The response, for any success status.
+     * @throws RequestException subclass matching the failure, such as {@link com.comandulli.lib.rest.exception.UnauthorizedException} for 401.
+     */
+    public RequestResponse executeBlocking() {
+        return await(executeAsync());
+    }
+
+    /**
+     * Executes this request, blocking the current thread until it completes, decoding the content of the response.
+     *
+     * @param decoder Decoder of the response content.
+     * @param <T>     Type of the decoded content.
+     * @return The decoded content.
+     * @throws RequestException subclass matching the failure.
+     * @see #executeBlocking()
+     */
+    public <T> T executeBlocking(ContentDecoder<T> decoder) {
+        return await(executeAsync(decoder));
+    }
+
+    /**
+     * Executes this request, blocking the current thread until it completes, decoding the content of the response
+     * with the decoder registered for a class in {@link ContentDecoders}.
+     *
+     * @param type Class of the content.
+     * @param <T>  Type of the content.
+     * @return The decoded content.
+     * @throws RequestException subclass matching the failure.
+     * @see #executeBlocking()
+     */
+    public <T> T executeBlocking(Class<T> type) {
+        return await(executeAsync(type));
+    }
+
+    /**
+     * Waits for a future, rethrowing its failure.
+     *
+     * @param future The future.
+     * @param <T>    Type of the future's value.
+     * @return The value.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RequestException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RequestException) {
+                throw (RequestException) e.getCause();
+            }
+            throw new RequestException(e.getCause());
+        }
     }
 
     /**
@@ -133,25 +751,54 @@ public class RestRequest {
         this.serverPath = serverPath;
     }
 
+    /**
+     * Executes this request, streaming the body of a successful response to a callback.
+     *
+     * @param callback Callback, to read the response body.
+     * @return Handle of the request, to cancel it.
+     */
+    public RequestHandle execute(StreamingCallback callback) {
+        return execute(callback, callback);
+    }
+
     /**
      * Executes this request with a callback.
      *
      * @param callback Callback.
+     * @return Handle of the request, to cancel it.
+     */
+    public RequestHandle execute(RequestCallback callback) {
+        return execute(callback, null);
+    }
+
+    /**
+     * Executes a copy of this request holding the state of the execution.
+     *
+     * @param callback          Callback.
+     * @param streamingCallback Callback streaming the response body, null if not streaming.
+     * @return Handle of the request, to cancel it.
      */
-    public void execute(final RequestCallback callback) {
-        if (params != null) {
-            url = params.buildQuery(url);
+    private RequestHandle execute(RequestCallback callback, StreamingCallback streamingCallback) {
+        String path = serverPath + getPath();
+        RestRequest execution = new RestRequest(this, streamingCallback);
+        Executor executor = execution.callbackExecutor;
+        if (executor == null) {
+            executor = callback instanceof FutureCallback ? CallbackExecutors.DIRECT : NetworkRequestQueue.getDefaultCallbackExecutor();
         }
-        String path = serverPath + url;
-        VolleyRequest request = new VolleyRequest(method.getMethod(), path, content, callback);
+        RequestHandle handle = new RequestHandle(this);
+        DeliveryCallback delivery = new DeliveryCallback(RequestEvents.trace(execution, path, callback), callback, executor, handle);
+        execution.cancelToken = handle.getToken();
+        handle.start(delivery, execution.deadline);
         try {
-            NetworkRequestQueue.makeRequest(request);
+            NetworkRequestQueue.makeRequest(execution, path, delivery);
         } catch (NoInternetConnectionException e) {
-            if (callback != null) {
-                callback.always();
-                callback.onNoConnection();
+            RequestOutbox outbox = NetworkRequestQueue.getOutbox();
+            if (execution.isDurable() && outbox != null) {
+                outbox.append(execution, path);
             }
+            ResponseDispatcher.dispatchNoConnection(delivery);
         }
+        return handle;
     }
 
 }
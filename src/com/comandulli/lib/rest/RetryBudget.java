@@ -0,0 +1,84 @@
+package com.comandulli.lib.rest;
+
+/**
+ * Limits retries to a ratio of the requests made, so a degraded backend is not flooded by retry storms.
+ * <p>
+ * Every request made deposits a fraction of a token, up to a maximum, and every retry withdraws a whole token.
+ * With a ratio of 0.2, at most one retry is made for every five requests once the initial tokens are spent.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class RetryBudget {
+
+    /**
+     * Default ratio of retries to requests.
+     */
+    public static final double DEFAULT_RATIO = 0.2;
+    /**
+     * Default maximum number of tokens.
+     */
+    public static final int DEFAULT_MAX_TOKENS = 10;
+
+    /**
+     * Tokens deposited by each request.
+     */
+    private final double ratio;
+    /**
+     * Maximum number of tokens.
+     */
+    private final double maxTokens;
+    /**
+     * Current number of tokens.
+     */
+    private double tokens;
+
+    /**
+     * Instantiate a budget with the default ratio and maximum.
+     */
+    public RetryBudget() {
+        this(DEFAULT_RATIO, DEFAULT_MAX_TOKENS);
+    }
+
+    /**
+     * Instantiate a budget, starting full.
+     *
+     * @param ratio     Ratio of retries to requests.
+     * @param maxTokens Maximum number of retries that can be saved up.
+     */
+    public RetryBudget(double ratio, int maxTokens) {
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+    }
+
+    /**
+     * Deposits the tokens of a request made.
+     */
+    public synchronized void onRequest() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    /**
+     * Withdraws the token of a retry.
+     *
+     * @return If the retry is within the budget.
+     */
+    public synchronized boolean tryRetry() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    /**
+     * Returns the number of retries currently available.
+     *
+     * @return The number of tokens.
+     */
+    public synchronized double getTokens() {
+        return tokens;
+    }
+
+}
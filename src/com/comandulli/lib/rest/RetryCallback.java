@@ -0,0 +1,79 @@
+package com.comandulli.lib.rest;
+
+/**
+ * Callback that retries a request on retryable failures, following its retry policy,
+ * and forwards the final result. A canceled request is not retried.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class RetryCallback extends ForwardingCallback {
+
+    /**
+     * The request.
+     */
+    private final RestRequest request;
+    /**
+     * Resolved url of the request.
+     */
+    private final String url;
+    /**
+     * The retry policy.
+     */
+    private final RetryPolicy policy;
+    /**
+     * Number of attempts made.
+     */
+    private int attempt = 1;
+
+    RetryCallback(RestRequest request, String url, RetryPolicy policy, RequestCallback delegate) {
+        super(delegate);
+        this.request = request;
+        this.url = url;
+        this.policy = policy;
+        policy.getBudget().onRequest();
+    }
+
+    @Override
+    public void onResponse(RequestResponse response) {
+        if (response == null || !policy.isRetryable(response.getCode()) || !retry(response)) {
+            forwardResponse(response);
+        }
+    }
+
+    @Override
+    public void onTimeout() {
+        if (!retry(null)) {
+            forwardTimeout();
+        }
+    }
+
+    /**
+     * Schedules another attempt if allowed by the policy.
+     *
+     * @param response Response of the failed attempt, null if none.
+     * @return If another attempt was scheduled.
+     */
+    private boolean retry(RequestResponse response) {
+        if (attempt >= policy.getMaxAttempts() || request.isCanceled()) {
+            return false;
+        }
+        long delay = policy.getDelay(attempt, response);
+        if (delay < 0 || !policy.getBudget().tryRetry()) {
+            return false;
+        }
+        attempt++;
+        RequestTimer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (request.isCanceled()) {
+                    forwardInternalError();
+                } else {
+                    NetworkRequestQueue.resend(request, url, RetryCallback.this);
+                }
+            }
+        }, delay);
+        return true;
+    }
+
+}
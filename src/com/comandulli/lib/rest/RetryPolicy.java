@@ -0,0 +1,235 @@
+package com.comandulli.lib.rest;
+
+import java.util.Random;
+
+/**
+ * Policy of retries of a request, with exponential backoff and jitter.
+ * <p>
+ * Timeouts, 5XX (Server Error), 408 (Request Timeout) and 429 (Too Many Requests) responses are retried,
+ * honoring the Retry-After header when present. Only requests with idempotent methods are retried,
+ * unless {@link #setRetryNonIdempotent(boolean)} is set. All retries are limited by a {@link RetryBudget}.
+ * <p>
+ * Set it for all requests through {@link RestRequest#setDefaultRetryPolicy(RetryPolicy)}, or for a single
+ * request through {@link RestRequest#setRetryPolicy(RetryPolicy)}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class RetryPolicy {
+
+    /**
+     * Policy that never retries.
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(1);
+    /**
+     * Default delay before the first retry in milliseconds.
+     */
+    public static final long DEFAULT_BASE_DELAY_MS = 200;
+    /**
+     * Default maximum delay before a retry in milliseconds.
+     */
+    public static final long DEFAULT_MAX_DELAY_MS = 10000;
+    /**
+     * Default multiplier of the delay at each retry.
+     */
+    public static final double DEFAULT_MULTIPLIER = 2;
+    /**
+     * Default fraction of the delay that is randomized.
+     */
+    public static final double DEFAULT_JITTER = 0.5;
+    /**
+     * Header key of the delay requested by the server.
+     */
+    public static final String PROPERTY_RETRY_AFTER = "Retry-After";
+
+    /**
+     * Budget shared by policies without their own.
+     */
+    private static final RetryBudget defaultBudget = new RetryBudget();
+    /**
+     * Random source of the jitter.
+     */
+    private static final Random random = new Random();
+
+    /**
+     * Maximum number of attempts, including the first one.
+     */
+    private final int maxAttempts;
+    /**
+     * Delay before the first retry in milliseconds.
+     */
+    private long baseDelay = DEFAULT_BASE_DELAY_MS;
+    /**
+     * Maximum delay before a retry in milliseconds.
+     */
+    private long maxDelay = DEFAULT_MAX_DELAY_MS;
+    /**
+     * Multiplier of the delay at each retry.
+     */
+    private double multiplier = DEFAULT_MULTIPLIER;
+    /**
+     * Fraction of the delay that is randomized, from 0 to 1.
+     */
+    private double jitter = DEFAULT_JITTER;
+    /**
+     * If requests with non idempotent methods are retried.
+     */
+    private boolean retryNonIdempotent;
+    /**
+     * Budget of the retries.
+     */
+    private RetryBudget budget = defaultBudget;
+
+    /**
+     * Instantiate a policy.
+     *
+     * @param maxAttempts Maximum number of attempts, including the first one.
+     */
+    public RetryPolicy(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Sets the delay before the first retry.
+     *
+     * @param baseDelay Delay in milliseconds.
+     * @return This policy.
+     */
+    public RetryPolicy setBaseDelay(long baseDelay) {
+        this.baseDelay = baseDelay;
+        return this;
+    }
+
+    /**
+     * Sets the maximum delay before a retry. A Retry-After longer than it ends the retries.
+     *
+     * @param maxDelay Delay in milliseconds.
+     * @return This policy.
+     */
+    public RetryPolicy setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay;
+        return this;
+    }
+
+    /**
+     * Sets the multiplier of the delay at each retry.
+     *
+     * @param multiplier The multiplier.
+     * @return This policy.
+     */
+    public RetryPolicy setMultiplier(double multiplier) {
+        this.multiplier = multiplier;
+        return this;
+    }
+
+    /**
+     * Sets the fraction of the delay that is randomized, 0 for no jitter and 1 for full jitter.
+     *
+     * @param jitter The fraction, from 0 to 1.
+     * @return This policy.
+     */
+    public RetryPolicy setJitter(double jitter) {
+        this.jitter = Math.max(0, Math.min(1, jitter));
+        return this;
+    }
+
+    /**
+     * Sets if requests with non idempotent methods, such as POST, are retried.
+     *
+     * @param retryNonIdempotent If they are retried.
+     * @return This policy.
+     */
+    public RetryPolicy setRetryNonIdempotent(boolean retryNonIdempotent) {
+        this.retryNonIdempotent = retryNonIdempotent;
+        return this;
+    }
+
+    /**
+     * Sets the budget of the retries, by default one is shared by all policies.
+     *
+     * @param budget The budget.
+     * @return This policy.
+     */
+    public RetryPolicy setBudget(RetryBudget budget) {
+        this.budget = budget;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of attempts.
+     *
+     * @return Maximum number of attempts, including the first one.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Returns the budget of the retries.
+     *
+     * @return The budget.
+     */
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Checks if this policy applies to a request.
+     * Requests with a body that cannot be read again are never retried.
+     *
+     * @param request The request.
+     * @return If the request may be retried.
+     */
+    public boolean appliesTo(RestRequest request) {
+        return maxAttempts > 1 && (retryNonIdempotent || request.getMethod().isIdempotent())
+                && (request.getBody() == null || request.getBody().isRepeatable());
+    }
+
+    /**
+     * Checks if a response status can be retried.
+     *
+     * @param code The status code.
+     * @return If it can be retried.
+     */
+    public boolean isRetryable(int code) {
+        return code >= 500 || code == 408 || code == 429;
+    }
+
+    /**
+     * Returns the delay before a retry.
+     *
+     * @param attempt  Number of the attempt that failed, starting at 1.
+     * @param response Response of the failed attempt, null if none.
+     * @return Delay in milliseconds, -1 if the server requested a delay longer than the maximum.
+     */
+    public long getDelay(int attempt, RequestResponse response) {
+        double delay = Math.min(maxDelay, baseDelay * Math.pow(multiplier, attempt - 1));
+        double randomized;
+        synchronized (random) {
+            randomized = delay * (1 - jitter * random.nextDouble());
+        }
+        long retryAfter = response != null ? parseRetryAfter(response.getHeader(PROPERTY_RETRY_AFTER)) : -1;
+        if (retryAfter > maxDelay) {
+            return -1;
+        }
+        return Math.max((long) randomized, retryAfter);
+    }
+
+    /**
+     * Parses a Retry-After header in seconds.
+     *
+     * @param value The header value.
+     * @return Delay in milliseconds, -1 if missing or not in seconds.
+     */
+    private static long parseRetryAfter(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+}
@@ -1,9 +1,16 @@
 package com.comandulli.lib.rest;
 
+import org.json.JSONException;
+
 /**
  * Implementation of Request Callback {@see com.comandulli.lib.rest.RequestCallback}
  * used at a higher level, where the {@link #onReturn(java.lang.Object)} disregards any
  * request processing and cares only about the final parsed object.
+ * <p>
+ * When created with a {@link ContentDecoder}, or with a class registered in {@link ContentDecoders},
+ * this callback decodes the content of the response itself, straight from the response bytes,
+ * and routes error status codes through {@link #dispatchStatus(int)}. When its callback is delivered on an executor,
+ * the content is decoded beforehand on the thread the response arrived on, see {@link CallbackExecutors}.
  *
  * @param <T> Type of the object returned by this request's callback.
  * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
@@ -11,11 +18,46 @@ package com.comandulli.lib.rest;
  */
 public abstract class ReturnCallback<T> extends RequestCallback {
 
+    /**
+     * Content decoded ahead of the response being delivered on the current thread, null if none.
+     */
+    private static final ThreadLocal<Decoded<?>> delivering = new ThreadLocal<>();
+
+    /**
+     * Decoder of the response content, null if this callback does not decode responses.
+     */
+    private final ContentDecoder<T> decoder;
+
     /**
      * Instantiate a callback for a request expecting a specific return.
      */
     public ReturnCallback() {
         super();
+        this.decoder = null;
+    }
+
+    /**
+     * Instantiate a callback that decodes the response content with a decoder.
+     *
+     * @param decoder Decoder of the response content.
+     */
+    public ReturnCallback(ContentDecoder<T> decoder) {
+        super();
+        this.decoder = decoder;
+    }
+
+    /**
+     * Instantiate a callback that decodes the response content with the decoder registered for a class.
+     *
+     * @param type Class of the return, registered in {@link ContentDecoders}, by hand or through {@link ContentDecoders#derive(Class)}.
+     * @throws IllegalArgumentException if no decoder is registered for the class.
+     */
+    public ReturnCallback(Class<T> type) {
+        super();
+        this.decoder = ContentDecoders.get(type);
+        if (decoder == null) {
+            throw new IllegalArgumentException("No decoder registered for " + type.getName());
+        }
     }
 
     /**
@@ -26,6 +68,16 @@ public abstract class ReturnCallback<T> extends RequestCallback {
      */
     public ReturnCallback(ReturnCallback<?> parent) {
         super(parent);
+        this.decoder = null;
+    }
+
+    /**
+     * Returns the decoder of the response content.
+     *
+     * @return The decoder, null if this callback does not decode responses.
+     */
+    public ContentDecoder<T> getDecoder() {
+        return decoder;
     }
 
     /**
@@ -41,13 +93,91 @@ public abstract class ReturnCallback<T> extends RequestCallback {
      * RequestResponse {@see package com.comandulli.lib.rest.RequestResponse} object.
      * <p>
      * If this callback is not a parent in a chained behaviour you need to override this
-     * to produce any value for {@link #onReturn(java.lang.Object)}
+     * to produce any value for {@link #onReturn(java.lang.Object)}, unless it has a decoder.
      *
      * @param response RequestResponse produced.
      */
     @Override
     public void onResponse(RequestResponse response) {
-        onReturn(null);
+        if (decoder == null) {
+            onReturn(null);
+        } else if (response == null) {
+            onInternalError();
+        } else if (!dispatchStatus(response.getCode())) {
+            Decoded<?> decoded = delivering.get();
+            if (decoded != null && decoded.callback == this && decoded.response == response) {
+                delivering.remove();
+                if (decoded.failed) {
+                    onInternalError();
+                } else {
+                    @SuppressWarnings("unchecked")
+                    T value = (T) decoded.value;
+                    onReturn(value);
+                }
+                return;
+            }
+            ContentReader reader = response.getContentReader();
+            T value;
+            try {
+                value = reader == null ? null : decoder.decode(reader);
+            } catch (JSONException e) {
+                onInternalError();
+                return;
+            }
+            onReturn(value);
+        }
+    }
+
+    /**
+     * Decodes the content of a response ahead of it being delivered on another thread.
+     *
+     * @param response The response.
+     * @return The decoded content, null if there is nothing to decode.
+     */
+    Decoded<T> predecode(RequestResponse response) {
+        if (decoder == null || response == null || response.getCode() >= 400) {
+            return null;
+        }
+        ContentReader reader = response.getContentReader();
+        try {
+            return new Decoded<>(this, response, reader == null ? null : decoder.decode(reader), false);
+        } catch (JSONException e) {
+            return new Decoded<T>(this, response, null, true);
+        }
+    }
+
+    /**
+     * Sets the content decoded ahead of the response being delivered on the current thread.
+     *
+     * @param decoded The decoded content, null once delivered.
+     */
+    static void setDelivering(Decoded<?> decoded) {
+        if (decoded != null) {
+            delivering.set(decoded);
+        } else {
+            delivering.remove();
+        }
+    }
+
+    /**
+     * Content of a response decoded ahead of its delivery.
+     *
+     * @param <T> Type of the content.
+     */
+    static final class Decoded<T> {
+
+        private final ReturnCallback<T> callback;
+        private final RequestResponse response;
+        private final T value;
+        private final boolean failed;
+
+        private Decoded(ReturnCallback<T> callback, RequestResponse response, T value, boolean failed) {
+            this.callback = callback;
+            this.response = response;
+            this.value = value;
+            this.failed = failed;
+        }
+
     }
 
 }
@@ -0,0 +1,66 @@
+package com.comandulli.lib.rest;
+
+import java.io.IOException;
+
+/**
+ * Callback that reads the body of a successful response as a stream, instead of a parsed {@link RequestResponse}.
+ * <p>
+ * Used to download bodies of any size, such as exports, within a bounded memory footprint:
+ * the connection only receives as fast as {@link #onStream(ResponseStream)} reads. Streaming requests
+ * are never cached nor coalesced, and error responses are handled by the usual callbacks,
+ * with their bodies read up to {@link #MAX_ERROR_BODY} bytes. Only supported by the {@link HttpClientTransport}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public abstract class StreamingCallback extends RequestCallback implements ProgressListener {
+
+    /**
+     * Maximum bytes read of the body of an error response.
+     */
+    public static final int MAX_ERROR_BODY = 64 * 1024;
+
+    /**
+     * Instantiate a streaming callback.
+     */
+    public StreamingCallback() {
+    }
+
+    /**
+     * Instantiate a streaming callback with another callback as its parent.
+     *
+     * @param parent Parent of this callback.
+     */
+    public StreamingCallback(RequestCallback parent) {
+        super(parent);
+    }
+
+    /**
+     * Callback with the body of a successful response, called from a worker thread that may block on reads.
+     * The stream is closed when this method returns, unless handed over with {@link ResponseStream#toPublisher(int)}.
+     *
+     * @param stream The body.
+     * @throws IOException if the body cannot be read, handled by {@link #onInternalError()}.
+     */
+    public abstract void onStream(ResponseStream stream) throws IOException;
+
+    /**
+     * Callback once the body was streamed, with the status and headers of the response but no content.
+     *
+     * @param response The response.
+     */
+    @Override
+    public void onResponse(RequestResponse response) {
+    }
+
+    /**
+     * Callback as the body is read.
+     *
+     * @param transferred Bytes read so far.
+     * @param total       Size of the body, -1 if unknown.
+     */
+    @Override
+    public void onProgress(long transferred, long total) {
+    }
+
+}
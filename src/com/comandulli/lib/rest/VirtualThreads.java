@@ -0,0 +1,59 @@
+package com.comandulli.lib.rest;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors that run each task on a virtual thread, for blocking requests through {@link RestRequest#executeBlocking()}
+ * in straight-line code with tens of thousands of requests outstanding.
+ * <p>
+ * Virtual threads need Java 21, on older runtimes (and on android) a cached thread pool is used instead.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public final class VirtualThreads {
+
+    /**
+     * Factory of virtual thread executors, null if not available.
+     */
+    private static final Method NEW_EXECUTOR = findFactory();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Checks if virtual threads are available in this runtime.
+     *
+     * @return If virtual threads are available.
+     */
+    public static boolean isAvailable() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * Creates an executor that runs each task on a new virtual thread,
+     * or on a cached thread pool if virtual threads are not available.
+     *
+     * @return The executor.
+     */
+    public static ExecutorService newExecutor() {
+        if (NEW_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_EXECUTOR.invoke(null);
+            } catch (Exception ignored) {
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    private static Method findFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+}
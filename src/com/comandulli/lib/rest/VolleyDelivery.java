@@ -0,0 +1,57 @@
+package com.comandulli.lib.rest;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.android.volley.ExecutorDelivery;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.ResponseDelivery;
+import com.android.volley.VolleyError;
+
+/**
+ * Delivery of volley's responses, that delivers the responses of this library's requests right away
+ * on volley's network threads and the responses of other volley requests on the main thread.
+ * <p>
+ * The callbacks of this library's requests are then delivered on their own executor, see {@link CallbackExecutors}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+final class VolleyDelivery implements ResponseDelivery {
+
+    /**
+     * Delivery on the network threads.
+     */
+    private final ResponseDelivery direct = new ExecutorDelivery(CallbackExecutors.DIRECT);
+    /**
+     * Delivery on the main thread.
+     */
+    private final ResponseDelivery main = new ExecutorDelivery(new Handler(Looper.getMainLooper()));
+
+    @Override
+    public void postResponse(Request<?> request, Response<?> response) {
+        deliveryOf(request).postResponse(request, response);
+    }
+
+    @Override
+    public void postResponse(Request<?> request, Response<?> response, Runnable runnable) {
+        deliveryOf(request).postResponse(request, response, runnable);
+    }
+
+    @Override
+    public void postError(Request<?> request, VolleyError error) {
+        deliveryOf(request).postError(request, error);
+    }
+
+    /**
+     * Returns the delivery of a request.
+     *
+     * @param request The request.
+     * @return The delivery.
+     */
+    private ResponseDelivery deliveryOf(Request<?> request) {
+        return request instanceof VolleyRequest ? direct : main;
+    }
+
+}
@@ -1,26 +1,40 @@
 package com.comandulli.lib.rest;
 
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Response;
 import com.android.volley.Response.ErrorListener;
 import com.android.volley.Response.Listener;
 import com.android.volley.TimeoutError;
 import com.android.volley.VolleyError;
 import com.android.volley.toolbox.HttpHeaderParser;
-import com.android.volley.toolbox.JsonObjectRequest;
+import com.android.volley.toolbox.JsonRequest;
+import com.comandulli.lib.rest.cache.CacheEntry;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.zip.DataFormatException;
 
 /**
- * Implementation of a JsonObjectRequest {@see package com.android.volley.toolbox.JsonObjectRequest}
+ * Implementation of a JsonRequest {@see package com.android.volley.toolbox.JsonRequest}
  * that handles volley requests with this library's responses.
+ * <p>
+ * Response bodies are read by the {@link EnvelopeParser} on volley's network thread,
+ * the content is not parsed until requested. Android's connections already negotiate gzip responses,
+ * bodies still in gzip are decompressed before parsing. Bodies are encoded and responses read
+ * with the codecs of the {@link EnvelopeCodecs}. Through the queue of {@link NetworkRequestQueue}, responses
+ * are delivered on the network thread too, and callbacks on their executor, see {@link CallbackExecutors}.
  *
  * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
  * @since 1.0
  */
-public class VolleyRequest extends JsonObjectRequest {
+public class VolleyRequest extends JsonRequest<RequestResponse> {
 
     /**
      * JSON mapping of the request message.
@@ -35,9 +49,9 @@ public class VolleyRequest extends JsonObjectRequest {
      */
     public static final String JSON_PROPERTY_CODE = "code";
     /**
-     * Header mappings of the request.
+     * Header mappings of all requests, a view of the {@link HeaderRegistry}.
      */
-    public static final Map<String, String> headers = new HeaderMap();
+    public static final Map<String, String> headers = HeaderRegistry.asMap();
 
     /**
      * Override the user agent of all requests.
@@ -45,7 +59,7 @@ public class VolleyRequest extends JsonObjectRequest {
      * @param agent User agent to be used.
      */
     public static void setUserAgent(String agent) {
-        headers.put(HeaderMap.PROPERTY_USER_AGENT, agent);
+        HeaderRegistry.put(HeaderMap.PROPERTY_USER_AGENT, agent);
     }
 
     /**
@@ -55,7 +69,50 @@ public class VolleyRequest extends JsonObjectRequest {
      * @param value Header value.
      */
     public static void addHeader(String name, String value) {
-        headers.put(name, value);
+        HeaderRegistry.put(name, value);
+    }
+
+    /**
+     * The request being sent, null if sent directly through volley.
+     */
+    private final RestRequest request;
+    /**
+     * Content of the request, null if none.
+     */
+    private final JSONObject content;
+    /**
+     * Codec of the request body.
+     */
+    private final EnvelopeCodec codec;
+    /**
+     * Body as sent, encoded and compressed if above the threshold.
+     */
+    private byte[] body;
+    /**
+     * If the body was encoded.
+     */
+    private boolean bodyEncoded;
+    /**
+     * If the body is compressed in gzip.
+     */
+    private boolean compressed;
+
+    /**
+     * Instantiate a new volley request for a REST request.
+     * Volley's own retries are disabled when the request has a retry policy.
+     *
+     * @param request  The REST request.
+     * @param url      Resolved url of the request.
+     * @param callback Callback, to receive the request's results.
+     */
+    public VolleyRequest(RestRequest request, String url, RequestCallback callback) {
+        this(request, request.getMethod().getMethod(), url, request.getContent(), callback);
+        if (request.getCacheKey() != null) {
+            setShouldCache(false);
+        }
+        if (request.getRetryPolicy().appliesTo(request)) {
+            setRetryPolicy(new DefaultRetryPolicy(DefaultRetryPolicy.DEFAULT_TIMEOUT_MS, 0, DefaultRetryPolicy.DEFAULT_BACKOFF_MULT));
+        }
     }
 
     /**
@@ -67,70 +124,211 @@ public class VolleyRequest extends JsonObjectRequest {
      * @param callback    Callback, to receive the request's results.
      */
     public VolleyRequest(int method, String url, JSONObject jsonRequest, final RequestCallback callback) {
-        super(method, url, jsonRequest, new Listener<JSONObject>() {
+        this(null, method, url, jsonRequest, delivered(callback));
+    }
+
+    /**
+     * Wraps the callback of a request made without a REST request, to be delivered on the executor
+     * set in {@link NetworkRequestQueue#setCallbackExecutor(Executor)}, or on the main thread.
+     *
+     * @param callback The callback.
+     * @return The callback to make the request with.
+     */
+    private static RequestCallback delivered(RequestCallback callback) {
+        Executor executor = NetworkRequestQueue.getCallbackExecutor();
+        return DeliveryCallback.wrap(callback, callback, executor != null ? executor : CallbackExecutors.mainThread());
+    }
+
+    private VolleyRequest(RestRequest request, int method, String url, JSONObject jsonRequest, final RequestCallback callback) {
+        super(method, url, jsonRequest == null ? null : jsonRequest.toString(), new Listener<RequestResponse>() {
             @Override
-            public void onResponse(JSONObject response) {
-                try {
-                    RequestResponse requestResponse = new RequestResponse();
-                    requestResponse.setMessage(response.getString(JSON_PROPERTY_MESSAGE));
-                    if (response.has(JSON_PROPERTY_CONTENT)) {
-                        requestResponse.setContent(response.getJSONObject(JSON_PROPERTY_CONTENT));
-                    }
-                    requestResponse.setCode(response.getInt(JSON_PROPERTY_CODE));
-                    if (callback != null) {
-                        callback.always();
-                        callback.onResponse(requestResponse);
-                    }
-                } catch (JSONException e) {
-                    if (callback != null) {
-                        callback.always();
-                        callback.onInternalError();
-                    }
-                }
+            public void onResponse(RequestResponse response) {
+                ResponseDispatcher.dispatchResponse(response, callback);
+                response.release();
             }
         }, new ErrorListener() {
             @Override
             public void onErrorResponse(VolleyError error) {
                 try {
                     if (error.getClass().equals(TimeoutError.class)) {
-                        if (callback != null) {
-                            callback.always();
-                            callback.onTimeout();
-                        }
+                        ResponseDispatcher.dispatchTimeout(callback);
                     } else {
                         if (error.networkResponse != null) {
-                            RequestResponse requestResponse = new RequestResponse();
-                            requestResponse.setMessage(new String(error.networkResponse.data, HttpHeaderParser.parseCharset(error.networkResponse.headers, PROTOCOL_CHARSET)));
-                            requestResponse.setCode(error.networkResponse.statusCode);
-                            if (callback != null) {
-                                callback.always();
-                                callback.onResponse(requestResponse);
-                            }
+                            ResponseDispatcher.dispatchError(error.networkResponse.statusCode, new String(error.networkResponse.data, HttpHeaderParser.parseCharset(error.networkResponse.headers, PROTOCOL_CHARSET)), error.networkResponse.headers, callback);
                         } else {
-                            if (callback != null) {
-                                callback.always();
-                                callback.onInternalError();
-                            }
+                            ResponseDispatcher.dispatchInternalError(callback);
                         }
                     }
                 } catch (UnsupportedEncodingException e) {
-                    if (callback != null) {
-                        callback.always();
-                        callback.onInternalError();
-                    }
+                    ResponseDispatcher.dispatchInternalError(callback);
                 }
             }
         });
+        this.request = request;
+        this.content = jsonRequest;
+        this.codec = EnvelopeCodecs.getRequestCodec();
     }
 
     /**
-     * {@link #getHeaders()} override, so HeaderMap {@see com.comandulli.lib.rest.HeaderMap} is returned.
+     * Parses the response envelope with the codec of its Content-Type,
+     * transcoding a JSON body to UTF-8 if another charset is declared.
+     * A 304 (Not Modified) response is served from the response cache.
+     * The response of a canceled request is not parsed.
      *
-     * @return
+     * @param response The network response.
+     * @return The parsed response, or a parse error.
+     */
+    @Override
+    protected Response<RequestResponse> parseNetworkResponse(NetworkResponse response) {
+        if (isCanceled() || (request != null && request.isCanceled())) {
+            return Response.error(new ParseError(response));
+        }
+        try {
+            byte[] data = response.data;
+            if (data != null && Compression.isGzip(CacheEntry.header(response.headers, Compression.PROPERTY_CONTENT_ENCODING))) {
+                data = Compression.gunzip(data);
+            }
+            if (request != null) {
+                RequestEvents.onResponseHeaders(request, response.statusCode);
+                RequestEvents.onBodyComplete(request, data != null ? data.length : 0);
+                data = CacheHandler.onNetworkResponse(request, response.statusCode, response.headers, data);
+                if (data == null) {
+                    return Response.error(new ParseError(response));
+                }
+            }
+            int length = data != null ? data.length : 0;
+            EnvelopeCodec codec = EnvelopeCodecs.forResponse(CacheEntry.header(response.headers, HttpClientTransport.PROPERTY_CONTENT_TYPE), data, 0, length);
+            if (codec == EnvelopeCodecs.JSON && data != null) {
+                String charset = HttpHeaderParser.parseCharset(response.headers, PROTOCOL_CHARSET);
+                if (!EnvelopeParser.UTF_8.name().equalsIgnoreCase(charset) && !"utf8".equalsIgnoreCase(charset)) {
+                    data = new String(data, charset).getBytes(EnvelopeParser.UTF_8);
+                    length = data.length;
+                }
+            }
+            RequestResponse requestResponse = codec.decode(data, 0, length);
+            requestResponse.setHeaders(response.headers);
+            if (request != null) {
+                RequestEvents.onParseComplete(request);
+            }
+            return Response.success(requestResponse, HttpHeaderParser.parseCacheHeaders(response));
+        } catch (UnsupportedEncodingException e) {
+            return Response.error(new ParseError(e));
+        } catch (JSONException e) {
+            return Response.error(new ParseError(e));
+        } catch (DataFormatException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    /**
+     * {@link #getPriority()} override, so the priority of the REST request is used.
+     *
+     * @return The priority.
+     */
+    @Override
+    public Priority getPriority() {
+        if (request == null) {
+            return super.getPriority();
+        }
+        switch (request.getPriority()) {
+            case IMMEDIATE:
+                return Priority.IMMEDIATE;
+            case HIGH:
+                return Priority.HIGH;
+            case LOW:
+                return Priority.LOW;
+            default:
+                return Priority.NORMAL;
+        }
+    }
+
+    /**
+     * {@link #getHeaders()} override, so the headers of the {@link HeaderRegistry} are returned,
+     * with the request's own headers, conditional headers when revalidating a cached response,
+     * the content encoding of a compressed body and the Accept header of the preferred codec.
+     *
+     * @return The headers.
      */
     @Override
     public Map<String, String> getHeaders() {
-        return headers;
+        Map<String, String> requestHeaders = HeaderRegistry.headersOf(request);
+        boolean revalidating = request != null && CacheHandler.isRevalidating(request);
+        boolean compressed = isCompressed();
+        String accept = EnvelopeCodecs.getAcceptHeader();
+        if (accept != null && requestHeaders.containsKey(EnvelopeCodecs.PROPERTY_ACCEPT)) {
+            accept = null;
+        }
+        if (revalidating || compressed || accept != null) {
+            requestHeaders = new HashMap<>(requestHeaders);
+            if (revalidating) {
+                CacheHandler.addConditionalHeaders(request, requestHeaders);
+            }
+            if (compressed) {
+                requestHeaders.put(Compression.PROPERTY_CONTENT_ENCODING, Compression.ENCODING_GZIP);
+            }
+            if (accept != null) {
+                requestHeaders.put(EnvelopeCodecs.PROPERTY_ACCEPT, accept);
+            }
+        }
+        return requestHeaders;
+    }
+
+    /**
+     * {@link #getBodyContentType()} override, so the content type of the request codec is sent.
+     *
+     * @return The content type.
+     */
+    @Override
+    public String getBodyContentType() {
+        return codec == EnvelopeCodecs.JSON ? super.getBodyContentType() : codec.getContentType();
+    }
+
+    /**
+     * {@link #getBody()} override, so the body is encoded by the request codec
+     * and bodies above the {@link Compression} threshold are sent in gzip.
+     *
+     * @return The body.
+     */
+    @Override
+    public synchronized byte[] getBody() {
+        if (!bodyEncoded) {
+            bodyEncoded = true;
+            body = encodeBody();
+            if (body != null && Compression.shouldCompress(body.length)) {
+                byte[] compressedBody = Compression.gzip(body);
+                if (compressedBody != null) {
+                    body = compressedBody;
+                    compressed = true;
+                }
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Checks if the body is sent in gzip, encoding it the first time.
+     *
+     * @return If the body is compressed.
+     */
+    private synchronized boolean isCompressed() {
+        getBody();
+        return compressed;
+    }
+
+    /**
+     * Encodes the content with the request codec.
+     *
+     * @return The encoded body, null if there is no content or it cannot be encoded.
+     */
+    private byte[] encodeBody() {
+        if (codec == EnvelopeCodecs.JSON || content == null) {
+            return super.getBody();
+        }
+        try {
+            return codec.encode(content);
+        } catch (JSONException e) {
+            return null;
+        }
     }
 
 }
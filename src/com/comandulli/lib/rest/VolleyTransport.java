@@ -0,0 +1,58 @@
+package com.comandulli.lib.rest;
+
+import com.android.volley.RequestQueue;
+
+/**
+ * Transport that sends requests through a volley request queue {@see com.android.volley.RequestQueue}.
+ * <p>
+ * Volley holds whole bodies in memory, so streaming requests are not supported and fail with an internal error.
+ * Canceled requests are canceled in volley too, which skips them if not yet sent.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class VolleyTransport implements RequestTransport {
+
+    /**
+     * The volley request queue.
+     */
+    private final RequestQueue requestQueue;
+
+    /**
+     * Instantiate a transport over a volley request queue.
+     *
+     * @param requestQueue The volley request queue.
+     */
+    public VolleyTransport(RequestQueue requestQueue) {
+        this.requestQueue = requestQueue;
+    }
+
+    /**
+     * Returns the volley request queue used by this transport.
+     *
+     * @return The volley request queue.
+     */
+    public RequestQueue getRequestQueue() {
+        return requestQueue;
+    }
+
+    @Override
+    public void send(RestRequest request, String url, RequestCallback callback) {
+        if (request.isStreaming()) {
+            ResponseDispatcher.dispatchInternalError(callback);
+            return;
+        }
+        final VolleyRequest volleyRequest = new VolleyRequest(request, url, callback);
+        CancelToken token = request.getCancelToken();
+        if (token != null) {
+            token.onCancel(new Runnable() {
+                @Override
+                public void run() {
+                    volleyRequest.cancel();
+                }
+            });
+        }
+        requestQueue.add(volleyRequest);
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.comandulli.lib.rest.cache;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A cached response body with its validators and freshness.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class CacheEntry {
+
+    /**
+     * Header key of the cache control.
+     */
+    public static final String PROPERTY_CACHE_CONTROL = "Cache-Control";
+    /**
+     * Header key of the entity tag.
+     */
+    public static final String PROPERTY_ETAG = "ETag";
+    /**
+     * Header key of the last modification date.
+     */
+    public static final String PROPERTY_LAST_MODIFIED = "Last-Modified";
+    /**
+     * Header key of the conditional request by entity tag.
+     */
+    public static final String PROPERTY_IF_NONE_MATCH = "If-None-Match";
+    /**
+     * Header key of the conditional request by modification date.
+     */
+    public static final String PROPERTY_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    /**
+     * The response body.
+     */
+    private final byte[] data;
+    /**
+     * Entity tag of the response, null if none.
+     */
+    private final String etag;
+    /**
+     * Last modification date of the response, null if none.
+     */
+    private final String lastModified;
+    /**
+     * Time in milliseconds until the response is fresh.
+     */
+    private final long expires;
+
+    /**
+     * Instantiate a cache entry.
+     *
+     * @param data         The response body.
+     * @param etag         Entity tag of the response, null if none.
+     * @param lastModified Last modification date of the response, null if none.
+     * @param expires      Time in milliseconds until the response is fresh.
+     */
+    public CacheEntry(byte[] data, String etag, String lastModified, long expires) {
+        this.data = data;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.expires = expires;
+    }
+
+    /**
+     * Creates an entry from response headers, honoring Cache-Control, ETag and Last-Modified.
+     *
+     * @param data    The response body.
+     * @param headers The response headers.
+     * @param now     Current time in milliseconds.
+     * @return The entry, null if the response must not be cached.
+     */
+    public static CacheEntry fromHeaders(byte[] data, Map<String, String> headers, long now) {
+        String etag = header(headers, PROPERTY_ETAG);
+        String lastModified = header(headers, PROPERTY_LAST_MODIFIED);
+        long maxAge = -1;
+        String cacheControl = header(headers, PROPERTY_CACHE_CONTROL);
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                directive = directive.trim().toLowerCase(Locale.US);
+                if (directive.equals("no-store")) {
+                    return null;
+                } else if (directive.equals("no-cache") || directive.equals("must-revalidate")) {
+                    maxAge = 0;
+                } else if (directive.startsWith("max-age=") && maxAge != 0) {
+                    try {
+                        maxAge = Long.parseLong(directive.substring(8));
+                    } catch (NumberFormatException ignored) {
+                        maxAge = 0;
+                    }
+                }
+            }
+        }
+        if (maxAge <= 0 && etag == null && lastModified == null) {
+            return null;
+        }
+        return new CacheEntry(data, etag, lastModified, now + Math.max(maxAge, 0) * 1000);
+    }
+
+    /**
+     * Returns a header value, looking up its key ignoring case.
+     *
+     * @param headers The headers.
+     * @param name    The header key.
+     * @return The value, null if missing.
+     */
+    public static String header(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        String value = headers.get(name);
+        if (value == null) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                if (name.equalsIgnoreCase(entry.getKey())) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns a copy of this entry refreshed by the headers of a 304 (Not Modified) response.
+     *
+     * @param headers The response headers.
+     * @param now     Current time in milliseconds.
+     * @return The refreshed entry, null if it must no longer be cached.
+     */
+    public CacheEntry revalidate(Map<String, String> headers, long now) {
+        CacheEntry refreshed = fromHeaders(data, headers, now);
+        if (refreshed == null) {
+            return null;
+        }
+        return new CacheEntry(data, refreshed.etag != null ? refreshed.etag : etag,
+                refreshed.lastModified != null ? refreshed.lastModified : lastModified, refreshed.expires);
+    }
+
+    /**
+     * Adds the conditional request headers of this entry.
+     *
+     * @param headers Headers of the request.
+     */
+    public void addConditionalHeaders(Map<String, String> headers) {
+        if (etag != null) {
+            headers.put(PROPERTY_IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            headers.put(PROPERTY_IF_MODIFIED_SINCE, lastModified);
+        }
+    }
+
+    /**
+     * If this entry can be used without revalidation.
+     *
+     * @param now Current time in milliseconds.
+     * @return If it is fresh.
+     */
+    public boolean isFresh(long now) {
+        return now < expires;
+    }
+
+    /**
+     * If this entry can be revalidated with a conditional request.
+     *
+     * @return If it has an entity tag or last modification date.
+     */
+    public boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * Returns the response body.
+     *
+     * @return The response body.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Returns the entity tag.
+     *
+     * @return The entity tag, null if none.
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Returns the last modification date.
+     *
+     * @return The last modification date, null if none.
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the time until the response is fresh.
+     *
+     * @return Time in milliseconds.
+     */
+    public long getExpires() {
+        return expires;
+    }
+
+    /**
+     * Returns the size of this entry in bytes.
+     *
+     * @return The size.
+     */
+    public int getSize() {
+        return data.length;
+    }
+
+}
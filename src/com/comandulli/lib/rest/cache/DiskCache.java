@@ -0,0 +1,195 @@
+package com.comandulli.lib.rest.cache;
+
+import com.comandulli.lib.MD5;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Disk tier of the {@link ResponseCache}, one file per entry in a directory,
+ * evicting the least recently written files when above its size bound.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class DiskCache {
+
+    /**
+     * Directory of the entries.
+     */
+    private final File directory;
+    /**
+     * Maximum size of all entries in bytes.
+     */
+    private final long maxSize;
+    /**
+     * Current size of all entries in bytes.
+     */
+    private long size;
+
+    /**
+     * Instantiate a disk cache.
+     *
+     * @param directory Directory of the entries, created if missing.
+     * @param maxSize   Maximum size of all entries in bytes.
+     */
+    public DiskCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Can not create cache directory " + directory);
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+    }
+
+    /**
+     * Reads an entry.
+     *
+     * @param key Key of the entry.
+     * @return The entry, null if missing or unreadable.
+     */
+    public synchronized CacheEntry get(String key) {
+        File file = fileOf(key);
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (!key.equals(in.readUTF())) {
+                return null;
+            }
+            String etag = readNullable(in);
+            String lastModified = readNullable(in);
+            long expires = in.readLong();
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            return new CacheEntry(data, etag, lastModified, expires);
+        } catch (IOException e) {
+            remove(key);
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Writes an entry, replacing any previous one.
+     *
+     * @param key   Key of the entry.
+     * @param entry The entry.
+     */
+    public synchronized void put(String key, CacheEntry entry) {
+        remove(key);
+        File file = fileOf(key);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeUTF(key);
+            writeNullable(out, entry.getEtag());
+            writeNullable(out, entry.getLastModified());
+            out.writeLong(entry.getExpires());
+            out.writeInt(entry.getSize());
+            out.write(entry.getData());
+        } catch (IOException e) {
+            close(out);
+            out = null;
+            file.delete();
+            return;
+        } finally {
+            close(out);
+        }
+        size += file.length();
+        trim();
+    }
+
+    /**
+     * Removes an entry.
+     *
+     * @param key Key of the entry.
+     */
+    public synchronized void remove(String key) {
+        File file = fileOf(key);
+        long length = file.length();
+        if (file.delete()) {
+            size -= length;
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * Evicts the least recently written entries until below the size bound.
+     */
+    private void trim() {
+        if (size <= maxSize) {
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < files.length && size > maxSize; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private File fileOf(String key) {
+        return new File(directory, MD5.encode(key));
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static void close(java.io.Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+}
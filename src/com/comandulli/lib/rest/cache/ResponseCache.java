@@ -0,0 +1,160 @@
+package com.comandulli.lib.rest.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of GET responses, with a memory tier bound by size with LRU eviction and an optional disk tier.
+ * <p>
+ * Install it through {@link com.comandulli.lib.rest.NetworkRequestQueue#setResponseCache(ResponseCache)}.
+ * Fresh entries are served without touching the network, stale entries with an ETag or Last-Modified
+ * are revalidated with a conditional request, and a 304 (Not Modified) is served from the cache.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class ResponseCache {
+
+    /**
+     * Memory tier, in access order.
+     */
+    private final LinkedHashMap<String, CacheEntry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * Maximum size of the memory tier in bytes.
+     */
+    private final long maxMemorySize;
+    /**
+     * Current size of the memory tier in bytes.
+     */
+    private long memorySize;
+    /**
+     * Disk tier, null if none.
+     */
+    private final DiskCache disk;
+
+    /**
+     * Instantiate a memory only cache.
+     *
+     * @param maxMemorySize Maximum size of the memory tier in bytes.
+     */
+    public ResponseCache(long maxMemorySize) {
+        this(maxMemorySize, null);
+    }
+
+    /**
+     * Instantiate a cache with memory and disk tiers.
+     *
+     * @param maxMemorySize Maximum size of the memory tier in bytes.
+     * @param disk          Disk tier, null if none.
+     */
+    public ResponseCache(long maxMemorySize, DiskCache disk) {
+        this.maxMemorySize = maxMemorySize;
+        this.disk = disk;
+    }
+
+    /**
+     * Returns the key of a request.
+     *
+     * @param method HTTP Method of the request.
+     * @param url    Resolved url of the request, with server path and query params.
+     * @return The key.
+     */
+    public static String keyOf(String method, String url) {
+        return method + " " + url;
+    }
+
+    /**
+     * Returns an entry, looking in memory then on disk.
+     *
+     * @param key Key of the entry.
+     * @return The entry, null if missing.
+     */
+    public CacheEntry get(String key) {
+        CacheEntry entry;
+        synchronized (this) {
+            entry = memory.get(key);
+        }
+        if (entry == null && disk != null) {
+            entry = disk.get(key);
+            if (entry != null) {
+                putMemory(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Stores an entry in all tiers.
+     *
+     * @param key   Key of the entry.
+     * @param entry The entry.
+     */
+    public void put(String key, CacheEntry entry) {
+        putMemory(key, entry);
+        if (disk != null) {
+            disk.put(key, entry);
+        }
+    }
+
+    /**
+     * Removes an entry from all tiers.
+     *
+     * @param key Key of the entry.
+     */
+    public void remove(String key) {
+        synchronized (this) {
+            CacheEntry removed = memory.remove(key);
+            if (removed != null) {
+                memorySize -= removed.getSize();
+            }
+        }
+        if (disk != null) {
+            disk.remove(key);
+        }
+    }
+
+    /**
+     * Removes all entries from all tiers.
+     */
+    public void clear() {
+        synchronized (this) {
+            memory.clear();
+            memorySize = 0;
+        }
+        if (disk != null) {
+            disk.clear();
+        }
+    }
+
+    /**
+     * Returns the current size of the memory tier.
+     *
+     * @return Size in bytes.
+     */
+    public synchronized long getMemorySize() {
+        return memorySize;
+    }
+
+    private synchronized void putMemory(String key, CacheEntry entry) {
+        CacheEntry previous;
+        if (entry.getSize() > maxMemorySize) {
+            previous = memory.remove(key);
+            if (previous != null) {
+                memorySize -= previous.getSize();
+            }
+            return;
+        }
+        previous = memory.put(key, entry);
+        if (previous != null) {
+            memorySize -= previous.getSize();
+        }
+        memorySize += entry.getSize();
+        Iterator<Map.Entry<String, CacheEntry>> it = memory.entrySet().iterator();
+        while (memorySize > maxMemorySize && it.hasNext()) {
+            memorySize -= it.next().getValue().getSize();
+            it.remove();
+        }
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.comandulli.lib.rest.exception;
+
+/**
+ * Exception thrown when a 409 (Conflict) is responded.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class ConflictException extends StatusException {
+
+    private static final long serialVersionUID = 1447618263904751266L;
+
+    public ConflictException() {
+        super(409);
+    }
+
+    public ConflictException(String message) {
+        super(409, message);
+    }
+}
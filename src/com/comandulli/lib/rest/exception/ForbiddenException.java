@@ -0,0 +1,20 @@
+package com.comandulli.lib.rest.exception;
+
+/**
+ * Exception thrown when a 403 (Forbidden) is responded.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class ForbiddenException extends StatusException {
+
+    private static final long serialVersionUID = -7012447291938470528L;
+
+    public ForbiddenException() {
+        super(403);
+    }
+
+    public ForbiddenException(String message) {
+        super(403, message);
+    }
+}
@@ -0,0 +1,25 @@
+package com.comandulli.lib.rest.exception;
+
+/**
+ * Exception thrown when a 5XX (Server Error) is responded, or any other error is not handled.
+ * Errors without a response, such as a body that can not be encoded, have the code {@link #NO_STATUS}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class InternalErrorException extends StatusException {
+
+    private static final long serialVersionUID = 8560927712403871423L;
+
+    public InternalErrorException() {
+        super(NO_STATUS);
+    }
+
+    public InternalErrorException(String message) {
+        super(NO_STATUS, message);
+    }
+
+    public InternalErrorException(int code, String message) {
+        super(code, message);
+    }
+}
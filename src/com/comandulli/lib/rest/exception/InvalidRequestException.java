@@ -0,0 +1,20 @@
+package com.comandulli.lib.rest.exception;
+
+/**
+ * Exception thrown when a 400 (Bad Request) is responded.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class InvalidRequestException extends StatusException {
+
+    private static final long serialVersionUID = 5809226841577040416L;
+
+    public InvalidRequestException() {
+        super(400);
+    }
+
+    public InvalidRequestException(String message) {
+        super(400, message);
+    }
+}
@@ -0,0 +1,20 @@
+package com.comandulli.lib.rest.exception;
+
+/**
+ * Exception thrown when a request is canceled before it completes, through its handle, its tag or its future.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class RequestCanceledException extends RequestException {
+
+    private static final long serialVersionUID = 4127706388165907529L;
+
+    public RequestCanceledException() {
+        super("Request was canceled");
+    }
+
+    public RequestCanceledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,25 @@
+package com.comandulli.lib.rest.exception;
+
+/**
+ * Exception thrown when a request times out or a 408 (Request Timeout) is responded.
+ * Requests timing out without a response have the code {@link #NO_STATUS}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class RequestTimeoutException extends StatusException {
+
+    private static final long serialVersionUID = -4693817705256930337L;
+
+    public RequestTimeoutException() {
+        super(NO_STATUS);
+    }
+
+    public RequestTimeoutException(String message) {
+        super(NO_STATUS, message);
+    }
+
+    public RequestTimeoutException(int code, String message) {
+        super(code, message);
+    }
+}
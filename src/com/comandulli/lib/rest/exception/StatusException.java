@@ -0,0 +1,51 @@
+package com.comandulli.lib.rest.exception;
+
+/**
+ * Exception thrown when a request is responded with an error status code,
+ * or fails without a response, with the code {@link #NO_STATUS}.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class StatusException extends RequestException {
+
+    private static final long serialVersionUID = 3264019835371285904L;
+
+    /**
+     * Code of failures without a response, such as a body that can not be encoded or a local timeout.
+     */
+    public static final int NO_STATUS = 0;
+
+    /**
+     * The status code of the response.
+     */
+    private final int code;
+
+    public StatusException(int code) {
+        super(code == NO_STATUS ? "Request failed without a response" : "Request failed with status " + code);
+        this.code = code;
+    }
+
+    public StatusException(int code, String message) {
+        super(message);
+        this.code = code;
+    }
+
+    /**
+     * Returns the status code of the response.
+     *
+     * @return The status code, {@link #NO_STATUS} if there was no response.
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * If the failure carries the status of a response, rather than being a local failure.
+     *
+     * @return If there is a status code.
+     */
+    public boolean hasResponse() {
+        return code != NO_STATUS;
+    }
+}
@@ -0,0 +1,20 @@
+package com.comandulli.lib.rest.exception;
+
+/**
+ * Exception thrown when a 401 (Unauthorized) is responded.
+ *
+ * @author <a href="mailto:caioa.comandulli@gmail.com">Caio Comandulli</a>
+ * @since 1.1
+ */
+public class UnauthorizedException extends StatusException {
+
+    private static final long serialVersionUID = -2318503316247712381L;
+
+    public UnauthorizedException() {
+        super(401);
+    }
+
+    public UnauthorizedException(String message) {
+        super(401, message);
+    }
+}